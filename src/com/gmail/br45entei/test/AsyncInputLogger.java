@@ -0,0 +1,586 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.gmail.br45entei.game.input.InputCallback;
+import com.gmail.br45entei.game.input.Keyboard.Keys;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/** An {@link InputCallback} that logs the input events it receives, like
+ * {@link com.gmail.br45entei.game.input.InputCallback.InputLogger
+ * InputLogger}, but without making the input thread wait for the output
+ * stream.<br>
+ * <br>
+ * The callbacks only copy each event into a bounded, lock-free queue (a
+ * {@link SlotRing}, like {@link InputEventQueue}'s, but with room for every
+ * callback's arguments). A background writer thread takes the events out of
+ * the queue, formats them into a reused {@link StringBuilder}, and writes
+ * and flushes them in batches: everything that has arrived since the
+ * previous batch, or at most {@link #DEFAULT_FLUSH_INTERVAL} nanoseconds
+ * later.<br>
+ * <br>
+ * When the queue is full, the {@link Policy} decides whether new events are
+ * {@link Policy#DROP dropped} (and {@link #getDropCount() counted}) or
+ * whether the input thread {@link Policy#BLOCK waits} for the writer to make
+ * room.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class AsyncInputLogger implements InputCallback {
+	
+	/** What an {@link AsyncInputLogger} does with new events while its queue
+	 * is full.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static enum Policy {
+		/** The event is discarded and counted, so that the input thread never
+		 * waits */
+		DROP,
+		/** The input thread waits until the writer has made room for the
+		 * event, so that no events are lost */
+		BLOCK;
+	}
+	
+	/** The default number of events that the queue can hold */
+	public static final int DEFAULT_CAPACITY = 4096;
+	/** The default longest time that an event waits before it is written, in
+	 * nanoseconds */
+	public static final long DEFAULT_FLUSH_INTERVAL = 10000000L;
+	
+	private static final int MOUSE_MOVED = 1;
+	private static final int MOUSE_BUTTON_DOWN = 2;
+	private static final int MOUSE_BUTTON_HELD = 3;
+	private static final int MOUSE_BUTTON_UP = 4;
+	private static final int MOUSE_DOUBLE_CLICK = 5;
+	private static final int MOUSE_SCROLL = 6;
+	private static final int KEY_DOWN = 7;
+	private static final int KEY_HELD = 8;
+	private static final int KEY_UP = 9;
+	private static final int CONTROLLER_CONNECTED = 10;
+	private static final int CONTROLLER_DISCONNECTED = 11;
+	private static final int CONTROLLER_BUTTON_DOWN = 12;
+	private static final int CONTROLLER_BUTTON_HELD = 13;
+	private static final int CONTROLLER_BUTTON_REPEAT = 14;
+	private static final int CONTROLLER_BUTTON_UP = 15;
+	private static final int CONTROLLER_BUTTON_DOUBLE_TAPPED = 16;
+	private static final int CONTROLLER_AXIS_CHANGED = 17;
+	private static final int CONTROLLER_AXIS_NON_ZERO = 18;
+	
+	/** How long the input thread waits at a time for room in a full queue
+	 * when the policy is {@link Policy#BLOCK}, in nanoseconds */
+	private static final long BLOCK_WAIT = 50000L;
+	
+	private final PrintStream out;
+	private final Policy policy;
+	private final long flushInterval;
+	
+	private final SlotRing ring;
+	private final int[] types;
+	private final int[] ints;
+	private final float[] floats;
+	private final double[] doubles;
+	private final Controller[] controllers;
+	private final AtomicLong dropped = new AtomicLong(0L);
+	private final AtomicLong blocked = new AtomicLong(0L);
+	
+	/** Only ever accessed by the writer thread */
+	private final StringBuilder sb = new StringBuilder(4096);
+	private volatile long written = 0L;
+	private volatile long batches = 0L;
+	private volatile boolean running = true;
+	private final Thread writer;
+	
+	private volatile boolean printKeyboardButtons = true;
+	private volatile boolean printKeyboardButtonHelds = true;
+	private volatile boolean printMouseButtons = true;
+	private volatile boolean printMouseButtonHelds = true;
+	private volatile boolean printControllerAxisChanges = true;
+	
+	/** Creates a new AsyncInputLogger that drops events when its queue is
+	 * full, and starts its writer thread.
+	 * 
+	 * @param out The stream to log the events to */
+	public AsyncInputLogger(PrintStream out) {
+		this(out, Policy.DROP);
+	}
+	
+	/** Creates a new AsyncInputLogger and starts its writer thread.
+	 * 
+	 * @param out The stream to log the events to
+	 * @param policy What to do with new events while the queue is full */
+	public AsyncInputLogger(PrintStream out, Policy policy) {
+		this(out, policy, DEFAULT_CAPACITY, DEFAULT_FLUSH_INTERVAL);
+	}
+	
+	/** Creates a new AsyncInputLogger and starts its writer thread.
+	 * 
+	 * @param out The stream to log the events to
+	 * @param policy What to do with new events while the queue is full
+	 * @param capacity The number of events that the queue can hold (rounded
+	 *            up to the next power of two)
+	 * @param flushInterval The longest time that an event waits before it is
+	 *            written, in nanoseconds */
+	public AsyncInputLogger(PrintStream out, Policy policy, int capacity, long flushInterval) {
+		if(capacity <= 0 || capacity > (1 << 24)) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^24: ".concat(Integer.toString(capacity)));
+		}
+		if(flushInterval <= 0L) {
+			throw new IllegalArgumentException("Flush interval must be positive: ".concat(Long.toString(flushInterval)));
+		}
+		this.out = out;
+		this.policy = policy;
+		this.flushInterval = flushInterval;
+		this.ring = new SlotRing(capacity);
+		capacity = this.ring.capacity();
+		this.types = new int[capacity];
+		this.ints = new int[capacity * 6];
+		this.floats = new float[capacity * 2];
+		this.doubles = new double[capacity];
+		this.controllers = new Controller[capacity];
+		
+		this.writer = new Thread(this::write, "AsyncInputLogger Writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+	
+	//==========================================================================================================================
+	
+	/** Claims a slot in the queue for a new event.
+	 * 
+	 * @return The position of the claimed slot, or {@code -1} if the event
+	 *         was dropped */
+	private long claim() {
+		boolean waited = false;
+		for(;;) {
+			if(!this.running) {
+				this.dropped.incrementAndGet();
+				return -1L;
+			}
+			final long position = this.ring.claim();
+			if(position >= 0L) {
+				if(waited) {
+					this.blocked.incrementAndGet();
+				}
+				return position;
+			}
+			// The writer hasn't freed the next slot since the last time around:
+			// (Don't wait on a writer that has died, as it will never free one)
+			if(this.policy == Policy.DROP || !this.writer.isAlive()) {
+				this.dropped.incrementAndGet();
+				return -1L;
+			}
+			waited = true;
+			LockSupport.unpark(this.writer);
+			LockSupport.parkNanos(this, BLOCK_WAIT);
+		}
+	}
+	
+	private void offer(int type, int a) {
+		final long position = this.claim();
+		if(position >= 0L) {
+			final int index = this.ring.index(position);
+			this.types[index] = type;
+			this.ints[index * 6] = a;
+			this.ring.publish(position);
+		}
+	}
+	
+	private void offer(int type, Controller controller, int a, float x, float y, double deltaTime) {
+		final long position = this.claim();
+		if(position >= 0L) {
+			final int index = this.ring.index(position);
+			this.types[index] = type;
+			this.controllers[index] = controller;
+			this.ints[index * 6] = a;
+			this.floats[index * 2] = x;
+			this.floats[(index * 2) + 1] = y;
+			this.doubles[index] = deltaTime;
+			this.ring.publish(position);
+		}
+	}
+	
+	//==========================================================================================================================
+	
+	private void write() {
+		for(;;) {
+			// Read before draining, so that events added before close() are still written:
+			final boolean running = this.running;
+			final int drained = this.drain();
+			if(this.sb.length() > 0) {
+				this.out.append(this.sb);
+				this.out.flush();
+				this.sb.setLength(0);
+				this.batches++;
+			}
+			this.written = this.ring.getReleaseCount();
+			if(drained == 0) {
+				if(!running) {
+					return;
+				}
+				LockSupport.parkNanos(this, this.flushInterval);
+			}
+		}
+	}
+	
+	/** Formats every event that has been published so far (up to one queue's
+	 * worth) into the string builder, and frees their slots. */
+	private int drain() {
+		final int capacity = this.ring.capacity();
+		int drained = 0;
+		for(int index; drained < capacity && (index = this.ring.poll()) >= 0; drained++) {
+			this.format(index);
+			this.controllers[index] = null;
+			this.ring.release();
+		}
+		return drained;
+	}
+	
+	private void format(int index) {
+		final StringBuilder sb = this.sb;
+		final int i = index * 6, a = this.ints[i];
+		final Controller controller = this.controllers[index];
+		switch(this.types[index]) {
+		case MOUSE_MOVED:
+			sb.append("Mouse moved: deltaX: ").append(a).append("; deltaY: ").append(this.ints[i + 1]);
+			sb.append("; old position: ").append(this.ints[i + 2]).append(", ").append(this.ints[i + 3]);
+			sb.append("; new position: ").append(this.ints[i + 4]).append(", ").append(this.ints[i + 5]);
+			break;
+		case MOUSE_BUTTON_DOWN:
+			sb.append("Mouse button down: ").append(a);
+			break;
+		case MOUSE_BUTTON_HELD:
+			sb.append("Mouse button held: ").append(a);
+			break;
+		case MOUSE_BUTTON_UP:
+			sb.append("Mouse button up: ").append(a);
+			break;
+		case MOUSE_DOUBLE_CLICK:
+			sb.append("Mouse button double clicked: ").append(a);
+			break;
+		case MOUSE_SCROLL:
+			sb.append(this.ints[i + 1] != 0 ? "Mouse wheel scrolled vertically: " : "Mouse wheel scrolled horizontally: ").append(a);
+			break;
+		case KEY_DOWN:
+			sb.append("Key down: ").append(Keys.getNameForKey(a));
+			break;
+		case KEY_HELD:
+			sb.append("Key held: ").append(Keys.getNameForKey(a));
+			break;
+		case KEY_UP:
+			sb.append("Key up: ").append(Keys.getNameForKey(a));
+			break;
+		case CONTROLLER_CONNECTED:
+			sb.append("Controller connected: ").append(controller.getName());
+			break;
+		case CONTROLLER_DISCONNECTED:
+			sb.append("Controller disconnected: ").append(controller.getName());
+			break;
+		case CONTROLLER_BUTTON_DOWN:
+			sb.append("Controller \"").append(controller.getName()).append("\": button down: ").append(a);
+			break;
+		case CONTROLLER_BUTTON_HELD:
+			sb.append("Controller \"").append(controller.getName()).append("\": button held: ").append(a).append("; deltaTime: ").append(this.doubles[index]);
+			break;
+		case CONTROLLER_BUTTON_REPEAT:
+			sb.append("Controller \"").append(controller.getName()).append("\": button repeat: ").append(a);
+			break;
+		case CONTROLLER_BUTTON_UP:
+			sb.append("Controller \"").append(controller.getName()).append("\": button up: ").append(a);
+			break;
+		case CONTROLLER_BUTTON_DOUBLE_TAPPED:
+			sb.append("Controller \"").append(controller.getName()).append("\": button double tapped: ").append(a);
+			break;
+		case CONTROLLER_AXIS_CHANGED:
+			sb.append("Controller \"").append(controller.getName()).append("\": axis ").append(a).append(" changed: ").append(this.floats[index * 2]).append(" -> ").append(this.floats[(index * 2) + 1]);
+			break;
+		case CONTROLLER_AXIS_NON_ZERO:
+			sb.append("Controller \"").append(controller.getName()).append("\": axis ").append(a).append(": ").append(this.floats[index * 2]).append("; deltaTime: ").append(this.doubles[index]);
+			break;
+		default:
+			return;
+		}
+		sb.append(System.lineSeparator());
+	}
+	
+	//==========================================================================================================================
+	
+	/** Waits until every event that was added before this method was called
+	 * has been written (or dropped).
+	 * 
+	 * @return This AsyncInputLogger */
+	public AsyncInputLogger flush() {
+		final long target = this.ring.getClaimCount();
+		while(this.written < target && this.writer.isAlive()) {
+			LockSupport.unpark(this.writer);
+			LockSupport.parkNanos(this, BLOCK_WAIT);
+		}
+		return this;
+	}
+	
+	/** Writes any remaining events and stops the writer thread. Events that
+	 * are added afterwards are dropped. */
+	public void close() {
+		this.running = false;
+		LockSupport.unpark(this.writer);
+		try {
+			this.writer.join();
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/** @return What this logger does with new events while its queue is
+	 *         full */
+	public Policy getPolicy() {
+		return this.policy;
+	}
+	
+	/** @return The number of events that can be queued at once */
+	public int capacity() {
+		return this.ring.capacity();
+	}
+	
+	/** @return The number of events that were dropped because the queue was
+	 *         full (or because this logger was closed) */
+	public long getDropCount() {
+		return this.dropped.get();
+	}
+	
+	/** @return The number of events that had to wait for room in the queue
+	 *         (only when the policy is {@link Policy#BLOCK}) */
+	public long getBlockCount() {
+		return this.blocked.get();
+	}
+	
+	/** @return The number of events that have been written so far */
+	public long getWrittenCount() {
+		return this.written;
+	}
+	
+	/** @return The number of batches that have been written so far */
+	public long getBatchCount() {
+		return this.batches;
+	}
+	
+	//==========================================================================================================================
+	
+	/** @param printKeyboardButtons Whether or not key presses and releases
+	 *            should be logged
+	 * @return This AsyncInputLogger */
+	public AsyncInputLogger setPrintKeyboardButtons(boolean printKeyboardButtons) {
+		this.printKeyboardButtons = printKeyboardButtons;
+		return this;
+	}
+	
+	/** @param printKeyboardButtonHelds Whether or not held keys should be
+	 *            logged
+	 * @return This AsyncInputLogger */
+	public AsyncInputLogger setPrintKeyboardButtonHelds(boolean printKeyboardButtonHelds) {
+		this.printKeyboardButtonHelds = printKeyboardButtonHelds;
+		return this;
+	}
+	
+	/** @param printMouseButtons Whether or not mouse button presses, releases
+	 *            and double clicks should be logged
+	 * @return This AsyncInputLogger */
+	public AsyncInputLogger setPrintMouseButtons(boolean printMouseButtons) {
+		this.printMouseButtons = printMouseButtons;
+		return this;
+	}
+	
+	/** @param printMouseButtonHelds Whether or not held mouse buttons should
+	 *            be logged
+	 * @return This AsyncInputLogger */
+	public AsyncInputLogger setPrintMouseButtonHelds(boolean printMouseButtonHelds) {
+		this.printMouseButtonHelds = printMouseButtonHelds;
+		return this;
+	}
+	
+	/** @param printControllerAxisChanges Whether or not controller axis
+	 *            changes should be logged
+	 * @return This AsyncInputLogger */
+	public AsyncInputLogger setPrintControllerAxisChanges(boolean printControllerAxisChanges) {
+		this.printControllerAxisChanges = printControllerAxisChanges;
+		return this;
+	}
+	
+	//==========================================================================================================================
+	
+	@Override
+	public boolean isInputInitialized() {
+		return true;
+	}
+	
+	@Override
+	public void inputInit() {
+	}
+	
+	@Override
+	public void inputCleanup() {
+		this.flush();
+	}
+	
+	@Override
+	public void input(double deltaTime) {
+	}
+	
+	@Override
+	public void update(double deltaTime) {
+	}
+	
+	@Override
+	public void onMouseMoved(int deltaX, int deltaY, int oldX, int oldY, int newX, int newY) {
+		final long position = this.claim();
+		if(position >= 0L) {
+			final int index = this.ring.index(position), i = index * 6;
+			this.types[index] = MOUSE_MOVED;
+			this.ints[i] = deltaX;
+			this.ints[i + 1] = deltaY;
+			this.ints[i + 2] = oldX;
+			this.ints[i + 3] = oldY;
+			this.ints[i + 4] = newX;
+			this.ints[i + 5] = newY;
+			this.ring.publish(position);
+		}
+	}
+	
+	@Override
+	public void onMouseButtonDown(int button) {
+		if(this.printMouseButtons) {
+			this.offer(MOUSE_BUTTON_DOWN, button);
+		}
+	}
+	
+	@Override
+	public void onMouseButtonHeld(int button) {
+		if(this.printMouseButtonHelds) {
+			this.offer(MOUSE_BUTTON_HELD, button);
+		}
+	}
+	
+	@Override
+	public void onMouseButtonUp(int button) {
+		if(this.printMouseButtons) {
+			this.offer(MOUSE_BUTTON_UP, button);
+		}
+	}
+	
+	@Override
+	public void onMouseDoubleClick(int button) {
+		if(this.printMouseButtons) {
+			this.offer(MOUSE_DOUBLE_CLICK, button);
+		}
+	}
+	
+	@Override
+	public void onMouseScroll(boolean vertical, int count) {
+		final long position = this.claim();
+		if(position >= 0L) {
+			final int index = this.ring.index(position);
+			this.types[index] = MOUSE_SCROLL;
+			this.ints[index * 6] = count;
+			this.ints[(index * 6) + 1] = vertical ? 1 : 0;
+			this.ring.publish(position);
+		}
+	}
+	
+	@Override
+	public void onKeyDown(int key) {
+		if(this.printKeyboardButtons) {
+			this.offer(KEY_DOWN, key);
+		}
+	}
+	
+	@Override
+	public void onKeyHeld(int key) {
+		if(this.printKeyboardButtonHelds) {
+			this.offer(KEY_HELD, key);
+		}
+	}
+	
+	@Override
+	public void onKeyUp(int key) {
+		if(this.printKeyboardButtons) {
+			this.offer(KEY_UP, key);
+		}
+	}
+	
+	@Override
+	public void onControllerConnected(Controller controller) {
+		this.offer(CONTROLLER_CONNECTED, controller, 0, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerDisconnected(Controller controller) {
+		this.offer(CONTROLLER_DISCONNECTED, controller, 0, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerButtonDown(Controller controller, int button) {
+		this.offer(CONTROLLER_BUTTON_DOWN, controller, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerButtonHeld(Controller controller, int button, double deltaTime) {
+		this.offer(CONTROLLER_BUTTON_HELD, controller, button, 0, 0, deltaTime);
+	}
+	
+	@Override
+	public void onControllerButtonRepeat(Controller controller, int button) {
+		this.offer(CONTROLLER_BUTTON_REPEAT, controller, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerButtonUp(Controller controller, int button) {
+		this.offer(CONTROLLER_BUTTON_UP, controller, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerButtonDoubleTapped(Controller controller, int button) {
+		this.offer(CONTROLLER_BUTTON_DOUBLE_TAPPED, controller, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerAxisChanged(Controller controller, int axis, float oldValue, float newValue) {
+		if(this.printControllerAxisChanges) {
+			this.offer(CONTROLLER_AXIS_CHANGED, controller, axis, oldValue, newValue, 0);
+		}
+	}
+	
+	@Override
+	public void onControllerAxisNonZero(Controller controller, int axis, float value, double deltaTime) {
+		if(this.printControllerAxisChanges) {
+			this.offer(CONTROLLER_AXIS_NON_ZERO, controller, axis, value, 0, deltaTime);
+		}
+	}
+	
+	@Override
+	public boolean handleException(Throwable ex, String method, Object... params) {
+		return false;
+	}
+	
+}
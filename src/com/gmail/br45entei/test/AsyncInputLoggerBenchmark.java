@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.input.Keyboard.Keys;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/** Test and benchmark of {@link AsyncInputLogger}.<br>
+ * Events are logged to a stream that, like a console, takes a while for
+ * every write. First the logger is checked to write every event exactly once
+ * and in order when it blocks, and to count every event it drops when it
+ * doesn't. Then the time that the input thread spends in each callback is
+ * measured while it sends bursts of held-key events, both when every event
+ * is printed synchronously (as
+ * {@link com.gmail.br45entei.game.input.InputCallback.InputLogger
+ * InputLogger} does) and when it is handed to the asynchronous logger.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class AsyncInputLoggerBenchmark {
+	
+	/** An output stream that takes a fixed time for every write, plus a
+	 * little more for every byte written, and counts what was written.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	static final class SlowStream extends OutputStream {
+		
+		final long nanosPerWrite, nanosPerByte;
+		final ByteArrayOutputStream captured;
+		long writes = 0L, bytes = 0L;
+		
+		SlowStream(long nanosPerWrite, long nanosPerByte, boolean capture) {
+			this.nanosPerWrite = nanosPerWrite;
+			this.nanosPerByte = nanosPerByte;
+			this.captured = capture ? new ByteArrayOutputStream() : null;
+		}
+		
+		@Override
+		public void write(int b) {
+			this.write(new byte[] {(byte) b}, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			final long end = System.nanoTime() + this.nanosPerWrite + (this.nanosPerByte * len);
+			while(System.nanoTime() < end) {
+				Thread.onSpinWait();
+			}
+			if(this.captured != null) {
+				this.captured.write(b, off, len);
+			}
+			this.writes++;
+			this.bytes += len;
+		}
+		
+	}
+	
+	private static final PrintStream print(OutputStream out) {
+		return new PrintStream(out, false, StandardCharsets.UTF_8);
+	}
+	
+	/** Sends bursts of held-key events to the given logger (or prints each of
+	 * them to the given stream if the logger is {@code null}) and measures
+	 * how long each call takes. */
+	private static final FrameTimeReport measure(AsyncInputLogger logger, PrintStream sync, int bursts, int burstSize) throws InterruptedException {
+		final FrameTimeReport report = new FrameTimeReport();
+		for(int burst = 0; burst < bursts; burst++) {
+			for(int i = 0; i < burstSize; i++) {
+				final int key = (i & 1) == 0 ? Keys.VK_W : Keys.VK_A;
+				final long start = System.nanoTime();
+				if(logger != null) {
+					logger.onKeyHeld(key);
+				} else {
+					sync.println("Key held: ".concat(String.valueOf(Keys.getNameForKey(key))));
+				}
+				report.add(System.nanoTime() - start);
+			}
+			// Give the writer (and the rest of the frame) some time, like the input thread does between polls:
+			Thread.sleep(1L);
+		}
+		return report;
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws InterruptedException If the thread is interrupted while waiting
+	 *             between bursts */
+	public static final void main(String[] args) throws InterruptedException {
+		// Blocking: every event is written exactly once, in order:
+		final int count = 100000;
+		final SlowStream captured = new SlowStream(2000L, 2L, true);
+		final AsyncInputLogger blocking = new AsyncInputLogger(print(captured), AsyncInputLogger.Policy.BLOCK, 256, AsyncInputLogger.DEFAULT_FLUSH_INTERVAL);
+		for(int i = 0; i < count; i++) {
+			blocking.onMouseMoved(i, -i, 0, 0, i, -i);
+		}
+		blocking.close();
+		final String[] lines = new String(captured.captured.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+		MicroBenchmark.check(lines.length == count, String.format("Expected %s lines, got %s", Integer.toString(count), Integer.toString(lines.length)));
+		for(int i = 0; i < count; i++) {
+			MicroBenchmark.check(lines[i].startsWith("Mouse moved: deltaX: ".concat(Integer.toString(i)).concat(";")), "Line out of order: ".concat(lines[i]));
+		}
+		MicroBenchmark.check(blocking.getDropCount() == 0L && blocking.getWrittenCount() == count, "The blocking logger dropped events");
+		System.out.println(String.format("BLOCK: %s events written in order in %s batches; the input thread had to wait for %s of them.", Integer.toString(count), Long.toString(blocking.getBatchCount()), Long.toString(blocking.getBlockCount())));
+		
+		// Dropping: every event is either written or counted as dropped:
+		final SlowStream slow = new SlowStream(2000L, 2L, true);
+		final AsyncInputLogger dropping = new AsyncInputLogger(print(slow), AsyncInputLogger.Policy.DROP, 64, AsyncInputLogger.DEFAULT_FLUSH_INTERVAL);
+		for(int i = 0; i < count; i++) {
+			dropping.onMouseMoved(i, -i, 0, 0, i, -i);
+		}
+		dropping.flush();
+		final String[] written = new String(slow.captured.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator());
+		MicroBenchmark.check(dropping.getDropCount() > 0L, "Expected the small queue to overflow");
+		MicroBenchmark.check(dropping.getWrittenCount() == written.length && written.length + dropping.getDropCount() == count, String.format("%s written + %s dropped != %s", Integer.toString(written.length), Long.toString(dropping.getDropCount()), Integer.toString(count)));
+		dropping.close();
+		System.out.println(String.format("DROP: %s events written and %s dropped (and counted) out of %s.", Integer.toString(written.length), Long.toString(dropping.getDropCount()), Integer.toString(count)));
+		
+		// Blocking with a dead writer: the input thread must not wait forever (a null controller kills the writer with a NullPointerException):
+		final AsyncInputLogger orphaned = new AsyncInputLogger(print(new SlowStream(0L, 0L, false)), AsyncInputLogger.Policy.BLOCK, 64, AsyncInputLogger.DEFAULT_FLUSH_INTERVAL);
+		System.err.println("(The following NullPointerException is expected:)");
+		orphaned.onControllerConnected(null);
+		for(int i = 0; i < count; i++) {
+			orphaned.onMouseMoved(i, -i, 0, 0, i, -i);
+		}
+		MicroBenchmark.check(orphaned.getDropCount() > 0L, "Expected events to be dropped once the writer died");
+		orphaned.close();
+		System.out.println(String.format("BLOCK with a dead writer: %s events dropped instead of waiting forever.", Long.toString(orphaned.getDropCount())));
+		System.out.println();
+		
+		// Input thread latency, writing to a console-like stream (20 us per write):
+		final int bursts = args.length > 0 ? Integer.parseInt(args[0]) : 500, burstSize = 32;
+		for(int run = 0; run < 2; run++) {
+			final boolean print = run == 1;
+			final SlowStream console = new SlowStream(20000L, 10L, false);
+			final FrameTimeReport sync = measure(null, print(console), bursts, burstSize);
+			
+			final SlowStream asyncConsole = new SlowStream(20000L, 10L, false);
+			final AsyncInputLogger async = new AsyncInputLogger(print(asyncConsole), AsyncInputLogger.Policy.DROP);
+			final FrameTimeReport asynchronous = measure(async, null, bursts, burstSize);
+			async.close();
+			
+			final AsyncInputLogger blockingAsync = new AsyncInputLogger(print(new SlowStream(20000L, 10L, false)), AsyncInputLogger.Policy.BLOCK);
+			final FrameTimeReport asynchronousBlocking = measure(blockingAsync, null, bursts, burstSize);
+			blockingAsync.close();
+			if(!print) {
+				continue;// warm-up
+			}
+			System.out.println(String.format("Synchronous:  %s us per event; p50: %s us; p99: %s us; max: %s us; %s writes", us(sync.getMeanNanos()), us(sync.getPercentile(50.0)), us(sync.getPercentile(99.0)), us(sync.getPercentile(100.0)), Long.toString(console.writes)));
+			System.out.println(String.format("Async (DROP): %s us per event; p50: %s us; p99: %s us; max: %s us; %s writes in %s batches; %s dropped", us(asynchronous.getMeanNanos()), us(asynchronous.getPercentile(50.0)), us(asynchronous.getPercentile(99.0)), us(asynchronous.getPercentile(100.0)), Long.toString(asyncConsole.writes), Long.toString(async.getBatchCount()), Long.toString(async.getDropCount())));
+			System.out.println(String.format("Async (BLOCK): %s us per event; p50: %s us; p99: %s us; max: %s us; %s waited", us(asynchronousBlocking.getMeanNanos()), us(asynchronousBlocking.getPercentile(50.0)), us(asynchronousBlocking.getPercentile(99.0)), us(asynchronousBlocking.getPercentile(100.0)), Long.toString(blockingAsync.getBlockCount())));
+			MicroBenchmark.check(async.getDropCount() == 0L, "The default queue should not overflow at this rate");
+			MicroBenchmark.check(asynchronous.getPercentile(50.0) < sync.getPercentile(50.0), "The asynchronous logger should be faster for the input thread");
+		}
+	}
+	
+	private static final String us(double nanos) {
+		return String.format("%.3f", Double.valueOf(nanos / 1.0E3));
+	}
+	
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.MatrixStack;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Computes the model-view matrices of many objects at once.<br>
+ * <br>
+ * Object positions and rotations are stored as a structure of arrays (one
+ * {@code float[]} per component), and
+ * {@link #compute(float[], RotationOrder, float[], int) compute} writes one
+ * packed column-major 4x4 matrix per object into a caller-owned array. For
+ * each object, the result is the same as
+ * 
+ * <pre>
+ * stack.push().load(base).translate(x, y, z).rotate(yaw, pitch, roll, rotationOrder, MultiplicationOrder.NEWxOLD).pop()
+ * </pre>
+ * 
+ * using a {@link MatrixStack} or {@link FloatMatrixStack}, but without any
+ * per-object method calls, matrix multiplications or allocations.<br>
+ * <br>
+ * The work is split into two flat loops: the first computes the sines and
+ * cosines of every angle into scratch arrays, and the second expands them
+ * into the final matrices using the closed form of the rotation. Large
+ * batches can also be split across the common {@link ForkJoinPool} using
+ * {@link #computeParallel(float[], RotationOrder, float[], int)
+ * computeParallel}.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class BatchTransform {
+	
+	/** The number of floats written per object */
+	public static final int MATRIX_SIZE = 16;
+	
+	/** Batches with fewer objects than this are not split any further by
+	 * {@link #computeParallel(float[], RotationOrder, float[], int)} */
+	public static final int PARALLEL_THRESHOLD = 4096;
+	
+	private final int capacity;
+	private int size = 0;
+	
+	private final float[] x, y, z, yaw, pitch, roll;
+	private final float[] cosYaw, sinYaw, cosPitch, sinPitch, cosRoll, sinRoll;
+	
+	/** Creates a new BatchTransform.
+	 * 
+	 * @param capacity The maximum number of objects this batch can hold */
+	public BatchTransform(int capacity) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException("Capacity cannot be negative: ".concat(Integer.toString(capacity)));
+		}
+		this.capacity = capacity;
+		this.x = new float[capacity];
+		this.y = new float[capacity];
+		this.z = new float[capacity];
+		this.yaw = new float[capacity];
+		this.pitch = new float[capacity];
+		this.roll = new float[capacity];
+		this.cosYaw = new float[capacity];
+		this.sinYaw = new float[capacity];
+		this.cosPitch = new float[capacity];
+		this.sinPitch = new float[capacity];
+		this.cosRoll = new float[capacity];
+		this.sinRoll = new float[capacity];
+	}
+	
+	/** @return The number of objects in this batch */
+	public int size() {
+		return this.size;
+	}
+	
+	/** @return The maximum number of objects this batch can hold */
+	public int capacity() {
+		return this.capacity;
+	}
+	
+	/** Removes all objects from this batch.
+	 * 
+	 * @return This BatchTransform */
+	public BatchTransform clear() {
+		this.size = 0;
+		return this;
+	}
+	
+	/** Adds an object to this batch.
+	 * 
+	 * @param x The object's X position
+	 * @param y The object's Y position
+	 * @param z The object's Z position
+	 * @param yaw The object's rotation around the Y axis, in degrees
+	 * @param pitch The object's rotation around the X axis, in degrees
+	 * @param roll The object's rotation around the Z axis, in degrees
+	 * @return The index of the new object
+	 * @throws IllegalStateException Thrown if this batch is full */
+	public int add(float x, float y, float z, float yaw, float pitch, float roll) throws IllegalStateException {
+		if(this.size >= this.capacity) {
+			throw new IllegalStateException("BatchTransform is full! (Capacity: ".concat(Integer.toString(this.capacity)).concat(")"));
+		}
+		int index = this.size++;
+		this.set(index, x, y, z, yaw, pitch, roll);
+		return index;
+	}
+	
+	/** Replaces the position and rotation of the specified object.
+	 * 
+	 * @param index The index of the object
+	 * @param x The object's X position
+	 * @param y The object's Y position
+	 * @param z The object's Z position
+	 * @param yaw The object's rotation around the Y axis, in degrees
+	 * @param pitch The object's rotation around the X axis, in degrees
+	 * @param roll The object's rotation around the Z axis, in degrees
+	 * @return This BatchTransform */
+	public BatchTransform set(int index, float x, float y, float z, float yaw, float pitch, float roll) {
+		if(index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException(String.format("Index: %s; Size: %s", Integer.toString(index), Integer.toString(this.size)));
+		}
+		this.x[index] = x;
+		this.y[index] = y;
+		this.z[index] = z;
+		this.yaw[index] = yaw;
+		this.pitch[index] = pitch;
+		this.roll[index] = roll;
+		return this;
+	}
+	
+	/** Computes the model-view matrix of every object in this batch.
+	 * 
+	 * @param base The column-major matrix that every object's transformation
+	 *            is applied to (usually the camera's model-view matrix)
+	 * @param rotationOrder The order in which each object's axis rotations
+	 *            are multiplied together
+	 * @param dst The array to write the matrices into. Must have room for
+	 *            {@link #size()} * {@link #MATRIX_SIZE} floats after
+	 *            {@code dstOffset}.
+	 * @param dstOffset The offset in the array to write the first matrix at
+	 * @return The given array */
+	public float[] compute(float[] base, RotationOrder rotationOrder, float[] dst, int dstOffset) {
+		this.compute(base, rotationOrder, dst, dstOffset, 0, this.size);
+		return dst;
+	}
+	
+	/** Computes the model-view matrix of every object in this batch, splitting
+	 * the work across the common {@link ForkJoinPool} when the batch is large
+	 * enough.
+	 * 
+	 * @param base The column-major matrix that every object's transformation
+	 *            is applied to (usually the camera's model-view matrix)
+	 * @param rotationOrder The order in which each object's axis rotations
+	 *            are multiplied together
+	 * @param dst The array to write the matrices into. Must have room for
+	 *            {@link #size()} * {@link #MATRIX_SIZE} floats after
+	 *            {@code dstOffset}.
+	 * @param dstOffset The offset in the array to write the first matrix at
+	 * @return The given array */
+	public float[] computeParallel(float[] base, RotationOrder rotationOrder, float[] dst, int dstOffset) {
+		if(this.size < PARALLEL_THRESHOLD * 2) {
+			return this.compute(base, rotationOrder, dst, dstOffset);
+		}
+		ForkJoinPool.commonPool().invoke(new ComputeTask(this, base, rotationOrder, dst, dstOffset, 0, this.size));
+		return dst;
+	}
+	
+	/** Computes the model-view matrices of the objects in the given range.
+	 * The scratch arrays are only ever accessed within the range, so disjoint
+	 * ranges may be computed concurrently. */
+	void compute(float[] base, RotationOrder rotationOrder, float[] dst, int dstOffset, int start, int end) {
+		if(base.length < 16) {
+			throw new IllegalArgumentException("The base matrix must contain 16 elements!");
+		}
+		if(dst.length < dstOffset + (this.size * MATRIX_SIZE)) {
+			throw new IllegalArgumentException(String.format("Destination array is too small! (Length: %s; Required: %s)", Integer.toString(dst.length), Integer.toString(dstOffset + (this.size * MATRIX_SIZE))));
+		}
+		this.computeTrig(start, end);
+		switch(rotationOrder) {
+		case ZXY:
+			this.expandZXY(base, dst, dstOffset, start, end);
+			break;
+		case YXZ:
+			this.expandYXZ(base, dst, dstOffset, start, end);
+			break;
+		default:
+			this.expand(base, rotationOrder, dst, dstOffset, start, end);
+			break;
+		}
+	}
+	
+	private void computeTrig(int start, int end) {
+		final float[] yaw = this.yaw, pitch = this.pitch, roll = this.roll;
+		final float[] cosYaw = this.cosYaw, sinYaw = this.sinYaw, cosPitch = this.cosPitch, sinPitch = this.sinPitch, cosRoll = this.cosRoll, sinRoll = this.sinRoll;
+		for(int i = start; i < end; i++) {
+			final double y = Math.toRadians(yaw[i]), p = Math.toRadians(pitch[i]), r = Math.toRadians(roll[i]);
+			cosYaw[i] = (float) Math.cos(y);
+			sinYaw[i] = (float) Math.sin(y);
+			cosPitch[i] = (float) Math.cos(p);
+			sinPitch[i] = (float) Math.sin(p);
+			cosRoll[i] = (float) Math.cos(r);
+			sinRoll[i] = (float) Math.sin(r);
+		}
+	}
+	
+	/** Rz(roll) * Rx(pitch) * Ry(yaw) */
+	private void expandZXY(float[] base, float[] dst, int dstOffset, int start, int end) {
+		final float[] cosYaw = this.cosYaw, sinYaw = this.sinYaw, cosPitch = this.cosPitch, sinPitch = this.sinPitch, cosRoll = this.cosRoll, sinRoll = this.sinRoll;
+		for(int i = start; i < end; i++) {
+			final float cy = cosYaw[i], sy = sinYaw[i], cx = cosPitch[i], sx = sinPitch[i], cz = cosRoll[i], sz = sinRoll[i];
+			// Columns of Rz * Rx:
+			final float a00 = cz, a01 = sz, a02 = 0.0f;
+			final float a10 = -sz * cx, a11 = cz * cx, a12 = sx;
+			final float a20 = sz * sx, a21 = -cz * sx, a22 = cx;
+			// ... multiplied by Ry:
+			store(base, dst, dstOffset + (i * MATRIX_SIZE), (a00 * cy) - (a20 * sy), (a01 * cy) - (a21 * sy), (a02 * cy) - (a22 * sy), a10, a11, a12, (a00 * sy) + (a20 * cy), (a01 * sy) + (a21 * cy), (a02 * sy) + (a22 * cy), this.x[i], this.y[i], this.z[i]);
+		}
+	}
+	
+	/** Ry(yaw) * Rx(pitch) * Rz(roll) */
+	private void expandYXZ(float[] base, float[] dst, int dstOffset, int start, int end) {
+		final float[] cosYaw = this.cosYaw, sinYaw = this.sinYaw, cosPitch = this.cosPitch, sinPitch = this.sinPitch, cosRoll = this.cosRoll, sinRoll = this.sinRoll;
+		for(int i = start; i < end; i++) {
+			final float cy = cosYaw[i], sy = sinYaw[i], cx = cosPitch[i], sx = sinPitch[i], cz = cosRoll[i], sz = sinRoll[i];
+			// Columns of Ry * Rx:
+			final float b00 = cy, b01 = 0.0f, b02 = -sy;
+			final float b10 = sy * sx, b11 = cx, b12 = cy * sx;
+			final float b20 = sy * cx, b21 = -sx, b22 = cy * cx;
+			// ... multiplied by Rz:
+			store(base, dst, dstOffset + (i * MATRIX_SIZE), (b00 * cz) + (b10 * sz), (b01 * cz) + (b11 * sz), (b02 * cz) + (b12 * sz), (b10 * cz) - (b00 * sz), (b11 * cz) - (b01 * sz), (b12 * cz) - (b02 * sz), b20, b21, b22, this.x[i], this.y[i], this.z[i]);
+		}
+	}
+	
+	/** Fallback for rotation orders without a closed form above. */
+	private void expand(float[] base, RotationOrder rotationOrder, float[] dst, int dstOffset, int start, int end) {
+		final float[] r = new float[16];
+		for(int i = start; i < end; i++) {
+			FloatMatrixStack.getRotationMatrix(this.yaw[i], this.pitch[i], this.roll[i], rotationOrder, r);
+			store(base, dst, dstOffset + (i * MATRIX_SIZE), r[0], r[1], r[2], r[4], r[5], r[6], r[8], r[9], r[10], this.x[i], this.y[i], this.z[i]);
+		}
+	}
+	
+	/** Writes {@code base * [R | t]} into {@code dst}, where {@code R} is the
+	 * 3x3 rotation given column by column and {@code t} is the translation. */
+	private static final void store(float[] base, float[] dst, int o, float r00, float r01, float r02, float r10, float r11, float r12, float r20, float r21, float r22, float tx, float ty, float tz) {
+		for(int row = 0; row < 4; row++) {
+			final float m0 = base[row], m1 = base[4 + row], m2 = base[8 + row];
+			dst[o + row] = (m0 * r00) + (m1 * r01) + (m2 * r02);
+			dst[o + 4 + row] = (m0 * r10) + (m1 * r11) + (m2 * r12);
+			dst[o + 8 + row] = (m0 * r20) + (m1 * r21) + (m2 * r22);
+			dst[o + 12 + row] = (m0 * tx) + (m1 * ty) + (m2 * tz) + base[12 + row];
+		}
+	}
+	
+	private static final class ComputeTask extends RecursiveAction {
+		private static final long serialVersionUID = -2218263720416183095L;
+		
+		private final BatchTransform batch;
+		private final float[] base;
+		private final RotationOrder rotationOrder;
+		private final float[] dst;
+		private final int dstOffset, start, end;
+		
+		ComputeTask(BatchTransform batch, float[] base, RotationOrder rotationOrder, float[] dst, int dstOffset, int start, int end) {
+			this.batch = batch;
+			this.base = base;
+			this.rotationOrder = rotationOrder;
+			this.dst = dst;
+			this.dstOffset = dstOffset;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if(this.end - this.start <= PARALLEL_THRESHOLD) {
+				this.batch.compute(this.base, this.rotationOrder, this.dst, this.dstOffset, this.start, this.end);
+				return;
+			}
+			final int middle = (this.start + this.end) >>> 1;
+			invokeAll(new ComputeTask(this.batch, this.base, this.rotationOrder, this.dst, this.dstOffset, this.start, middle), new ComputeTask(this.batch, this.base, this.rotationOrder, this.dst, this.dstOffset, middle, this.end));
+		}
+		
+	}
+	
+}
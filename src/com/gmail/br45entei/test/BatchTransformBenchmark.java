@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.MatrixStack;
+import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+
+import java.util.Random;
+
+/** Verifies {@link BatchTransform} against {@link MatrixStack} and
+ * {@link FloatMatrixStack}, then measures how many object transforms per
+ * second each of them can compute at 1k, 10k and 100k objects.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class BatchTransformBenchmark {
+	
+	private static final float EPSILON = 1.0E-4f;
+	
+	private static final void check(float[] expected, int expectedOffset, float[] actual, int actualOffset, String message) {
+		for(int i = 0; i < 16; i++) {
+			float e = expected[expectedOffset + i], a = actual[actualOffset + i];
+			if(Math.abs(e - a) > EPSILON * Math.max(1.0f, Math.abs(e))) {
+				throw new IllegalStateException(String.format("%s: element %s differs (expected %s, got %s)", message, Integer.toString(i), Float.toString(e), Float.toString(a)));
+			}
+		}
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final Random random = new Random(0xBA7C4L);
+		final MatrixStack legacy = new MatrixStack();
+		final FloatMatrixStack stack = new FloatMatrixStack();
+		final float[] base = stack.loadIdentity().translate(0, 0, -5.0f).rotate(-30.0f, -15.0f, -5.0f, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-10.0f, -2.0f, 4.0f, MultiplicationOrder.NEWxOLD).peek(new float[16]);
+		final float[] expected = new float[16];
+		
+		// Verify every rotation order (both the closed forms and the fallback), sequentially and in parallel:
+		final int verifyCount = BatchTransform.PARALLEL_THRESHOLD * 3;
+		final BatchTransform verify = new BatchTransform(verifyCount);
+		final float[] positions = new float[verifyCount * 6];
+		for(int i = 0; i < verifyCount; i++) {
+			for(int j = 0; j < 6; j++) {
+				positions[(i * 6) + j] = j < 3 ? (random.nextFloat() - 0.5f) * 200.0f : random.nextFloat() * 360.0f;
+			}
+			verify.add(positions[i * 6], positions[(i * 6) + 1], positions[(i * 6) + 2], positions[(i * 6) + 3], positions[(i * 6) + 4], positions[(i * 6) + 5]);
+		}
+		final float[] sequential = new float[verifyCount * BatchTransform.MATRIX_SIZE], parallel = new float[sequential.length];
+		for(RotationOrder rotationOrder : RotationOrder.values()) {
+			verify.compute(base, rotationOrder, sequential, 0);
+			verify.computeParallel(base, rotationOrder, parallel, 0);
+			for(int i = 0; i < verifyCount; i++) {
+				final int p = i * 6, offset = i * BatchTransform.MATRIX_SIZE;
+				stack.push().load(base).translate(positions[p], positions[p + 1], positions[p + 2]).rotate(positions[p + 3], positions[p + 4], positions[p + 5], rotationOrder, MultiplicationOrder.NEWxOLD).pop(expected);
+				check(expected, 0, sequential, offset, String.format("FloatMatrixStack vs BatchTransform (%s, object %s)", rotationOrder.name(), Integer.toString(i)));
+				check(sequential, offset, parallel, offset, String.format("BatchTransform vs parallel BatchTransform (%s, object %s)", rotationOrder.name(), Integer.toString(i)));
+				if(i < 256) {
+					float[] legacyResult = legacy.push().loadIdentity().multMatrix4x4(base).translate(positions[p], positions[p + 1], positions[p + 2]).rotate(positions[p + 3], positions[p + 4], positions[p + 5], rotationOrder, MultiplicationOrder.NEWxOLD).popf();
+					check(legacyResult, 0, sequential, offset, String.format("MatrixStack vs BatchTransform (%s, object %s)", rotationOrder.name(), Integer.toString(i)));
+				}
+			}
+		}
+		System.out.println("BatchTransform results match MatrixStack and FloatMatrixStack.");
+		
+		for(int count : new int[] {1000, 10000, 100000}) {
+			final float[] x = new float[count], y = new float[count], z = new float[count], yaw = new float[count], pitch = new float[count], roll = new float[count];
+			final BatchTransform batch = new BatchTransform(count);
+			for(int i = 0; i < count; i++) {
+				x[i] = (random.nextFloat() - 0.5f) * 1000.0f;
+				y[i] = (random.nextFloat() - 0.5f) * 1000.0f;
+				z[i] = (random.nextFloat() - 0.5f) * 1000.0f;
+				yaw[i] = random.nextFloat() * 360.0f;
+				pitch[i] = random.nextFloat() * 360.0f;
+				roll[i] = random.nextFloat() * 360.0f;
+				batch.add(x[i], y[i], z[i], yaw[i], pitch[i], roll[i]);
+			}
+			final float[] dst = new float[count * BatchTransform.MATRIX_SIZE];
+			final int warmup = Math.max(5, 200000 / count), iterations = Math.max(10, 2000000 / count);
+			final String suffix = String.format(" (%s objects)", Integer.toString(count));
+			MicroBenchmark.Result[] results = {//
+					MicroBenchmark.run("MatrixStack, per object".concat(suffix), warmup, iterations, (iteration) -> {
+						for(int i = 0; i < count; i++) {
+							System.arraycopy(legacy.push().loadIdentity().multMatrix4x4(base).translate(x[i], y[i], z[i]).rotate(yaw[i], pitch[i], roll[i], RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).popf(), 0, dst, i * 16, 16);
+						}
+						return dst;
+					}),//
+					MicroBenchmark.run("FloatMatrixStack, per object".concat(suffix), warmup, iterations, (iteration) -> {
+						for(int i = 0; i < count; i++) {
+							stack.push().load(base).translate(x[i], y[i], z[i]).rotate(yaw[i], pitch[i], roll[i], RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).pop(expected);
+							System.arraycopy(expected, 0, dst, i * 16, 16);
+						}
+						return dst;
+					}),//
+					MicroBenchmark.run("BatchTransform.compute".concat(suffix), warmup, iterations, (iteration) -> batch.compute(base, RotationOrder.ZXY, dst, 0)),//
+					MicroBenchmark.run("BatchTransform.computeParallel".concat(suffix), warmup, iterations, (iteration) -> batch.computeParallel(base, RotationOrder.ZXY, dst, 0))//
+			};
+			for(MicroBenchmark.Result result : results) {
+				System.out.println(String.format("    %s: %s million objects/s", result.name, Double.toString(Math.round(result.getOpsPerSecond() * count / 10000.0) / 100.0)));
+			}
+		}
+	}
+	
+}
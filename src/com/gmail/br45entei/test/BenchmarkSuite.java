@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.input.InputCallback.InputLogger;
+import com.gmail.br45entei.game.input.Keyboard.Keys;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Runs benchmarks of the test games' hot paths and writes the results as
+ * JSON, so that they can be compared between versions.<br>
+ * Usage: <code>BenchmarkSuite [results.json] [baseline.json]</code>; when a
+ * baseline (a previous run's results) is given, each benchmark's change is
+ * printed and the exit code is the number of regressions.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class BenchmarkSuite {
+	
+	/** The name that the results are written under */
+	public static final String NAME = "3D-Game-Test hot paths";
+	/** Relative slowdown beyond which a benchmark is counted as a regression */
+	public static final double REGRESSION_THRESHOLD = 0.10;
+	
+	/** A {@link PrintStream} that discards everything written to it, so that
+	 * formatting can be measured without measuring the console. */
+	static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+	
+	/** Runs every benchmark in the suite.
+	 * 
+	 * @return The results */
+	public static final List<MicroBenchmark.Result> runAll() {
+		final List<MicroBenchmark.Result> results = new ArrayList<>();
+		
+		// Cube geometry:
+		results.add(MicroBenchmark.run("TestGame.createCubeVertices", 100000, 1000000, (i) -> TestGame.createCubeVertices(1.0f + (i & 7), 1.0f, 1.0f)));
+		final RecordingGLBackend gl = new RecordingGLBackend();
+		final TestGame game = new TestGame().setGLBackend(gl);
+		results.add(MicroBenchmark.run("TestGame.glSetCubeSize (fill + upload)", 20000, 200000, (i) -> {
+			game.glSetCubeSize(1.0f + (i & 7), 1.0f, 1.0f);
+			return null;
+		}));
+		
+		// Camera movement:
+		game._3D = true;
+		results.add(MicroBenchmark.run("TestGame.input (3D, sampling only)", 100000, 1000000, (i) -> {
+			game.input(1.0 / 60.0);
+			return null;
+		}));
+		final CameraSimulation camera = new CameraSimulation().setFreeMove(true).setFreeLook(true);
+		results.add(MicroBenchmark.run("CameraSimulation.step (movement integration)", 20000, 200000, (i) -> {
+			camera.setHeld(CameraSimulation.MOVE_FORWARD | ((i & 64) != 0 ? CameraSimulation.MOVE_LEFT : CameraSimulation.MOVE_UP));
+			camera.addLook(0.37f, 0.11f, 0.0f);
+			camera.step(1.0 / 60.0);
+			return camera.getState();
+		}));
+		final float[] modelView = camera.getState().modelView.clone();
+		results.add(MicroBenchmark.run("TestGame.isCameraUpsideDown", 1000000, 10000000, (i) -> Boolean.valueOf(game.isCameraUpsideDown())));
+		results.add(MicroBenchmark.run("CameraOrientation.isUpsideDown", 100000, 1000000, (i) -> {
+			modelView[5] = ((i & 15) - 8) * 1.0E-4f;
+			return Boolean.valueOf(CameraOrientation.isUpsideDown(modelView));
+		}));
+		
+		// HUD text:
+		final CameraSimulation.State view = new CameraSimulation.State();
+		final float[] viewMatrix = new float[16];
+		FloatMatrixStack.setIdentity(viewMatrix, 0);
+		results.add(MicroBenchmark.run("TestGame.updateHud (camera moving)", 20000, 200000, (i) -> {
+			view.x = i * 0.01f;
+			view.yaw = (i * 0.37f) % 360.0f;
+			return game.updateHud(CameraSnapshot.DEFAULT.withView(view, viewMatrix), 143.9872 + (i % 7) * 0.0013, 144L, true);
+		}));
+		final CameraSnapshot still = CameraSnapshot.DEFAULT.withView(view, viewMatrix);
+		results.add(MicroBenchmark.run("TestGame.updateHud (camera still)", 20000, 200000, (i) -> game.updateHud(still, 144.0, 144L, true)));
+		
+		// Input logging and keyboard polling:
+		final InputLogger logger = new InputLogger(NULL_STREAM);
+		results.add(MicroBenchmark.run("InputLogger.onMouseMoved", 100000, 1000000, (i) -> {
+			logger.onMouseMoved(i & 15, -(i & 7), 400, 300, 400 + (i & 15), 300 - (i & 7));
+			return null;
+		}));
+		results.add(MicroBenchmark.run("InputLogger.onKeyDown", 100000, 1000000, (i) -> {
+			logger.onKeyDown((i & 1) == 0 ? Keys.VK_W : Keys.VK_SPACE);
+			return null;
+		}));
+		// Profiling:
+		final FrameProfiler.Recorder recorder = new FrameProfiler().getRecorder();
+		results.add(MicroBenchmark.run("FrameProfiler begin/end", 100000, 1000000, (i) -> {
+			recorder.begin(FrameProfiler.FRAME);
+			recorder.end();
+			return null;
+		}));
+		results.add(MicroBenchmark.run("KeyboardTest.poll", 10000, 100000, (i) -> {
+			KeyboardTest.poll();
+			return Boolean.valueOf(KeyboardTest.isKeyDown(65));
+		}));
+		return results;
+	}
+	
+	/** @param args Program command line arguments: the file to write the
+	 *            results to, and optionally a previous run's results to
+	 *            compare against
+	 * @throws IOException If the results could not be written or the
+	 *             baseline could not be read */
+	public static final void main(String[] args) throws IOException {
+		final File output = new File(args.length > 0 ? args[0] : "benchmark-results.json");
+		final Map<String, Double> baseline = args.length > 1 ? MicroBenchmark.readJSON(new File(args[1])) : null;
+		
+		final List<MicroBenchmark.Result> results = runAll();
+		MicroBenchmark.writeJSON(output, NAME, results);
+		System.out.println("Results written to: ".concat(output.getAbsolutePath()));
+		if(baseline != null) {
+			System.out.println();
+			int regressions = MicroBenchmark.compare(baseline, results, REGRESSION_THRESHOLD);
+			System.out.println(String.format("%s regression(s) beyond %s%%.", Integer.toString(regressions), Long.toString(Math.round(REGRESSION_THRESHOLD * 100.0))));
+			System.exit(regressions);
+		}
+	}
+	
+}
@@ -0,0 +1,632 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.Arrays;
+
+/** A bounding volume hierarchy of axis-aligned boxes, used to quickly find the
+ * objects in a large scene that are inside the camera's view frustum or that
+ * are hit by a ray.<br>
+ * <br>
+ * Every object is identified by an {@code int} handle that is returned when
+ * it is {@link #insert(float, float, float, float, float, float) inserted}.
+ * Handles are assigned sequentially starting from zero (re-using those of
+ * removed objects first), so after {@link #clear()} the handles of a freshly
+ * inserted scene are simply the objects' indices.<br>
+ * <br>
+ * The tree itself is stored in flat primitive arrays instead of node objects:
+ * each node takes up {@link #BYTES_PER_NODE} bytes (six floats for its bounds
+ * and four ints for its parent, children and object), and every leaf holds
+ * exactly one object. Whole scenes can be built at once with a median split
+ * ({@link #rebuild()}), and objects can afterwards be inserted, moved or
+ * removed incrementally, in which case the new leaf is placed wherever it
+ * increases the total surface area of the tree the least.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class BoundingVolumeHierarchy {
+	
+	/** The number of bytes each node takes up in this tree's arrays */
+	public static final int BYTES_PER_NODE = (6 * Float.BYTES) + (4 * Integer.BYTES);
+	
+	private static final int PARENT = 0, LEFT = 1, RIGHT = 2, OBJECT = 3;
+	private static final int NULL = -1;
+	
+	// Nodes:
+	private float[] nodeBounds;
+	private int[] nodeLinks;
+	private int nodeCapacity;
+	private int nodeCount = 0;
+	private int freeNode = NULL;
+	private int root = NULL;
+	
+	// Objects:
+	private float[] objectBounds;
+	private int[] objectNodes;
+	private int objectCapacity;
+	private int objectCount = 0;
+	private int handleCount = 0;
+	private int[] freeHandles;
+	private int freeHandleCount = 0;
+	
+	private int[] stack = new int[64];
+	private int[] buildHandles = new int[0];
+	private float lastRayDistance = Float.NaN;
+	
+	/** Creates a new BoundingVolumeHierarchy.
+	 * 
+	 * @param initialCapacity The number of objects this tree should have room
+	 *            for before having to grow */
+	public BoundingVolumeHierarchy(int initialCapacity) {
+		initialCapacity = Math.max(1, initialCapacity);
+		this.objectCapacity = initialCapacity;
+		this.objectBounds = new float[initialCapacity * 6];
+		this.objectNodes = new int[initialCapacity];
+		this.freeHandles = new int[initialCapacity];
+		this.nodeCapacity = (initialCapacity * 2) - 1;
+		this.nodeBounds = new float[this.nodeCapacity * 6];
+		this.nodeLinks = new int[this.nodeCapacity * 4];
+	}
+	
+	/** @return The number of objects in this tree */
+	public int size() {
+		return this.objectCount;
+	}
+	
+	/** @return The number of nodes currently in use */
+	public int getNodeCount() {
+		return this.nodeCount;
+	}
+	
+	/** @return The number of bytes used by this tree's arrays, including
+	 *         unused capacity */
+	public long getMemoryUsage() {
+		return ((long) this.nodeCapacity * BYTES_PER_NODE) + ((long) this.objectCapacity * ((6 * Float.BYTES) + (2 * Integer.BYTES)));
+	}
+	
+	/** @return The number of levels in this tree (zero if it is empty) */
+	public int getHeight() {
+		return this.getHeight(this.root);
+	}
+	
+	private int getHeight(int node) {
+		if(node == NULL) {
+			return 0;
+		}
+		return 1 + Math.max(this.getHeight(this.nodeLinks[(node * 4) + LEFT]), this.getHeight(this.nodeLinks[(node * 4) + RIGHT]));
+	}
+	
+	/** @param handle The object's handle
+	 * @return Whether or not the specified object is in this tree */
+	public boolean contains(int handle) {
+		return handle >= 0 && handle < this.handleCount && this.objectNodes[handle] != NULL;
+	}
+	
+	/** Removes every object from this tree. Handles start from zero again
+	 * afterwards.
+	 * 
+	 * @return This BoundingVolumeHierarchy */
+	public BoundingVolumeHierarchy clear() {
+		this.nodeCount = 0;
+		this.freeNode = NULL;
+		this.root = NULL;
+		this.objectCount = 0;
+		this.handleCount = 0;
+		this.freeHandleCount = 0;
+		return this;
+	}
+	
+	//=============================================================================================
+	
+	private int allocateNode() {
+		int node;
+		if(this.freeNode != NULL) {
+			node = this.freeNode;
+			this.freeNode = this.nodeLinks[(node * 4) + PARENT];
+		} else {
+			if(this.nodeCount == this.nodeCapacity) {
+				this.nodeCapacity *= 2;
+				this.nodeBounds = Arrays.copyOf(this.nodeBounds, this.nodeCapacity * 6);
+				this.nodeLinks = Arrays.copyOf(this.nodeLinks, this.nodeCapacity * 4);
+			}
+			node = this.nodeCount++;
+		}
+		final int l = node * 4;
+		this.nodeLinks[l + PARENT] = NULL;
+		this.nodeLinks[l + LEFT] = NULL;
+		this.nodeLinks[l + RIGHT] = NULL;
+		this.nodeLinks[l + OBJECT] = NULL;
+		return node;
+	}
+	
+	private void freeNode(int node) {
+		this.nodeLinks[(node * 4) + PARENT] = this.freeNode;
+		this.nodeLinks[(node * 4) + OBJECT] = NULL;
+		this.freeNode = node;
+	}
+	
+	private int allocateHandle() {
+		if(this.freeHandleCount > 0) {
+			return this.freeHandles[--this.freeHandleCount];
+		}
+		if(this.handleCount == this.objectCapacity) {
+			this.objectCapacity *= 2;
+			this.objectBounds = Arrays.copyOf(this.objectBounds, this.objectCapacity * 6);
+			this.objectNodes = Arrays.copyOf(this.objectNodes, this.objectCapacity);
+			this.freeHandles = Arrays.copyOf(this.freeHandles, this.objectCapacity);
+		}
+		return this.handleCount++;
+	}
+	
+	private void setObjectBounds(int handle, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		final float[] b = this.objectBounds;
+		final int o = handle * 6;
+		b[o] = Math.min(minX, maxX);
+		b[o + 1] = Math.min(minY, maxY);
+		b[o + 2] = Math.min(minZ, maxZ);
+		b[o + 3] = Math.max(minX, maxX);
+		b[o + 4] = Math.max(minY, maxY);
+		b[o + 5] = Math.max(minZ, maxZ);
+	}
+	
+	/** Sets the bounds of the given node to the union of its children's
+	 * bounds. */
+	private void refit(int node) {
+		final float[] b = this.nodeBounds;
+		final int o = node * 6, left = this.nodeLinks[(node * 4) + LEFT] * 6, right = this.nodeLinks[(node * 4) + RIGHT] * 6;
+		b[o] = Math.min(b[left], b[right]);
+		b[o + 1] = Math.min(b[left + 1], b[right + 1]);
+		b[o + 2] = Math.min(b[left + 2], b[right + 2]);
+		b[o + 3] = Math.max(b[left + 3], b[right + 3]);
+		b[o + 4] = Math.max(b[left + 4], b[right + 4]);
+		b[o + 5] = Math.max(b[left + 5], b[right + 5]);
+	}
+	
+	/** @return Half the surface area of the union of the two given nodes'
+	 *         bounds (or of a single node's bounds, if both are the same) */
+	private float unionArea(int a, int b) {
+		final float[] n = this.nodeBounds;
+		final int i = a * 6, j = b * 6;
+		final float dx = Math.max(n[i + 3], n[j + 3]) - Math.min(n[i], n[j]);
+		final float dy = Math.max(n[i + 4], n[j + 4]) - Math.min(n[i + 1], n[j + 1]);
+		final float dz = Math.max(n[i + 5], n[j + 5]) - Math.min(n[i + 2], n[j + 2]);
+		return (dx * dy) + (dy * dz) + (dz * dx);
+	}
+	
+	/** Adds an object to this tree.
+	 * 
+	 * @param minX The object's smallest X coordinate
+	 * @param minY The object's smallest Y coordinate
+	 * @param minZ The object's smallest Z coordinate
+	 * @param maxX The object's largest X coordinate
+	 * @param maxY The object's largest Y coordinate
+	 * @param maxZ The object's largest Z coordinate
+	 * @return The new object's handle */
+	public int insert(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		final int handle = this.allocateHandle();
+		this.setObjectBounds(handle, minX, minY, minZ, maxX, maxY, maxZ);
+		this.objectCount++;
+		this.insertLeaf(handle);
+		return handle;
+	}
+	
+	private void insertLeaf(int handle) {
+		final int leaf = this.allocateNode();
+		System.arraycopy(this.objectBounds, handle * 6, this.nodeBounds, leaf * 6, 6);
+		this.nodeLinks[(leaf * 4) + OBJECT] = handle;
+		this.objectNodes[handle] = leaf;
+		if(this.root == NULL) {
+			this.root = leaf;
+			return;
+		}
+		
+		// Walk down the tree towards the sibling that increases the total surface area the least:
+		final int[] links = this.nodeLinks;
+		int node = this.root;
+		while(links[(node * 4) + LEFT] != NULL) {
+			final int left = links[(node * 4) + LEFT], right = links[(node * 4) + RIGHT];
+			final float area = this.unionArea(node, node);
+			final float combinedArea = this.unionArea(node, leaf);
+			// Cost of pairing the leaf with this node, and the cost that every level below inherits:
+			final float cost = 2.0f * combinedArea;
+			final float inheritance = 2.0f * (combinedArea - area);
+			final float leftCost = this.unionArea(left, leaf) - (links[(left * 4) + LEFT] == NULL ? 0.0f : this.unionArea(left, left)) + inheritance;
+			final float rightCost = this.unionArea(right, leaf) - (links[(right * 4) + LEFT] == NULL ? 0.0f : this.unionArea(right, right)) + inheritance;
+			if(cost < leftCost && cost < rightCost) {
+				break;
+			}
+			node = leftCost < rightCost ? left : right;
+		}
+		
+		// Replace the sibling with a new parent of both:
+		final int sibling = node, oldParent = links[(sibling * 4) + PARENT];
+		final int parent = this.allocateNode();
+		final int[] l = this.nodeLinks;// allocateNode() may have grown the array
+		l[(parent * 4) + PARENT] = oldParent;
+		l[(parent * 4) + LEFT] = sibling;
+		l[(parent * 4) + RIGHT] = leaf;
+		l[(sibling * 4) + PARENT] = parent;
+		l[(leaf * 4) + PARENT] = parent;
+		if(oldParent == NULL) {
+			this.root = parent;
+		} else if(l[(oldParent * 4) + LEFT] == sibling) {
+			l[(oldParent * 4) + LEFT] = parent;
+		} else {
+			l[(oldParent * 4) + RIGHT] = parent;
+		}
+		for(int n = parent; n != NULL; n = l[(n * 4) + PARENT]) {
+			this.refit(n);
+		}
+	}
+	
+	/** Removes an object from this tree.
+	 * 
+	 * @param handle The object's handle
+	 * @return Whether or not the object was in this tree */
+	public boolean remove(int handle) {
+		if(!this.contains(handle)) {
+			return false;
+		}
+		this.removeLeaf(this.objectNodes[handle]);
+		this.objectNodes[handle] = NULL;
+		this.freeHandles[this.freeHandleCount++] = handle;
+		this.objectCount--;
+		return true;
+	}
+	
+	private void removeLeaf(int leaf) {
+		final int[] l = this.nodeLinks;
+		if(leaf == this.root) {
+			this.root = NULL;
+			this.freeNode(leaf);
+			return;
+		}
+		final int parent = l[(leaf * 4) + PARENT], grandParent = l[(parent * 4) + PARENT];
+		final int sibling = l[(parent * 4) + LEFT] == leaf ? l[(parent * 4) + RIGHT] : l[(parent * 4) + LEFT];
+		l[(sibling * 4) + PARENT] = grandParent;
+		if(grandParent == NULL) {
+			this.root = sibling;
+		} else {
+			if(l[(grandParent * 4) + LEFT] == parent) {
+				l[(grandParent * 4) + LEFT] = sibling;
+			} else {
+				l[(grandParent * 4) + RIGHT] = sibling;
+			}
+			for(int n = grandParent; n != NULL; n = l[(n * 4) + PARENT]) {
+				this.refit(n);
+			}
+		}
+		this.freeNode(parent);
+		this.freeNode(leaf);
+	}
+	
+	/** Moves an existing object. Its handle stays the same.
+	 * 
+	 * @param handle The object's handle
+	 * @param minX The object's new smallest X coordinate
+	 * @param minY The object's new smallest Y coordinate
+	 * @param minZ The object's new smallest Z coordinate
+	 * @param maxX The object's new largest X coordinate
+	 * @param maxY The object's new largest Y coordinate
+	 * @param maxZ The object's new largest Z coordinate
+	 * @return Whether or not the object was in this tree */
+	public boolean update(int handle, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		if(!this.contains(handle)) {
+			return false;
+		}
+		this.removeLeaf(this.objectNodes[handle]);
+		this.setObjectBounds(handle, minX, minY, minZ, maxX, maxY, maxZ);
+		this.insertLeaf(handle);
+		return true;
+	}
+	
+	//=============================================================================================
+	
+	/** Replaces the contents of this tree with the given boxes and builds the
+	 * tree in one go. The box at index {@code i} gets the handle {@code i}.
+	 * 
+	 * @param minX The boxes' smallest X coordinates
+	 * @param minY The boxes' smallest Y coordinates
+	 * @param minZ The boxes' smallest Z coordinates
+	 * @param maxX The boxes' largest X coordinates
+	 * @param maxY The boxes' largest Y coordinates
+	 * @param maxZ The boxes' largest Z coordinates
+	 * @param count The number of boxes
+	 * @return This BoundingVolumeHierarchy */
+	public BoundingVolumeHierarchy build(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int count) {
+		this.clear();
+		for(int i = 0; i < count; i++) {
+			final int handle = this.allocateHandle();
+			this.setObjectBounds(handle, minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]);
+			this.objectNodes[handle] = 0;// Replaced with the object's leaf by rebuild()
+		}
+		this.objectCount = count;
+		return this.rebuild();
+	}
+	
+	/** Throws away the current tree structure and rebuilds it from scratch
+	 * using a median split, which usually results in a better tree than many
+	 * incremental inserts.
+	 * 
+	 * @return This BoundingVolumeHierarchy */
+	public BoundingVolumeHierarchy rebuild() {
+		if(this.buildHandles.length < this.objectCount) {
+			this.buildHandles = new int[this.objectCapacity];
+		}
+		int count = 0;
+		for(int handle = 0; handle < this.handleCount; handle++) {
+			if(this.objectNodes[handle] != NULL) {
+				this.buildHandles[count++] = handle;
+			}
+		}
+		this.nodeCount = 0;
+		this.freeNode = NULL;
+		if((count * 2) - 1 > this.nodeCapacity) {
+			this.nodeCapacity = (count * 2) - 1;
+			this.nodeBounds = new float[this.nodeCapacity * 6];
+			this.nodeLinks = new int[this.nodeCapacity * 4];
+		}
+		this.root = count == 0 ? NULL : this.build(this.buildHandles, 0, count, NULL);
+		return this;
+	}
+	
+	private int build(int[] handles, int start, int end, int parent) {
+		final int node = this.allocateNode();
+		this.nodeLinks[(node * 4) + PARENT] = parent;
+		if(end - start == 1) {
+			final int handle = handles[start];
+			System.arraycopy(this.objectBounds, handle * 6, this.nodeBounds, node * 6, 6);
+			this.nodeLinks[(node * 4) + OBJECT] = handle;
+			this.objectNodes[handle] = node;
+			return node;
+		}
+		
+		// Split at the median centroid along the axis where the centroids are spread out the most:
+		final float[] b = this.objectBounds;
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for(int i = start; i < end; i++) {
+			final int o = handles[i] * 6;
+			final float cx = b[o] + b[o + 3], cy = b[o + 1] + b[o + 4], cz = b[o + 2] + b[o + 5];
+			minX = Math.min(minX, cx);
+			minY = Math.min(minY, cy);
+			minZ = Math.min(minZ, cz);
+			maxX = Math.max(maxX, cx);
+			maxY = Math.max(maxY, cy);
+			maxZ = Math.max(maxZ, cz);
+		}
+		final float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+		final int axis = dx >= dy && dx >= dz ? 0 : (dy >= dz ? 1 : 2);
+		final int middle = (start + end) >>> 1;
+		this.select(handles, start, end - 1, middle, axis);
+		
+		final int left = this.build(handles, start, middle, node);
+		final int right = this.build(handles, middle, end, node);
+		this.nodeLinks[(node * 4) + LEFT] = left;
+		this.nodeLinks[(node * 4) + RIGHT] = right;
+		this.refit(node);
+		return node;
+	}
+	
+	private float centroid(int handle, int axis) {
+		return this.objectBounds[(handle * 6) + axis] + this.objectBounds[(handle * 6) + 3 + axis];
+	}
+	
+	/** Partially sorts {@code handles[left..right]} so that the element at
+	 * index {@code k} is the one that would be there if the range were sorted
+	 * by centroid, with no larger centroids before it and no smaller ones
+	 * after it. */
+	private void select(int[] handles, int left, int right, int k, int axis) {
+		while(right > left) {
+			final float pivot = this.centroid(handles[(left + right) >>> 1], axis);
+			int i = left, j = right;
+			while(i <= j) {
+				while(this.centroid(handles[i], axis) < pivot) {
+					i++;
+				}
+				while(this.centroid(handles[j], axis) > pivot) {
+					j--;
+				}
+				if(i <= j) {
+					final int swap = handles[i];
+					handles[i++] = handles[j];
+					handles[j--] = swap;
+				}
+			}
+			if(k <= j) {
+				right = j;
+			} else if(k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+	
+	//=============================================================================================
+	
+	private int[] growStack(int size) {
+		if(size >= this.stack.length) {
+			this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+		}
+		return this.stack;
+	}
+	
+	/** Finds every object whose bounds are (at least partially) inside the
+	 * given frustum. Subtrees that are entirely inside the frustum are added
+	 * without testing any of their descendants.
+	 * 
+	 * @param culler The frustum culler, already updated with the camera's
+	 *            current projection and model-view matrices
+	 * @param results The array to write the handles of the visible objects
+	 *            into. Must have room for {@link #size()} handles.
+	 * @return The number of handles written into {@code results} */
+	public int queryFrustum(FrustumCuller culler, int[] results) {
+		if(this.root == NULL) {
+			return 0;
+		}
+		final float[] b = this.nodeBounds;
+		final int[] l = this.nodeLinks;
+		int[] stack = this.stack;
+		int size = 0, count = 0;
+		stack[size++] = this.root;
+		while(size > 0) {
+			int node = stack[--size];
+			boolean inside = node < 0;
+			if(inside) {
+				node = ~node;
+			} else {
+				final int o = node * 6;
+				final int result = culler.classifyBox(b[o], b[o + 1], b[o + 2], b[o + 3], b[o + 4], b[o + 5]);
+				if(result == FrustumCuller.OUTSIDE) {
+					continue;
+				}
+				inside = result == FrustumCuller.INSIDE;
+			}
+			final int left = l[(node * 4) + LEFT];
+			if(left == NULL) {
+				results[count++] = l[(node * 4) + OBJECT];
+				continue;
+			}
+			stack = this.growStack(size + 1);
+			// Children of a node that is entirely inside are pushed complemented so that they are not tested again:
+			stack[size++] = inside ? ~left : left;
+			stack[size++] = inside ? ~l[(node * 4) + RIGHT] : l[(node * 4) + RIGHT];
+		}
+		return count;
+	}
+	
+	/** @return The distance along the ray at which it enters the given node's
+	 *         bounds, or {@link Float#NaN} if it misses them */
+	private float intersectRay(int node, float ox, float oy, float oz, float invX, float invY, float invZ, float maxDistance) {
+		final float[] b = this.nodeBounds;
+		final int o = node * 6;
+		float t1 = (b[o] - ox) * invX, t2 = (b[o + 3] - ox) * invX;
+		float tMin = Math.min(t1, t2), tMax = Math.max(t1, t2);
+		t1 = (b[o + 1] - oy) * invY;
+		t2 = (b[o + 4] - oy) * invY;
+		tMin = Math.max(tMin, Math.min(t1, t2));
+		tMax = Math.min(tMax, Math.max(t1, t2));
+		t1 = (b[o + 2] - oz) * invZ;
+		t2 = (b[o + 5] - oz) * invZ;
+		tMin = Math.max(tMin, Math.min(t1, t2));
+		tMax = Math.min(tMax, Math.max(t1, t2));
+		tMin = Math.max(tMin, 0.0f);
+		return tMax >= tMin && tMin <= maxDistance ? tMin : Float.NaN;
+	}
+	
+	/** Finds every object whose bounds are hit by the given ray.
+	 * 
+	 * @param ox The X coordinate of the ray's origin
+	 * @param oy The Y coordinate of the ray's origin
+	 * @param oz The Z coordinate of the ray's origin
+	 * @param dx The X component of the ray's direction
+	 * @param dy The Y component of the ray's direction
+	 * @param dz The Z component of the ray's direction
+	 * @param maxDistance The length of the ray, in multiples of the
+	 *            direction's length
+	 * @param results The array to write the handles of the hit objects into.
+	 *            Must have room for {@link #size()} handles.
+	 * @return The number of handles written into {@code results} */
+	public int queryRay(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance, int[] results) {
+		if(this.root == NULL) {
+			return 0;
+		}
+		final float invX = 1.0f / dx, invY = 1.0f / dy, invZ = 1.0f / dz;
+		final int[] l = this.nodeLinks;
+		int[] stack = this.stack;
+		int size = 0, count = 0;
+		stack[size++] = this.root;
+		while(size > 0) {
+			final int node = stack[--size];
+			if(Float.isNaN(this.intersectRay(node, ox, oy, oz, invX, invY, invZ, maxDistance))) {
+				continue;
+			}
+			final int left = l[(node * 4) + LEFT];
+			if(left == NULL) {
+				results[count++] = l[(node * 4) + OBJECT];
+				continue;
+			}
+			stack = this.growStack(size + 1);
+			stack[size++] = left;
+			stack[size++] = l[(node * 4) + RIGHT];
+		}
+		return count;
+	}
+	
+	/** Finds the object whose bounds the given ray enters first. The distance
+	 * at which it was hit can then be retrieved with
+	 * {@link #getLastRayDistance()}.
+	 * 
+	 * @param ox The X coordinate of the ray's origin
+	 * @param oy The Y coordinate of the ray's origin
+	 * @param oz The Z coordinate of the ray's origin
+	 * @param dx The X component of the ray's direction
+	 * @param dy The Y component of the ray's direction
+	 * @param dz The Z component of the ray's direction
+	 * @param maxDistance The length of the ray, in multiples of the
+	 *            direction's length
+	 * @return The handle of the closest object hit, or {@code -1} if the ray
+	 *         did not hit anything */
+	public int raycast(float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance) {
+		this.lastRayDistance = Float.NaN;
+		if(this.root == NULL) {
+			return NULL;
+		}
+		final float invX = 1.0f / dx, invY = 1.0f / dy, invZ = 1.0f / dz;
+		final int[] l = this.nodeLinks;
+		int[] stack = this.stack;
+		int size = 0, closest = NULL;
+		float closestDistance = maxDistance;
+		stack[size++] = this.root;
+		while(size > 0) {
+			final int node = stack[--size];
+			final float distance = this.intersectRay(node, ox, oy, oz, invX, invY, invZ, closestDistance);
+			if(Float.isNaN(distance) || (closest != NULL && distance >= closestDistance)) {
+				continue;
+			}
+			final int left = l[(node * 4) + LEFT];
+			if(left == NULL) {
+				closest = l[(node * 4) + OBJECT];
+				closestDistance = distance;
+				continue;
+			}
+			stack = this.growStack(size + 1);
+			stack[size++] = left;
+			stack[size++] = l[(node * 4) + RIGHT];
+		}
+		if(closest != NULL) {
+			this.lastRayDistance = closestDistance;
+		}
+		return closest;
+	}
+	
+	/** @return The distance at which the last successful
+	 *         {@link #raycast(float, float, float, float, float, float, float)
+	 *         raycast} hit its object, or {@link Float#NaN} if the last
+	 *         raycast didn't hit anything */
+	public float getLastRayDistance() {
+		return this.lastRayDistance;
+	}
+	
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Verifies {@link BoundingVolumeHierarchy}'s frustum and ray queries against
+ * brute force, both after a bulk build and after incremental inserts, updates
+ * and removals, then measures build time, query time and memory per node.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class BoundingVolumeHierarchyBenchmark {
+	
+	/** Random boxes, stored as a structure of arrays. */
+	static final class Boxes {
+		final float[] minX, minY, minZ, maxX, maxY, maxZ;
+		
+		Boxes(Random random, int count, float worldSize) {
+			this.minX = new float[count];
+			this.minY = new float[count];
+			this.minZ = new float[count];
+			this.maxX = new float[count];
+			this.maxY = new float[count];
+			this.maxZ = new float[count];
+			for(int i = 0; i < count; i++) {
+				this.set(i, random, worldSize);
+			}
+		}
+		
+		void set(int i, Random random, float worldSize) {
+			float x = (random.nextFloat() - 0.5f) * worldSize, y = (random.nextFloat() - 0.5f) * worldSize, z = (random.nextFloat() - 0.5f) * worldSize;
+			float size = 0.5f + (random.nextFloat() * 2.0f);
+			this.minX[i] = x - size;
+			this.minY[i] = y - size;
+			this.minZ[i] = z - size;
+			this.maxX[i] = x + size;
+			this.maxY[i] = y + size;
+			this.maxZ[i] = z + size;
+		}
+		
+		/** @return The distance at which the ray enters the box, or NaN */
+		float intersectRay(int i, float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance) {
+			float tMin = 0.0f, tMax = maxDistance;
+			float[] min = {this.minX[i], this.minY[i], this.minZ[i]}, max = {this.maxX[i], this.maxY[i], this.maxZ[i]};
+			float[] o = {ox, oy, oz}, d = {dx, dy, dz};
+			for(int axis = 0; axis < 3; axis++) {
+				float t1 = (min[axis] - o[axis]) / d[axis], t2 = (max[axis] - o[axis]) / d[axis];
+				tMin = Math.max(tMin, Math.min(t1, t2));
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			}
+			return tMax >= tMin ? tMin : Float.NaN;
+		}
+	}
+	
+	private static final int[] sorted(int[] array, int count) {
+		int[] copy = Arrays.copyOf(array, count);
+		Arrays.sort(copy);
+		return copy;
+	}
+	
+	/** Compares the tree's query results with brute force for a number of
+	 * random cameras and rays.
+	 * 
+	 * @param tree The tree to verify
+	 * @param boxes The boxes in the tree
+	 * @param live Which of the boxes are currently in the tree
+	 * @param random The random number generator to use */
+	static final void verify(BoundingVolumeHierarchy tree, Boxes boxes, boolean[] live, Random random, String description) {
+		final int count = live.length;
+		final FrustumCuller culler = new FrustumCuller();
+		final int[] results = new int[count], expected = new int[count];
+		for(int test = 0; test < 20; test++) {
+			FrustumCullerBenchmark.setCamera(culler, (random.nextFloat() - 0.5f) * 100.0f, (random.nextFloat() - 0.5f) * 100.0f, (random.nextFloat() - 0.5f) * 100.0f, random.nextFloat() * 360.0f, random.nextFloat() * 360.0f, random.nextFloat() * 360.0f);
+			int visible = tree.queryFrustum(culler, results);
+			int expectedCount = 0;
+			for(int i = 0; i < count; i++) {
+				if(live[i] && culler.isBoxVisible(boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i])) {
+					expected[expectedCount++] = i;
+				}
+			}
+			MicroBenchmark.check(Arrays.equals(sorted(results, visible), Arrays.copyOf(expected, expectedCount)), String.format("%s: frustum query returned %s objects, expected %s!", description, Integer.toString(visible), Integer.toString(expectedCount)));
+			
+			float ox = (random.nextFloat() - 0.5f) * 100.0f, oy = (random.nextFloat() - 0.5f) * 100.0f, oz = (random.nextFloat() - 0.5f) * 100.0f;
+			float dx = random.nextFloat() - 0.5f, dy = random.nextFloat() - 0.5f, dz = random.nextFloat() - 0.5f;
+			int hits = tree.queryRay(ox, oy, oz, dx, dy, dz, 1000.0f, results);
+			expectedCount = 0;
+			int closest = -1;
+			float closestDistance = Float.POSITIVE_INFINITY;
+			for(int i = 0; i < count; i++) {
+				float distance = live[i] ? boxes.intersectRay(i, ox, oy, oz, dx, dy, dz, 1000.0f) : Float.NaN;
+				if(!Float.isNaN(distance)) {
+					expected[expectedCount++] = i;
+					if(distance < closestDistance) {
+						closestDistance = distance;
+						closest = i;
+					}
+				}
+			}
+			MicroBenchmark.check(Arrays.equals(sorted(results, hits), Arrays.copyOf(expected, expectedCount)), String.format("%s: ray query returned %s objects, expected %s!", description, Integer.toString(hits), Integer.toString(expectedCount)));
+			int hit = tree.raycast(ox, oy, oz, dx, dy, dz, 1000.0f);
+			MicroBenchmark.check(hit == closest || (hit != -1 && Math.abs(tree.getLastRayDistance() - closestDistance) < 1.0E-4f), String.format("%s: raycast hit %s, expected %s!", description, Integer.toString(hit), Integer.toString(closest)));
+		}
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final Random random = new Random(0xB7B7L);
+		
+		// Bulk build:
+		Boxes boxes = new Boxes(random, 20000, 200.0f);
+		boolean[] live = new boolean[20000];
+		Arrays.fill(live, true);
+		BoundingVolumeHierarchy tree = new BoundingVolumeHierarchy(16).build(boxes.minX, boxes.minY, boxes.minZ, boxes.maxX, boxes.maxY, boxes.maxZ, live.length);
+		MicroBenchmark.check(tree.size() == live.length && tree.getNodeCount() == (live.length * 2) - 1, "Unexpected tree size after build!");
+		verify(tree, boxes, live, random, "Bulk build");
+		
+		// Incremental inserts, updates and removals:
+		tree.clear();
+		for(int i = 0; i < live.length; i++) {
+			MicroBenchmark.check(tree.insert(boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i]) == i, "Handles were not assigned sequentially!");
+		}
+		verify(tree, boxes, live, random, "Incremental insert");
+		for(int i = 0; i < live.length; i += 3) {
+			MicroBenchmark.check(tree.remove(i), "Failed to remove an object!");
+			live[i] = false;
+		}
+		MicroBenchmark.check(!tree.remove(0), "Removed an object twice!");
+		for(int i = 1; i < live.length; i += 3) {
+			boxes.set(i, random, 200.0f);
+			MicroBenchmark.check(tree.update(i, boxes.minX[i], boxes.minY[i], boxes.minZ[i], boxes.maxX[i], boxes.maxY[i], boxes.maxZ[i]), "Failed to update an object!");
+		}
+		verify(tree, boxes, live, random, "Incremental update/remove");
+		System.out.println(String.format("Incremental tree height: %s", Integer.toString(tree.getHeight())));
+		tree.rebuild();
+		verify(tree, boxes, live, random, "Rebuild after removal");
+		System.out.println(String.format("Rebuilt tree height: %s", Integer.toString(tree.getHeight())));
+		System.out.println("BoundingVolumeHierarchy queries match brute force.");
+		
+		// Build time, query time and memory:
+		for(int count : new int[] {100000, 1000000}) {
+			final Boxes world = new Boxes(random, count, 4000.0f);
+			final BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(count);
+			final String suffix = String.format(" (%s objects)", Integer.toString(count));
+			MicroBenchmark.run("Median split build".concat(suffix), 2, 10, (i) -> bvh.build(world.minX, world.minY, world.minZ, world.maxX, world.maxY, world.maxZ, count));
+			System.out.println(String.format("    Height: %s; Nodes: %s; Bytes per node: %s; Total memory: %s bytes (%s per object)", Integer.toString(bvh.getHeight()), Integer.toString(bvh.getNodeCount()), Integer.toString(BoundingVolumeHierarchy.BYTES_PER_NODE), Long.toString(bvh.getMemoryUsage()), Long.toString(bvh.getMemoryUsage() / count)));
+			
+			final FrustumCuller culler = FrustumCullerBenchmark.setCamera(new FrustumCuller(), 0, 0, 0, 30, 10, 0);
+			final int[] results = new int[count];
+			MicroBenchmark.run("Frustum query, BVH".concat(suffix), 20, 200, (i) -> Integer.valueOf(bvh.queryFrustum(culler, results)));
+			MicroBenchmark.run("Frustum query, linear".concat(suffix), 5, 50, (i) -> Integer.valueOf(culler.cullBoxes(world.minX, world.minY, world.minZ, world.maxX, world.maxY, world.maxZ, 0, count, results)));
+			MicroBenchmark.run("Raycast, BVH".concat(suffix), 1000, 100000, (i) -> Integer.valueOf(bvh.raycast(0, 0, 0, (float) Math.cos(i), 0.1f, (float) Math.sin(i), 4000.0f)));
+			MicroBenchmark.run("Update (remove + insert)".concat(suffix), 1000, 100000, (i) -> {
+				final int handle = i % count;
+				return Boolean.valueOf(bvh.update(handle, world.minX[handle] + 1.0f, world.minY[handle], world.minZ[handle], world.maxX[handle] + 1.0f, world.maxY[handle], world.maxZ[handle]));
+			});
+		}
+	}
+	
+}
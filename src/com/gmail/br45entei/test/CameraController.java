@@ -0,0 +1,473 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+/** A first-person camera whose orientation is kept as a quaternion, with its
+ * forward, right and up vectors and its view matrix cached after every
+ * change.<br>
+ * <br>
+ * The camera is still steered with yaw, pitch and roll angles (in degrees,
+ * wrapped to {@code [0, 360)}), since that is what the constrained mode limits
+ * and what the HUD shows, but the angles are only used to build the
+ * quaternion. Everything that the camera is used for afterwards (moving,
+ * checking whether it is {@link #isUpsideDown() upside-down}, and the
+ * {@link #getViewMatrix(float[]) view matrix}) comes from the quaternion and
+ * the cached basis vectors, so no {@code MatrixStack} is needed and no method
+ * allocates.<br>
+ * <br>
+ * The view matrix is the same as
+ * 
+ * <pre>
+ * stack.loadIdentity().translate(0, 0, -zDist).rotate(-yaw, -pitch, -roll, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-x, -y, -z, MultiplicationOrder.NEWxOLD)
+ * </pre>
+ * 
+ * up to rounding (see {@link CameraControllerBenchmark}).<br>
+ * <br>
+ * Like the rest of the camera code, a CameraController is not thread-safe; it
+ * is meant to be owned by whichever thread steps the camera (see
+ * {@link CameraSimulation}).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CameraController {
+	
+	private float x, y, z, zDist;
+	private float yaw, pitch, roll;
+	/** The camera's orientation (camera to world), as {x, y, z, w} */
+	private final float[] orientation = {0, 0, 0, 1};
+	private final float[] forward = {0, 0, -1};
+	private final float[] right = {1, 0, 0};
+	private final float[] up = {0, 1, 0};
+	private final float[] view = new float[16];
+	private boolean upsideDown = false;
+	
+	private float movementSpeed = 1.2f;
+	private boolean freeLook = false;
+	private boolean freeMove = false;
+	private boolean invertYawWhenUpsideDown = false;
+	private boolean invertPitchWhenUpsideDown = false;
+	private boolean invertForwardMovementWhenUpsideDown = false;
+	private boolean invertVerticalMovementWhenUpsideDown = false;
+	
+	/** Creates a new CameraController at the origin, looking down the
+	 * negative Z axis. */
+	public CameraController() {
+		this.rebuild();
+	}
+	
+	/** Computes the quaternion for the given orientation.
+	 * 
+	 * @param yaw The rotation around the Y axis, in degrees
+	 * @param pitch The rotation around the X axis, in degrees
+	 * @param roll The rotation around the Z axis, in degrees
+	 * @param dst The array to store the quaternion's {x, y, z, w} components
+	 *            in
+	 * @return The given array */
+	public static final float[] getOrientation(float yaw, float pitch, float roll, float[] dst) {
+		final double hy = Math.toRadians(yaw) * 0.5, hp = Math.toRadians(pitch) * 0.5, hr = Math.toRadians(roll) * 0.5;
+		final double cy = Math.cos(hy), sy = Math.sin(hy), cp = Math.cos(hp), sp = Math.sin(hp), cr = Math.cos(hr), sr = Math.sin(hr);
+		// q = yaw(Y) * pitch(X) * roll(Z):
+		final double ax = cy * sp, ay = sy * cp, az = -sy * sp, aw = cy * cp;
+		dst[0] = (float) ((ax * cr) + (ay * sr));
+		dst[1] = (float) ((ay * cr) - (ax * sr));
+		dst[2] = (float) ((aw * sr) + (az * cr));
+		dst[3] = (float) ((aw * cr) - (az * sr));
+		return dst;
+	}
+	
+	/** Computes the view matrix of a camera with the given orientation and
+	 * position.
+	 * 
+	 * @param orientation The camera's orientation quaternion, as {x, y, z, w}
+	 * @param x The camera's X position
+	 * @param y The camera's Y position
+	 * @param z The camera's Z position
+	 * @param zDist The camera's distance from the point it orbits
+	 * @param dst The array to store the column-major 4x4 matrix in
+	 * @return The given array */
+	public static final float[] getViewMatrix(float[] orientation, float x, float y, float z, float zDist, float[] dst) {
+		final float qx = orientation[0], qy = orientation[1], qz = orientation[2], qw = orientation[3];
+		final float xx = qx * qx, yy = qy * qy, zz = qz * qz;
+		final float xy = qx * qy, xz = qx * qz, yz = qy * qz;
+		final float wx = qw * qx, wy = qw * qy, wz = qw * qz;
+		// The rows of the view rotation are the camera's right, up and backward vectors:
+		final float rx = 1.0f - (2.0f * (yy + zz)), ry = 2.0f * (xy + wz), rz = 2.0f * (xz - wy);
+		final float ux = 2.0f * (xy - wz), uy = 1.0f - (2.0f * (xx + zz)), uz = 2.0f * (yz + wx);
+		final float bx = 2.0f * (xz + wy), by = 2.0f * (yz - wx), bz = 1.0f - (2.0f * (xx + yy));
+		dst[0] = rx;
+		dst[1] = ux;
+		dst[2] = bx;
+		dst[3] = 0.0f;
+		dst[4] = ry;
+		dst[5] = uy;
+		dst[6] = by;
+		dst[7] = 0.0f;
+		dst[8] = rz;
+		dst[9] = uz;
+		dst[10] = bz;
+		dst[11] = 0.0f;
+		dst[12] = -((rx * x) + (ry * y) + (rz * z));
+		dst[13] = -((ux * x) + (uy * y) + (uz * z));
+		dst[14] = -((bx * x) + (by * y) + (bz * z)) - zDist;
+		dst[15] = 1.0f;
+		return dst;
+	}
+	
+	/** Computes the view matrix of a camera with the given orientation and
+	 * position.
+	 * 
+	 * @param x The camera's X position
+	 * @param y The camera's Y position
+	 * @param z The camera's Z position
+	 * @param zDist The camera's distance from the point it orbits
+	 * @param yaw The camera's yaw, in degrees
+	 * @param pitch The camera's pitch, in degrees
+	 * @param roll The camera's roll, in degrees
+	 * @param dst The array to store the column-major 4x4 matrix in (the first
+	 *            four elements are also used as scratch space for the
+	 *            quaternion)
+	 * @return The given array */
+	public static final float[] getViewMatrix(float x, float y, float z, float zDist, float yaw, float pitch, float roll, float[] dst) {
+		return getViewMatrix(getOrientation(yaw, pitch, roll, dst), x, y, z, zDist, dst);
+	}
+	
+	private void rebuild() {
+		final float[] m = getViewMatrix(getOrientation(this.yaw, this.pitch, this.roll, this.orientation), this.x, this.y, this.z, this.zDist, this.view);
+		CameraOrientation.getRight(m, this.right);
+		CameraOrientation.getUp(m, this.up);
+		CameraOrientation.getForward(m, this.forward);
+		this.upsideDown = CameraOrientation.isUpsideDown(m);
+	}
+	
+	private static final float wrap(float degrees) {
+		return (360.0f + degrees) % 360.0f;
+	}
+	
+	/** Moves the camera using its current orientation.<br>
+	 * With {@link #setFreeMove(boolean) free-move} enabled the camera moves
+	 * along its own axes; otherwise it moves along the ground, and straight up
+	 * and down.
+	 * 
+	 * @param right How long to move right for, in seconds (negative moves
+	 *            left)
+	 * @param up How long to move up for, in seconds (negative moves down)
+	 * @param backward How long to move backward for, in seconds (negative
+	 *            moves forward)
+	 * @return This CameraController */
+	public CameraController move(float right, float up, float backward) {
+		if(this.translate(right, up, backward)) {
+			this.rebuild();
+		}
+		return this;
+	}
+	
+	private boolean translate(float right, float up, float backward) {
+		if(right == 0.0f && up == 0.0f && backward == 0.0f) {
+			return false;
+		}
+		final float speed = this.movementSpeed;
+		final float[] r = this.right;
+		if(this.freeMove) {
+			final float[] u = this.up, f = this.forward;
+			this.x += ((r[0] * right) + (u[0] * up) - (f[0] * backward)) * speed;
+			this.y += ((r[1] * right) + (u[1] * up) - (f[1] * backward)) * speed;
+			this.z += ((r[2] * right) + (u[2] * up) - (f[2] * backward)) * speed;
+		} else {
+			// Backward along the ground is the right vector turned 90 degrees around the Y axis:
+			final float forwardSign = this.upsideDown && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f;
+			final float verticalSign = this.upsideDown && this.invertVerticalMovementWhenUpsideDown ? -1.0f : 1.0f;
+			this.x += ((r[0] * right) - (r[2] * backward * forwardSign)) * speed;
+			this.y += up * verticalSign * speed;
+			this.z += ((r[2] * right) + (r[0] * backward * forwardSign)) * speed;
+		}
+		return true;
+	}
+	
+	/** Turns the camera.<br>
+	 * Yaw is inverted while the camera is upside-down and pitch is inverted
+	 * while it is rolled over, if the corresponding options are enabled.
+	 * Without {@link #setFreeLook(boolean) free-look}, the pitch is kept
+	 * between straight down and straight up.
+	 * 
+	 * @param yaw The number of degrees to add to the camera's yaw
+	 * @param pitch The number of degrees to add to the camera's pitch
+	 * @param roll The number of degrees to add to the camera's roll
+	 * @return This CameraController */
+	public CameraController look(float yaw, float pitch, float roll) {
+		this.turn(yaw, pitch, roll);
+		this.rebuild();
+		return this;
+	}
+	
+	private void turn(float yaw, float pitch, float roll) {
+		yaw *= this.upsideDown && this.invertYawWhenUpsideDown ? -1.0f : 1.0f;
+		pitch *= this.isRolledOver() && this.invertPitchWhenUpsideDown ? -1.0f : 1.0f;
+		this.yaw = wrap(this.yaw + yaw);
+		pitch = wrap(this.pitch + pitch);
+		if(!this.freeLook) {
+			pitch = pitch > 90.0f && pitch <= 180.0f ? 90.0f : (pitch < 270.0f && pitch > 180.0f ? 270.0f : pitch);
+		}
+		this.pitch = pitch;
+		this.roll = wrap(this.roll + roll);
+	}
+	
+	/** Advances the camera by one step: it is moved using the orientation it
+	 * had at the end of the last step, and then turned. Without
+	 * {@link #setFreeLook(boolean) free-look}, the camera also rolls 5% of the
+	 * way back towards level with every step.
+	 * 
+	 * @param right How long to move right for, in seconds
+	 * @param up How long to move up for, in seconds
+	 * @param backward How long to move backward for, in seconds
+	 * @param yaw The number of degrees to add to the camera's yaw
+	 * @param pitch The number of degrees to add to the camera's pitch
+	 * @param roll The number of degrees to add to the camera's roll
+	 * @return This CameraController */
+	public CameraController update(float right, float up, float backward, float yaw, float pitch, float roll) {
+		this.translate(right, up, backward);
+		this.turn(yaw, pitch, roll);
+		if(!this.freeLook && this.roll != 0.0f) {
+			roll = this.roll;
+			if(roll > 180.0f) {
+				roll -= 360.0f;
+				roll *= 0.95f;
+				roll += 360.0f;
+			} else {
+				roll *= 0.95f;
+			}
+			roll = wrap(roll);
+			this.roll = Math.abs(roll) < 0.01f || Math.abs(roll) > 359.99f ? 0.0f : roll;
+		}
+		this.rebuild();
+		return this;
+	}
+	
+	/** Moves the camera back to the origin and resets its orientation and
+	 * orbiting distance.
+	 * 
+	 * @return This CameraController */
+	public CameraController reset() {
+		this.x = this.y = this.z = this.zDist = 0;
+		this.yaw = this.pitch = this.roll = 0;
+		this.rebuild();
+		return this;
+	}
+	
+	/** @param x The camera's new X position
+	 * @param y The camera's new Y position
+	 * @param z The camera's new Z position
+	 * @return This CameraController */
+	public CameraController setPosition(float x, float y, float z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.rebuild();
+		return this;
+	}
+	
+	/** Sets the camera's orientation as-is (the constrained mode's limits are
+	 * not applied).
+	 * 
+	 * @param yaw The camera's new yaw, in degrees
+	 * @param pitch The camera's new pitch, in degrees
+	 * @param roll The camera's new roll, in degrees
+	 * @return This CameraController */
+	public CameraController setOrientation(float yaw, float pitch, float roll) {
+		this.yaw = wrap(yaw);
+		this.pitch = wrap(pitch);
+		this.roll = wrap(roll);
+		this.rebuild();
+		return this;
+	}
+	
+	/** @param zDist The camera's new distance from the point it orbits
+	 * @return This CameraController */
+	public CameraController setZoomDistance(float zDist) {
+		this.zDist = zDist;
+		this.rebuild();
+		return this;
+	}
+	
+	/** @param zDist The distance to add to the camera's orbiting distance
+	 * @return This CameraController */
+	public CameraController addZoomDistance(float zDist) {
+		return zDist == 0.0f ? this : this.setZoomDistance(this.zDist + zDist);
+	}
+	
+	/** @return The camera's X position */
+	public float getX() {
+		return this.x;
+	}
+	
+	/** @return The camera's Y position */
+	public float getY() {
+		return this.y;
+	}
+	
+	/** @return The camera's Z position */
+	public float getZ() {
+		return this.z;
+	}
+	
+	/** @return The camera's distance from the point it orbits */
+	public float getZoomDistance() {
+		return this.zDist;
+	}
+	
+	/** @return The camera's yaw, in degrees */
+	public float getYaw() {
+		return this.yaw;
+	}
+	
+	/** @return The camera's pitch, in degrees */
+	public float getPitch() {
+		return this.pitch;
+	}
+	
+	/** @return The camera's roll, in degrees */
+	public float getRoll() {
+		return this.roll;
+	}
+	
+	/** @param dst The array to store the quaternion's {x, y, z, w} components
+	 *            in
+	 * @return The given array, containing the camera's orientation */
+	public float[] getOrientation(float[] dst) {
+		System.arraycopy(this.orientation, 0, dst, 0, 4);
+		return dst;
+	}
+	
+	/** @param dst The array to store the unit vector in
+	 * @return The given array, containing the direction the camera is looking
+	 *         in */
+	public float[] getForward(float[] dst) {
+		System.arraycopy(this.forward, 0, dst, 0, 3);
+		return dst;
+	}
+	
+	/** @param dst The array to store the unit vector in
+	 * @return The given array, containing the camera's right vector */
+	public float[] getRight(float[] dst) {
+		System.arraycopy(this.right, 0, dst, 0, 3);
+		return dst;
+	}
+	
+	/** @param dst The array to store the unit vector in
+	 * @return The given array, containing the camera's up vector */
+	public float[] getUp(float[] dst) {
+		System.arraycopy(this.up, 0, dst, 0, 3);
+		return dst;
+	}
+	
+	/** @param dst The array to store the column-major 4x4 matrix in
+	 * @return The given array, containing the camera's view matrix */
+	public float[] getViewMatrix(float[] dst) {
+		System.arraycopy(this.view, 0, dst, 0, 16);
+		return dst;
+	}
+	
+	/** @return Whether or not the camera is upside-down
+	 * @see CameraOrientation#isUpsideDown(float[]) */
+	public boolean isUpsideDown() {
+		return this.upsideDown;
+	}
+	
+	/** @return Whether or not the camera has rolled more than 90 degrees
+	 *         either way */
+	public boolean isRolledOver() {
+		return CameraOrientation.isRolledOver(this.roll);
+	}
+	
+	/** @return The camera's movement speed, in units per second */
+	public float getMovementSpeed() {
+		return this.movementSpeed;
+	}
+	
+	/** @param movementSpeed The camera's movement speed, in units per second
+	 * @return This CameraController */
+	public CameraController setMovementSpeed(float movementSpeed) {
+		this.movementSpeed = movementSpeed;
+		return this;
+	}
+	
+	/** @return Whether or not the camera may pitch past straight up or down
+	 *         (and keep its roll) */
+	public boolean isFreeLook() {
+		return this.freeLook;
+	}
+	
+	/** @param freeLook Whether or not the camera may pitch past straight up or
+	 *            down (and keep its roll)
+	 * @return This CameraController */
+	public CameraController setFreeLook(boolean freeLook) {
+		this.freeLook = freeLook;
+		return this;
+	}
+	
+	/** @return Whether or not the camera moves in the direction it is facing
+	 *         (rather than along the ground) */
+	public boolean isFreeMove() {
+		return this.freeMove;
+	}
+	
+	/** @param freeMove Whether or not the camera moves in the direction it is
+	 *            facing (rather than along the ground)
+	 * @return This CameraController */
+	public CameraController setFreeMove(boolean freeMove) {
+		this.freeMove = freeMove;
+		return this;
+	}
+	
+	/** @param invert Whether or not yaw is inverted while the camera is
+	 *            upside-down
+	 * @return This CameraController */
+	public CameraController setInvertYawWhenUpsideDown(boolean invert) {
+		this.invertYawWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** @param invert Whether or not pitch is inverted while the camera is
+	 *            rolled over
+	 * @return This CameraController */
+	public CameraController setInvertPitchWhenUpsideDown(boolean invert) {
+		this.invertPitchWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** @param invert Whether or not forward and backward movement is inverted
+	 *            while the camera is upside-down
+	 * @return This CameraController */
+	public CameraController setInvertForwardMovementWhenUpsideDown(boolean invert) {
+		this.invertForwardMovementWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** @param invert Whether or not upward and downward movement is inverted
+	 *            while the camera is upside-down
+	 * @return This CameraController */
+	public CameraController setInvertVerticalMovementWhenUpsideDown(boolean invert) {
+		this.invertVerticalMovementWhenUpsideDown = invert;
+		return this;
+	}
+	
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+
+import java.util.Random;
+
+/** Verification and benchmark of {@link CameraController}.<br>
+ * The controller's view matrix is checked against the one
+ * {@link FloatMatrixStack} builds for random camera positions and
+ * orientations, and a random input script is replayed through both the
+ * controller and the Euler-angle step that {@link CameraSimulation} used
+ * before it, in every combination of modes, to check that the camera follows
+ * the same path. Then the number of updates per second is measured for both.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CameraControllerBenchmark {
+	
+	/** The Euler-angle camera step that {@link CameraController} replaces. */
+	static final class EulerCamera {
+		final FloatMatrixStack stack = new FloatMatrixStack();
+		final float[] m = new float[16];
+		float x, y, z, zDist, yaw, pitch, roll;
+		boolean upsideDown;
+		boolean freeLook, freeMove, invertYaw, invertPitch, invertForward, invertVertical;
+		float speed = 1.2f;
+		
+		EulerCamera() {
+			FloatMatrixStack.setIdentity(this.m, 0);
+		}
+		
+		void update(float right, float up, float backward, float yawDelta, float pitchDelta, float rollDelta) {
+			final float[] m = this.m;
+			if(this.freeMove) {
+				this.x += ((m[0] * right) + (m[1] * up) + (m[2] * backward)) * this.speed;
+				this.y += ((m[4] * right) + (m[5] * up) + (m[6] * backward)) * this.speed;
+				this.z += ((m[8] * right) + (m[9] * up) + (m[10] * backward)) * this.speed;
+			} else {
+				final float forwardSign = this.upsideDown && this.invertForward ? -1.0f : 1.0f;
+				final float verticalSign = this.upsideDown && this.invertVertical ? -1.0f : 1.0f;
+				this.x += ((m[0] * right) - (m[8] * backward * forwardSign)) * this.speed;
+				this.y += up * verticalSign * this.speed;
+				this.z += ((m[8] * right) + (m[0] * backward * forwardSign)) * this.speed;
+			}
+			float yaw = this.yaw + (yawDelta * (this.upsideDown && this.invertYaw ? -1.0f : 1.0f));
+			float pitch = this.pitch + (pitchDelta * (CameraOrientation.isRolledOver(this.roll) && this.invertPitch ? -1.0f : 1.0f));
+			float roll = this.roll + rollDelta;
+			yaw = (360.0f + yaw) % 360.0f;
+			pitch = (360.0f + pitch) % 360.0f;
+			roll = (360.0f + roll) % 360.0f;
+			if(!this.freeLook) {
+				pitch = pitch > 90.0f && pitch <= 180.0f ? 90.0f : (pitch < 270.0f && pitch > 180.0f ? 270.0f : pitch);
+				if(roll > 180.0f) {
+					roll -= 360.0f;
+					roll *= 0.95f;
+					roll += 360.0f;
+				} else {
+					roll *= 0.95f;
+				}
+				roll = (360.0f + roll) % 360.0f;
+				roll = Math.abs(roll) < 0.01f || Math.abs(roll) > 359.99f ? 0.0f : roll;
+			}
+			this.yaw = yaw;
+			this.pitch = pitch;
+			this.roll = roll;
+			this.stack.loadIdentity().translate(0, 0, -this.zDist).rotate(-yaw, -pitch, -roll, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-this.x, -this.y, -this.z, MultiplicationOrder.NEWxOLD).peek(m);
+			this.upsideDown = CameraOrientation.isUpsideDown(m);
+		}
+		
+	}
+	
+	private static final float maxDifference(float[] a, float[] b) {
+		float max = 0;
+		for(int i = 0; i < 16; i++) {
+			max = Math.max(max, Math.abs(a[i] - b[i]));
+		}
+		return max;
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final Random random = new Random(0xCA3E7AL);
+		final FloatMatrixStack stack = new FloatMatrixStack();
+		final float[] expected = new float[16], actual = new float[16];
+		
+		// View matrices:
+		float worst = 0;
+		for(int i = 0; i < 1000000; i++) {
+			float x = (random.nextFloat() - 0.5f) * 200.0f, y = (random.nextFloat() - 0.5f) * 200.0f, z = (random.nextFloat() - 0.5f) * 200.0f, zDist = random.nextFloat() * 10.0f;
+			float yaw = random.nextFloat() * 360.0f, pitch = random.nextFloat() * 360.0f, roll = random.nextFloat() * 360.0f;
+			stack.loadIdentity().translate(0, 0, -zDist).rotate(-yaw, -pitch, -roll, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-x, -y, -z, MultiplicationOrder.NEWxOLD).peek(expected);
+			CameraController.getViewMatrix(x, y, z, zDist, yaw, pitch, roll, actual);
+			worst = Math.max(worst, maxDifference(expected, actual) / Math.max(1.0f, Math.abs(x) + Math.abs(y) + Math.abs(z) + zDist));
+		}
+		MicroBenchmark.check(worst < 1.0E-5f, "View matrices differ by up to ".concat(Float.toString(worst)));
+		System.out.println(String.format("View matrices agree with FloatMatrixStack to within %s (relative to the camera's distance from the origin).", Float.toString(worst)));
+		
+		// Input script replayed through both cameras, in every mode:
+		final float[] basis = new float[3];
+		for(int mode = 0; mode < 64; mode++) {
+			final CameraController controller = new CameraController();
+			final EulerCamera euler = new EulerCamera();
+			controller.setFreeLook(euler.freeLook = (mode & 1) != 0).setFreeMove(euler.freeMove = (mode & 2) != 0);
+			controller.setInvertYawWhenUpsideDown(euler.invertYaw = (mode & 4) != 0).setInvertPitchWhenUpsideDown(euler.invertPitch = (mode & 8) != 0);
+			controller.setInvertForwardMovementWhenUpsideDown(euler.invertForward = (mode & 16) != 0).setInvertVerticalMovementWhenUpsideDown(euler.invertVertical = (mode & 32) != 0);
+			final Random script = new Random(mode);
+			float drift = 0;
+			for(int step = 0; step < 2000; step++) {
+				final float dt = 1.0f / 60.0f;
+				float right = (script.nextInt(3) - 1) * dt, up = (script.nextInt(3) - 1) * dt, backward = (script.nextInt(3) - 1) * dt;
+				float yaw = (script.nextFloat() - 0.5f) * 20.0f, pitch = (script.nextFloat() - 0.5f) * 20.0f, roll = (script.nextFloat() - 0.5f) * 4.0f;
+				controller.update(right, up, backward, yaw, pitch, roll);
+				euler.update(right, up, backward, yaw, pitch, roll);
+				MicroBenchmark.check(controller.isUpsideDown() == euler.upsideDown, String.format("Mode %s, step %s: upside-down differs", Integer.toString(mode), Integer.toString(step)));
+				drift = Math.max(drift, Math.max(Math.abs(controller.getX() - euler.x), Math.max(Math.abs(controller.getY() - euler.y), Math.abs(controller.getZ() - euler.z))));
+				MicroBenchmark.check(maxDifference(controller.getViewMatrix(actual), euler.m) < 1.0E-3f, String.format("Mode %s, step %s: view matrices differ", Integer.toString(mode), Integer.toString(step)));
+			}
+			MicroBenchmark.check(drift < 1.0E-3f, String.format("Mode %s: positions drifted apart by %s", Integer.toString(mode), Float.toString(drift)));
+			MicroBenchmark.check(Math.abs(controller.getUp(basis)[1] - euler.m[5]) < 1.0E-5f, "Cached up vector is out of date");
+		}
+		System.out.println("Replayed input agrees with the Euler-angle camera in all 64 combinations of modes.");
+		
+		// Updates per second:
+		final CameraController controller = new CameraController().setFreeLook(true).setFreeMove(true);
+		final EulerCamera euler = new EulerCamera();
+		euler.freeLook = euler.freeMove = true;
+		MicroBenchmark.Result before = MicroBenchmark.run("Euler angles + FloatMatrixStack", 100000, 2000000, (i) -> {
+			euler.update(0.01f, 0, -0.01f, 0.37f, (i & 64) != 0 ? 0.11f : -0.11f, 0.05f);
+			return null;
+		});
+		MicroBenchmark.Result after = MicroBenchmark.run("CameraController.update", 100000, 2000000, (i) -> {
+			controller.update(0.01f, 0, -0.01f, 0.37f, (i & 64) != 0 ? 0.11f : -0.11f, 0.05f);
+			return null;
+		});
+		MicroBenchmark.check(after.bytesPerOp < 1.0, "CameraController.update allocated memory!");
+		System.out.println(String.format("Updates per second: %s (was %s)", Long.toString(Math.round(after.getOpsPerSecond())), Long.toString(Math.round(before.getOpsPerSecond()))));
+	}
+	
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+/** Answers questions about a camera's orientation directly from its
+ * column-major model-view matrix, without any allocations.<br>
+ * <br>
+ * The upper-left 3x3 of a model-view matrix is the inverse (and therefore the
+ * transpose) of the camera's rotation, so its rows are the camera's right, up
+ * and backward vectors in world space.<br>
+ * <br>
+ * {@link #isUpsideDown(float[])} gives exactly the same answer as the
+ * original test,
+ * {@code Float.parseFloat(MathUtil.limitDecimalNoRounding(modelView[5], 4)) < -0.0f},
+ * which truncates the up vector's {@code y} component to four decimal places
+ * and checks whether anything negative is left. That is the case exactly when
+ * the component is less than or equal to {@code -0.0001}, so the same question
+ * can be answered with one comparison instead of formatting and parsing a
+ * string (see {@link CameraOrientationBenchmark}).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class CameraOrientation {
+	
+	/** The largest value of the up vector's {@code y} component for which the
+	 * camera is considered to be upside-down. Anything closer to zero is
+	 * truncated to zero, and treated as level. */
+	public static final double UPSIDE_DOWN_THRESHOLD = -1.0E-4;
+	
+	private CameraOrientation() {
+	}
+	
+	/** Returns whether or not the given model-view matrix is upside-down.
+	 * 
+	 * @param modelView The column-major model-view matrix
+	 * @return Whether or not the matrix' up vector points downward */
+	public static final boolean isUpsideDown(float[] modelView) {
+		// The comparison is done in double precision since -0.0001 has no exact float representation:
+		return modelView[5] <= UPSIDE_DOWN_THRESHOLD;
+	}
+	
+	/** Returns whether or not a camera with the given roll has rolled over.
+	 * <br>
+	 * Unlike being upside-down, this can't be told from the matrix alone: once
+	 * the camera is pitched, a roll to one side can't be told apart from a
+	 * turn to the other.
+	 * 
+	 * @param roll The camera's roll, in degrees from {@code 0} to {@code 360}
+	 * @return Whether or not the camera has rolled more than 90 degrees
+	 *         either way */
+	public static final boolean isRolledOver(float roll) {
+		return roll > 90.0f && roll < 270.0f;
+	}
+	
+	/** Copies the camera's right vector out of the given model-view matrix.
+	 * 
+	 * @param modelView The column-major model-view matrix
+	 * @param dst The array to store the unit vector's {@code x}, {@code y} and
+	 *            {@code z} components in
+	 * @return The given array */
+	public static final float[] getRight(float[] modelView, float[] dst) {
+		dst[0] = modelView[0];
+		dst[1] = modelView[4];
+		dst[2] = modelView[8];
+		return dst;
+	}
+	
+	/** Copies the camera's up vector out of the given model-view matrix.
+	 * 
+	 * @param modelView The column-major model-view matrix
+	 * @param dst The array to store the unit vector's {@code x}, {@code y} and
+	 *            {@code z} components in
+	 * @return The given array */
+	public static final float[] getUp(float[] modelView, float[] dst) {
+		dst[0] = modelView[1];
+		dst[1] = modelView[5];
+		dst[2] = modelView[9];
+		return dst;
+	}
+	
+	/** Copies the direction that the camera is looking in out of the given
+	 * model-view matrix.
+	 * 
+	 * @param modelView The column-major model-view matrix
+	 * @param dst The array to store the unit vector's {@code x}, {@code y} and
+	 *            {@code z} components in
+	 * @return The given array */
+	public static final float[] getForward(float[] modelView, float[] dst) {
+		dst[0] = -modelView[2];
+		dst[1] = -modelView[6];
+		dst[2] = -modelView[10];
+		return dst;
+	}
+	
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+import com.gmail.br45entei.game.math.MathUtil;
+
+import java.util.Random;
+
+/** Equivalence test and benchmark of {@link CameraOrientation}.<br>
+ * {@link CameraOrientation#isUpsideDown(float[])} is checked against the
+ * string-based test it replaces for model-view matrices built from random
+ * camera orientations (the same way {@link CameraSimulation} builds them), for
+ * every float within a few hundred thousand ulps of the threshold and of zero,
+ * and for random float bit patterns. The basis vectors are checked to be
+ * orthonormal and right-handed, and then both tests are timed.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CameraOrientationBenchmark {
+	
+	/** The test that {@link CameraOrientation#isUpsideDown(float[])}
+	 * replaces.
+	 * 
+	 * @param modelView The column-major model-view matrix
+	 * @return Whether or not the matrix' up vector points downward */
+	static final boolean isUpsideDownString(float[] modelView) {
+		return Float.parseFloat(MathUtil.limitDecimalNoRounding(modelView[5], 4)) < -0.0f;
+	}
+	
+	private static long compared = 0L;
+	
+	private static final void checkSame(float[] modelView) {
+		boolean expected = isUpsideDownString(modelView);
+		boolean actual = CameraOrientation.isUpsideDown(modelView);
+		MicroBenchmark.check(expected == actual, String.format("Upside-down mismatch for m[5] = %s (0x%s): expected %s, got %s", Float.toString(modelView[5]), Integer.toHexString(Float.floatToRawIntBits(modelView[5])), Boolean.toString(expected), Boolean.toString(actual)));
+		compared++;
+	}
+	
+	private static final void checkUnit(float[] v, String name) {
+		double length = Math.sqrt((v[0] * v[0]) + (v[1] * v[1]) + (v[2] * v[2]));
+		MicroBenchmark.check(Math.abs(length - 1.0) < 1.0E-4, String.format("The %s vector is not a unit vector (length %s)", name, Double.toString(length)));
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final Random random = new Random(0x0B1E47L);
+		final FloatMatrixStack stack = new FloatMatrixStack();
+		final float[] m = new float[16];
+		final float[] right = new float[3], up = new float[3], forward = new float[3];
+		
+		// Random camera orientations:
+		for(int i = 0; i < 1000000; i++) {
+			float yaw = random.nextFloat() * 360.0f, pitch = random.nextFloat() * 360.0f, roll = random.nextFloat() * 360.0f;
+			if((i & 3) == 0) {
+				// Favour orientations where the up vector is nearly level:
+				pitch = (random.nextBoolean() ? 90.0f : 270.0f) + ((random.nextFloat() - 0.5f) * 0.05f);
+				roll = 0.0f;
+			}
+			stack.loadIdentity().translate(0, 0, -random.nextFloat() * 10.0f).rotate(-yaw, -pitch, -roll, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-random.nextFloat() * 100.0f, -random.nextFloat() * 100.0f, -random.nextFloat() * 100.0f, MultiplicationOrder.NEWxOLD).peek(m);
+			checkSame(m);
+			if((i & 255) == 0) {
+				CameraOrientation.getRight(m, right);
+				CameraOrientation.getUp(m, up);
+				CameraOrientation.getForward(m, forward);
+				checkUnit(right, "right");
+				checkUnit(up, "up");
+				checkUnit(forward, "forward");
+				// right x up = backward:
+				MicroBenchmark.check(Math.abs(((right[1] * up[2]) - (right[2] * up[1])) + forward[0]) < 1.0E-4f, "Basis is not right-handed (x)");
+				MicroBenchmark.check(Math.abs(((right[2] * up[0]) - (right[0] * up[2])) + forward[1]) < 1.0E-4f, "Basis is not right-handed (y)");
+				MicroBenchmark.check(Math.abs(((right[0] * up[1]) - (right[1] * up[0])) + forward[2]) < 1.0E-4f, "Basis is not right-handed (z)");
+			}
+		}
+		System.out.println(String.format("Random orientations: %s matrices agree.", Long.toString(compared)));
+		
+		// Every float near the threshold and near zero:
+		compared = 0L;
+		for(float center : new float[] {-1.0E-4f, 1.0E-4f, 0.0f, -0.0f}) {
+			final int bits = Float.floatToRawIntBits(center);
+			for(int offset = -250000; offset <= 250000; offset++) {
+				m[5] = Float.intBitsToFloat(bits + offset);
+				if(Float.isNaN(m[5])) {
+					continue;
+				}
+				checkSame(m);
+			}
+		}
+		for(float value : new float[] {Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -1.0f, -Float.MIN_NORMAL, -Float.MIN_VALUE, Float.MIN_VALUE, 1.0f, Float.MAX_VALUE, Float.POSITIVE_INFINITY}) {
+			m[5] = value;
+			checkSame(m);
+		}
+		for(int i = 0; i < 1000000; i++) {
+			m[5] = Float.intBitsToFloat(random.nextInt());
+			if(Float.isNaN(m[5])) {
+				continue;
+			}
+			checkSame(m);
+		}
+		System.out.println(String.format("Edge values: %s floats agree.", Long.toString(compared)));
+		
+		// Benchmark:
+		final float[][] matrices = new float[256][16];
+		for(int i = 0; i < matrices.length; i++) {
+			stack.loadIdentity().rotate(-random.nextFloat() * 360.0f, -random.nextFloat() * 360.0f, -random.nextFloat() * 360.0f, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).peek(matrices[i]);
+		}
+		MicroBenchmark.Result before = MicroBenchmark.run("isUpsideDown (limitDecimalNoRounding + parseFloat)", 100000, 1000000, (i) -> Boolean.valueOf(isUpsideDownString(matrices[i & 255])));
+		MicroBenchmark.Result after = MicroBenchmark.run("CameraOrientation.isUpsideDown", 1000000, 10000000, (i) -> Boolean.valueOf(CameraOrientation.isUpsideDown(matrices[i & 255])));
+		System.out.println(String.format("Speedup: %sx", MathUtil.limitDecimalNoRounding(before.nsPerOp / after.nsPerOp, 1)));
+	}
+	
+}
@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** {@link TestGame}'s camera movement, as a {@link FixedTimestepLoop.Simulation}
+ * that is stepped at a fixed rate instead of once per rendered frame.<br>
+ * Input is handed to the simulation from any thread: keys that are held down
+ * are set as a bit mask with {@link #setHeld(int)}, and relative input (mouse
+ * and controller movement, scrolling) is accumulated with
+ * {@link #addLook(float, float, float)}, {@link #addMovement(float, float, float)}
+ * and {@link #addZoomDistance(float)}. Each step consumes whatever input has
+ * accumulated since the last step, so the camera ends up in the same place for
+ * the same input no matter how often frames are rendered. The camera itself
+ * is moved and turned by a {@link CameraController}.<br>
+ * <br>
+ * Each {@link Snapshot} contains both the state before and after the latest
+ * step, so that the render thread can
+ * {@link State#interpolate(State, State, float) interpolate} between them.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CameraSimulation implements FixedTimestepLoop.Simulation<CameraSimulation.Snapshot> {
+	
+	/** {@link #setHeld(int) Held} bit for moving forward */
+	public static final int MOVE_FORWARD = 0x01;
+	/** {@link #setHeld(int) Held} bit for moving backward */
+	public static final int MOVE_BACKWARD = 0x02;
+	/** {@link #setHeld(int) Held} bit for moving left */
+	public static final int MOVE_LEFT = 0x04;
+	/** {@link #setHeld(int) Held} bit for moving right */
+	public static final int MOVE_RIGHT = 0x08;
+	/** {@link #setHeld(int) Held} bit for moving up */
+	public static final int MOVE_UP = 0x10;
+	/** {@link #setHeld(int) Held} bit for moving down */
+	public static final int MOVE_DOWN = 0x20;
+	/** {@link #setHeld(int) Held} bit for rolling left */
+	public static final int ROLL_LEFT = 0x40;
+	/** {@link #setHeld(int) Held} bit for rolling right */
+	public static final int ROLL_RIGHT = 0x80;
+	
+	private static final int PENDING_YAW = 0;
+	private static final int PENDING_PITCH = 1;
+	private static final int PENDING_ROLL = 2;
+	private static final int PENDING_RIGHT = 3;
+	private static final int PENDING_UP = 4;
+	private static final int PENDING_BACKWARD = 5;
+	private static final int PENDING_ZDIST = 6;
+	
+	private static final int COMMAND_RESET = 0x1;
+	private static final int COMMAND_RESET_ZDIST = 0x2;
+	
+	/** The position, orientation and resulting model-view matrix of the
+	 * camera.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static final class State {
+		
+		/** The camera's position */
+		public float x, y, z;
+		/** The camera's distance from the point it orbits */
+		public float zDist;
+		/** The camera's orientation, in degrees */
+		public float yaw, pitch, roll;
+		/** Whether or not the camera is upside-down */
+		public boolean upsideDown;
+		/** The camera's model-view matrix */
+		public final float[] modelView = new float[16];
+		
+		/** Creates a new State at the origin. */
+		public State() {
+			FloatMatrixStack.setIdentity(this.modelView, 0);
+		}
+		
+		/** Copies the given state into this one.
+		 * 
+		 * @param state The state to copy
+		 * @return This State */
+		public State set(State state) {
+			this.x = state.x;
+			this.y = state.y;
+			this.z = state.z;
+			this.zDist = state.zDist;
+			this.yaw = state.yaw;
+			this.pitch = state.pitch;
+			this.roll = state.roll;
+			this.upsideDown = state.upsideDown;
+			System.arraycopy(state.modelView, 0, this.modelView, 0, 16);
+			return this;
+		}
+		
+		/** Sets this state to somewhere between the two given states.<br>
+		 * Angles are interpolated the short way around the circle. The
+		 * {@link #modelView} is not interpolated (it should be rebuilt from
+		 * the interpolated position and orientation).
+		 * 
+		 * @param previous The state at <code>alpha == 0</code>
+		 * @param current The state at <code>alpha == 1</code>
+		 * @param alpha How far between the two states to go
+		 * @return This State */
+		public State interpolate(State previous, State current, float alpha) {
+			this.x = previous.x + ((current.x - previous.x) * alpha);
+			this.y = previous.y + ((current.y - previous.y) * alpha);
+			this.z = previous.z + ((current.z - previous.z) * alpha);
+			this.zDist = previous.zDist + ((current.zDist - previous.zDist) * alpha);
+			this.yaw = interpolateAngle(previous.yaw, current.yaw, alpha);
+			this.pitch = interpolateAngle(previous.pitch, current.pitch, alpha);
+			this.roll = interpolateAngle(previous.roll, current.roll, alpha);
+			this.upsideDown = alpha < 0.5f ? previous.upsideDown : current.upsideDown;
+			return this;
+		}
+		
+		/** @param state The state to compare against
+		 * @return Whether or not the given state's position and orientation
+		 *         are exactly the same as this state's */
+		public boolean equalTo(State state) {
+			return Float.floatToIntBits(this.x) == Float.floatToIntBits(state.x) && Float.floatToIntBits(this.y) == Float.floatToIntBits(state.y) && Float.floatToIntBits(this.z) == Float.floatToIntBits(state.z) && Float.floatToIntBits(this.zDist) == Float.floatToIntBits(state.zDist) && Float.floatToIntBits(this.yaw) == Float.floatToIntBits(state.yaw) && Float.floatToIntBits(this.pitch) == Float.floatToIntBits(state.pitch) && Float.floatToIntBits(this.roll) == Float.floatToIntBits(state.roll);
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("X: %s; Y: %s; Z: %s; ~: %s; Yaw: %s; Pitch: %s; Roll: %s;", Float.toString(this.x), Float.toString(this.y), Float.toString(this.z), Float.toString(this.zDist), Float.toString(this.yaw), Float.toString(this.pitch), Float.toString(this.roll));
+		}
+		
+	}
+	
+	/** The state published by a {@link CameraSimulation}.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static final class Snapshot extends FixedTimestepLoop.Snapshot {
+		
+		/** The camera's state before the latest step */
+		public final State previous = new State();
+		/** The camera's state after the latest step */
+		public final State current = new State();
+		
+	}
+	
+	static final float interpolateAngle(float from, float to, float alpha) {
+		float delta = to - from;
+		if(delta > 180.0f) {
+			delta -= 360.0f;
+		} else if(delta < -180.0f) {
+			delta += 360.0f;
+		}
+		return (360.0f + from + (delta * alpha)) % 360.0f;
+	}
+	
+	private final CameraController controller = new CameraController();
+	private final State previous = new State();
+	private final State current = new State();
+	
+	private volatile int held = 0;
+	private final AtomicIntegerArray pending = new AtomicIntegerArray(7);
+	private final AtomicInteger commands = new AtomicInteger(0);
+	
+	private volatile boolean enabled = true;
+	private volatile float movementSpeed = 1.2f;
+	private volatile float rollSpeed = 15.0f;
+	private volatile boolean freeLook = false;
+	private volatile boolean freeMove = false;
+	private volatile boolean invertYawWhenUpsideDown = false;
+	private volatile boolean invertPitchWhenUpsideDown = false;
+	private volatile boolean invertForwardMovementWhenUpsideDown = false;
+	private volatile boolean invertVerticalMovementWhenUpsideDown = false;
+	
+	/** Creates a new CameraSimulation with the camera at the origin. */
+	public CameraSimulation() {
+	}
+	
+	private void accumulate(int index, float delta) {
+		if(delta == 0.0f || delta != delta) {
+			return;
+		}
+		int bits, sum;
+		do {
+			bits = this.pending.get(index);
+			sum = Float.floatToRawIntBits(Float.intBitsToFloat(bits) + delta);
+		} while(!this.pending.compareAndSet(index, bits, sum));
+	}
+	
+	private float drain(int index) {
+		return Float.intBitsToFloat(this.pending.getAndSet(index, 0));
+	}
+	
+	/** Sets which of the movement and roll keys are currently held down.
+	 * 
+	 * @param held A combination of {@link #MOVE_FORWARD},
+	 *            {@link #MOVE_BACKWARD}, {@link #MOVE_LEFT},
+	 *            {@link #MOVE_RIGHT}, {@link #MOVE_UP}, {@link #MOVE_DOWN},
+	 *            {@link #ROLL_LEFT} and {@link #ROLL_RIGHT}
+	 * @return This CameraSimulation */
+	public CameraSimulation setHeld(int held) {
+		this.held = held;
+		return this;
+	}
+	
+	/** @return Which of the movement and roll keys are currently held down */
+	public int getHeld() {
+		return this.held;
+	}
+	
+	/** Rotates the camera during the next step.
+	 * 
+	 * @param yaw The number of degrees to add to the camera's yaw
+	 * @param pitch The number of degrees to add to the camera's pitch
+	 * @param roll The number of degrees to add to the camera's roll
+	 * @return This CameraSimulation */
+	public CameraSimulation addLook(float yaw, float pitch, float roll) {
+		this.accumulate(PENDING_YAW, yaw);
+		this.accumulate(PENDING_PITCH, pitch);
+		this.accumulate(PENDING_ROLL, roll);
+		return this;
+	}
+	
+	/** Moves the camera during the next step, as if the corresponding
+	 * movement keys had been held down for the given amounts of time.
+	 * 
+	 * @param right How long to move right for, in seconds (negative moves
+	 *            left)
+	 * @param up How long to move up for, in seconds (negative moves down)
+	 * @param backward How long to move backward for, in seconds (negative
+	 *            moves forward)
+	 * @return This CameraSimulation */
+	public CameraSimulation addMovement(float right, float up, float backward) {
+		this.accumulate(PENDING_RIGHT, right);
+		this.accumulate(PENDING_UP, up);
+		this.accumulate(PENDING_BACKWARD, backward);
+		return this;
+	}
+	
+	/** Changes the camera's orbiting distance during the next step.
+	 * 
+	 * @param zDist The distance to add
+	 * @return This CameraSimulation */
+	public CameraSimulation addZoomDistance(float zDist) {
+		this.accumulate(PENDING_ZDIST, zDist);
+		return this;
+	}
+	
+	/** Moves the camera back to the origin and resets its orientation and
+	 * orbiting distance during the next step.
+	 * 
+	 * @return This CameraSimulation */
+	public CameraSimulation reset() {
+		this.commands.getAndUpdate((c) -> c | COMMAND_RESET);
+		return this;
+	}
+	
+	/** Resets the camera's orbiting distance during the next step.
+	 * 
+	 * @return This CameraSimulation */
+	public CameraSimulation resetZoomDistance() {
+		this.commands.getAndUpdate((c) -> c | COMMAND_RESET_ZDIST);
+		return this;
+	}
+	
+	/** @param enabled Whether or not the camera should be simulated (while
+	 *            disabled, steps leave the camera where it is)
+	 * @return This CameraSimulation */
+	public CameraSimulation setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		return this;
+	}
+	
+	/** @param movementSpeed The camera's movement speed, in units per second
+	 * @return This CameraSimulation */
+	public CameraSimulation setMovementSpeed(float movementSpeed) {
+		this.movementSpeed = movementSpeed;
+		return this;
+	}
+	
+	/** @param rollSpeed How fast the camera rolls while a roll key is held
+	 *            down, in degrees per second
+	 * @return This CameraSimulation */
+	public CameraSimulation setRollSpeed(float rollSpeed) {
+		this.rollSpeed = rollSpeed;
+		return this;
+	}
+	
+	/** @param freeLook Whether or not the camera may pitch past straight up or
+	 *            down (and keep its roll)
+	 * @return This CameraSimulation */
+	public CameraSimulation setFreeLook(boolean freeLook) {
+		this.freeLook = freeLook;
+		return this;
+	}
+	
+	/** @param freeMove Whether or not the camera moves in the direction it is
+	 *            facing (rather than along the ground)
+	 * @return This CameraSimulation */
+	public CameraSimulation setFreeMove(boolean freeMove) {
+		this.freeMove = freeMove;
+		return this;
+	}
+	
+	/** @param invert Whether or not yaw is inverted while the camera is
+	 *            upside-down
+	 * @return This CameraSimulation */
+	public CameraSimulation setInvertYawWhenUpsideDown(boolean invert) {
+		this.invertYawWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** @param invert Whether or not pitch is inverted while the camera is
+	 *            rolled over
+	 * @return This CameraSimulation */
+	public CameraSimulation setInvertPitchWhenUpsideDown(boolean invert) {
+		this.invertPitchWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** @param invert Whether or not forward and backward movement is inverted
+	 *            while the camera is upside-down
+	 * @return This CameraSimulation */
+	public CameraSimulation setInvertForwardMovementWhenUpsideDown(boolean invert) {
+		this.invertForwardMovementWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** @param invert Whether or not upward and downward movement is inverted
+	 *            while the camera is upside-down
+	 * @return This CameraSimulation */
+	public CameraSimulation setInvertVerticalMovementWhenUpsideDown(boolean invert) {
+		this.invertVerticalMovementWhenUpsideDown = invert;
+		return this;
+	}
+	
+	/** Returns the camera's current state.<br>
+	 * Must only be accessed by the thread that steps this simulation.
+	 * 
+	 * @return The camera's current state */
+	public State getState() {
+		return this.current;
+	}
+	
+	@Override
+	public void step(double deltaTime) {
+		final State s = this.current;
+		this.previous.set(s);
+		if(!this.enabled) {
+			return;
+		}
+		final CameraController c = this.controller;
+		final float dt = (float) deltaTime;
+		final int held = this.held;
+		c.setMovementSpeed(this.movementSpeed).setFreeLook(this.freeLook).setFreeMove(this.freeMove);
+		c.setInvertYawWhenUpsideDown(this.invertYawWhenUpsideDown).setInvertPitchWhenUpsideDown(this.invertPitchWhenUpsideDown);
+		c.setInvertForwardMovementWhenUpsideDown(this.invertForwardMovementWhenUpsideDown).setInvertVerticalMovementWhenUpsideDown(this.invertVerticalMovementWhenUpsideDown);
+		
+		final float right = this.drain(PENDING_RIGHT) + ((held & MOVE_RIGHT) != 0 ? dt : 0.0f) - ((held & MOVE_LEFT) != 0 ? dt : 0.0f);
+		final float up = this.drain(PENDING_UP) + ((held & MOVE_UP) != 0 ? dt : 0.0f) - ((held & MOVE_DOWN) != 0 ? dt : 0.0f);
+		final float backward = this.drain(PENDING_BACKWARD) + ((held & MOVE_BACKWARD) != 0 ? dt : 0.0f) - ((held & MOVE_FORWARD) != 0 ? dt : 0.0f);
+		final float yaw = this.drain(PENDING_YAW);
+		final float pitch = this.drain(PENDING_PITCH);
+		final float roll = this.drain(PENDING_ROLL) + (((held & ROLL_RIGHT) != 0 ? dt : 0.0f) - ((held & ROLL_LEFT) != 0 ? dt : 0.0f)) * this.rollSpeed;
+		c.addZoomDistance(this.drain(PENDING_ZDIST));
+		
+		final int commands = this.commands.getAndSet(0);
+		if((commands & COMMAND_RESET_ZDIST) != 0) {
+			c.setZoomDistance(0);
+		}
+		// Moves using the orientation from the end of the last step, then turns:
+		c.update(right, up, backward, yaw, pitch, roll);
+		if((commands & COMMAND_RESET) != 0) {
+			c.reset();
+		}
+		
+		s.x = c.getX();
+		s.y = c.getY();
+		s.z = c.getZ();
+		s.zDist = c.getZoomDistance();
+		s.yaw = c.getYaw();
+		s.pitch = c.getPitch();
+		s.roll = c.getRoll();
+		s.upsideDown = c.isUpsideDown();
+		c.getViewMatrix(s.modelView);
+		
+		if((commands & COMMAND_RESET) != 0) {
+			// Don't interpolate across a reset:
+			this.previous.set(s);
+		}
+	}
+	
+	@Override
+	public void publish(Snapshot snapshot) {
+		snapshot.previous.set(this.previous);
+		snapshot.current.set(this.current);
+	}
+	
+}
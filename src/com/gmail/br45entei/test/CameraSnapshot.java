@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+/** An immutable, consistent view of {@link TestGame}'s camera: its position,
+ * orientation, projection settings and the model-view matrix that was built
+ * from them.<br>
+ * Snapshots are published by swapping a single reference (see
+ * {@link TestGame}), so a thread that reads the reference once is guaranteed
+ * to see values that all belong together, instead of a new position mixed
+ * with an old rotation (as could happen when every value was its own
+ * {@code volatile} field). Since all of the fields are {@code final}, a
+ * snapshot is safely visible to every thread that obtains a reference to it.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class CameraSnapshot {
+	
+	/** The default field of view, in degrees */
+	public static final float DEFAULT_FOVY = 70.0f;
+	/** The default distance to the near clipping plane */
+	public static final float DEFAULT_ZNEAR = 0.01f;
+	/** The default distance to the far clipping plane */
+	public static final float DEFAULT_ZFAR = 1000.0f;
+	
+	private static final float[] IDENTITY = new float[16];
+	
+	static {
+		FloatMatrixStack.setIdentity(IDENTITY, 0);
+	}
+	
+	/** The camera at the origin, with the default projection settings */
+	public static final CameraSnapshot DEFAULT = new CameraSnapshot(0L, 0, 0, 0, 0, 0, 0, 0, DEFAULT_FOVY, DEFAULT_ZNEAR, DEFAULT_ZFAR, IDENTITY, false);
+	
+	/** The number of snapshots that were published before this one */
+	public final long sequence;
+	/** The camera's position */
+	public final float x, y, z;
+	/** The camera's distance from the point it orbits */
+	public final float zDist;
+	/** The camera's orientation, in degrees */
+	public final float yaw, pitch, roll;
+	/** The camera's vertical field of view, in degrees */
+	public final float fovy;
+	/** The distance to the near clipping plane */
+	public final float zNear;
+	/** The distance to the far clipping plane */
+	public final float zFar;
+	/** Whether or not the camera is upside-down */
+	public final boolean upsideDown;
+	private final float[] modelView;
+	
+	CameraSnapshot(long sequence, float x, float y, float z, float zDist, float yaw, float pitch, float roll, float fovy, float zNear, float zFar, float[] modelView, boolean upsideDown) {
+		this.sequence = sequence;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.zDist = zDist;
+		this.yaw = yaw;
+		this.pitch = pitch;
+		this.roll = roll;
+		this.fovy = fovy;
+		this.zNear = zNear;
+		this.zFar = zFar;
+		this.modelView = modelView;
+		this.upsideDown = upsideDown;
+	}
+	
+	/** Returns a copy of this snapshot with the given position and
+	 * orientation.
+	 * 
+	 * @param view The camera's new position and orientation
+	 * @param modelView The model-view matrix built from the given view (it is
+	 *            copied)
+	 * @return The new snapshot */
+	public CameraSnapshot withView(CameraSimulation.State view, float[] modelView) {
+		float[] copy = new float[16];
+		System.arraycopy(modelView, 0, copy, 0, 16);
+		return new CameraSnapshot(this.sequence + 1L, view.x, view.y, view.z, view.zDist, view.yaw, view.pitch, view.roll, this.fovy, this.zNear, this.zFar, copy, CameraOrientation.isUpsideDown(copy));
+	}
+	
+	/** Returns a copy of this snapshot with the given projection settings.
+	 * 
+	 * @param fovy The new vertical field of view, in degrees
+	 * @param zNear The new distance to the near clipping plane
+	 * @param zFar The new distance to the far clipping plane
+	 * @return The new snapshot */
+	public CameraSnapshot withProjection(float fovy, float zNear, float zFar) {
+		return new CameraSnapshot(this.sequence + 1L, this.x, this.y, this.z, this.zDist, this.yaw, this.pitch, this.roll, fovy, zNear, zFar, this.modelView, this.upsideDown);
+	}
+	
+	/** @param index The index of the element to get, from {@code 0} to
+	 *            {@code 15}
+	 * @return The specified element of the camera's column-major model-view
+	 *         matrix */
+	public float getModelView(int index) {
+		return this.modelView[index];
+	}
+	
+	/** Copies the camera's model-view matrix into the given array.
+	 * 
+	 * @param dst The array to copy the column-major matrix into
+	 * @return The given array */
+	public float[] getModelView(float[] dst) {
+		System.arraycopy(this.modelView, 0, dst, 0, 16);
+		return dst;
+	}
+	
+	/** @return Whether or not the camera has rolled more than 90 degrees
+	 *         either way */
+	public boolean isRolledOver() {
+		return CameraOrientation.isRolledOver(this.roll);
+	}
+	
+	/** @param dst The array to store the vector in
+	 * @return The given array, containing the camera's right vector
+	 * @see CameraOrientation#getRight(float[], float[]) */
+	public float[] getRight(float[] dst) {
+		return CameraOrientation.getRight(this.modelView, dst);
+	}
+	
+	/** @param dst The array to store the vector in
+	 * @return The given array, containing the camera's up vector
+	 * @see CameraOrientation#getUp(float[], float[]) */
+	public float[] getUp(float[] dst) {
+		return CameraOrientation.getUp(this.modelView, dst);
+	}
+	
+	/** @param dst The array to store the vector in
+	 * @return The given array, containing the direction the camera is
+	 *         looking in
+	 * @see CameraOrientation#getForward(float[], float[]) */
+	public float[] getForward(float[] dst) {
+		return CameraOrientation.getForward(this.modelView, dst);
+	}
+	
+	/** @param snapshot The snapshot to compare against (may be
+	 *            {@code null})
+	 * @return Whether or not the given snapshot's camera is in the same place
+	 *         and orientation as this one's */
+	public boolean isSameView(CameraSnapshot snapshot) {
+		return snapshot != null && this.x == snapshot.x && this.y == snapshot.y && this.z == snapshot.z && this.zDist == snapshot.zDist && this.yaw == snapshot.yaw && this.pitch == snapshot.pitch && this.roll == snapshot.roll;
+	}
+	
+}
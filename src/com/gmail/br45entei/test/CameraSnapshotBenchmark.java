@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Stress test and benchmark of {@link CameraSnapshot}.<br>
+ * Two writer threads publish snapshots the way {@link TestGame} does (one
+ * replacing the view every frame, the other replacing the projection settings)
+ * while reader threads check that every snapshot they read is internally
+ * consistent. The same is then done with the camera kept in separate
+ * {@code volatile} fields (the way {@link TestGame} used to), which shows how
+ * often those reads are torn. Finally the cost of reading the camera once per
+ * frame is measured for both approaches.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CameraSnapshotBenchmark {
+	
+	/** The camera kept in separate volatile fields. */
+	static final class VolatileCamera {
+		volatile float x, y, z, zDist;
+		volatile float yaw, pitch, roll;
+		volatile float fovy = CameraSnapshot.DEFAULT_FOVY, zNear = CameraSnapshot.DEFAULT_ZNEAR, zFar = CameraSnapshot.DEFAULT_ZFAR;
+		volatile float[] modelView = new float[16];
+		
+		void setView(float value) {
+			this.x = this.y = this.z = this.zDist = value;
+			this.yaw = this.pitch = this.roll = value;
+			final float[] modelView = this.modelView;
+			for(int i = 0; i < 16; i++) {
+				modelView[i] = value;
+			}
+		}
+		
+		void setProjection(float value) {
+			this.fovy = value;
+			this.zNear = value;
+			this.zFar = value;
+		}
+		
+	}
+	
+	/** Returns whether or not a snapshot whose values were all written from
+	 * the same counters is consistent.
+	 * 
+	 * @param snapshot The snapshot to check
+	 * @return Whether or not the snapshot's view and projection values are
+	 *         each all the same */
+	static final boolean isConsistent(CameraSnapshot snapshot) {
+		final float v = snapshot.x;
+		boolean consistent = snapshot.y == v && snapshot.z == v && snapshot.zDist == v && snapshot.yaw == v && snapshot.pitch == v && snapshot.roll == v;
+		for(int i = 0; i < 16; i++) {
+			consistent &= snapshot.getModelView(i) == v;
+		}
+		return consistent && snapshot.zNear == snapshot.fovy && snapshot.zFar == snapshot.fovy;
+	}
+	
+	static final boolean isConsistent(VolatileCamera camera) {
+		final float v = camera.x;
+		boolean consistent = camera.y == v && camera.z == v && camera.zDist == v && camera.yaw == v && camera.pitch == v && camera.roll == v;
+		final float[] modelView = camera.modelView;
+		for(int i = 0; i < 16; i++) {
+			consistent &= modelView[i] == v;
+		}
+		final float fovy = camera.fovy;
+		return consistent && camera.zNear == fovy && camera.zFar == fovy;
+	}
+	
+	static final CameraSnapshot publishView(AtomicReference<CameraSnapshot> reference, CameraSimulation.State view, float[] modelView) {
+		CameraSnapshot current, next;
+		do {
+			current = reference.get();
+			next = current.withView(view, modelView);
+		} while(!reference.compareAndSet(current, next));
+		return next;
+	}
+	
+	static final CameraSnapshot publishProjection(AtomicReference<CameraSnapshot> reference, float value) {
+		CameraSnapshot current, next;
+		do {
+			current = reference.get();
+			next = current.withProjection(value, value, value);
+		} while(!reference.compareAndSet(current, next));
+		return next;
+	}
+	
+	/** Runs the given writers and readers at the same time for the given
+	 * duration.
+	 * 
+	 * @param millis How long to run for, in milliseconds
+	 * @param tasks The tasks to run; each is called repeatedly with an
+	 *            increasing counter
+	 * @throws InterruptedException If interrupted while waiting for the tasks
+	 *             to finish */
+	static final void race(long millis, LongTask... tasks) throws InterruptedException {
+		final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		Thread[] threads = new Thread[tasks.length];
+		for(int i = 0; i < tasks.length; i++) {
+			final LongTask task = tasks[i];
+			threads[i] = new Thread(() -> {
+				for(long n = 1L; System.nanoTime() < end; n++) {
+					task.run(n);
+				}
+			}, "Stress-".concat(Integer.toString(i)));
+			threads[i].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+	}
+	
+	@FunctionalInterface
+	static interface LongTask {
+		void run(long n);
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) throws InterruptedException {
+		final long millis = 2000L;
+		
+		// Snapshots:
+		final CameraSimulation.State view = new CameraSimulation.State();
+		final float[] modelView = new float[16];
+		// Start from a snapshot whose values are all zero (the default one has an identity model-view matrix):
+		final AtomicReference<CameraSnapshot> reference = new AtomicReference<>(CameraSnapshot.DEFAULT.withProjection(0, 0, 0).withView(view, modelView));
+		final AtomicLong snapshotReads = new AtomicLong(), snapshotTorn = new AtomicLong(), backwards = new AtomicLong();
+		final LongTask snapshotReader = new LongTask() {
+			private final ThreadLocal<long[]> lastSequence = ThreadLocal.withInitial(() -> new long[1]);
+			
+			@Override
+			public void run(long n) {
+				CameraSnapshot snapshot = reference.get();
+				snapshotReads.incrementAndGet();
+				if(!isConsistent(snapshot)) {
+					snapshotTorn.incrementAndGet();
+				}
+				long[] last = this.lastSequence.get();
+				if(snapshot.sequence < last[0]) {
+					backwards.incrementAndGet();
+				}
+				last[0] = snapshot.sequence;
+			}
+		};
+		race(millis, (n) -> {
+			view.x = view.y = view.z = view.zDist = view.yaw = view.pitch = view.roll = n;
+			for(int i = 0; i < 16; i++) {
+				modelView[i] = n;
+			}
+			publishView(reference, view, modelView);
+		}, (n) -> publishProjection(reference, n), snapshotReader, snapshotReader);
+		System.out.println(String.format("CameraSnapshot:   %s reads (sequence %s); %s torn; %s went backwards", Long.toString(snapshotReads.get()), Long.toString(reference.get().sequence), Long.toString(snapshotTorn.get()), Long.toString(backwards.get())));
+		MicroBenchmark.check(snapshotTorn.get() == 0L, "Torn camera snapshot read!");
+		MicroBenchmark.check(backwards.get() == 0L, "A reader saw an older snapshot after a newer one!");
+		
+		// Separate volatile fields:
+		final VolatileCamera legacy = new VolatileCamera();
+		final AtomicLong legacyReads = new AtomicLong(), legacyTorn = new AtomicLong();
+		final LongTask legacyReader = (n) -> {
+			legacyReads.incrementAndGet();
+			if(!isConsistent(legacy)) {
+				legacyTorn.incrementAndGet();
+			}
+		};
+		race(millis, (n) -> legacy.setView(n), (n) -> legacy.setProjection(n), legacyReader, legacyReader);
+		System.out.println(String.format("Volatile fields:  %s reads; %s torn", Long.toString(legacyReads.get()), Long.toString(legacyTorn.get())));
+		System.out.println();
+		
+		// Read cost per frame:
+		MicroBenchmark.run("Camera read: one CameraSnapshot", 1000000, 20000000, (i) -> {
+			CameraSnapshot camera = reference.get();
+			float sum = camera.x + camera.y + camera.z + camera.zDist + camera.yaw + camera.pitch + camera.roll + camera.fovy + camera.zNear + camera.zFar;
+			for(int j = 0; j < 16; j++) {
+				sum += camera.getModelView(j);
+			}
+			MicroBenchmark.consume(Float.floatToRawIntBits(sum));
+			return null;
+		});
+		MicroBenchmark.run("Camera read: separate volatile fields", 1000000, 20000000, (i) -> {
+			float sum = legacy.x + legacy.y + legacy.z + legacy.zDist + legacy.yaw + legacy.pitch + legacy.roll + legacy.fovy + legacy.zNear + legacy.zFar;
+			final float[] m = legacy.modelView;
+			for(int j = 0; j < 16; j++) {
+				sum += m[j];
+			}
+			MicroBenchmark.consume(Float.floatToRawIntBits(sum));
+			return null;
+		});
+		MicroBenchmark.run("Camera publish: CameraSnapshot.withView + CAS", 100000, 2000000, (i) -> publishView(reference, view, modelView));
+	}
+	
+}
@@ -48,6 +48,9 @@ public class CameraTest implements Game, MenuProvider {
 	
 	protected final MatrixStack stack = new MatrixStack();
 	protected final MatrixStack projStack = new MatrixStack(2);
+	/** This game's GL calls go through this cache, which skips the calls that
+	 * wouldn't change anything */
+	protected final GLStateCache gl = new GLStateCache(GLBackend.LWJGL);
 	
 	/** Default constructor. */
 	public CameraTest() {
@@ -88,7 +91,7 @@ public class CameraTest implements Game, MenuProvider {
 		}
 		
 		window.setActiveRenderer(game);
-		window.registerInputCallback(new InputLogger(System.out).setPrintKeyboardButtons(false).setPrintKeyboardButtonHelds(false).setPrintMouseButtons(false).setPrintMouseButtonHelds(false).setPrintControllerAxisChanges(false));
+		window.registerInputCallback(new AsyncInputLogger(System.out).setPrintKeyboardButtons(false).setPrintKeyboardButtonHelds(false).setPrintMouseButtons(false).setPrintMouseButtonHelds(false).setPrintControllerAxisChanges(false));
 		window.open();
 	}
 	
@@ -109,26 +112,27 @@ public class CameraTest implements Game, MenuProvider {
 	
 	@Override
 	public void onSelected() {
-		
+		// Other games share the GL context, and may have changed anything since we were last selected:
+		this.gl.invalidate();
 	}
 	
 	@Override
 	public void onViewportChanged(Rectangle oldViewport, Rectangle newViewport) {
 		int width = Window.getWindow().getWidth();
 		int height = Window.getWindow().getHeight();
-		GL11.glViewport(0, 0, width, height);
+		this.gl.glViewport(0, 0, width, height);
 		
-		GL11.glMatrixMode(GL11.GL_PROJECTION);
-		GL11.glLoadMatrixd(this.projStack.setPerspectiveProjection(45.0, width, height, 0.01, 1000.0).peek());
-		GL11.glMatrixMode(GL11.GL_MODELVIEW);
-		GL11.glLoadMatrixd(this.stack.peek());
+		this.gl.glMatrixMode(GL11.GL_PROJECTION);
+		this.gl.glLoadMatrixd(this.projStack.setPerspectiveProjection(45.0, width, height, 0.01, 1000.0).peek());
+		this.gl.glMatrixMode(GL11.GL_MODELVIEW);
+		this.gl.glLoadMatrixd(this.stack.peek());
 		
 	}
 	
 	@Override
 	public void render(double deltaTime, int width, int height) {
-		GL11.glClearColor(0.5f, 0.0f, 0.0f, 1.0f);
-		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+		this.gl.glClearColor(0.5f, 0.0f, 0.0f, 1.0f);
+		this.gl.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 		
 	}
 	
@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL11;
+
+/** Turns a {@link VoxelChunk#snapshot(VoxelChunk[], byte[]) snapshot} of a
+ * chunk's blocks into a mesh of the block faces that are actually
+ * visible.<br>
+ * <br>
+ * Only faces between a block and air are emitted, and with
+ * {@link #greedy(byte[], int[], int, int, int, Mesh) greedy} meshing,
+ * neighbouring faces of the same block type in the same plane are merged into
+ * as few rectangles as possible (each slice of the chunk is swept row by row,
+ * and every face that hasn't been merged yet is grown first along the row
+ * and then across the following rows for as long as the faces match). A
+ * chunk of flat terrain becomes a handful of quads, where drawing every block
+ * as a cube (see {@link TestGame#createCubeVertices(float, float, float)})
+ * would take 36 vertices per block.<br>
+ * <br>
+ * Each quad is four {@link #VERTEX_SIZE 12 byte} vertices: the block
+ * coordinates of the corner as three {@link GL11#GL_SHORT shorts} (plus one
+ * short of padding), followed by the face's color as four unsigned bytes,
+ * with a fixed amount of shading per face direction baked in. The quads are
+ * meant to be drawn with a shared index buffer of
+ * {@link #writeQuadIndices(short[], int) quad indices}.<br>
+ * <br>
+ * A ChunkMesher keeps scratch space between calls, so each thread that
+ * meshes chunks should have its own.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class ChunkMesher {
+	
+	/** The directions that block faces point in, in the order that face
+	 * indices refer to them: -X, +X, -Y, +Y, -Z, +Z (i.e.
+	 * {@code face = (axis * 2) + (positive ? 1 : 0)}) */
+	public static final int[][] FACES = {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+	/** How brightly each {@link #FACES face direction} is lit */
+	public static final float[] FACE_SHADES = {0.8f, 0.8f, 0.5f, 1.0f, 0.65f, 0.65f};
+	/** The number of bytes each vertex takes up */
+	public static final int VERTEX_SIZE = 12;
+	/** The number of ints each vertex takes up in a {@link Mesh}'s data */
+	public static final int INTS_PER_VERTEX = VERTEX_SIZE / Integer.BYTES;
+	/** The number of vertices each quad is made of */
+	public static final int VERTICES_PER_QUAD = 4;
+	/** The number of indices each quad is drawn with */
+	public static final int INDICES_PER_QUAD = 6;
+	/** The most quads that can be drawn from one vertex buffer offset with
+	 * {@link GL11#GL_UNSIGNED_SHORT unsigned short} indices */
+	public static final int MAX_QUADS_PER_DRAW = 65536 / VERTICES_PER_QUAD;
+	
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+	private static final int SIZE = VoxelChunk.SIZE;
+	/** The distance between neighbouring blocks along each axis in a
+	 * snapshot */
+	private static final int[] STRIDES = {1, VoxelChunk.PADDED_SIZE * VoxelChunk.PADDED_SIZE, VoxelChunk.PADDED_SIZE};
+	/** For faces perpendicular to each axis: the axis that the mask' rows
+	 * run along, the axis that its columns run along, and whether those two
+	 * are in the opposite order of X, Y, Z (so that their cross product
+	 * points along -axis instead of +axis) */
+	private static final int[] ROW_AXES = {2, 0, 0}, COLUMN_AXES = {1, 2, 1};
+	private static final boolean[] FLIPPED = {true, true, false};
+	/** The number of faces in a plane of a chunk */
+	private static final int PLANE_AREA = SIZE * SIZE;
+	/** Set in a mask entry for the faces that point along +axis */
+	private static final int POSITIVE = 0x100;
+	
+	/** The quads that a chunk was meshed into.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static final class Mesh {
+		
+		int[] data = new int[1024 * VERTICES_PER_QUAD * INTS_PER_VERTEX];
+		int quads = 0;
+		/** The chunk that was meshed, and the version of its blocks that the
+		 * mesh was built from (set by whoever requested the mesh) */
+		VoxelChunk chunk;
+		int version;
+		long meshNanos;
+		
+		/** Removes all quads from this mesh.
+		 * 
+		 * @return This Mesh */
+		public Mesh clear() {
+			this.quads = 0;
+			return this;
+		}
+		
+		void addQuad(int x0, int y0, int z0, int x1, int y1, int z1, int x2, int y2, int z2, int x3, int y3, int z3, int rgba) {
+			int i = this.quads * VERTICES_PER_QUAD * INTS_PER_VERTEX;
+			if(i + (VERTICES_PER_QUAD * INTS_PER_VERTEX) > this.data.length) {
+				this.data = Arrays.copyOf(this.data, this.data.length * 2);
+			}
+			final int[] d = this.data;
+			i = put(d, i, x0, y0, z0, rgba);
+			i = put(d, i, x1, y1, z1, rgba);
+			i = put(d, i, x2, y2, z2, rgba);
+			put(d, i, x3, y3, z3, rgba);
+			this.quads++;
+		}
+		
+		private static final int put(int[] d, int i, int x, int y, int z, int rgba) {
+			// Three shorts and a padding short, in the order they're laid out in memory:
+			d[i] = LITTLE_ENDIAN ? (x & 0xFFFF) | (y << 16) : (x << 16) | (y & 0xFFFF);
+			d[i + 1] = LITTLE_ENDIAN ? z & 0xFFFF : z << 16;
+			d[i + 2] = rgba;
+			return i + INTS_PER_VERTEX;
+		}
+		
+		/** @return The number of quads in this mesh */
+		public int getQuadCount() {
+			return this.quads;
+		}
+		
+		/** @return The number of vertices in this mesh */
+		public int getVertexCount() {
+			return this.quads * VERTICES_PER_QUAD;
+		}
+		
+		/** @return The size of this mesh' vertex data, in bytes */
+		public int getByteSize() {
+			return this.quads * VERTICES_PER_QUAD * VERTEX_SIZE;
+		}
+		
+		/** @return This mesh' vertex data, {@link ChunkMesher#INTS_PER_VERTEX}
+		 *         ints per vertex in native byte order (only the first
+		 *         {@link #getVertexCount()} vertices are valid) */
+		public int[] getData() {
+			return this.data;
+		}
+		
+		/** @param vertex The index of the vertex
+		 * @param axis The axis (0 for X, 1 for Y, 2 for Z)
+		 * @return The vertex' coordinate along the given axis */
+		public int getCoordinate(int vertex, int axis) {
+			final int i = vertex * INTS_PER_VERTEX;
+			final int packed = axis == 2 ? this.data[i + 1] : this.data[i];
+			final int shift = LITTLE_ENDIAN ? (axis == 1 ? 16 : 0) : (axis == 1 ? 0 : 16);
+			return (short) (packed >>> shift);
+		}
+		
+		/** @param vertex The index of the vertex
+		 * @return The vertex' color, in the same packing as
+		 *         {@link ChunkMesher#toRGBA(int, float)} */
+		public int getColor(int vertex) {
+			return this.data[(vertex * INTS_PER_VERTEX) + 2];
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s quads (%s vertices, %s bytes)", Integer.toString(this.quads), Integer.toString(this.getVertexCount()), Integer.toString(this.getByteSize()));
+		}
+		
+	}
+	
+	/** The visible faces in each of the planes perpendicular to the axis
+	 * being meshed ({@link #PLANE_AREA} entries per plane, laid out in rows
+	 * along {@link #ROW_AXES the row axis}); always all zeroes between
+	 * planes */
+	private final int[] masks = new int[(SIZE + 1) * PLANE_AREA];
+	private final boolean[] planes = new boolean[SIZE + 1];
+	private final int[] colors = new int[FACES.length * 256];
+	
+	/** Packs a block color and a shade into the four color bytes of a vertex,
+	 * as an int in native byte order.
+	 * 
+	 * @param rgb The block's color ({@code 0xRRGGBB})
+	 * @param shade The brightness to apply (0-1)
+	 * @return The packed color */
+	public static final int toRGBA(int rgb, float shade) {
+		final int r = (int) ((((rgb >> 16) & 0xFF) * shade) + 0.5f), g = (int) ((((rgb >> 8) & 0xFF) * shade) + 0.5f), b = (int) (((rgb & 0xFF) * shade) + 0.5f);
+		return LITTLE_ENDIAN ? (0xFF << 24) | (b << 16) | (g << 8) | r : (r << 24) | (g << 16) | (b << 8) | 0xFF;
+	}
+	
+	/** Meshes a chunk, merging neighbouring faces of the same block type into
+	 * larger quads.
+	 * 
+	 * @param blocks The chunk's {@link VoxelChunk#snapshot(VoxelChunk[], byte[])
+	 *            snapshot}
+	 * @param palette The color of each block type ({@code 0xRRGGBB}, indexed
+	 *            by block id)
+	 * @param originX The X coordinate of the chunk's first block, which is
+	 *            added to the vertices' coordinates
+	 * @param originY The Y coordinate of the chunk's first block
+	 * @param originZ The Z coordinate of the chunk's first block
+	 * @param mesh The mesh to store the quads in (its previous contents are
+	 *            discarded)
+	 * @return The given mesh */
+	public Mesh greedy(byte[] blocks, int[] palette, int originX, int originY, int originZ, Mesh mesh) {
+		return this.mesh(blocks, palette, originX, originY, originZ, mesh, true);
+	}
+	
+	/** Meshes a chunk into one quad per visible block face, without merging
+	 * any of them.
+	 * 
+	 * @param blocks The chunk's {@link VoxelChunk#snapshot(VoxelChunk[], byte[])
+	 *            snapshot}
+	 * @param palette The color of each block type ({@code 0xRRGGBB}, indexed
+	 *            by block id)
+	 * @param originX The X coordinate of the chunk's first block, which is
+	 *            added to the vertices' coordinates
+	 * @param originY The Y coordinate of the chunk's first block
+	 * @param originZ The Z coordinate of the chunk's first block
+	 * @param mesh The mesh to store the quads in (its previous contents are
+	 *            discarded)
+	 * @return The given mesh */
+	public Mesh culled(byte[] blocks, int[] palette, int originX, int originY, int originZ, Mesh mesh) {
+		return this.mesh(blocks, palette, originX, originY, originZ, mesh, false);
+	}
+	
+	private Mesh mesh(byte[] blocks, int[] palette, int originX, int originY, int originZ, Mesh mesh, boolean merge) {
+		final long startTime = System.nanoTime();
+		mesh.clear();
+		final int[] colors = this.colors;
+		for(int face = 0; face < FACES.length; face++) {
+			final float shade = FACE_SHADES[face];
+			for(int id = 1; id < 256; id++) {
+				colors[(face << 8) | id] = toRGBA(palette[id], shade);
+			}
+		}
+		final int[] masks = this.masks;
+		final boolean[] planes = this.planes;
+		final int[] origin = {originX, originY, originZ};
+		for(int d = 0; d < 3; d++) {
+			// The two axes that span the planes perpendicular to d:
+			final int u = ROW_AXES[d], v = COLUMN_AXES[d];
+			final boolean flipped = FLIPPED[d];
+			if(!buildMasks(blocks, d, masks, planes)) {
+				continue;
+			}
+			for(int plane = 0; plane <= SIZE; plane++) {
+				if(!planes[plane]) {
+					continue;
+				}
+				// Cover the plane's faces with quads (clearing the mask as we go):
+				final int planeCoordinate = origin[d] + plane;
+				int n = plane * PLANE_AREA;
+				for(int j = 0; j < SIZE; j++) {
+					for(int k = 0; k < SIZE;) {
+						final int m = masks[n];
+						if(m == 0) {
+							k++;
+							n++;
+							continue;
+						}
+						int w = 1, h = 1;
+						if(merge) {
+							while(k + w < SIZE && masks[n + w] == m) {
+								w++;
+							}
+							grow: for(; j + h < SIZE; h++) {
+								final int row = n + (h * SIZE);
+								for(int q = 0; q < w; q++) {
+									if(masks[row + q] != m) {
+										break grow;
+									}
+								}
+							}
+							for(int r = 0; r < h; r++) {
+								Arrays.fill(masks, n + (r * SIZE), n + (r * SIZE) + w, 0);
+							}
+						} else {
+							masks[n] = 0;
+						}
+						final int side = m >>> 8;
+						addQuad(mesh, d, u, v, (side == 1) != flipped, planeCoordinate, origin[u] + k, origin[v] + j, w, h, colors[(((d << 1) | side) << 8) | (m & 0xFF)]);
+						k += w;
+						n += w;
+					}
+				}
+			}
+		}
+		mesh.meshNanos = System.nanoTime() - startTime;
+		return mesh;
+	}
+	
+	/** @return The mask entry for the face between two neighbouring blocks
+	 *         along an axis: the positive face of the block below, or the
+	 *         negative face of the block above, or 0 if neither is visible
+	 *         (or the visible one doesn't belong to the chunk) */
+	private static final int face(int below, int above, boolean belowInChunk, boolean aboveInChunk) {
+		if(below == above || (below != 0 && above != 0)) {
+			return 0;
+		}
+		return below != 0 ? (belowInChunk ? POSITIVE | (below & 0xFF) : 0) : (aboveInChunk ? above & 0xFF : 0);
+	}
+	
+	/** Finds the faces in every plane of a snapshot that is perpendicular to
+	 * the given axis.<br>
+	 * The snapshot is read row by row along the X axis, where the blocks are
+	 * contiguous, and rows that can't contain a visible face (rows of the
+	 * same block along X, or that are identical to the neighbouring row
+	 * along Y or Z) are skipped with a single (vectorized) comparison.
+	 * 
+	 * @param blocks The snapshot
+	 * @param d The axis (0 for X, 1 for Y, 2 for Z)
+	 * @param masks The masks to store the visible faces' block ids in, which
+	 *            must be all zeroes ({@link #POSITIVE} is set for faces that
+	 *            point along the axis)
+	 * @param planes Set to whether or not each plane has any visible faces
+	 * @return Whether or not there are any visible faces at all */
+	private static final boolean buildMasks(byte[] blocks, int d, int[] masks, boolean[] planes) {
+		Arrays.fill(planes, false);
+		boolean any = false;
+		if(d == 0) {
+			// Faces between neighbours within each row (planes are along X, rows along Z, columns along Y):
+			for(int y = 0; y < SIZE; y++) {
+				for(int z = 0; z < SIZE; z++) {
+					final int row = VoxelChunk.paddedIndex(0, y, z);
+					if(Arrays.equals(blocks, row - 1, row + SIZE, blocks, row, row + SIZE + 1)) {
+						continue;
+					}
+					for(int x = 0; x <= SIZE; x++) {
+						final int m = face(blocks[row + x - 1], blocks[row + x], x > 0, x < SIZE);
+						if(m != 0) {
+							masks[(x * PLANE_AREA) + (y * SIZE) + z] = m;
+							planes[x] = any = true;
+						}
+					}
+				}
+			}
+			return any;
+		}
+		// Faces between each row and the row below it along Y or Z (rows along X, columns along the other axis):
+		final int sd = STRIDES[d];
+		for(int plane = 0; plane <= SIZE; plane++) {
+			final boolean below = plane > 0, above = plane < SIZE;
+			for(int j = 0; j < SIZE; j++) {
+				final int row = d == 1 ? VoxelChunk.paddedIndex(0, plane, j) : VoxelChunk.paddedIndex(0, j, plane);
+				if(Arrays.equals(blocks, row, row + SIZE, blocks, row - sd, row - sd + SIZE)) {
+					continue;
+				}
+				final int n = (plane * PLANE_AREA) + (j * SIZE);
+				for(int x = 0; x < SIZE; x++) {
+					final int m = face(blocks[row - sd + x], blocks[row + x], below, above);
+					if(m != 0) {
+						masks[n + x] = m;
+						planes[plane] = any = true;
+					}
+				}
+			}
+		}
+		return any;
+	}
+	
+	/** Adds the quad that covers {@code w * h} faces in the given plane,
+	 * wound counter-clockwise when seen from the side that it faces (which
+	 * is the side that {@code u x v} points to, if {@code forward} is
+	 * set). */
+	private static void addQuad(Mesh mesh, int d, int u, int v, boolean forward, int plane, int pu, int pv, int w, int h, int rgba) {
+		final int x = d == 0 ? plane : (u == 0 ? pu : pv);
+		final int y = d == 1 ? plane : (u == 1 ? pu : pv);
+		final int z = d == 2 ? plane : (u == 2 ? pu : pv);
+		final int ux = u == 0 ? w : 0, uy = u == 1 ? w : 0, uz = u == 2 ? w : 0;
+		final int vx = v == 0 ? h : 0, vy = v == 1 ? h : 0, vz = v == 2 ? h : 0;
+		if(forward) {
+			mesh.addQuad(x, y, z, x + ux, y + uy, z + uz, x + ux + vx, y + uy + vy, z + uz + vz, x + vx, y + vy, z + vz, rgba);
+		} else {
+			mesh.addQuad(x, y, z, x + vx, y + vy, z + vz, x + ux + vx, y + uy + vy, z + uz + vz, x + ux, y + uy, z + uz, rgba);
+		}
+	}
+	
+	/** Writes the indices that draw consecutive quads (two counter-clockwise
+	 * triangles each: {@code 0, 1, 2, 2, 3, 0}) into the given array.
+	 * 
+	 * @param dst The array to write the indices into; must have room for
+	 *            {@code quads * }{@link #INDICES_PER_QUAD} indices
+	 * @param quads The number of quads, at most {@link #MAX_QUADS_PER_DRAW}
+	 * @return The given array */
+	public static final short[] writeQuadIndices(short[] dst, int quads) {
+		for(int q = 0, i = 0; q < quads; q++, i += INDICES_PER_QUAD) {
+			final int base = q * VERTICES_PER_QUAD;
+			dst[i] = (short) base;
+			dst[i + 1] = (short) (base + 1);
+			dst[i + 2] = (short) (base + 2);
+			dst[i + 3] = (short) (base + 2);
+			dst[i + 4] = (short) (base + 3);
+			dst[i + 5] = (short) base;
+		}
+		return dst;
+	}
+	
+}
@@ -0,0 +1,494 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** Draws any number of cubes with a single draw call.<br>
+ * <br>
+ * The test games run on an OpenGL 2.1 context, which does not support
+ * instanced rendering, so instead each cube's eight corners are transformed on
+ * the CPU and packed into one interleaved vertex buffer (three floats for the
+ * position followed by four unsigned bytes for the color), which is then drawn
+ * with one {@link GL11#glDrawElements(int, int, int, long) glDrawElements}
+ * call against a shared index buffer. The index buffer only changes when the
+ * batch's capacity grows, and the vertex buffer is only re-packed and
+ * re-uploaded when a cube has actually changed since the last draw.
+ * 
+ * <pre>
+ * batch.clear();
+ * batch.add(x, y, z, yaw, pitch, roll, r, g, b);
+ * // ...
+ * GL11.glLoadMatrixf(modelView);
+ * batch.draw(GLBackend.LWJGL);
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CubeBatch {
+	
+	/** The number of floats used to store each cube's transform (x, y, z,
+	 * yaw, pitch, roll) */
+	public static final int TRANSFORM_STRIDE = 6;
+	/** The number of floats used to store each cube's color (r, g, b) */
+	public static final int COLOR_STRIDE = 3;
+	/** The number of bytes each packed vertex takes up */
+	public static final int VERTEX_SIZE = (3 * Float.BYTES) + 4;
+	/** The number of unique vertices each cube is made of */
+	public static final int VERTICES_PER_CUBE = 8;
+	/** The number of indices each cube is drawn with */
+	public static final int INDICES_PER_CUBE = 36;
+	
+	private final float[] corners = new float[VERTICES_PER_CUBE * 3];
+	private final int[] cornerIndices = new int[INDICES_PER_CUBE];
+	private float boundingRadius = 0.0f;
+	
+	private float[] transforms;
+	private float[] colors;
+	private int count = 0;
+	private boolean dirty = true;
+	
+	private ByteBuffer vertexData;
+	private IntBuffer indexData;
+	private int indexCapacity = 0;
+	private int vbo = 0, ibo = 0;
+	private boolean indicesDirty = true;
+	
+	private IntBuffer visibleIndexData;
+	private int[] lastVisible = new int[0];
+	private int lastVisibleCount = -1;
+	private int visibleIbo = 0;
+	
+	private final float[] model = new float[12];
+	
+	/** Creates a new CubeBatch that draws cubes of the specified dimensions.
+	 * 
+	 * @param width The width of each cube (X axis)
+	 * @param height The height of each cube (Y axis)
+	 * @param length The length of each cube (Z axis)
+	 * @param initialCapacity The number of cubes this batch should have room
+	 *            for before having to grow */
+	public CubeBatch(float width, float height, float length, int initialCapacity) {
+		initialCapacity = Math.max(1, initialCapacity);
+		this.transforms = new float[initialCapacity * TRANSFORM_STRIDE];
+		this.colors = new float[initialCapacity * COLOR_STRIDE];
+		this.setCubeVertices(TestGame.createCubeVertices(width, height, length));
+	}
+	
+	/** Replaces the shape of the cubes in this batch with the given
+	 * (unindexed, {@link GL11#GL_TRIANGLES triangle list}) vertices, such as
+	 * those returned by {@link TestGame#createCubeVertices(float, float, float)}.
+	 * The vertices are de-duplicated into eight corners and an index list, so
+	 * the winding order of the original triangles is preserved.
+	 * 
+	 * @param vertices The cube's vertices
+	 * @return This CubeBatch */
+	public CubeBatch setCubeVertices(float[] vertices) {
+		if(vertices.length != INDICES_PER_CUBE * 3) {
+			throw new IllegalArgumentException(String.format("Expected %s cube vertex coordinates, got %s!", Integer.toString(INDICES_PER_CUBE * 3), Integer.toString(vertices.length)));
+		}
+		int unique = 0;
+		float radiusSquared = 0.0f;
+		for(int i = 0; i < INDICES_PER_CUBE; i++) {
+			float x = vertices[i * 3], y = vertices[(i * 3) + 1], z = vertices[(i * 3) + 2];
+			int index = -1;
+			for(int j = 0; j < unique; j++) {
+				if(this.corners[j * 3] == x && this.corners[(j * 3) + 1] == y && this.corners[(j * 3) + 2] == z) {
+					index = j;
+					break;
+				}
+			}
+			if(index == -1) {
+				if(unique == VERTICES_PER_CUBE) {
+					throw new IllegalArgumentException("The given vertices do not describe a cube (more than 8 unique corners)!");
+				}
+				index = unique++;
+				this.corners[index * 3] = x;
+				this.corners[(index * 3) + 1] = y;
+				this.corners[(index * 3) + 2] = z;
+				radiusSquared = Math.max(radiusSquared, (x * x) + (y * y) + (z * z));
+			}
+			this.cornerIndices[i] = index;
+		}
+		this.boundingRadius = (float) Math.sqrt(radiusSquared);
+		this.indicesDirty = true;
+		this.lastVisibleCount = -1;
+		this.dirty = true;
+		return this;
+	}
+	
+	/** @return The radius of the sphere around each cube's origin that
+	 *         contains the whole cube, regardless of its rotation */
+	public float getBoundingRadius() {
+		return this.boundingRadius;
+	}
+	
+	/** @return The number of cubes currently in this batch */
+	public int size() {
+		return this.count;
+	}
+	
+	/** Removes all cubes from this batch. The batch's buffers are kept so that
+	 * they can be reused.
+	 * 
+	 * @return This CubeBatch */
+	public CubeBatch clear() {
+		if(this.count != 0) {
+			this.count = 0;
+			this.dirty = true;
+		}
+		return this;
+	}
+	
+	private void ensureCapacity(int cubes) {
+		if(cubes * TRANSFORM_STRIDE > this.transforms.length) {
+			int capacity = Math.max(cubes, (this.transforms.length / TRANSFORM_STRIDE) * 2);
+			this.transforms = Arrays.copyOf(this.transforms, capacity * TRANSFORM_STRIDE);
+			this.colors = Arrays.copyOf(this.colors, capacity * COLOR_STRIDE);
+		}
+	}
+	
+	/** Adds a cube to this batch.
+	 * 
+	 * @param x The cube's X position
+	 * @param y The cube's Y position
+	 * @param z The cube's Z position
+	 * @param yaw The cube's yaw, in degrees
+	 * @param pitch The cube's pitch, in degrees
+	 * @param roll The cube's roll, in degrees
+	 * @param r The red component of the cube's color (0-1)
+	 * @param g The green component of the cube's color (0-1)
+	 * @param b The blue component of the cube's color (0-1)
+	 * @return The index of the newly added cube */
+	public int add(float x, float y, float z, float yaw, float pitch, float roll, float r, float g, float b) {
+		this.ensureCapacity(this.count + 1);
+		int index = this.count++;
+		this.set(index, x, y, z, yaw, pitch, roll, r, g, b);
+		this.dirty = true;
+		return index;
+	}
+	
+	/** Updates an existing cube in this batch. If the cube's transform and
+	 * color are unchanged, the batch is not marked as needing to be
+	 * re-uploaded.
+	 * 
+	 * @param index The index of the cube to update
+	 * @param x The cube's X position
+	 * @param y The cube's Y position
+	 * @param z The cube's Z position
+	 * @param yaw The cube's yaw, in degrees
+	 * @param pitch The cube's pitch, in degrees
+	 * @param roll The cube's roll, in degrees
+	 * @param r The red component of the cube's color (0-1)
+	 * @param g The green component of the cube's color (0-1)
+	 * @param b The blue component of the cube's color (0-1)
+	 * @return This CubeBatch */
+	public CubeBatch set(int index, float x, float y, float z, float yaw, float pitch, float roll, float r, float g, float b) {
+		if(index < 0 || index >= this.count) {
+			throw new IndexOutOfBoundsException(String.format("Cube index %s is out of bounds for batch of size %s", Integer.toString(index), Integer.toString(this.count)));
+		}
+		final float[] t = this.transforms, c = this.colors;
+		final int ti = index * TRANSFORM_STRIDE, ci = index * COLOR_STRIDE;
+		if(t[ti] != x || t[ti + 1] != y || t[ti + 2] != z || t[ti + 3] != yaw || t[ti + 4] != pitch || t[ti + 5] != roll || c[ci] != r || c[ci + 1] != g || c[ci + 2] != b) {
+			t[ti] = x;
+			t[ti + 1] = y;
+			t[ti + 2] = z;
+			t[ti + 3] = yaw;
+			t[ti + 4] = pitch;
+			t[ti + 5] = roll;
+			c[ci] = r;
+			c[ci + 1] = g;
+			c[ci + 2] = b;
+			this.dirty = true;
+		}
+		return this;
+	}
+	
+	/** Adds {@code count} cubes to this batch from the given primitive arrays.
+	 * 
+	 * @param transforms The cubes' transforms, {@link #TRANSFORM_STRIDE} floats
+	 *            per cube (x, y, z, yaw, pitch, roll)
+	 * @param colors The cubes' colors, {@link #COLOR_STRIDE} floats per cube
+	 *            (r, g, b)
+	 * @param offset The index of the first cube to add from the arrays
+	 * @param count The number of cubes to add
+	 * @return This CubeBatch */
+	public CubeBatch addAll(float[] transforms, float[] colors, int offset, int count) {
+		this.ensureCapacity(this.count + count);
+		System.arraycopy(transforms, offset * TRANSFORM_STRIDE, this.transforms, this.count * TRANSFORM_STRIDE, count * TRANSFORM_STRIDE);
+		System.arraycopy(colors, offset * COLOR_STRIDE, this.colors, this.count * COLOR_STRIDE, count * COLOR_STRIDE);
+		this.count += count;
+		this.dirty = true;
+		return this;
+	}
+	
+	/** Tests every cube in this batch against the given frustum.
+	 * 
+	 * @param culler The frustum culler, already updated with the camera's
+	 *            current projection and model-view matrices
+	 * @param visible The array to write the indices of the (possibly) visible
+	 *            cubes into. Must have room for {@link #size()} indices.
+	 * @return The number of indices written into {@code visible}
+	 * @see #draw(GLBackend, int[], int) */
+	public int cull(FrustumCuller culler, int[] visible) {
+		return culler.cullSpheres(this.transforms, TRANSFORM_STRIDE, this.boundingRadius, 0, this.count, visible);
+	}
+	
+	//=============================================================================================
+	
+	/** Computes the upper 3x4 part of the column-major model matrix
+	 * {@code T(x, y, z) * Ry(yaw) * Rx(pitch) * Rz(roll)} into the given
+	 * array.
+	 * 
+	 * @param x The X translation
+	 * @param y The Y translation
+	 * @param z The Z translation
+	 * @param yaw The rotation around the Y axis, in degrees
+	 * @param pitch The rotation around the X axis, in degrees
+	 * @param roll The rotation around the Z axis, in degrees
+	 * @param dst The array to store the matrix' first three rows in
+	 *            (column-major: {@code dst[column * 3 + row]}) */
+	static final void computeModelMatrix(float x, float y, float z, float yaw, float pitch, float roll, float[] dst) {
+		final double yr = Math.toRadians(yaw), pr = Math.toRadians(pitch), rr = Math.toRadians(roll);
+		final float cy = (float) Math.cos(yr), sy = (float) Math.sin(yr);
+		final float cp = (float) Math.cos(pr), sp = (float) Math.sin(pr);
+		final float cr = (float) Math.cos(rr), sr = (float) Math.sin(rr);
+		// Ry * Rx * Rz, stored column by column:
+		dst[0] = (cy * cr) + (sy * sp * sr);
+		dst[1] = cp * sr;
+		dst[2] = (-sy * cr) + (cy * sp * sr);
+		dst[3] = (-cy * sr) + (sy * sp * cr);
+		dst[4] = cp * cr;
+		dst[5] = (sy * sr) + (cy * sp * cr);
+		dst[6] = sy * cp;
+		dst[7] = -sp;
+		dst[8] = cy * cp;
+		dst[9] = x;
+		dst[10] = y;
+		dst[11] = z;
+	}
+	
+	private static final int toByte(float value) {
+		return value <= 0.0f ? 0 : (value >= 1.0f ? 255 : (int) ((value * 255.0f) + 0.5f));
+	}
+	
+	/** Transforms every cube in this batch and packs the resulting vertices
+	 * into this batch's vertex buffer.<br>
+	 * This does not require a GL context.
+	 * 
+	 * @return The packed vertex data, ready to be uploaded */
+	public ByteBuffer pack() {
+		final int bytes = this.count * VERTICES_PER_CUBE * VERTEX_SIZE;
+		if(this.vertexData == null || this.vertexData.capacity() < bytes) {
+			this.vertexData = ByteBuffer.allocateDirect(Math.max(bytes, (this.transforms.length / TRANSFORM_STRIDE) * VERTICES_PER_CUBE * VERTEX_SIZE)).order(ByteOrder.nativeOrder());
+		}
+		final ByteBuffer buf = this.vertexData;
+		final float[] m = this.model, t = this.transforms, c = this.colors, corners = this.corners;
+		final boolean littleEndian = buf.order() == ByteOrder.LITTLE_ENDIAN;
+		int offset = 0;
+		for(int i = 0; i < this.count; i++) {
+			final int ti = i * TRANSFORM_STRIDE, ci = i * COLOR_STRIDE;
+			computeModelMatrix(t[ti], t[ti + 1], t[ti + 2], t[ti + 3], t[ti + 4], t[ti + 5], m);
+			final int r = toByte(c[ci]), g = toByte(c[ci + 1]), b = toByte(c[ci + 2]);
+			final int rgba = littleEndian ? (0xFF << 24) | (b << 16) | (g << 8) | r : (r << 24) | (g << 16) | (b << 8) | 0xFF;
+			for(int v = 0; v < VERTICES_PER_CUBE; v++) {
+				final float vx = corners[v * 3], vy = corners[(v * 3) + 1], vz = corners[(v * 3) + 2];
+				buf.putFloat(offset, (m[0] * vx) + (m[3] * vy) + (m[6] * vz) + m[9]);
+				buf.putFloat(offset + 4, (m[1] * vx) + (m[4] * vy) + (m[7] * vz) + m[10]);
+				buf.putFloat(offset + 8, (m[2] * vx) + (m[5] * vy) + (m[8] * vz) + m[11]);
+				buf.putInt(offset + 12, rgba);
+				offset += VERTEX_SIZE;
+			}
+		}
+		buf.limit(bytes).position(0);
+		return buf;
+	}
+	
+	/** Builds the shared index buffer, if the batch's capacity has grown or
+	 * the cube's shape has changed since it was last built.
+	 * 
+	 * @return Whether or not the index buffer was rebuilt */
+	private boolean packIndices() {
+		final int capacity = this.transforms.length / TRANSFORM_STRIDE;
+		if(!this.indicesDirty && this.indexCapacity >= capacity) {
+			return false;
+		}
+		if(this.indexData == null || this.indexData.capacity() < capacity * INDICES_PER_CUBE) {
+			this.indexData = ByteBuffer.allocateDirect(capacity * INDICES_PER_CUBE * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		final IntBuffer buf = this.indexData;
+		buf.clear();
+		for(int i = 0; i < capacity; i++) {
+			final int base = i * VERTICES_PER_CUBE;
+			for(int j = 0; j < INDICES_PER_CUBE; j++) {
+				buf.put(base + this.cornerIndices[j]);
+			}
+		}
+		buf.flip();
+		this.indexCapacity = capacity;
+		this.indicesDirty = false;
+		return true;
+	}
+	
+	/** Draws every cube in this batch with a single draw call, re-uploading
+	 * the batch's vertices first if any of the cubes changed since the last
+	 * draw.<br>
+	 * The cubes are drawn in world space, so the caller is expected to have
+	 * loaded the camera's model-view matrix beforehand.
+	 * 
+	 * @param gl The GL backend to draw with */
+	public void draw(GLBackend gl) {
+		if(this.count == 0) {
+			return;
+		}
+		this.upload(gl);
+		gl.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, this.ibo);
+		if(this.packIndices()) {
+			gl.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, this.indexData, GL15.GL_STATIC_DRAW);
+		}
+		this.drawElements(gl, this.count);
+	}
+	
+	/** Draws only the specified cubes in this batch with a single draw call,
+	 * such as those that passed {@link #cull(FrustumCuller, int[])}.<br>
+	 * Only the indices of the visible cubes are re-uploaded when the set of
+	 * visible cubes changes; the vertex data is shared with
+	 * {@link #draw(GLBackend)}.
+	 * 
+	 * @param gl The GL backend to draw with
+	 * @param visible The indices of the cubes to draw, each at most once (in
+	 *            any order)
+	 * @param visibleCount The number of indices in {@code visible} */
+	public void draw(GLBackend gl, int[] visible, int visibleCount) {
+		if(visibleCount == this.count) {
+			// Indices are unique, so this is every cube (in whatever order they were given):
+			this.draw(gl);
+			return;
+		}
+		if(visibleCount == 0) {
+			return;
+		}
+		this.upload(gl);
+		if(this.visibleIbo == 0) {
+			this.visibleIbo = gl.glGenBuffers();
+		}
+		gl.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, this.visibleIbo);
+		if(this.packVisibleIndices(visible, visibleCount)) {
+			gl.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, this.visibleIndexData, GL15.GL_STREAM_DRAW);
+		}
+		this.drawElements(gl, visibleCount);
+	}
+	
+	/** Builds the index buffer for the given cubes, unless they are the same
+	 * cubes as last time.
+	 * 
+	 * @return Whether or not the index buffer was rebuilt */
+	private boolean packVisibleIndices(int[] visible, int visibleCount) {
+		if(visibleCount == this.lastVisibleCount && Arrays.equals(visible, 0, visibleCount, this.lastVisible, 0, visibleCount)) {
+			return false;
+		}
+		if(this.lastVisible.length < visibleCount) {
+			this.lastVisible = new int[Math.max(visibleCount, this.lastVisible.length * 2)];
+		}
+		System.arraycopy(visible, 0, this.lastVisible, 0, visibleCount);
+		this.lastVisibleCount = visibleCount;
+		if(this.visibleIndexData == null || this.visibleIndexData.capacity() < visibleCount * INDICES_PER_CUBE) {
+			this.visibleIndexData = ByteBuffer.allocateDirect(Math.max(visibleCount, this.transforms.length / TRANSFORM_STRIDE) * INDICES_PER_CUBE * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		final IntBuffer buf = this.visibleIndexData;
+		buf.clear();
+		for(int i = 0; i < visibleCount; i++) {
+			final int base = visible[i] * VERTICES_PER_CUBE;
+			for(int j = 0; j < INDICES_PER_CUBE; j++) {
+				buf.put(base + this.cornerIndices[j]);
+			}
+		}
+		buf.flip();
+		return true;
+	}
+	
+	/** Generates this batch's buffer objects if necessary, binds the vertex
+	 * buffer and re-uploads it if any cube has changed.<br>
+	 * The draw methods do this themselves; calling it beforehand only
+	 * separates the upload from the draw (e.g. to time them separately).
+	 * 
+	 * @param gl The GL backend to upload with */
+	public void upload(GLBackend gl) {
+		if(this.vbo == 0) {
+			this.vbo = gl.glGenBuffers();
+			this.ibo = gl.glGenBuffers();
+		}
+		gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo);
+		if(this.dirty) {
+			gl.glBufferData(GL15.GL_ARRAY_BUFFER, this.pack(), GL15.GL_STREAM_DRAW);
+			this.dirty = false;
+		}
+	}
+	
+	/** Draws {@code cubes} cubes from the currently bound vertex and index
+	 * buffers, then unbinds them. */
+	private void drawElements(GLBackend gl, int cubes) {
+		gl.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glVertexPointer(3, GL11.GL_FLOAT, VERTEX_SIZE, 0L);
+		gl.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, VERTEX_SIZE, 3L * Float.BYTES);
+		
+		gl.glFrontFace(GL11.GL_CW);
+		gl.glEnable(GL11.GL_CULL_FACE);
+		gl.glCullFace(GL11.GL_BACK);
+		gl.glDrawElements(GL11.GL_TRIANGLES, cubes * INDICES_PER_CUBE, GL11.GL_UNSIGNED_INT, 0L);
+		
+		gl.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+	}
+	
+	/** Deletes this batch's buffer objects. The batch can still be used
+	 * afterwards; the buffers will simply be re-created the next time it is
+	 * drawn.
+	 * 
+	 * @param gl The GL backend to delete the buffers with */
+	public void destroy(GLBackend gl) {
+		if(this.vbo != 0) {
+			gl.glDeleteBuffers(this.vbo);
+			gl.glDeleteBuffers(this.ibo);
+			this.vbo = this.ibo = 0;
+		}
+		if(this.visibleIbo != 0) {
+			gl.glDeleteBuffers(this.visibleIbo);
+			this.visibleIbo = 0;
+		}
+		this.lastVisibleCount = -1;
+		this.indexCapacity = 0;
+		this.indicesDirty = true;
+		this.dirty = true;
+	}
+	
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** Headless verification and benchmark of {@link CubeBatch}.<br>
+ * The batch is drawn against a {@link RecordingGLBackend} so that the number
+ * of draw calls and state changes can be compared with drawing each cube
+ * separately (the way {@link TestGame#glDrawCube(float, float, float, float, float, float)}
+ * does), and the packed vertex data is checked against a straightforward
+ * per-vertex transform of {@link TestGame#createCubeVertices(float, float, float)}
+ * by the model matrix that drawing each cube separately loads (built with a
+ * {@link FloatMatrixStack}, independently of {@link CubeBatch}'s own math).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class CubeBatchBenchmark {
+	
+	/** Issues the same sequence of GL calls that drawing each cube separately
+	 * does.
+	 * 
+	 * @param gl The backend to draw with
+	 * @param cubes The number of cubes to draw
+	 * @param matrix The model-view matrix to load for each cube */
+	static final void drawSeparately(GLBackend gl, int cubes, float[] matrix) {
+		for(int i = 0; i < cubes; i++) {
+			gl.glLoadMatrixf(matrix);
+			gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, 1);
+			gl.glVertexPointer(3, GL11.GL_FLOAT, 0, 0L);
+			gl.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+			gl.glFrontFace(GL11.GL_CW);
+			gl.glEnable(GL11.GL_CULL_FACE);
+			gl.glCullFace(GL11.GL_BACK);
+			gl.glDrawArrays(GL11.GL_TRIANGLES, 0, 36);
+		}
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final Random random = new Random(0x3D6A3E5L);
+		final float[] cubeVertices = TestGame.createCubeVertices(1.0f, 1.0f, 1.0f);
+		
+		// Verify the packed vertex data against a per-vertex transform of the unindexed cube, by the matrix that TestGame.glDrawCube(...) would load:
+		final int count = 16;
+		final float[] transforms = new float[count * CubeBatch.TRANSFORM_STRIDE];
+		final float[] colors = new float[count * CubeBatch.COLOR_STRIDE];
+		for(int i = 0; i < transforms.length; i++) {
+			transforms[i] = random.nextFloat() * ((i % CubeBatch.TRANSFORM_STRIDE) < 3 ? 100.0f : 360.0f);
+		}
+		for(int i = 0; i < colors.length; i++) {
+			colors[i] = random.nextFloat();
+		}
+		CubeBatch batch = new CubeBatch(1.0f, 1.0f, 1.0f, count).addAll(transforms, colors, 0, count);
+		final ByteBuffer packed = batch.pack();
+		final FloatMatrixStack stack = new FloatMatrixStack();
+		final float[] m = new float[16];
+		for(int i = 0; i < count; i++) {
+			final int t = i * CubeBatch.TRANSFORM_STRIDE;
+			stack.loadIdentity().translate(transforms[t], transforms[t + 1], transforms[t + 2]).rotate(transforms[t + 3], transforms[t + 4], transforms[t + 5]).peek(m);
+			for(int v = 0; v < CubeBatch.INDICES_PER_CUBE; v++) {
+				float vx = cubeVertices[v * 3], vy = cubeVertices[(v * 3) + 1], vz = cubeVertices[(v * 3) + 2];
+				float ex = (m[0] * vx) + (m[4] * vy) + (m[8] * vz) + m[12];
+				float ey = (m[1] * vx) + (m[5] * vy) + (m[9] * vz) + m[13];
+				float ez = (m[2] * vx) + (m[6] * vy) + (m[10] * vz) + m[14];
+				boolean found = false;
+				for(int c = 0; c < CubeBatch.VERTICES_PER_CUBE && !found; c++) {
+					int offset = ((i * CubeBatch.VERTICES_PER_CUBE) + c) * CubeBatch.VERTEX_SIZE;
+					found = Math.abs(packed.getFloat(offset) - ex) < 1.0E-4f && Math.abs(packed.getFloat(offset + 4) - ey) < 1.0E-4f && Math.abs(packed.getFloat(offset + 8) - ez) < 1.0E-4f;
+				}
+				MicroBenchmark.check(found, String.format("Cube %s vertex %s was not packed correctly!", Integer.toString(i), Integer.toString(v)));
+			}
+		}
+		RecordingGLBackend recorder = new RecordingGLBackend();
+		batch.draw(recorder);
+		MicroBenchmark.check(recorder.getDrawCalls() == 1, "Expected exactly one draw call, got: ".concat(recorder.toString()));
+		MicroBenchmark.check(recorder.getVerticesDrawn() == count * CubeBatch.INDICES_PER_CUBE, "Unexpected number of indices drawn: ".concat(recorder.toString()));
+		recorder.reset();
+		batch.draw(recorder);
+		MicroBenchmark.check(recorder.getCount(RecordingGLBackend.Call.BUFFER_DATA) == 0, "Unchanged batch was re-uploaded: ".concat(recorder.toString()));
+		System.out.println("Packed vertex data verified.");
+		
+		// Compare driver calls against drawing each cube separately:
+		final float[] modelView = new float[16];
+		modelView[0] = modelView[5] = modelView[10] = modelView[15] = 1.0f;
+		for(int cubes : new int[] {4, 10000, 100000}) {
+			recorder.reset();
+			drawSeparately(recorder, cubes, modelView);
+			String separate = recorder.toString();
+			CubeBatch big = new CubeBatch(1.0f, 1.0f, 1.0f, cubes);
+			for(int i = 0; i < cubes; i++) {
+				big.add(random.nextFloat() * 1000.0f, random.nextFloat() * 1000.0f, random.nextFloat() * 1000.0f, 0, 0, random.nextFloat() * 360.0f, random.nextFloat(), random.nextFloat(), random.nextFloat());
+			}
+			recorder.reset();
+			big.draw(recorder);
+			System.out.println(String.format("%s cubes, drawn separately: %s", Integer.toString(cubes), separate));
+			System.out.println(String.format("%s cubes, batched:          %s", Integer.toString(cubes), recorder.toString()));
+			MicroBenchmark.check(recorder.getDrawCalls() == 1, "Batch issued more than one draw call!");
+			
+			final CubeBatch benchBatch = big;
+			MicroBenchmark.run(String.format("CubeBatch.pack() (%s cubes)", Integer.toString(cubes)), 20, Math.max(20, 2000000 / cubes), (iteration) -> benchBatch.pack());
+		}
+	}
+	
+}
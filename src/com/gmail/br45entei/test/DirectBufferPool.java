@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/** A thread-safe pool of direct {@link ByteBuffer}s.<br>
+ * Allocating direct buffers is expensive (they are zeroed, and are only freed
+ * once the garbage collector gets around to their cleaners), so code that
+ * repeatedly needs large temporary buffers, such as image decoding, should
+ * {@link #acquire(int) acquire} them from a pool and
+ * {@link #release(ByteBuffer) release} them once they are no longer needed.
+ * <br>
+ * Buffers are grouped by power-of-two capacity, so a released buffer can be
+ * reused for any request of up to its capacity.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class DirectBufferPool {
+	
+	private final ArrayDeque<ByteBuffer>[] buckets;
+	private final long maxPooledBytes;
+	private long pooledBytes = 0L;
+	private long allocations = 0L, reuses = 0L;
+	
+	/** Creates a new DirectBufferPool.
+	 * 
+	 * @param maxPooledBytes The maximum total capacity of the buffers kept in
+	 *            this pool. Buffers released while the pool is full are left
+	 *            for the garbage collector. */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public DirectBufferPool(long maxPooledBytes) {
+		this.maxPooledBytes = maxPooledBytes;
+		this.buckets = new ArrayDeque[32];
+		for(int i = 0; i < this.buckets.length; i++) {
+			this.buckets[i] = new ArrayDeque<>();
+		}
+	}
+	
+	private static final int getBucket(int capacity) {
+		return capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+	}
+	
+	/** Returns a direct buffer in native byte order with a position of zero
+	 * and a limit of {@code capacity}. Its contents are undefined.
+	 * 
+	 * @param capacity The number of bytes needed
+	 * @return The buffer */
+	public ByteBuffer acquire(int capacity) {
+		final int bucket = getBucket(capacity);
+		ByteBuffer buffer;
+		synchronized(this) {
+			buffer = this.buckets[bucket].pollFirst();
+			if(buffer != null) {
+				this.pooledBytes -= buffer.capacity();
+				this.reuses++;
+			} else {
+				this.allocations++;
+			}
+		}
+		if(buffer == null) {
+			buffer = ByteBuffer.allocateDirect(bucket >= 31 ? capacity : 1 << bucket).order(ByteOrder.nativeOrder());
+		}
+		buffer.clear().limit(capacity);
+		return buffer;
+	}
+	
+	/** Returns a buffer that was acquired from this pool so that it can be
+	 * reused. The buffer must not be used by the caller afterwards.
+	 * 
+	 * @param buffer The buffer to release */
+	public void release(ByteBuffer buffer) {
+		if(buffer == null || !buffer.isDirect()) {
+			return;
+		}
+		final int capacity = buffer.capacity();
+		final int bucket = getBucket(capacity);
+		if(bucket < 31 && capacity != 1 << bucket) {
+			return;// Not one of ours
+		}
+		synchronized(this) {
+			if(this.pooledBytes + capacity <= this.maxPooledBytes) {
+				this.pooledBytes += capacity;
+				this.buckets[bucket].addFirst(buffer);
+			}
+		}
+	}
+	
+	/** @return The total capacity of the buffers currently waiting in this
+	 *         pool */
+	public synchronized long getPooledBytes() {
+		return this.pooledBytes;
+	}
+	
+	/** @return The number of buffers this pool has had to allocate */
+	public synchronized long getAllocationCount() {
+		return this.allocations;
+	}
+	
+	/** @return The number of times a pooled buffer was reused instead of
+	 *         allocating a new one */
+	public synchronized long getReuseCount() {
+		return this.reuses;
+	}
+	
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/** Runs a {@link Simulation} at a fixed rate, independently of the rate that
+ * frames are rendered at.<br>
+ * Elapsed time is accumulated (in whole nanoseconds, so that the number of
+ * steps taken never depends on how the elapsed time was divided up into
+ * frames) and the simulation is stepped once for every full step that fits
+ * into the accumulator. After stepping, the simulation's state is published
+ * through a {@link TripleBuffer}, so the render thread can {@link #read() read}
+ * the latest state without locking and without ever seeing a half-written
+ * one. The time left over in the accumulator is published along with it, so
+ * that the render thread can compute how far it is between the previous step
+ * and the current one ({@link #getAlpha(Snapshot, long)}) and interpolate.<br>
+ * <br>
+ * To keep a slow simulation from falling further and further behind (the
+ * &quot;spiral of death&quot;), at most {@link #getMaxStepsPerAdvance()} steps
+ * are taken per advance; any time beyond that is dropped.<br>
+ * <br>
+ * The loop can either be driven manually by calling {@link #advance(long)}, or
+ * run on its own thread by calling {@link #start(String)}.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt;
+ * @param <S> The type of the snapshots that the simulation publishes */
+public class FixedTimestepLoop<S extends FixedTimestepLoop.Snapshot> {
+	
+	/** The default duration of a single step, in nanoseconds (60 steps per
+	 * second) */
+	public static final long DEFAULT_STEP_NANOS = TimeUnit.SECONDS.toNanos(1L) / 60L;
+	/** The default maximum number of steps taken per advance */
+	public static final int DEFAULT_MAX_STEPS_PER_ADVANCE = 8;
+	
+	/** A simulation that can be stepped by a {@link FixedTimestepLoop}.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt;
+	 * @param <S> The type of the snapshots that the simulation publishes */
+	public static interface Simulation<S extends Snapshot> {
+		
+		/** Advances this simulation by a single step.
+		 * 
+		 * @param deltaTime The (fixed) duration of the step, in seconds */
+		public void step(double deltaTime);
+		
+		/** Copies this simulation's current state into the given snapshot.<br>
+		 * The snapshot is recycled, so everything that the reader uses must
+		 * be written every time.
+		 * 
+		 * @param snapshot The snapshot to write into */
+		public void publish(S snapshot);
+		
+	}
+	
+	/** Base class for the state published by a {@link Simulation}.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static class Snapshot {
+		
+		long time;
+		long step;
+		long accumulator;
+		
+		/** @return The {@link System#nanoTime()} at which this snapshot was
+		 *         published */
+		public long getTime() {
+			return this.time;
+		}
+		
+		/** @return The number of steps that had been taken when this snapshot
+		 *         was published */
+		public long getStep() {
+			return this.step;
+		}
+		
+		/** @return The time that was left in the accumulator when this
+		 *         snapshot was published, in nanoseconds */
+		public long getAccumulator() {
+			return this.accumulator;
+		}
+		
+	}
+	
+	private final Simulation<S> simulation;
+	private final TripleBuffer<S> buffer;
+	private final long stepNanos;
+	private final double stepSeconds;
+	private final int maxStepsPerAdvance;
+	
+	private long lastTime = 0L;
+	private long accumulator = 0L;
+	private boolean started = false;
+	
+	private volatile long steps = 0L;
+	private volatile long clamps = 0L;
+	private volatile long droppedNanos = 0L;
+	
+	private volatile Thread thread = null;
+	private volatile boolean running = false;
+	
+	/** Creates a new FixedTimestepLoop.
+	 * 
+	 * @param simulation The simulation to step
+	 * @param factory The factory used to create the simulation's snapshots
+	 * @param stepNanos The duration of a single step, in nanoseconds
+	 * @param maxStepsPerAdvance The maximum number of steps taken per
+	 *            advance */
+	public FixedTimestepLoop(Simulation<S> simulation, Supplier<S> factory, long stepNanos, int maxStepsPerAdvance) {
+		if(stepNanos <= 0L) {
+			throw new IllegalArgumentException("Step duration must be positive: ".concat(Long.toString(stepNanos)));
+		}
+		if(maxStepsPerAdvance <= 0) {
+			throw new IllegalArgumentException("Maximum number of steps per advance must be positive: ".concat(Integer.toString(maxStepsPerAdvance)));
+		}
+		this.simulation = simulation;
+		this.buffer = new TripleBuffer<>(factory);
+		this.stepNanos = stepNanos;
+		this.stepSeconds = stepNanos / 1.0E9;
+		this.maxStepsPerAdvance = maxStepsPerAdvance;
+	}
+	
+	/** Creates a new FixedTimestepLoop that steps the given simulation 60
+	 * times per second.
+	 * 
+	 * @param simulation The simulation to step
+	 * @param factory The factory used to create the simulation's snapshots */
+	public FixedTimestepLoop(Simulation<S> simulation, Supplier<S> factory) {
+		this(simulation, factory, DEFAULT_STEP_NANOS, DEFAULT_MAX_STEPS_PER_ADVANCE);
+	}
+	
+	/** @return The duration of a single step, in nanoseconds */
+	public long getStepNanos() {
+		return this.stepNanos;
+	}
+	
+	/** @return The maximum number of steps taken per advance */
+	public int getMaxStepsPerAdvance() {
+		return this.maxStepsPerAdvance;
+	}
+	
+	/** Advances this loop to the given time, stepping the simulation once for
+	 * every full step that has elapsed (up to
+	 * {@link #getMaxStepsPerAdvance()}) and publishing its state if it was
+	 * stepped.<br>
+	 * The first call only records the starting time (and publishes the
+	 * simulation's initial state).<br>
+	 * Must only be called by one thread at a time, and not while this loop
+	 * is {@link #isRunning() running} on its own thread.
+	 * 
+	 * @param now The current time, in nanoseconds (see
+	 *            {@link System#nanoTime()})
+	 * @return The number of steps that were taken */
+	public int advance(long now) {
+		if(!this.started) {
+			this.started = true;
+			this.lastTime = now;
+			this.publish(now);
+			return 0;
+		}
+		this.accumulator += Math.max(0L, now - this.lastTime);
+		this.lastTime = now;
+		int steps = 0;
+		while(this.accumulator >= this.stepNanos) {
+			if(steps == this.maxStepsPerAdvance) {
+				long excess = this.accumulator - (this.accumulator % this.stepNanos);
+				this.accumulator -= excess;
+				this.droppedNanos += excess;
+				this.clamps++;
+				break;
+			}
+			this.simulation.step(this.stepSeconds);
+			this.accumulator -= this.stepNanos;
+			steps++;
+		}
+		if(steps > 0) {
+			this.steps += steps;
+			this.publish(now);
+		}
+		return steps;
+	}
+	
+	private void publish(long now) {
+		S snapshot = this.buffer.getWriteBuffer();
+		this.simulation.publish(snapshot);
+		snapshot.time = now;
+		snapshot.step = this.steps;
+		snapshot.accumulator = this.accumulator;
+		this.buffer.publish();
+	}
+	
+	/** Returns the most recently published snapshot.<br>
+	 * Must only be called by a single (render) thread. The returned snapshot
+	 * remains unchanged until the next call to this method.
+	 * 
+	 * @return The most recently published snapshot */
+	public S read() {
+		return this.buffer.read();
+	}
+	
+	/** Returns how far along the given time is between the step that produced
+	 * the given snapshot and the step after it, for interpolating between the
+	 * snapshot's previous and current state.
+	 * 
+	 * @param snapshot A snapshot published by this loop
+	 * @param now The current time, in nanoseconds (see
+	 *            {@link System#nanoTime()})
+	 * @return The interpolation factor, from {@code 0.0} to {@code 1.0} */
+	public double getAlpha(S snapshot, long now) {
+		double alpha = (snapshot.accumulator + Math.max(0L, now - snapshot.time)) / (double) this.stepNanos;
+		return alpha >= 1.0 ? 1.0 : alpha;
+	}
+	
+	/** @return The total number of steps that have been taken */
+	public long getSteps() {
+		return this.steps;
+	}
+	
+	/** @return The number of times that the number of steps taken in a single
+	 *         advance had to be clamped */
+	public long getClampCount() {
+		return this.clamps;
+	}
+	
+	/** @return The total amount of time that was dropped because the
+	 *         simulation fell too far behind, in nanoseconds */
+	public long getDroppedNanos() {
+		return this.droppedNanos;
+	}
+	
+	/** @return The number of snapshots that have been published */
+	public long getPublishCount() {
+		return this.buffer.getPublishCount();
+	}
+	
+	/** @return Whether or not this loop is running on its own thread */
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	/** Starts running this loop on its own (daemon) thread. Does nothing if it
+	 * is already running.
+	 * 
+	 * @param name The name of the thread
+	 * @return This FixedTimestepLoop */
+	public synchronized FixedTimestepLoop<S> start(String name) {
+		if(this.running) {
+			return this;
+		}
+		this.running = true;
+		Thread thread = new Thread(() -> {
+			while(this.running) {
+				this.advance(System.nanoTime());
+				long wait = this.stepNanos - this.accumulator;
+				if(wait > 0L) {
+					LockSupport.parkNanos(this, wait);
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		(this.thread = thread).start();
+		return this;
+	}
+	
+	/** Stops this loop's thread and waits for it to finish its current step.
+	 * Does nothing if it is not running.
+	 * 
+	 * @return This FixedTimestepLoop */
+	public synchronized FixedTimestepLoop<S> stop() {
+		Thread thread = this.thread;
+		this.running = false;
+		this.thread = null;
+		if(thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return this;
+	}
+	
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/** Headless verification and benchmark of {@link FixedTimestepLoop},
+ * {@link TripleBuffer} and {@link CameraSimulation}.<br>
+ * The same scripted input is fed to the camera while frames are &quot;rendered&quot;
+ * at 30, 60 and 240 FPS, and the camera's state after every step is checked to
+ * be bit-for-bit identical across all three frame rates (while integrating once
+ * per frame with the frame's delta time, the way {@link TestGame} used to, is
+ * not). The latency of handing a published state over to another thread is
+ * then measured.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class FixedTimestepLoopBenchmark {
+	
+	/** Feeds the scripted input for the given step to the camera.
+	 * 
+	 * @param camera The camera to control
+	 * @param step The index of the step that is about to be taken */
+	static final void applyScript(CameraSimulation camera, long step) {
+		final int phase = (int) ((step / 45L) % 6L);
+		final int[] held = {CameraSimulation.MOVE_FORWARD, CameraSimulation.MOVE_FORWARD | CameraSimulation.MOVE_RIGHT, CameraSimulation.MOVE_UP | CameraSimulation.ROLL_LEFT, 0, CameraSimulation.MOVE_BACKWARD | CameraSimulation.MOVE_LEFT | CameraSimulation.ROLL_RIGHT, CameraSimulation.MOVE_DOWN};
+		camera.setHeld(held[phase]);
+		camera.setFreeMove(((step / 240L) & 1L) != 0L);
+		camera.addLook((float) Math.sin(step * 0.05) * 3.0f, (float) Math.cos(step * 0.031) * 2.0f, 0.0f);
+		if(step % 97L == 0L) {
+			camera.addZoomDistance(0.5f);
+		}
+		if(step % 500L == 499L) {
+			camera.resetZoomDistance();
+		}
+	}
+	
+	/** Renders ten seconds' worth of frames at the given frame rate, stepping
+	 * the camera at a fixed 60 steps per second.
+	 * 
+	 * @param fps The frame rate to render at
+	 * @return The camera's state after each step */
+	static final List<CameraSimulation.State> runFixed(int fps) {
+		final CameraSimulation camera = new CameraSimulation();
+		final List<CameraSimulation.State> trajectory = new ArrayList<>();
+		final FixedTimestepLoop<CameraSimulation.Snapshot> loop = new FixedTimestepLoop<>(new FixedTimestepLoop.Simulation<CameraSimulation.Snapshot>() {
+			private long step = 0L;
+			
+			@Override
+			public void step(double deltaTime) {
+				applyScript(camera, this.step++);
+				camera.step(deltaTime);
+				trajectory.add(new CameraSimulation.State().set(camera.getState()));
+			}
+			
+			@Override
+			public void publish(CameraSimulation.Snapshot snapshot) {
+				camera.publish(snapshot);
+			}
+		}, CameraSimulation.Snapshot::new);
+		
+		final long frameNanos = TimeUnit.SECONDS.toNanos(1L) / fps;
+		final CameraSimulation.State view = new CameraSimulation.State();
+		long lastStep = -1L;
+		for(int frame = 0; frame <= fps * 10; frame++) {
+			final long now = frame * frameNanos;
+			loop.advance(now);
+			// "Render" the frame:
+			CameraSimulation.Snapshot snapshot = loop.read();
+			MicroBenchmark.check(snapshot.getStep() >= lastStep, "Snapshots went back in time!");
+			lastStep = snapshot.getStep();
+			double alpha = loop.getAlpha(snapshot, now);
+			MicroBenchmark.check(alpha >= 0.0 && alpha <= 1.0, "Alpha out of range: ".concat(Double.toString(alpha)));
+			view.interpolate(snapshot.previous, snapshot.current, (float) alpha);
+		}
+		MicroBenchmark.check(loop.getClampCount() == 0L, "Steps were dropped at ".concat(Integer.toString(fps)).concat(" FPS!"));
+		return trajectory;
+	}
+	
+	/** Renders ten seconds' worth of frames at the given frame rate,
+	 * integrating once per frame using the frame's delta time.
+	 * 
+	 * @param fps The frame rate to render at
+	 * @return The camera's final state */
+	static final CameraSimulation.State runVariable(int fps) {
+		final CameraSimulation camera = new CameraSimulation();
+		final double frameSeconds = 1.0 / fps;
+		long lastStep = -1L;
+		for(int frame = 0; frame < fps * 10; frame++) {
+			// The same script, applied on the first frame that falls into each step:
+			long step = (frame * 60L) / fps;
+			if(step != lastStep) {
+				applyScript(camera, lastStep = step);
+			}
+			camera.step(frameSeconds);
+		}
+		return camera.getState();
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) throws InterruptedException {
+		// Determinism:
+		final int[] rates = {30, 60, 240};
+		List<CameraSimulation.State> reference = null;
+		for(int fps : rates) {
+			List<CameraSimulation.State> trajectory = runFixed(fps);
+			if(reference == null) {
+				reference = trajectory;
+			} else {
+				final int steps = Math.min(reference.size(), trajectory.size());
+				MicroBenchmark.check(steps >= 599, "Too few steps were taken: ".concat(Integer.toString(steps)));
+				for(int i = 0; i < steps; i++) {
+					MicroBenchmark.check(reference.get(i).equalTo(trajectory.get(i)), String.format("Step %s differs at %s FPS: %s != %s", Integer.toString(i), Integer.toString(fps), trajectory.get(i), reference.get(i)));
+				}
+			}
+			System.out.println(String.format("Fixed timestep, %3s FPS: %s steps; final state: %s", Integer.toString(fps), Integer.toString(trajectory.size()), trajectory.get(Math.min(598, trajectory.size() - 1))));
+		}
+		System.out.println("Fixed timestep results are identical at every frame rate.");
+		for(int fps : rates) {
+			System.out.println(String.format("Per-frame delta,  %3s FPS: final state: %s", Integer.toString(fps), runVariable(fps)));
+		}
+		
+		// Spiral-of-death clamp:
+		final CameraSimulation camera = new CameraSimulation();
+		final FixedTimestepLoop<CameraSimulation.Snapshot> clamped = new FixedTimestepLoop<>(camera, CameraSimulation.Snapshot::new);
+		clamped.advance(0L);
+		int taken = clamped.advance(TimeUnit.SECONDS.toNanos(5L));
+		MicroBenchmark.check(taken == clamped.getMaxStepsPerAdvance() && clamped.getClampCount() == 1L, "A five second hitch was not clamped!");
+		MicroBenchmark.check(clamped.read().getAccumulator() < clamped.getStepNanos(), "Dropped time was left in the accumulator!");
+		System.out.println(String.format("A 5 second hitch took %s steps and dropped %s ms.", Integer.toString(taken), Long.toString(TimeUnit.NANOSECONDS.toMillis(clamped.getDroppedNanos()))));
+		System.out.println();
+		
+		// Handoff cost on a single thread:
+		final TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[8]);
+		MicroBenchmark.run("TripleBuffer publish + read", 1000000, 10000000, (i) -> {
+			buffer.getWriteBuffer()[0] = i;
+			buffer.publish();
+			return Long.valueOf(buffer.read()[0]);
+		});
+		MicroBenchmark.run("TripleBuffer read (nothing new)", 1000000, 10000000, (i) -> Long.valueOf(buffer.read()[0]));
+		final FixedTimestepLoop<CameraSimulation.Snapshot> manual = new FixedTimestepLoop<>(new CameraSimulation(), CameraSimulation.Snapshot::new);
+		final CameraSimulation.State view = new CameraSimulation.State();
+		MicroBenchmark.run("Camera step + publish + read + interpolate", 10000, 200000, (i) -> {
+			manual.advance(i * manual.getStepNanos());
+			CameraSimulation.Snapshot snapshot = manual.read();
+			return view.interpolate(snapshot.previous, snapshot.current, (float) manual.getAlpha(snapshot, i * manual.getStepNanos()));
+		});
+		
+		// Handoff latency between threads (time from publishing to the reader seeing it):
+		final int samples = 20000;
+		final long[] latencies = new long[samples];
+		final Thread producer = new Thread(() -> {
+			for(int i = 1; i <= samples; i++) {
+				long[] state = buffer.getWriteBuffer();
+				state[1] = i;
+				state[0] = System.nanoTime();
+				buffer.publish();
+				LockSupport.parkNanos(50000L);
+			}
+		}, "Producer");
+		buffer.read();
+		producer.start();
+		int received = 0;
+		long last = 0L;
+		while(last < samples && (producer.isAlive() || buffer.isFresh())) {
+			long[] state = buffer.read();
+			if(state[1] != last) {
+				latencies[received++] = System.nanoTime() - state[0];
+				last = state[1];
+			} else {
+				Thread.yield();
+			}
+		}
+		producer.join();
+		Arrays.sort(latencies, 0, received);
+		System.out.println(String.format("Cross-thread handoff: %s/%s states seen; latency p50: %s ns; p99: %s ns; max: %s ns", Integer.toString(received), Integer.toString(samples), Long.toString(latencies[received / 2]), Long.toString(latencies[(int) (received * 0.99)]), Long.toString(latencies[received - 1])));
+		
+		// The loop running on its own thread, read at ~240 FPS:
+		final FixedTimestepLoop<CameraSimulation.Snapshot> threaded = new FixedTimestepLoop<>(new CameraSimulation(), CameraSimulation.Snapshot::new).start("Simulation");
+		final long start = System.nanoTime();
+		long staleness = 0L, maxStaleness = 0L;
+		int frames = 0;
+		while(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500L)) {
+			LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1L) / 240L);
+			CameraSimulation.Snapshot snapshot = threaded.read();
+			long age = System.nanoTime() - snapshot.getTime();
+			staleness += age;
+			maxStaleness = Math.max(maxStaleness, age);
+			frames++;
+		}
+		threaded.stop();
+		System.out.println(String.format("Threaded loop: %s steps in 500 ms; %s frames read; snapshot age avg: %s us; max: %s us", Long.toString(threaded.getSteps()), Integer.toString(frames), Long.toString(staleness / frames / 1000L), Long.toString(maxStaleness / 1000L)));
+	}
+	
+}
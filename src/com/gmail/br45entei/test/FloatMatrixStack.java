@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.MatrixStack;
+import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+
+import java.nio.FloatBuffer;
+
+/** Allocation-free, fixed-capacity alternative to {@link MatrixStack}.<br>
+ * <br>
+ * All matrices are stored back to back in a single preallocated
+ * {@code float[]}, in column-major order (the order expected by
+ * {@code glLoadMatrixf}). Instead of returning new arrays, results are
+ * written into caller-owned arrays or {@link FloatBuffer}s via
+ * {@link #peek(float[])}, {@link #pop(float[])} and friends, so none of the
+ * methods in this class allocate after construction.<br>
+ * <br>
+ * The fluent {@link #translate(float, float, float, MultiplicationOrder)
+ * translate} and {@link #rotate(float, float, float, RotationOrder, MultiplicationOrder)
+ * rotate} methods follow the same conventions as {@link MatrixStack}:
+ * <ul>
+ * <li>{@link MultiplicationOrder#NEWxOLD} applies the new transformation
+ * before the existing one (i.e. {@code current = current * new} in
+ * column-vector terms, just like {@code glTranslatef}/{@code glRotatef}),
+ * and is the default;</li>
+ * <li>{@link MultiplicationOrder#OLDxNEW} applies it after the existing one
+ * ({@code current = new * current});</li>
+ * <li>a {@link RotationOrder} lists the axes whose rotations are multiplied
+ * together from left to right, with yaw rotating around Y, pitch around X
+ * and roll around Z. The default is {@link RotationOrder#YXZ}.</li>
+ * </ul>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class FloatMatrixStack {
+	
+	/** The default number of matrices a stack can hold */
+	public static final int DEFAULT_CAPACITY = 16;
+	
+	private final float[] matrices;
+	private final int capacity;
+	private int top = 0;
+	
+	private final float[] rotation = new float[16];
+	private final float[] temp = new float[16];
+	
+	/** Creates a new FloatMatrixStack with a capacity of
+	 * {@link #DEFAULT_CAPACITY}. The first matrix is set to the identity
+	 * matrix. */
+	public FloatMatrixStack() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/** Creates a new FloatMatrixStack. The first matrix is set to the identity
+	 * matrix.
+	 * 
+	 * @param capacity The maximum number of matrices that this stack can hold */
+	public FloatMatrixStack(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be greater than zero: ".concat(Integer.toString(capacity)));
+		}
+		this.capacity = capacity;
+		this.matrices = new float[capacity * 16];
+		setIdentity(this.matrices, 0);
+	}
+	
+	/** @return The number of matrices currently on this stack (at least one) */
+	public int size() {
+		return this.top + 1;
+	}
+	
+	/** @return The maximum number of matrices this stack can hold */
+	public int capacity() {
+		return this.capacity;
+	}
+	
+	/** Pushes a copy of the current matrix onto this stack.
+	 * 
+	 * @return This stack
+	 * @throws IllegalStateException Thrown if the stack is full */
+	public FloatMatrixStack push() throws IllegalStateException {
+		if(this.top + 1 >= this.capacity) {
+			throw new IllegalStateException("Matrix stack overflow! (Capacity: ".concat(Integer.toString(this.capacity)).concat(")"));
+		}
+		System.arraycopy(this.matrices, this.top * 16, this.matrices, (this.top + 1) * 16, 16);
+		this.top++;
+		return this;
+	}
+	
+	/** Pops the current matrix off of this stack, discarding it.
+	 * 
+	 * @return This stack
+	 * @throws IllegalStateException Thrown if only one matrix remains */
+	public FloatMatrixStack pop() throws IllegalStateException {
+		if(this.top == 0) {
+			throw new IllegalStateException("Matrix stack underflow!");
+		}
+		this.top--;
+		return this;
+	}
+	
+	/** Copies the current matrix into the given array and then pops it off of
+	 * this stack.
+	 * 
+	 * @param dst The array to copy the matrix into
+	 * @return The given array */
+	public float[] pop(float[] dst) {
+		this.peek(dst);
+		this.pop();
+		return dst;
+	}
+	
+	/** Copies the current matrix into the given buffer (starting at its
+	 * current position, which is left unchanged) and then pops it off of this
+	 * stack.
+	 * 
+	 * @param dst The buffer to copy the matrix into
+	 * @return The given buffer */
+	public FloatBuffer pop(FloatBuffer dst) {
+		this.peek(dst);
+		this.pop();
+		return dst;
+	}
+	
+	/** @param dst The array to copy the current matrix into
+	 * @return The given array */
+	public float[] peek(float[] dst) {
+		System.arraycopy(this.matrices, this.top * 16, dst, 0, 16);
+		return dst;
+	}
+	
+	/** @param dst The buffer to copy the current matrix into, starting at its
+	 *            current position (which is left unchanged)
+	 * @return The given buffer */
+	public FloatBuffer peek(FloatBuffer dst) {
+		final int offset = this.top * 16, position = dst.position();
+		for(int i = 0; i < 16; i++) {
+			dst.put(position + i, this.matrices[offset + i]);
+		}
+		return dst;
+	}
+	
+	/** @param index The index (0-15, column-major) of the element to get
+	 * @return The specified element of the current matrix */
+	public float get(int index) {
+		return this.matrices[(this.top * 16) + index];
+	}
+	
+	//=============================================================================================
+	
+	/** @return This stack */
+	public FloatMatrixStack loadIdentity() {
+		setIdentity(this.matrices, this.top * 16);
+		return this;
+	}
+	
+	/** @param matrix The column-major matrix to replace the current matrix
+	 *            with
+	 * @return This stack */
+	public FloatMatrixStack load(float[] matrix) {
+		System.arraycopy(matrix, 0, this.matrices, this.top * 16, 16);
+		return this;
+	}
+	
+	/** Multiplies the current matrix by the given one using
+	 * {@link MultiplicationOrder#NEWxOLD}.
+	 * 
+	 * @param matrix The column-major matrix to multiply by
+	 * @return This stack */
+	public FloatMatrixStack multMatrix4x4(float[] matrix) {
+		return this.multMatrix4x4(matrix, MultiplicationOrder.NEWxOLD);
+	}
+	
+	/** @param matrix The column-major matrix to multiply by
+	 * @param order The order in which to multiply the matrices
+	 * @return This stack */
+	public FloatMatrixStack multMatrix4x4(float[] matrix, MultiplicationOrder order) {
+		final int offset = this.top * 16;
+		if(order == MultiplicationOrder.OLDxNEW) {
+			multiply(matrix, 0, this.matrices, offset, this.temp);
+		} else {
+			multiply(this.matrices, offset, matrix, 0, this.temp);
+		}
+		System.arraycopy(this.temp, 0, this.matrices, offset, 16);
+		return this;
+	}
+	
+	/** @param x The X translation
+	 * @param y The Y translation
+	 * @param z The Z translation
+	 * @return This stack */
+	public FloatMatrixStack translate(float x, float y, float z) {
+		return this.translate(x, y, z, MultiplicationOrder.NEWxOLD);
+	}
+	
+	/** @param x The X translation
+	 * @param y The Y translation
+	 * @param z The Z translation
+	 * @param order The order in which to multiply the translation with the
+	 *            current matrix
+	 * @return This stack */
+	public FloatMatrixStack translate(float x, float y, float z, MultiplicationOrder order) {
+		final float[] m = this.matrices;
+		final int o = this.top * 16;
+		if(order == MultiplicationOrder.OLDxNEW) {
+			// T * M: every column's W component is scaled by the translation and added to its XYZ components
+			for(int c = 0; c < 4; c++) {
+				final float w = m[o + (c * 4) + 3];
+				m[o + (c * 4)] += x * w;
+				m[o + (c * 4) + 1] += y * w;
+				m[o + (c * 4) + 2] += z * w;
+			}
+		} else {
+			// M * T: only the fourth column changes
+			for(int r = 0; r < 4; r++) {
+				m[o + 12 + r] += (m[o + r] * x) + (m[o + 4 + r] * y) + (m[o + 8 + r] * z);
+			}
+		}
+		return this;
+	}
+	
+	/** @param x The X scale
+	 * @param y The Y scale
+	 * @param z The Z scale
+	 * @return This stack */
+	public FloatMatrixStack scale(float x, float y, float z) {
+		final float[] m = this.matrices;
+		final int o = this.top * 16;
+		for(int r = 0; r < 4; r++) {
+			m[o + r] *= x;
+			m[o + 4 + r] *= y;
+			m[o + 8 + r] *= z;
+		}
+		return this;
+	}
+	
+	/** Rotates the current matrix using {@link RotationOrder#YXZ} and
+	 * {@link MultiplicationOrder#NEWxOLD}.
+	 * 
+	 * @param yaw The rotation around the Y axis, in degrees
+	 * @param pitch The rotation around the X axis, in degrees
+	 * @param roll The rotation around the Z axis, in degrees
+	 * @return This stack */
+	public FloatMatrixStack rotate(float yaw, float pitch, float roll) {
+		return this.rotate(yaw, pitch, roll, RotationOrder.YXZ, MultiplicationOrder.NEWxOLD);
+	}
+	
+	/** @param yaw The rotation around the Y axis, in degrees
+	 * @param pitch The rotation around the X axis, in degrees
+	 * @param roll The rotation around the Z axis, in degrees
+	 * @param rotationOrder The order in which the axis rotations are
+	 *            multiplied together
+	 * @param order The order in which to multiply the rotation with the
+	 *            current matrix
+	 * @return This stack */
+	public FloatMatrixStack rotate(float yaw, float pitch, float roll, RotationOrder rotationOrder, MultiplicationOrder order) {
+		getRotationMatrix(yaw, pitch, roll, rotationOrder, this.rotation);
+		return this.multMatrix4x4(this.rotation, order);
+	}
+	
+	/** Replaces the current matrix with a perspective projection matrix.
+	 * 
+	 * @param fovy The vertical field of view, in degrees
+	 * @param width The width of the viewport
+	 * @param height The height of the viewport
+	 * @param zNear The distance to the near clipping plane
+	 * @param zFar The distance to the far clipping plane
+	 * @return This stack */
+	public FloatMatrixStack setPerspectiveProjection(float fovy, float width, float height, float zNear, float zFar) {
+		getPerspectiveMatrix(fovy, width / height, zNear, zFar, this.matrices, this.top * 16);
+		return this;
+	}
+	
+	/** Replaces the current matrix with an orthographic projection matrix.
+	 * 
+	 * @param x The left edge of the viewport
+	 * @param y The bottom edge of the viewport
+	 * @param width The width of the viewport
+	 * @param height The height of the viewport
+	 * @param zNear The distance to the near clipping plane
+	 * @param zFar The distance to the far clipping plane
+	 * @return This stack */
+	public FloatMatrixStack setOrthographicProjection(float x, float y, float width, float height, float zNear, float zFar) {
+		getOrthographicMatrix(x, y, width, height, zNear, zFar, this.matrices, this.top * 16);
+		return this;
+	}
+	
+	//=============================================================================================
+	
+	/** Sets the matrix at the given offset to the identity matrix.
+	 * 
+	 * @param dst The array containing the matrix
+	 * @param offset The offset of the matrix in the array */
+	public static final void setIdentity(float[] dst, int offset) {
+		for(int i = 0; i < 16; i++) {
+			dst[offset + i] = (i % 5) == 0 ? 1.0f : 0.0f;
+		}
+	}
+	
+	/** Multiplies two column-major matrices ({@code dst = a * b}).
+	 * 
+	 * @param a The left-hand matrix
+	 * @param aOffset The offset of the left-hand matrix in its array
+	 * @param b The right-hand matrix
+	 * @param bOffset The offset of the right-hand matrix in its array
+	 * @param dst The array to store the result in. Must not be either of
+	 *            the input arrays. */
+	public static final void multiply(float[] a, int aOffset, float[] b, int bOffset, float[] dst) {
+		for(int c = 0; c < 4; c++) {
+			final float b0 = b[bOffset + (c * 4)], b1 = b[bOffset + (c * 4) + 1], b2 = b[bOffset + (c * 4) + 2], b3 = b[bOffset + (c * 4) + 3];
+			for(int r = 0; r < 4; r++) {
+				dst[(c * 4) + r] = (a[aOffset + r] * b0) + (a[aOffset + 4 + r] * b1) + (a[aOffset + 8 + r] * b2) + (a[aOffset + 12 + r] * b3);
+			}
+		}
+	}
+	
+	/** Computes the rotation matrix for the given angles and rotation order.
+	 * 
+	 * @param yaw The rotation around the Y axis, in degrees
+	 * @param pitch The rotation around the X axis, in degrees
+	 * @param roll The rotation around the Z axis, in degrees
+	 * @param rotationOrder The order in which the axis rotations are
+	 *            multiplied together
+	 * @param dst The array to store the column-major 4x4 rotation matrix in */
+	public static final void getRotationMatrix(float yaw, float pitch, float roll, RotationOrder rotationOrder, float[] dst) {
+		final String axes = rotationOrder.name();
+		setIdentity(dst, 0);
+		for(int i = 0; i < 3; i++) {
+			final char axis = axes.charAt(i);
+			final float degrees = axis == 'Y' ? yaw : (axis == 'X' ? pitch : roll);
+			if(degrees == 0.0f) {
+				continue;
+			}
+			final double angle = Math.toRadians(degrees);
+			final float c = (float) Math.cos(angle), s = (float) Math.sin(angle);
+			// dst = dst * R(axis): only the two columns perpendicular to the axis change
+			final int u, v;
+			if(axis == 'X') {
+				u = 4;
+				v = 8;
+			} else if(axis == 'Y') {
+				u = 8;
+				v = 0;
+			} else {
+				u = 0;
+				v = 4;
+			}
+			for(int r = 0; r < 3; r++) {
+				final float du = dst[u + r], dv = dst[v + r];
+				dst[u + r] = (du * c) + (dv * s);
+				dst[v + r] = (dv * c) - (du * s);
+			}
+		}
+	}
+	
+	/** Computes a perspective projection matrix equivalent to
+	 * {@code gluPerspective}.
+	 * 
+	 * @param fovy The vertical field of view, in degrees
+	 * @param aspect The aspect ratio (width / height) of the viewport
+	 * @param zNear The distance to the near clipping plane
+	 * @param zFar The distance to the far clipping plane
+	 * @param dst The array to store the column-major matrix in
+	 * @param offset The offset in the array to store the matrix at
+	 * @return The given array */
+	public static final float[] getPerspectiveMatrix(float fovy, float aspect, float zNear, float zFar, float[] dst, int offset) {
+		final float f = (float) (1.0 / Math.tan(Math.toRadians(fovy) / 2.0));
+		final float depth = zNear - zFar;
+		for(int i = 0; i < 16; i++) {
+			dst[offset + i] = 0.0f;
+		}
+		dst[offset] = f / aspect;
+		dst[offset + 5] = f;
+		dst[offset + 10] = (zFar + zNear) / depth;
+		dst[offset + 11] = -1.0f;
+		dst[offset + 14] = (2.0f * zFar * zNear) / depth;
+		return dst;
+	}
+	
+	/** Computes an orthographic projection matrix equivalent to
+	 * {@code glOrtho(x, x + width, y, y + height, zNear, zFar)}.
+	 * 
+	 * @param x The left edge of the viewport
+	 * @param y The bottom edge of the viewport
+	 * @param width The width of the viewport
+	 * @param height The height of the viewport
+	 * @param zNear The distance to the near clipping plane
+	 * @param zFar The distance to the far clipping plane
+	 * @param dst The array to store the column-major matrix in
+	 * @param offset The offset in the array to store the matrix at
+	 * @return The given array */
+	public static final float[] getOrthographicMatrix(float x, float y, float width, float height, float zNear, float zFar, float[] dst, int offset) {
+		final float left = x, right = x + width, bottom = y, top = y + height;
+		for(int i = 0; i < 16; i++) {
+			dst[offset + i] = 0.0f;
+		}
+		dst[offset] = 2.0f / (right - left);
+		dst[offset + 5] = 2.0f / (top - bottom);
+		dst[offset + 10] = -2.0f / (zFar - zNear);
+		dst[offset + 12] = -(right + left) / (right - left);
+		dst[offset + 13] = -(top + bottom) / (top - bottom);
+		dst[offset + 14] = -(zFar + zNear) / (zFar - zNear);
+		dst[offset + 15] = 1.0f;
+		return dst;
+	}
+	
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.GLUtil;
+import com.gmail.br45entei.game.graphics.MatrixStack;
+import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+
+import java.util.Random;
+
+/** Verifies {@link FloatMatrixStack} against {@link MatrixStack} and
+ * {@link GLUtil}, then compares the time taken and bytes allocated per call
+ * for the matrix operations that {@link TestGame} performs every frame.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class FloatMatrixStackBenchmark {
+	
+	private static final float EPSILON = 1.0E-4f;
+	
+	private static final void check(float[] expected, float[] actual, String message) {
+		for(int i = 0; i < 16; i++) {
+			if(Math.abs(expected[i] - actual[i]) > EPSILON * Math.max(1.0f, Math.abs(expected[i]))) {
+				throw new IllegalStateException(String.format("%s: element %s differs (expected %s, got %s)", message, Integer.toString(i), Float.toString(expected[i]), Float.toString(actual[i])));
+			}
+		}
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final Random random = new Random(0x5EED1L);
+		final MatrixStack legacy = new MatrixStack();
+		final FloatMatrixStack stack = new FloatMatrixStack();
+		final float[] result = new float[16], cube = new float[16], model = new float[12];
+		
+		// Cross-check every rotation and multiplication order against MatrixStack:
+		for(int i = 0; i < 1000; i++) {
+			float x = (random.nextFloat() - 0.5f) * 200.0f, y = (random.nextFloat() - 0.5f) * 200.0f, z = (random.nextFloat() - 0.5f) * 200.0f;
+			float yaw = random.nextFloat() * 360.0f, pitch = random.nextFloat() * 360.0f, roll = random.nextFloat() * 360.0f;
+			float zDist = random.nextFloat() * 10.0f;
+			for(RotationOrder rotationOrder : RotationOrder.values()) {
+				for(MultiplicationOrder order : MultiplicationOrder.values()) {
+					float[] expected = legacy.loadIdentity().translate(0, 0, -zDist).rotate(-yaw, -pitch, -roll, rotationOrder, order).translate(-x, -y, -z, order).peekf();
+					stack.loadIdentity().translate(0, 0, -zDist).rotate(-yaw, -pitch, -roll, rotationOrder, order).translate(-x, -y, -z, order).peek(result);
+					check(expected, result, String.format("Model view (%s, %s)", rotationOrder.name(), order.name()));
+				}
+			}
+			float[] expected = legacy.push().loadIdentity().multMatrix4x4(result).translate(x, y, z).rotate(yaw, pitch, roll).popf();
+			stack.push().load(result).translate(x, y, z).rotate(yaw, pitch, roll).pop(cube);
+			check(expected, cube, "Cube model view");
+			
+			// CubeBatch's model matrix is the 3x4 part of translate(...).rotate(...):
+			CubeBatch.computeModelMatrix(x, y, z, yaw, pitch, roll, model);
+			stack.loadIdentity().translate(x, y, z).rotate(yaw, pitch, roll).peek(cube);
+			for(int c = 0; c < 4; c++) {
+				for(int r = 0; r < 3; r++) {
+					result[(c * 4) + r] = model[(c * 3) + r];
+				}
+				result[(c * 4) + 3] = c == 3 ? 1.0f : 0.0f;
+			}
+			check(cube, result, "CubeBatch model matrix");
+		}
+		check(GLUtil.getPerspectiveMatrixf(70.0f, 800.0f / 600.0f, 0.01f, 1000.0f, true), FloatMatrixStack.getPerspectiveMatrix(70.0f, 800.0f / 600.0f, 0.01f, 1000.0f, result, 0), "Perspective projection");
+		check(GLUtil.getOrthographicMatrixf(0, 0, 800, 600, 0.01f, 1000.0f), FloatMatrixStack.getOrthographicMatrix(0, 0, 800, 600, 0.01f, 1000.0f, result, 0), "Orthographic projection");
+		System.out.println("FloatMatrixStack results match MatrixStack and GLUtil.");
+		
+		final int warmup = 50000, iterations = 1000000;
+		final float[] modelView = stack.loadIdentity().translate(0, 0, -2.0f).rotate(-45.0f, -30.0f, 0.0f, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).peek(new float[16]);
+		MicroBenchmark.run("Model view (MatrixStack)", warmup, iterations, (i) -> legacy.loadIdentity().translate(0, 0, -2.0f).rotate(-i, -30.0f, 0.0f, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-1.0f, -2.0f, -3.0f, MultiplicationOrder.NEWxOLD).peekf());
+		MicroBenchmark.run("Model view (FloatMatrixStack)", warmup, iterations, (i) -> stack.loadIdentity().translate(0, 0, -2.0f).rotate(-i, -30.0f, 0.0f, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-1.0f, -2.0f, -3.0f, MultiplicationOrder.NEWxOLD).peek(result));
+		MicroBenchmark.run("Cube model view (MatrixStack)", warmup, iterations, (i) -> legacy.push().loadIdentity().multMatrix4x4(modelView).translate(1.0f, 0.5f, -3.0f).rotate(i, 0.0f, 0.0f).popf());
+		MicroBenchmark.run("Cube model view (FloatMatrixStack)", warmup, iterations, (i) -> stack.push().load(modelView).translate(1.0f, 0.5f, -3.0f).rotate(i, 0.0f, 0.0f).pop(result));
+		MicroBenchmark.run("Perspective projection (GLUtil)", warmup, iterations, (i) -> GLUtil.getPerspectiveMatrixf(70.0f + (i & 7), 800.0f / 600.0f, 0.01f, 1000.0f, true));
+		MicroBenchmark.run("Perspective projection (FloatMatrixStack)", warmup, iterations, (i) -> FloatMatrixStack.getPerspectiveMatrix(70.0f + (i & 7), 800.0f / 600.0f, 0.01f, 1000.0f, result, 0));
+		MicroBenchmark.run("Orthographic projection (GLUtil)", warmup, iterations, (i) -> GLUtil.getOrthographicMatrixf(0, 0, 800 + (i & 7), 600, 0.01f, 1000.0f));
+		MicroBenchmark.run("Orthographic projection (FloatMatrixStack)", warmup, iterations, (i) -> FloatMatrixStack.getOrthographicMatrix(0, 0, 800 + (i & 7), 600, 0.01f, 1000.0f, result, 0));
+	}
+	
+}
@@ -0,0 +1,464 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A low-overhead, hierarchical profiler for the phases of a frame.<br>
+ * <br>
+ * Scopes are registered once by name (see {@link #scope(String)}) and then
+ * timed by id with {@link #begin(int)} and {@link #end()}, which may be
+ * nested. Each thread records into its own {@link Recorder}, which keeps the
+ * most recent scopes in preallocated ring buffers, so timing a scope takes
+ * two calls to {@link System#nanoTime()} and a few array stores, and never
+ * allocates or synchronizes.<br>
+ * A thread that calls {@link #beginFrame()} and {@link #endFrame()} also
+ * keeps how long each scope took in total during each of its last frames,
+ * from which it reports a rolling minimum, average and 99th percentile per
+ * scope (see {@link Recorder#appendTo(HudText)} for an overlay). A frame
+ * must be begun and ended on the same thread; scopes that a thread times
+ * outside of a frame count towards the next frame that it ends.<br>
+ * <br>
+ * The recorded scopes can be exported as a Chrome trace (see
+ * {@link #writeChromeTrace(Writer)}) and opened in {@code chrome://tracing}
+ * or Perfetto.
+ * 
+ * <pre>
+ * static final FrameProfiler profiler = new FrameProfiler();
+ * static final int RENDER = profiler.scope("render");
+ * 
+ * profiler.beginFrame();
+ * profiler.begin(RENDER);
+ * ...
+ * profiler.end();
+ * profiler.endFrame();
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class FrameProfiler {
+	
+	/** The maximum number of scopes that a profiler can register */
+	public static final int MAX_SCOPES = 128;
+	/** The maximum number of scopes that may be open at once on a thread */
+	public static final int MAX_DEPTH = 64;
+	/** The default number of scopes that each thread's recorder remembers */
+	public static final int DEFAULT_EVENT_CAPACITY = 1 << 16;
+	/** The default number of frames that the rolling statistics cover */
+	public static final int DEFAULT_HISTORY = 120;
+	/** The id of the scope that {@link #beginFrame()} and
+	 * {@link #endFrame()} open and close */
+	public static final int FRAME = 0;
+	
+	private final int eventCapacity;
+	private final int history;
+	private final long origin = System.nanoTime();
+	private final String[] names = new String[MAX_SCOPES];
+	private volatile int scopeCount = 0;
+	private final List<Recorder> recorders = new ArrayList<>();
+	private final ThreadLocal<Recorder> local = ThreadLocal.withInitial(this::createRecorder);
+	private volatile boolean enabled = true;
+	
+	/** Creates a new FrameProfiler that remembers
+	 * {@link #DEFAULT_EVENT_CAPACITY} scopes per thread and keeps statistics
+	 * over the last {@link #DEFAULT_HISTORY} frames. */
+	public FrameProfiler() {
+		this(DEFAULT_EVENT_CAPACITY, DEFAULT_HISTORY);
+	}
+	
+	/** Creates a new FrameProfiler.
+	 * 
+	 * @param eventCapacity The number of scopes that each thread's recorder
+	 *            remembers for {@link #writeChromeTrace(Writer)} (rounded up
+	 *            to the next power of two)
+	 * @param history The number of frames that the rolling statistics
+	 *            cover */
+	public FrameProfiler(int eventCapacity, int history) {
+		if(eventCapacity <= 0 || eventCapacity > (1 << 24)) {
+			throw new IllegalArgumentException("Event capacity must be between 1 and 2^24: ".concat(Integer.toString(eventCapacity)));
+		}
+		if(history <= 0) {
+			throw new IllegalArgumentException("History must be positive: ".concat(Integer.toString(history)));
+		}
+		this.eventCapacity = Integer.highestOneBit(eventCapacity) == eventCapacity ? eventCapacity : Integer.highestOneBit(eventCapacity) << 1;
+		this.history = history;
+		this.scope("frame");
+	}
+	
+	private Recorder createRecorder() {
+		final Recorder recorder = new Recorder(Thread.currentThread());
+		synchronized(this.recorders) {
+			this.recorders.add(recorder);
+		}
+		return recorder;
+	}
+	
+	/** Returns the id of the scope with the given name, registering it if it
+	 * doesn't exist yet.<br>
+	 * Look scopes up once (e.g. into a final field) rather than every time
+	 * they are timed.
+	 * 
+	 * @param name The name of the scope
+	 * @return The scope's id
+	 * @throws IllegalStateException If {@link #MAX_SCOPES} scopes have
+	 *             already been registered */
+	public synchronized int scope(String name) {
+		final int count = this.scopeCount;
+		for(int i = 0; i < count; i++) {
+			if(this.names[i].equals(name)) {
+				return i;
+			}
+		}
+		if(count == MAX_SCOPES) {
+			throw new IllegalStateException("Too many profiler scopes: ".concat(name));
+		}
+		this.names[count] = name;
+		this.scopeCount = count + 1;
+		return count;
+	}
+	
+	/** @param scope The id of a scope
+	 * @return The scope's name */
+	public String getScopeName(int scope) {
+		return this.names[scope];
+	}
+	
+	/** @return The number of scopes that have been registered */
+	public int getScopeCount() {
+		return this.scopeCount;
+	}
+	
+	/** @return Whether or not scopes are being recorded */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+	
+	/** Enables or disables recording. A thread that calls
+	 * {@link #beginFrame()} picks the change up at the start of its next
+	 * frame, so that no frame is only partially recorded.
+	 * 
+	 * @param enabled Whether or not scopes should be recorded
+	 * @return This FrameProfiler */
+	public FrameProfiler setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		return this;
+	}
+	
+	/** @return The calling thread's recorder. Threads that time many scopes
+	 *         can keep it to skip the thread-local lookup in
+	 *         {@link #begin(int)} and {@link #end()}. */
+	public Recorder getRecorder() {
+		return this.local.get();
+	}
+	
+	/** Starts a new frame on the calling thread.
+	 * 
+	 * @see Recorder#beginFrame() */
+	public void beginFrame() {
+		this.local.get().beginFrame();
+	}
+	
+	/** Ends the calling thread's current frame.
+	 * 
+	 * @see Recorder#endFrame() */
+	public void endFrame() {
+		this.local.get().endFrame();
+	}
+	
+	/** Opens a scope on the calling thread.
+	 * 
+	 * @param scope The id of the scope
+	 * @see Recorder#begin(int) */
+	public void begin(int scope) {
+		this.local.get().begin(scope);
+	}
+	
+	/** Closes the calling thread's innermost open scope.
+	 * 
+	 * @see Recorder#end() */
+	public void end() {
+		this.local.get().end();
+	}
+	
+	/** Writes the scopes that every thread's recorder remembers as a Chrome
+	 * trace ({@code "X"} events, with timestamps in microseconds since this
+	 * profiler was created).<br>
+	 * Threads other than the calling one should be idle (e.g. between
+	 * frames); scopes that they record while the trace is being written may
+	 * be left out.
+	 * 
+	 * @param out The writer to write to (it is not closed)
+	 * @return The number of scopes that were written
+	 * @throws IOException If an I/O error occurs */
+	public int writeChromeTrace(Writer out) throws IOException {
+		final Recorder[] recorders;
+		synchronized(this.recorders) {
+			recorders = this.recorders.toArray(new Recorder[this.recorders.size()]);
+		}
+		final String nl = System.lineSeparator();
+		out.write("{\"traceEvents\": [");
+		boolean first = true;
+		int count = 0;
+		for(int r = 0; r < recorders.length; r++) {
+			final Recorder recorder = recorders[r];
+			final int tid = r + 1;
+			out.write(first ? nl : ",".concat(nl));
+			first = false;
+			out.write(String.format("{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": %s, \"args\": {\"name\": %s}}", Integer.toString(tid), MicroBenchmark.quote(recorder.thread.getName())));
+			final long end = recorder.position;
+			for(long position = Math.max(0L, end - this.eventCapacity); position < end; position++) {
+				final int slot = (int) position & recorder.mask;
+				final long duration = recorder.durations[slot];
+				if(duration < 0L) {
+					continue;// Being overwritten
+				}
+				out.write(",".concat(nl));
+				out.write(String.format("{\"name\": %s, \"ph\": \"X\", \"pid\": 1, \"tid\": %s, \"ts\": %.3f, \"dur\": %.3f}", MicroBenchmark.quote(this.names[recorder.scopes[slot]]), Integer.toString(tid), Double.valueOf((recorder.starts[slot] - this.origin) / 1.0E3), Double.valueOf(duration / 1.0E3)));
+				count++;
+			}
+		}
+		out.write(nl.concat("]}").concat(nl));
+		out.flush();
+		return count;
+	}
+	
+	/** Writes a Chrome trace of the recorded scopes to the given file.
+	 * 
+	 * @param file The file to write to
+	 * @return The number of scopes that were written
+	 * @throws IOException If the file could not be written
+	 * @see #writeChromeTrace(Writer) */
+	public int writeChromeTrace(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if(parent != null) {
+			parent.mkdirs();
+		}
+		try(BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			return this.writeChromeTrace(out);
+		}
+	}
+	
+	/** Records the scopes timed by one thread, and its per-frame statistics.
+	 * <br>
+	 * Only the thread that owns a recorder may time scopes with it or read
+	 * its statistics.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public final class Recorder {
+		
+		final Thread thread;
+		final int mask;
+		final long[] starts;
+		final long[] durations;
+		final int[] scopes;
+		long position = 0L;
+		
+		/** The ids and start times of the scopes that are currently open, by
+		 * depth (the ring only receives a scope once it has been closed, so
+		 * that a long frame can't overwrite the scopes still open in it) */
+		private final int[] openScopes = new int[MAX_DEPTH];
+		private final long[] openStarts = new long[MAX_DEPTH];
+		private int depth = 0;
+		private boolean recording = FrameProfiler.this.enabled;
+		
+		private final long[] frameTotals = new long[MAX_SCOPES];
+		private final long[] histories = new long[MAX_SCOPES * FrameProfiler.this.history];
+		private final byte[] scopeDepths = new byte[MAX_SCOPES];
+		private final boolean[] seen = new boolean[MAX_SCOPES];
+		private final long[] sorted = new long[FrameProfiler.this.history];
+		private int frames = 0;
+		
+		Recorder(Thread thread) {
+			this.thread = thread;
+			this.mask = FrameProfiler.this.eventCapacity - 1;
+			this.starts = new long[FrameProfiler.this.eventCapacity];
+			this.durations = new long[FrameProfiler.this.eventCapacity];
+			this.scopes = new int[FrameProfiler.this.eventCapacity];
+		}
+		
+		/** Starts a new frame: picks up whether or not the profiler is
+		 * {@link FrameProfiler#isEnabled() enabled} and opens the
+		 * {@link FrameProfiler#FRAME} scope.<br>
+		 * Scopes that are still open (e.g. because the previous frame threw an
+		 * exception before closing them) are discarded. */
+		public void beginFrame() {
+			this.depth = 0;
+			this.recording = FrameProfiler.this.enabled;
+			this.begin(FRAME);
+		}
+		
+		/** Closes the {@link FrameProfiler#FRAME} scope and adds the time
+		 * that each scope took during the frame to the rolling statistics.
+		 * Does nothing if no frame has begun.
+		 * 
+		 * @throws IllegalStateException If a scope other than the frame is
+		 *             still open */
+		public void endFrame() {
+			if(!this.recording || this.depth == 0) {
+				return;
+			}
+			if(this.depth != 1) {
+				throw new IllegalStateException(String.format("Scope \"%s\" is still open", FrameProfiler.this.names[this.openScopes[this.depth - 1]]));
+			}
+			this.end();
+			final int history = FrameProfiler.this.history, frame = this.frames % history, count = FrameProfiler.this.scopeCount;
+			for(int scope = 0; scope < count; scope++) {
+				this.histories[(scope * history) + frame] = this.frameTotals[scope];
+				this.frameTotals[scope] = 0L;
+			}
+			this.frames++;
+		}
+		
+		/** Opens a scope. Scopes must be closed in the reverse order that
+		 * they were opened in.
+		 * 
+		 * @param scope The id of the scope
+		 * @throws IllegalStateException If {@link FrameProfiler#MAX_DEPTH}
+		 *             scopes are already open */
+		public void begin(int scope) {
+			if(!this.recording) {
+				return;
+			}
+			if(this.depth == MAX_DEPTH) {
+				throw new IllegalStateException("Too many nested profiler scopes");
+			}
+			if(!this.seen[scope]) {
+				this.seen[scope] = true;
+				this.scopeDepths[scope] = (byte) this.depth;
+			}
+			this.openScopes[this.depth] = scope;
+			this.openStarts[this.depth++] = System.nanoTime();
+		}
+		
+		/** Closes the innermost open scope. A scope's time includes the time
+		 * of the scopes nested in it.
+		 * 
+		 * @throws IllegalStateException If no scope is open */
+		public void end() {
+			final long now = System.nanoTime();
+			if(!this.recording) {
+				return;
+			}
+			if(this.depth == 0) {
+				throw new IllegalStateException("No profiler scope is open");
+			}
+			final int scope = this.openScopes[--this.depth];
+			final long start = this.openStarts[this.depth], duration = now - start;
+			final int slot = (int) this.position++ & this.mask;
+			this.durations[slot] = -1L;
+			this.scopes[slot] = scope;
+			this.starts[slot] = start;
+			this.durations[slot] = duration;
+			this.frameTotals[scope] += duration;
+		}
+		
+		/** @return The number of frames that this recorder has completed */
+		public int getFrameCount() {
+			return this.frames;
+		}
+		
+		/** @return The number of frames that the statistics currently cover */
+		public int getHistoryLength() {
+			return Math.min(this.frames, FrameProfiler.this.history);
+		}
+		
+		/** @param scope The id of a scope
+		 * @return The least time that the scope took in total during one of
+		 *         the last frames, in nanoseconds */
+		public long getMin(int scope) {
+			final int n = this.getHistoryLength(), offset = scope * FrameProfiler.this.history;
+			long min = n == 0 ? 0L : Long.MAX_VALUE;
+			for(int i = 0; i < n; i++) {
+				min = Math.min(min, this.histories[offset + i]);
+			}
+			return min;
+		}
+		
+		/** @param scope The id of a scope
+		 * @return The average time that the scope took per frame over the last
+		 *         frames, in nanoseconds */
+		public double getAverage(int scope) {
+			final int n = this.getHistoryLength(), offset = scope * FrameProfiler.this.history;
+			long total = 0L;
+			for(int i = 0; i < n; i++) {
+				total += this.histories[offset + i];
+			}
+			return n == 0 ? 0.0 : total / (double) n;
+		}
+		
+		/** Returns the given percentile of the time that the scope took per
+		 * frame over the last frames, using the nearest-rank method.
+		 * 
+		 * @param scope The id of a scope
+		 * @param percentile The percentile, from {@code 0} to {@code 100}
+		 * @return The percentile, in nanoseconds */
+		public long getPercentile(int scope, double percentile) {
+			final int n = this.getHistoryLength();
+			if(n == 0) {
+				return 0L;
+			}
+			System.arraycopy(this.histories, scope * FrameProfiler.this.history, this.sorted, 0, n);
+			Arrays.sort(this.sorted, 0, n);
+			final int rank = (int) Math.ceil((Math.max(0.0, Math.min(100.0, percentile)) / 100.0) * n);
+			return this.sorted[Math.max(0, rank - 1)];
+		}
+		
+		/** Appends a table of every scope that this recorder has timed, with
+		 * its rolling minimum, average and 99th percentile time per frame
+		 * in milliseconds, indented by nesting depth.
+		 * 
+		 * @param hud The overlay to append to
+		 * @return The overlay */
+		public HudText appendTo(HudText hud) {
+			hud.append("Profiler: last ").append(this.getHistoryLength()).append(" frames (ms);").endLine();
+			hud.append("Scope                         min      avg      p99").endLine();
+			final int count = FrameProfiler.this.scopeCount;
+			for(int scope = 0; scope < count; scope++) {
+				if(!this.seen[scope]) {
+					continue;
+				}
+				int column = this.scopeDepths[scope] * 2;
+				for(int i = 0; i < column; i++) {
+					hud.append(' ');
+				}
+				final String name = FrameProfiler.this.names[scope];
+				hud.append(name);
+				for(column += name.length(); column < 24; column++) {
+					hud.append(' ');
+				}
+				hud.appendPadded(this.getMin(scope) / 1.0E6, 3, 9).appendPadded(this.getAverage(scope) / 1.0E6, 3, 9).appendPadded(this.getPercentile(scope, 99.0) / 1.0E6, 3, 9).endLine();
+			}
+			return hud;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+/** Test and benchmark of {@link FrameProfiler}.<br>
+ * Nested scopes that spin for known times are recorded for a number of
+ * frames, and the rolling statistics and the exported Chrome trace are
+ * checked against them. Then the cost of timing a scope is measured, and the
+ * overhead of timing 1000 scopes per frame is checked to stay under 1% of a
+ * 60 Hz frame, both as projected from that cost and as measured on frames
+ * that do about a frame's worth of work.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class FrameProfilerBenchmark {
+	
+	private static final long spin(long nanos) {
+		final long end = System.nanoTime() + nanos;
+		long spins = 0L;
+		while(System.nanoTime() < end) {
+			spins++;
+		}
+		return spins;
+	}
+	
+	/** A small piece of work: a few rounds of a xorshift generator. */
+	private static final long work(long seed, int rounds) {
+		long x = seed | 1L;
+		for(int i = 0; i < rounds; i++) {
+			x ^= x << 13;
+			x ^= x >>> 7;
+			x ^= x << 17;
+		}
+		return x;
+	}
+	
+	private static final int count(String string, String substring) {
+		int count = 0;
+		for(int i = string.indexOf(substring); i >= 0; i = string.indexOf(substring, i + substring.length())) {
+			count++;
+		}
+		return count;
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws IOException If the trace could not be written */
+	public static final void main(String[] args) throws IOException {
+		// Nested scopes with known durations:
+		final FrameProfiler profiler = new FrameProfiler(1024, 60);
+		final int outer = profiler.scope("outer"), inner = profiler.scope("inner"), other = profiler.scope("other");
+		MicroBenchmark.check(profiler.scope("inner") == inner, "Registering a scope twice should return the same id");
+		final FrameProfiler.Recorder recorder = profiler.getRecorder();
+		final int frames = 100;
+		for(int frame = 0; frame < frames; frame++) {
+			recorder.beginFrame();
+			recorder.begin(outer);
+			spin(20000L);
+			for(int i = 0; i < 2; i++) {
+				recorder.begin(inner);
+				spin(50000L);
+				recorder.end();
+			}
+			recorder.end();
+			recorder.begin(other);
+			spin(frame == frames - 1 ? 2000000L : 10000L);
+			recorder.end();
+			recorder.endFrame();
+		}
+		MicroBenchmark.check(recorder.getFrameCount() == frames && recorder.getHistoryLength() == 60, "Wrong number of frames");
+		MicroBenchmark.check(recorder.getMin(inner) >= 100000L, "inner took at least 2 x 50 us every frame");
+		MicroBenchmark.check(recorder.getMin(outer) >= recorder.getMin(inner) + 20000L, "outer includes inner");
+		MicroBenchmark.check(recorder.getMin(FrameProfiler.FRAME) >= recorder.getMin(outer) + recorder.getMin(other), "The frame includes everything");
+		MicroBenchmark.check(recorder.getPercentile(other, 99.0) >= 2000000L && recorder.getMin(other) < 2000000L, "The slow frame should show up in p99 only");
+		for(int scope = 0; scope < profiler.getScopeCount(); scope++) {
+			MicroBenchmark.check(recorder.getMin(scope) <= recorder.getAverage(scope) && recorder.getAverage(scope) <= recorder.getPercentile(scope, 100.0), "min <= avg <= max");
+		}
+		final HudText hud = new HudText(16, 80).setLineSeparator("\n").begin();
+		recorder.appendTo(hud).end();
+		System.out.println(hud);
+		MicroBenchmark.check(hud.getLineCount() == 2 + 4, "The overlay should list every scope");
+		
+		// Chrome trace: the ring remembers up to the last 1024 scopes (5 per frame):
+		StringWriter trace = new StringWriter();
+		final int written = profiler.writeChromeTrace(trace);
+		MicroBenchmark.check(written == Math.min(1024, frames * 5), String.format("Expected %s scopes, got %s", Integer.toString(Math.min(1024, frames * 5)), Integer.toString(written)));
+		MicroBenchmark.check(count(trace.toString(), "\"ph\": \"X\"") == written && trace.toString().startsWith("{\"traceEvents\": [") && trace.toString().trim().endsWith("]}"), "Malformed trace");
+		
+		// Scopes that are left open by an exception are discarded by the next frame:
+		recorder.beginFrame();
+		recorder.begin(outer);
+		recorder.begin(inner);
+		spin(20000L);
+		recorder.beginFrame();
+		recorder.endFrame();
+		MicroBenchmark.check(recorder.getFrameCount() == frames + 1, "The interrupted frame should not have been recorded");
+		MicroBenchmark.check(recorder.getMin(outer) == 0L && recorder.getMin(inner) == 0L, "The scopes left open should not count towards the frame that discarded them");
+		
+		// Scopes nested deeper than the ring is long (and frames that wrap it) are still timed correctly:
+		final FrameProfiler small = new FrameProfiler(4, 10);
+		final int[] nested = new int[12];
+		for(int i = 0; i < nested.length; i++) {
+			nested[i] = small.scope("nested ".concat(Integer.toString(i)));
+		}
+		final FrameProfiler.Recorder wrapped = small.getRecorder();
+		for(int frame = 0; frame < 10; frame++) {
+			wrapped.beginFrame();
+			for(int i = 0; i < nested.length; i++) {
+				wrapped.begin(nested[i]);
+				spin(5000L);
+			}
+			for(int i = 0; i < nested.length; i++) {
+				wrapped.end();
+			}
+			wrapped.endFrame();
+		}
+		MicroBenchmark.check(wrapped.getFrameCount() == 10, "Wrong number of frames");
+		for(int i = 0; i < nested.length; i++) {
+			final long expected = (nested.length - i) * 5000L;
+			MicroBenchmark.check(wrapped.getMin(nested[i]) >= expected, String.format("Nested scope %s should have taken at least %s ns, but took %s ns", Integer.toString(i), Long.toString(expected), Long.toString(wrapped.getMin(nested[i]))));
+			MicroBenchmark.check(i == 0 ? wrapped.getMin(FrameProfiler.FRAME) >= wrapped.getMin(nested[i]) : wrapped.getMin(nested[i - 1]) >= wrapped.getMin(nested[i]), "An outer scope includes the scopes nested in it");
+		}
+		StringWriter wrappedTrace = new StringWriter();
+		MicroBenchmark.check(small.writeChromeTrace(wrappedTrace) == 4 && count(wrappedTrace.toString(), "\"nested 0\"") == 1 && count(wrappedTrace.toString(), "\"frame\"") == 1, "The trace should hold the last 4 scopes closed");
+		
+		// Frames begun and ended on two threads (e.g. input and rendering) are recorded separately:
+		final FrameProfiler shared = new FrameProfiler(1024, 60);
+		final int input = shared.scope("input"), render = shared.scope("render");
+		final FrameProfiler.Recorder[] inputRecorder = new FrameProfiler.Recorder[1];
+		final Thread inputThread = new Thread(() -> {
+			inputRecorder[0] = shared.getRecorder();
+			for(int frame = 0; frame < frames; frame++) {
+				shared.beginFrame();
+				shared.begin(input);
+				spin(10000L);
+				shared.end();
+				shared.endFrame();
+			}
+		}, "Input");
+		inputThread.start();
+		for(int frame = 0; frame < frames; frame++) {
+			shared.beginFrame();
+			shared.begin(render);
+			spin(20000L);
+			shared.end();
+			shared.endFrame();
+		}
+		try {
+			inputThread.join();
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(ex);
+		}
+		final FrameProfiler.Recorder renderRecorder = shared.getRecorder();
+		MicroBenchmark.check(inputRecorder[0] != null && inputRecorder[0] != renderRecorder, "Each thread should have its own recorder");
+		MicroBenchmark.check(renderRecorder.getFrameCount() == frames && inputRecorder[0].getFrameCount() == frames, "Both threads should have completed all of their frames");
+		MicroBenchmark.check(renderRecorder.getMin(render) >= 20000L && renderRecorder.getMin(input) == 0L, "The render thread's frames should only hold its own scopes");
+		MicroBenchmark.check(inputRecorder[0].getMin(input) >= 10000L && inputRecorder[0].getMin(render) == 0L, "The input thread's frames should only hold its own scopes");
+		StringWriter sharedTrace = new StringWriter();
+		MicroBenchmark.check(shared.writeChromeTrace(sharedTrace) == frames * 4 && count(sharedTrace.toString(), "\"thread_name\"") == 2, "The trace should hold both threads' scopes");
+		
+		// Disabled profiling records nothing:
+		profiler.setEnabled(false);
+		recorder.beginFrame();
+		recorder.begin(outer);
+		recorder.end();
+		recorder.endFrame();
+		MicroBenchmark.check(recorder.getFrameCount() == frames + 1, "A disabled profiler should not record frames");
+		profiler.setEnabled(true);
+		System.out.println(String.format("Statistics, overlay and trace (%s scopes) are consistent.", Integer.toString(written)));
+		
+		// Cost per scope:
+		final FrameProfiler overhead = new FrameProfiler();
+		final FrameProfiler.Recorder r = overhead.getRecorder();
+		final int scope = overhead.scope("scope");
+		final MicroBenchmark.Result result = MicroBenchmark.run("FrameProfiler 1000 scopes", 3000, 3000, (i) -> {
+			r.beginFrame();
+			for(int j = 0; j < 1000; j++) {
+				r.begin(scope);
+				r.end();
+			}
+			r.endFrame();
+			return null;
+		});
+		final double budget = 1.0E9 / 60.0;
+		final double projected = result.nsPerOp / budget;
+		System.out.println(String.format("%.1f ns per scope; 1000 scopes per frame cost %.1f us, %.3f%% of a 60 Hz frame.", Double.valueOf(result.nsPerOp / 1000.0), Double.valueOf(result.nsPerOp / 1.0E3), Double.valueOf(projected * 100.0)));
+		MicroBenchmark.check(projected < 0.01, "Profiling 1000 scopes should take less than 1% of a 60 Hz frame");
+		
+		// Measured on frames of 1000 pieces of work that add up to about a 60 Hz frame:
+		long calibration = Long.MAX_VALUE;
+		for(int i = 0; i < 20; i++) {
+			final long start = System.nanoTime();
+			MicroBenchmark.consume(work(start, 1000 * 1000));
+			calibration = Math.min(calibration, System.nanoTime() - start);
+		}
+		final int pieces = 1000, workRounds = (int) Math.max(1L, Math.round((1000 * budget) / calibration));
+		final int runs = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+		final long[] plain = new long[runs], profiled = new long[runs];
+		long sink = 0L;
+		for(int run = -5; run < runs; run++) {
+			for(int variant = 0; variant < 2; variant++) {
+				final boolean profile = (variant ^ (run & 1)) == 0;
+				final long start = System.nanoTime();
+				if(profile) {
+					r.beginFrame();
+				}
+				for(int i = 0; i < pieces; i++) {
+					if(profile) {
+						r.begin(scope);
+					}
+					sink += work(start + i, workRounds);
+					if(profile) {
+						r.end();
+					}
+				}
+				if(profile) {
+					r.endFrame();
+				}
+				if(run >= 0) {
+					(profile ? profiled : plain)[run] = System.nanoTime() - start;
+				}
+			}
+		}
+		MicroBenchmark.consume(sink);
+		Arrays.sort(plain);
+		Arrays.sort(profiled);
+		final long plainMedian = plain[runs / 2], profiledMedian = profiled[runs / 2];
+		System.out.println(String.format("Frames of %s pieces of work: %.3f ms without and %.3f ms with profiling (median of %s): %+.3f%%", Integer.toString(pieces), Double.valueOf(plainMedian / 1.0E6), Double.valueOf(profiledMedian / 1.0E6), Integer.toString(runs), Double.valueOf(((profiledMedian - plainMedian) * 100.0) / plainMedian)));
+	}
+	
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Collects how long each frame took and summarizes them as percentiles.<br>
+ * The summary can be turned into {@link MicroBenchmark.Result}s (one per
+ * statistic), so that it can be written, read back and compared between runs
+ * with {@link MicroBenchmark#writeJSON(java.io.File, String, List)},
+ * {@link MicroBenchmark#readJSON(java.io.File)} and
+ * {@link MicroBenchmark#compare(java.util.Map, List, double)}.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class FrameTimeReport {
+	
+	private long[] samples = new long[1024];
+	private int count = 0;
+	private long[] sorted = null;
+	
+	/** Creates a new, empty FrameTimeReport. */
+	public FrameTimeReport() {
+	}
+	
+	/** @param nanos How long a frame took, in nanoseconds
+	 * @return This FrameTimeReport */
+	public FrameTimeReport add(long nanos) {
+		if(this.count == this.samples.length) {
+			this.samples = Arrays.copyOf(this.samples, this.count * 2);
+		}
+		this.samples[this.count++] = nanos;
+		this.sorted = null;
+		return this;
+	}
+	
+	/** @return The number of frames */
+	public int getFrameCount() {
+		return this.count;
+	}
+	
+	/** @param frame The frame
+	 * @return How long the given frame took, in nanoseconds */
+	public long getFrameNanos(int frame) {
+		return this.samples[frame];
+	}
+	
+	/** Returns the given percentile of the frame times, using the
+	 * nearest-rank method.
+	 * 
+	 * @param percentile The percentile, from {@code 0} to {@code 100}
+	 * @return The shortest frame time that at least the given percentage of
+	 *         frames took no longer than, in nanoseconds, or {@code 0} if
+	 *         there are no frames */
+	public long getPercentile(double percentile) {
+		if(this.count == 0) {
+			return 0L;
+		}
+		if(this.sorted == null) {
+			this.sorted = Arrays.copyOf(this.samples, this.count);
+			Arrays.sort(this.sorted);
+		}
+		final int rank = (int) Math.ceil((Math.max(0.0, Math.min(100.0, percentile)) / 100.0) * this.count);
+		return this.sorted[Math.max(0, rank - 1)];
+	}
+	
+	/** @return The average frame time, in nanoseconds */
+	public double getMeanNanos() {
+		long total = 0L;
+		for(int i = 0; i < this.count; i++) {
+			total += this.samples[i];
+		}
+		return this.count == 0 ? 0.0 : total / (double) this.count;
+	}
+	
+	/** @param name The name to prefix each statistic with
+	 * @return The mean, p50, p95, p99 and maximum frame times as benchmark
+	 *         results */
+	public List<MicroBenchmark.Result> toResults(String name) {
+		final List<MicroBenchmark.Result> results = new ArrayList<>();
+		results.add(new MicroBenchmark.Result(name.concat(" mean"), this.count, this.getMeanNanos(), -1));
+		results.add(new MicroBenchmark.Result(name.concat(" p50"), this.count, this.getPercentile(50.0), -1));
+		results.add(new MicroBenchmark.Result(name.concat(" p95"), this.count, this.getPercentile(95.0), -1));
+		results.add(new MicroBenchmark.Result(name.concat(" p99"), this.count, this.getPercentile(99.0), -1));
+		results.add(new MicroBenchmark.Result(name.concat(" max"), this.count, this.getPercentile(100.0), -1));
+		return results;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s frames; mean: %.3f ms; p50: %.3f ms; p95: %.3f ms; p99: %.3f ms; max: %.3f ms", Integer.toString(this.count), Double.valueOf(this.getMeanNanos() / 1.0E6), Double.valueOf(this.getPercentile(50.0) / 1.0E6), Double.valueOf(this.getPercentile(95.0) / 1.0E6), Double.valueOf(this.getPercentile(99.0) / 1.0E6), Double.valueOf(this.getPercentile(100.0) / 1.0E6));
+	}
+	
+}
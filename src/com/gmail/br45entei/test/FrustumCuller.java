@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Tests bounding volumes against the camera's view frustum so that objects
+ * which cannot possibly be on screen don't have to be drawn.<br>
+ * <br>
+ * The six frustum planes are extracted from {@code projection * modelView}
+ * (see {@link #update(float[], float[])}), so they are expressed in the same
+ * space as the vertices that the model-view matrix is applied to (world space,
+ * for the test games). Objects are then tested in bulk, straight from
+ * primitive arrays, and the indices of the objects that are (at least
+ * partially) visible are written into a caller-owned {@code int[]}.<br>
+ * <br>
+ * The tests are conservative: an object that is reported as visible might
+ * still be just outside of the frustum near one of its corners, but an
+ * object that is reported as not visible definitely is.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class FrustumCuller {
+	
+	/** The number of objects each fork/join task tests when using
+	 * {@link #cullBoxesParallel(float[], float[], float[], float[], float[], float[], int, int, int[])
+	 * cullBoxesParallel} */
+	public static final int PARALLEL_CHUNK_SIZE = 16384;
+	
+	/** The index of the left plane. Its coefficients start at {@code LEFT * 4} in
+	 * {@link #getPlanes()}. */
+	public static final int LEFT = 0;
+	/** The index of the right plane. Its coefficients start at {@code RIGHT * 4} in
+	 * {@link #getPlanes()}. */
+	public static final int RIGHT = 1;
+	/** The index of the bottom plane. Its coefficients start at {@code BOTTOM * 4} in
+	 * {@link #getPlanes()}. */
+	public static final int BOTTOM = 2;
+	/** The index of the top plane. Its coefficients start at {@code TOP * 4} in
+	 * {@link #getPlanes()}. */
+	public static final int TOP = 3;
+	/** The index of the near plane. Its coefficients start at {@code NEAR * 4} in
+	 * {@link #getPlanes()}. */
+	public static final int NEAR = 4;
+	/** The index of the far plane. Its coefficients start at {@code FAR * 4} in
+	 * {@link #getPlanes()}. */
+	public static final int FAR = 5;
+	
+	/** Returned by {@link #classifyBox(float, float, float, float, float, float)}
+	 * for boxes that are entirely outside of the frustum */
+	public static final int OUTSIDE = 0;
+	/** Returned by {@link #classifyBox(float, float, float, float, float, float)}
+	 * for boxes that are partially inside of the frustum */
+	public static final int INTERSECTING = 1;
+	/** Returned by {@link #classifyBox(float, float, float, float, float, float)}
+	 * for boxes that are entirely inside of the frustum */
+	public static final int INSIDE = 2;
+	
+	private final float[] planes = new float[24];
+	private final float[] clip = new float[16];
+	private int[] chunkCounts = new int[0];
+	
+	/** Creates a new FrustumCuller. Until {@link #update(float[], float[])} is
+	 * called, the frustum is the default OpenGL clip volume (the cube from
+	 * -1 to 1 on every axis). */
+	public FrustumCuller() {
+		FloatMatrixStack.setIdentity(this.clip, 0);
+		this.extractPlanes();
+	}
+	
+	/** @return The six frustum planes ({@code a, b, c, d} each, normalized so
+	 *         that {@code a*x + b*y + c*z + d} is the signed distance of a point
+	 *         from the plane, positive on the inside) */
+	public float[] getPlanes() {
+		return this.planes;
+	}
+	
+	/** Recomputes the frustum planes for the given camera.
+	 * 
+	 * @param projection The column-major projection matrix
+	 * @param modelView The column-major model-view matrix
+	 * @return This FrustumCuller */
+	public FrustumCuller update(float[] projection, float[] modelView) {
+		FloatMatrixStack.multiply(projection, 0, modelView, 0, this.clip);
+		this.extractPlanes();
+		return this;
+	}
+	
+	private void extractPlanes() {
+		final float[] m = this.clip;
+		for(int i = 0; i < 6; i++) {
+			// Each plane is the fourth row of the clip matrix plus or minus one of the other rows:
+			final int row = i >> 1;
+			final float sign = (i & 1) == 0 ? 1.0f : -1.0f;
+			float a = m[3] + (sign * m[row]);
+			float b = m[7] + (sign * m[4 + row]);
+			float c = m[11] + (sign * m[8 + row]);
+			float d = m[15] + (sign * m[12 + row]);
+			final float length = (float) Math.sqrt((a * a) + (b * b) + (c * c));
+			if(length > 0.0f) {
+				a /= length;
+				b /= length;
+				c /= length;
+				d /= length;
+			}
+			this.planes[i * 4] = a;
+			this.planes[(i * 4) + 1] = b;
+			this.planes[(i * 4) + 2] = c;
+			this.planes[(i * 4) + 3] = d;
+		}
+	}
+	
+	//=============================================================================================
+	
+	/** @param x The X coordinate of the sphere's center
+	 * @param y The Y coordinate of the sphere's center
+	 * @param z The Z coordinate of the sphere's center
+	 * @param radius The sphere's radius
+	 * @return Whether or not any part of the sphere may be visible */
+	public boolean isSphereVisible(float x, float y, float z, float radius) {
+		final float[] p = this.planes;
+		for(int i = 0; i < 24; i += 4) {
+			if((p[i] * x) + (p[i + 1] * y) + (p[i + 2] * z) + p[i + 3] < -radius) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** @param minX The box's smallest X coordinate
+	 * @param minY The box's smallest Y coordinate
+	 * @param minZ The box's smallest Z coordinate
+	 * @param maxX The box's largest X coordinate
+	 * @param maxY The box's largest Y coordinate
+	 * @param maxZ The box's largest Z coordinate
+	 * @return Whether or not any part of the axis-aligned box may be
+	 *         visible */
+	public boolean isBoxVisible(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		final float[] p = this.planes;
+		for(int i = 0; i < 24; i += 4) {
+			// Test the corner that lies furthest along the plane's normal:
+			final float a = p[i], b = p[i + 1], c = p[i + 2];
+			if((a * (a >= 0.0f ? maxX : minX)) + (b * (b >= 0.0f ? maxY : minY)) + (c * (c >= 0.0f ? maxZ : minZ)) + p[i + 3] < 0.0f) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** @param minX The box's smallest X coordinate
+	 * @param minY The box's smallest Y coordinate
+	 * @param minZ The box's smallest Z coordinate
+	 * @param maxX The box's largest X coordinate
+	 * @param maxY The box's largest Y coordinate
+	 * @param maxZ The box's largest Z coordinate
+	 * @return {@link #OUTSIDE}, {@link #INTERSECTING} or {@link #INSIDE},
+	 *         depending on how much of the axis-aligned box is inside of the
+	 *         frustum */
+	public int classifyBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		final float[] p = this.planes;
+		final float cx = (minX + maxX) * 0.5f, cy = (minY + maxY) * 0.5f, cz = (minZ + maxZ) * 0.5f;
+		final float ex = (maxX - minX) * 0.5f, ey = (maxY - minY) * 0.5f, ez = (maxZ - minZ) * 0.5f;
+		int result = INSIDE;
+		for(int i = 0; i < 24; i += 4) {
+			final float a = p[i], b = p[i + 1], c = p[i + 2];
+			final float distance = (a * cx) + (b * cy) + (c * cz) + p[i + 3];
+			final float radius = (Math.abs(a) * ex) + (Math.abs(b) * ey) + (Math.abs(c) * ez);
+			if(distance < -radius) {
+				return OUTSIDE;
+			}
+			if(distance < radius) {
+				result = INTERSECTING;
+			}
+		}
+		return result;
+	}
+	
+	/** Tests spheres stored as a structure of arrays.
+	 * 
+	 * @param x The X coordinates of the spheres' centers
+	 * @param y The Y coordinates of the spheres' centers
+	 * @param z The Z coordinates of the spheres' centers
+	 * @param radius The spheres' radii
+	 * @param offset The index of the first sphere to test
+	 * @param count The number of spheres to test
+	 * @param visible The array to write the indices of the visible spheres
+	 *            into. Must have room for {@code count} indices.
+	 * @return The number of indices written into {@code visible} */
+	public int cullSpheres(float[] x, float[] y, float[] z, float[] radius, int offset, int count, int[] visible) {
+		final float[] p = this.planes;
+		final float a0 = p[0], b0 = p[1], c0 = p[2], d0 = p[3], a1 = p[4], b1 = p[5], c1 = p[6], d1 = p[7];
+		final float a2 = p[8], b2 = p[9], c2 = p[10], d2 = p[11], a3 = p[12], b3 = p[13], c3 = p[14], d3 = p[15];
+		final float a4 = p[16], b4 = p[17], c4 = p[18], d4 = p[19], a5 = p[20], b5 = p[21], c5 = p[22], d5 = p[23];
+		int visibleCount = 0;
+		for(int i = offset, end = offset + count; i < end; i++) {
+			final float sx = x[i], sy = y[i], sz = z[i], r = -radius[i];
+			if((a0 * sx) + (b0 * sy) + (c0 * sz) + d0 < r || (a1 * sx) + (b1 * sy) + (c1 * sz) + d1 < r || (a2 * sx) + (b2 * sy) + (c2 * sz) + d2 < r || (a3 * sx) + (b3 * sy) + (c3 * sz) + d3 < r || (a4 * sx) + (b4 * sy) + (c4 * sz) + d4 < r || (a5 * sx) + (b5 * sy) + (c5 * sz) + d5 < r) {
+				continue;
+			}
+			visible[visibleCount++] = i;
+		}
+		return visibleCount;
+	}
+	
+	/** Tests spheres of equal size whose centers are interleaved with other
+	 * data, such as the transforms stored by a {@link CubeBatch}.
+	 * 
+	 * @param positions The array containing the spheres' centers
+	 * @param stride The number of floats between the start of one sphere's
+	 *            center and the next
+	 * @param radius The radius of every sphere
+	 * @param offset The index of the first sphere to test
+	 * @param count The number of spheres to test
+	 * @param visible The array to write the indices of the visible spheres
+	 *            into. Must have room for {@code count} indices.
+	 * @return The number of indices written into {@code visible} */
+	public int cullSpheres(float[] positions, int stride, float radius, int offset, int count, int[] visible) {
+		int visibleCount = 0;
+		for(int i = offset, end = offset + count; i < end; i++) {
+			final int index = i * stride;
+			if(this.isSphereVisible(positions[index], positions[index + 1], positions[index + 2], radius)) {
+				visible[visibleCount++] = i;
+			}
+		}
+		return visibleCount;
+	}
+	
+	/** Tests axis-aligned boxes stored as a structure of arrays.
+	 * 
+	 * @param minX The boxes' smallest X coordinates
+	 * @param minY The boxes' smallest Y coordinates
+	 * @param minZ The boxes' smallest Z coordinates
+	 * @param maxX The boxes' largest X coordinates
+	 * @param maxY The boxes' largest Y coordinates
+	 * @param maxZ The boxes' largest Z coordinates
+	 * @param offset The index of the first box to test
+	 * @param count The number of boxes to test
+	 * @param visible The array to write the indices of the visible boxes
+	 *            into. Must have room for {@code count} indices.
+	 * @return The number of indices written into {@code visible} */
+	public int cullBoxes(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset, int count, int[] visible) {
+		return this.cullBoxes(minX, minY, minZ, maxX, maxY, maxZ, offset, offset + count, visible, 0);
+	}
+	
+	/** Tests the boxes in {@code [start, end)}, writing the indices of the
+	 * visible ones into {@code visible} starting at {@code visibleOffset}. */
+	int cullBoxes(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int start, int end, int[] visible, int visibleOffset) {
+		final float[] p = this.planes;
+		int visibleCount = visibleOffset;
+		boxes:
+		for(int i = start; i < end; i++) {
+			// Center/half-extent form: the box is outside of a plane if its center is further behind it than the box's projected radius
+			final float cx = (minX[i] + maxX[i]) * 0.5f, cy = (minY[i] + maxY[i]) * 0.5f, cz = (minZ[i] + maxZ[i]) * 0.5f;
+			final float ex = (maxX[i] - minX[i]) * 0.5f, ey = (maxY[i] - minY[i]) * 0.5f, ez = (maxZ[i] - minZ[i]) * 0.5f;
+			for(int j = 0; j < 24; j += 4) {
+				final float a = p[j], b = p[j + 1], c = p[j + 2];
+				if((a * cx) + (b * cy) + (c * cz) + p[j + 3] < -((Math.abs(a) * ex) + (Math.abs(b) * ey) + (Math.abs(c) * ez))) {
+					continue boxes;
+				}
+			}
+			visible[visibleCount++] = i;
+		}
+		return visibleCount - visibleOffset;
+	}
+	
+	/** Tests axis-aligned boxes stored as a structure of arrays, splitting the
+	 * work across the common {@link ForkJoinPool}. The resulting indices are
+	 * in the same (ascending) order as those written by
+	 * {@link #cullBoxes(float[], float[], float[], float[], float[], float[], int, int, int[])}.
+	 * 
+	 * @param minX The boxes' smallest X coordinates
+	 * @param minY The boxes' smallest Y coordinates
+	 * @param minZ The boxes' smallest Z coordinates
+	 * @param maxX The boxes' largest X coordinates
+	 * @param maxY The boxes' largest Y coordinates
+	 * @param maxZ The boxes' largest Z coordinates
+	 * @param offset The index of the first box to test
+	 * @param count The number of boxes to test
+	 * @param visible The array to write the indices of the visible boxes
+	 *            into. Must have room for {@code count} indices.
+	 * @return The number of indices written into {@code visible} */
+	public int cullBoxesParallel(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset, int count, int[] visible) {
+		final int chunks = (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		if(chunks <= 1) {
+			return this.cullBoxes(minX, minY, minZ, maxX, maxY, maxZ, offset, count, visible);
+		}
+		if(this.chunkCounts.length < chunks) {
+			this.chunkCounts = new int[chunks];
+		}
+		// Each chunk writes its results into its own region of the output array, which is compacted afterwards:
+		ForkJoinPool.commonPool().invoke(new CullTask(this, minX, minY, minZ, maxX, maxY, maxZ, offset, count, visible, 0, chunks));
+		int visibleCount = this.chunkCounts[0];
+		for(int i = 1; i < chunks; i++) {
+			System.arraycopy(visible, i * PARALLEL_CHUNK_SIZE, visible, visibleCount, this.chunkCounts[i]);
+			visibleCount += this.chunkCounts[i];
+		}
+		return visibleCount;
+	}
+	
+	private static final class CullTask extends RecursiveAction {
+		private static final long serialVersionUID = 4622815133385474027L;
+		
+		private final FrustumCuller culler;
+		private final float[] minX, minY, minZ, maxX, maxY, maxZ;
+		private final int offset, count;
+		private final int[] visible;
+		private final int firstChunk, lastChunk;
+		
+		CullTask(FrustumCuller culler, float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ, int offset, int count, int[] visible, int firstChunk, int lastChunk) {
+			this.culler = culler;
+			this.minX = minX;
+			this.minY = minY;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.maxZ = maxZ;
+			this.offset = offset;
+			this.count = count;
+			this.visible = visible;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+		}
+		
+		@Override
+		protected void compute() {
+			if(this.lastChunk - this.firstChunk == 1) {
+				final int start = this.firstChunk * PARALLEL_CHUNK_SIZE;
+				final int end = Math.min(this.count, start + PARALLEL_CHUNK_SIZE);
+				this.culler.chunkCounts[this.firstChunk] = this.culler.cullBoxes(this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ, this.offset + start, this.offset + end, this.visible, start);
+				return;
+			}
+			final int middle = (this.firstChunk + this.lastChunk) >>> 1;
+			invokeAll(new CullTask(this.culler, this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ, this.offset, this.count, this.visible, this.firstChunk, middle), new CullTask(this.culler, this.minX, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ, this.offset, this.count, this.visible, middle, this.lastChunk));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
+import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Tests {@link FrustumCuller} against camera poses with known results, then
+ * measures how long it takes to cull one million boxes, both on the current
+ * thread and using fork/join.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class FrustumCullerBenchmark {
+	
+	private static final float[] projection = FloatMatrixStack.getPerspectiveMatrix(70.0f, 800.0f / 600.0f, 0.01f, 1000.0f, new float[16], 0);
+	private static final FloatMatrixStack stack = new FloatMatrixStack();
+	private static final float[] modelView = new float[16];
+	
+	/** Points the culler's camera the same way {@link TestGame} does.
+	 * 
+	 * @param culler The culler to update
+	 * @param x The camera's X position
+	 * @param y The camera's Y position
+	 * @param z The camera's Z position
+	 * @param yaw The camera's yaw, in degrees
+	 * @param pitch The camera's pitch, in degrees
+	 * @param roll The camera's roll, in degrees
+	 * @return The culler */
+	static final FrustumCuller setCamera(FrustumCuller culler, float x, float y, float z, float yaw, float pitch, float roll) {
+		stack.loadIdentity().rotate(-yaw, -pitch, -roll, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-x, -y, -z, MultiplicationOrder.NEWxOLD).peek(modelView);
+		return culler.update(projection, modelView);
+	}
+	
+	private static final void checkSphere(FrustumCuller culler, float x, float y, float z, float radius, boolean expected, String pose) {
+		MicroBenchmark.check(culler.isSphereVisible(x, y, z, radius) == expected, String.format("%s: sphere at (%s, %s, %s) with radius %s should %sbe visible!", pose, Float.toString(x), Float.toString(y), Float.toString(z), Float.toString(radius), expected ? "" : "not "));
+	}
+	
+	private static final void checkBox(FrustumCuller culler, float minX, float minY, float minZ, float maxX, float maxY, float maxZ, boolean expected, String pose) {
+		MicroBenchmark.check(culler.isBoxVisible(minX, minY, minZ, maxX, maxY, maxZ) == expected, String.format("%s: box from (%s, %s, %s) to (%s, %s, %s) should %sbe visible!", pose, Float.toString(minX), Float.toString(minY), Float.toString(minZ), Float.toString(maxX), Float.toString(maxY), Float.toString(maxZ), expected ? "" : "not "));
+		float[][] box = {{minX}, {minY}, {minZ}, {maxX}, {maxY}, {maxZ}};
+		MicroBenchmark.check(culler.cullBoxes(box[0], box[1], box[2], box[3], box[4], box[5], 0, 1, new int[1]) == (expected ? 1 : 0), pose.concat(": cullBoxes disagrees with isBoxVisible!"));
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final FrustumCuller culler = new FrustumCuller();
+		
+		// Known camera poses (fovy 70, 800x600, zNear 0.01, zFar 1000; the visible half-width at a distance of 5 is about 4.67):
+		String pose = "Looking down -Z";
+		setCamera(culler, 0, 0, 0, 0, 0, 0);
+		checkSphere(culler, 0, 0, -5, 1, true, pose);
+		checkSphere(culler, 0, 0, 5, 1, false, pose);
+		checkSphere(culler, 0, 0, -2000, 1, false, pose);
+		checkSphere(culler, 100, 0, -5, 1, false, pose);
+		checkSphere(culler, 6, 0, -5, 2, true, pose);
+		checkSphere(culler, 6, 0, -5, 0.1f, false, pose);
+		checkSphere(culler, 0, 0, -0.001f, 0.0001f, false, pose);
+		checkBox(culler, -1, -1, -6, 1, 1, -4, true, pose);
+		checkBox(culler, -100, -1, -6, -3, 1, -4, true, pose);
+		checkBox(culler, -100, -1, -6, -6, 1, -4, false, pose);
+		checkBox(culler, -1, -1, 4, 1, 1, 6, false, pose);
+		
+		pose = "Turned around";
+		setCamera(culler, 0, 0, 0, 180, 0, 0);
+		checkSphere(culler, 0, 0, 5, 1, true, pose);
+		checkSphere(culler, 0, 0, -5, 1, false, pose);
+		
+		pose = "Looking down -X";
+		setCamera(culler, 0, 0, 0, 90, 0, 0);
+		checkSphere(culler, -5, 0, 0, 1, true, pose);
+		checkSphere(culler, 5, 0, 0, 1, false, pose);
+		checkSphere(culler, 0, 0, -5, 1, false, pose);
+		
+		pose = "Looking up";
+		setCamera(culler, 0, 0, 0, 0, 90, 0);
+		checkSphere(culler, 0, 5, 0, 1, true, pose);
+		checkSphere(culler, 0, -5, 0, 1, false, pose);
+		
+		pose = "Rolled sideways";
+		setCamera(culler, 0, 0, 0, 0, 0, 90);
+		// The visible half-height (now along X) at a distance of 5 is about 3.5:
+		checkSphere(culler, 4.2f, 0, -5, 0.1f, false, pose);
+		checkSphere(culler, 0, 4.2f, -5, 0.1f, true, pose);
+		
+		pose = "Moved to (10, 0, 10)";
+		setCamera(culler, 10, 0, 10, 0, 0, 0);
+		checkSphere(culler, 10, 0, 5, 1, true, pose);
+		checkSphere(culler, 0, 0, 5, 1, false, pose);
+		
+		// TestGame's cubes, seen from the default camera position:
+		setCamera(culler, 0, 0, 0, 0, 0, 0);
+		CubeBatch batch = new CubeBatch(1.0f, 1.0f, 1.0f, 4);
+		batch.add(0, -1, -4, 0, 0, 0, 1, 0, 0);
+		batch.add(0, 0, 0, 0, 0, 0, 0, 1, 0);
+		batch.add(7, 4, 4, 45, 45, 45, 0, 0, 1);
+		batch.add(4, 4, 7, 0, 0, 0, 1, 1, 1);
+		int[] visible = new int[4];
+		int visibleCount = batch.cull(culler, visible);
+		MicroBenchmark.check(visibleCount == 2 && visible[0] == 0 && visible[1] == 1, "Expected cubes 0 and 1 to be visible, got: ".concat(Arrays.toString(Arrays.copyOf(visible, visibleCount))));
+		RecordingGLBackend recorder = new RecordingGLBackend();
+		batch.draw(recorder, visible, visibleCount);
+		MicroBenchmark.check(recorder.getDrawCalls() == 1 && recorder.getVerticesDrawn() == 2 * CubeBatch.INDICES_PER_CUBE, "Culled batch drew the wrong cubes: ".concat(recorder.toString()));
+		recorder.reset();
+		batch.draw(recorder, visible, visibleCount);
+		MicroBenchmark.check(recorder.getCount(RecordingGLBackend.Call.BUFFER_DATA) == 0, "Unchanged visible set was re-uploaded: ".concat(recorder.toString()));
+		// Every cube visible, in the (unsorted) order a BoundingVolumeHierarchy query returns them, draws the whole batch without uploading indices:
+		batch.draw(recorder);
+		recorder.reset();
+		batch.draw(recorder, new int[] {3, 1, 0, 2}, 4);
+		MicroBenchmark.check(recorder.getCount(RecordingGLBackend.Call.BUFFER_DATA) == 0 && recorder.getVerticesDrawn() == 4 * CubeBatch.INDICES_PER_CUBE, "Unsorted full visible set was not drawn as the whole batch: ".concat(recorder.toString()));
+		System.out.println("Known camera poses verified.");
+		
+		// Cull one million random boxes:
+		final int count = 1000000;
+		final Random random = new Random(0xC0111L);
+		final float[] minX = new float[count], minY = new float[count], minZ = new float[count], maxX = new float[count], maxY = new float[count], maxZ = new float[count];
+		final float[] x = new float[count], y = new float[count], z = new float[count], radius = new float[count];
+		for(int i = 0; i < count; i++) {
+			x[i] = (random.nextFloat() - 0.5f) * 1000.0f;
+			y[i] = (random.nextFloat() - 0.5f) * 1000.0f;
+			z[i] = (random.nextFloat() - 0.5f) * 1000.0f;
+			float ex = random.nextFloat() * 2.0f, ey = random.nextFloat() * 2.0f, ez = random.nextFloat() * 2.0f;
+			minX[i] = x[i] - ex;
+			minY[i] = y[i] - ey;
+			minZ[i] = z[i] - ez;
+			maxX[i] = x[i] + ex;
+			maxY[i] = y[i] + ey;
+			maxZ[i] = z[i] + ez;
+			radius[i] = (float) Math.sqrt((ex * ex) + (ey * ey) + (ez * ez));
+		}
+		setCamera(culler, 0, 0, 0, 30, 10, 0);
+		final int[] sequential = new int[count], parallel = new int[count];
+		final int sequentialCount = culler.cullBoxes(minX, minY, minZ, maxX, maxY, maxZ, 0, count, sequential);
+		final int parallelCount = culler.cullBoxesParallel(minX, minY, minZ, maxX, maxY, maxZ, 0, count, parallel);
+		MicroBenchmark.check(sequentialCount == parallelCount && Arrays.equals(sequential, 0, sequentialCount, parallel, 0, parallelCount), "Parallel culling results differ from sequential results!");
+		int expectedCount = 0;
+		for(int i = 0; i < count; i++) {
+			if(culler.isBoxVisible(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+				MicroBenchmark.check(expectedCount < sequentialCount && sequential[expectedCount] == i, String.format("Box %s is visible but was culled!", Integer.toString(i)));
+				expectedCount++;
+			}
+		}
+		MicroBenchmark.check(expectedCount == sequentialCount, "Bulk culling results differ from isBoxVisible!");
+		System.out.println(String.format("%s of %s boxes visible.", Integer.toString(sequentialCount), Integer.toString(count)));
+		
+		MicroBenchmark.run("Cull 1M boxes", 10, 100, (i) -> Integer.valueOf(culler.cullBoxes(minX, minY, minZ, maxX, maxY, maxZ, 0, count, sequential)));
+		MicroBenchmark.run("Cull 1M boxes (fork/join)", 10, 100, (i) -> Integer.valueOf(culler.cullBoxesParallel(minX, minY, minZ, maxX, maxY, maxZ, 0, count, parallel)));
+		MicroBenchmark.run("Cull 1M spheres", 10, 100, (i) -> Integer.valueOf(culler.cullSpheres(x, y, z, radius, 0, count, sequential)));
+	}
+	
+}
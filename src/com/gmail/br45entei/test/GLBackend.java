@@ -0,0 +1,442 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+
+/** The subset of OpenGL that the renderers in this package use.<br>
+ * Routing GL calls through this interface instead of calling
+ * {@link GL11}/{@link GL15}/{@link GL20} directly allows the renderers to be driven
+ * without a display or a GL context (see {@link RecordingGLBackend}).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public interface GLBackend {
+	
+	/** A {@link GLBackend} that passes every call straight through to LWJGL.
+	 * Only usable on a thread that has a current GL context. */
+	public static final GLBackend LWJGL = new LWJGLBackend();
+	
+	/** @return A newly generated buffer object name */
+	public int glGenBuffers();
+	
+	/** @param buffer The buffer object to delete */
+	public void glDeleteBuffers(int buffer);
+	
+	/** @param target The buffer binding target
+	 * @param buffer The buffer object to bind */
+	public void glBindBuffer(int target, int buffer);
+	
+	/** @param target The buffer binding target
+	 * @param data The data to upload
+	 * @param usage The expected usage pattern of the data */
+	public void glBufferData(int target, ByteBuffer data, int usage);
+	
+	/** @param target The buffer binding target
+	 * @param data The data to upload
+	 * @param usage The expected usage pattern of the data */
+	public void glBufferData(int target, FloatBuffer data, int usage);
+	
+	/** @param target The buffer binding target
+	 * @param data The data to upload
+	 * @param usage The expected usage pattern of the data */
+	public void glBufferData(int target, IntBuffer data, int usage);
+	
+	/** @param target The buffer binding target
+	 * @param size The size of the buffer's (uninitialized) data store, in
+	 *            bytes
+	 * @param usage The expected usage pattern of the data */
+	public void glBufferData(int target, long size, int usage);
+	
+	/** @param target The buffer binding target
+	 * @param offset The offset into the buffer's data store at which to
+	 *            replace its data, in bytes
+	 * @param data The data to upload */
+	public void glBufferSubData(int target, long offset, ByteBuffer data);
+	
+	/** @param cap The capability to enable */
+	public void glEnable(int cap);
+	
+	/** @param cap The capability to disable */
+	public void glDisable(int cap);
+	
+	/** @param cap The client-side array to enable */
+	public void glEnableClientState(int cap);
+	
+	/** @param cap The client-side array to disable */
+	public void glDisableClientState(int cap);
+	
+	/** @param size The number of coordinates per vertex
+	 * @param type The data type of each coordinate
+	 * @param stride The byte offset between consecutive vertices
+	 * @param pointer The offset of the first coordinate in the bound buffer */
+	public void glVertexPointer(int size, int type, int stride, long pointer);
+	
+	/** @param size The number of components per color
+	 * @param type The data type of each component
+	 * @param stride The byte offset between consecutive colors
+	 * @param pointer The offset of the first component in the bound buffer */
+	public void glColorPointer(int size, int type, int stride, long pointer);
+	
+	/** @param size The number of coordinates per texture coordinate set
+	 * @param type The data type of each coordinate
+	 * @param stride The byte offset between consecutive coordinate sets
+	 * @param pointer The offset of the first coordinate in the bound buffer */
+	public void glTexCoordPointer(int size, int type, int stride, long pointer);
+	
+	/** @param sfactor How the source blending factors are computed
+	 * @param dfactor How the destination blending factors are computed */
+	public void glBlendFunc(int sfactor, int dfactor);
+	
+	/** @param mode The winding that denotes front-facing polygons */
+	public void glFrontFace(int mode);
+	
+	/** @param mode The faces that are culled */
+	public void glCullFace(int mode);
+	
+	/** @param mode The kind of primitives to render
+	 * @param first The starting index in the enabled arrays
+	 * @param count The number of indices to render */
+	public void glDrawArrays(int mode, int first, int count);
+	
+	/** @param mode The kind of primitives to render
+	 * @param count The number of elements to render
+	 * @param type The type of the values in the bound element array buffer
+	 * @param indices The offset of the first index in the bound element array
+	 *            buffer */
+	public void glDrawElements(int mode, int count, int type, long indices);
+	
+	/** @param mode The matrix stack that subsequent matrix operations target */
+	public void glMatrixMode(int mode);
+	
+	/** @param matrix The column-major 4x4 matrix to load */
+	public void glLoadMatrixf(float[] matrix);
+	
+	/** @param matrix The matrix to replace the current matrix with, in
+	 *            column-major order */
+	public void glLoadMatrixd(double[] matrix);
+	
+	/** @return A newly generated texture object name */
+	public int glGenTextures();
+	
+	/** @param texture The texture object to delete */
+	public void glDeleteTextures(int texture);
+	
+	/** @param target The texture binding target
+	 * @param texture The texture object to bind */
+	public void glBindTexture(int target, int texture);
+	
+	/** @param target The texture binding target
+	 * @param pname The texture parameter to set
+	 * @param param The parameter's new value */
+	public void glTexParameteri(int target, int pname, int param);
+	
+	/** @param target The texture binding target
+	 * @param level The mipmap level to upload
+	 * @param internalformat The format the texture is stored in
+	 * @param width The width of the image, in pixels
+	 * @param height The height of the image, in pixels
+	 * @param border Must be zero
+	 * @param format The format of the pixel data
+	 * @param type The data type of the pixel data
+	 * @param pixels The pixel data to upload */
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, ByteBuffer pixels);
+	
+	/** @param x The left edge of the viewport, in pixels
+	 * @param y The bottom edge of the viewport, in pixels
+	 * @param width The width of the viewport, in pixels
+	 * @param height The height of the viewport, in pixels */
+	public void glViewport(int x, int y, int width, int height);
+	
+	/** @param red The red component of the clear color
+	 * @param green The green component of the clear color
+	 * @param blue The blue component of the clear color
+	 * @param alpha The alpha component of the clear color */
+	public void glClearColor(float red, float green, float blue, float alpha);
+	
+	/** @param mask The buffers to clear */
+	public void glClear(int mask);
+	
+	/** @param target The behavior to control
+	 * @param mode The desired behavior */
+	public void glHint(int target, int mode);
+	
+	/** @param func The depth comparison function */
+	public void glDepthFunc(int func);
+	
+	/** Replaces the current matrix with the identity matrix. */
+	public void glLoadIdentity();
+	
+	/** @param red The red component of the current color
+	 * @param green The green component of the current color
+	 * @param blue The blue component of the current color */
+	public void glColor3f(float red, float green, float blue);
+	
+	/** @param mode The kind of primitives that the following vertices make */
+	public void glBegin(int mode);
+	
+	/** @param x The x coordinate of the vertex
+	 * @param y The y coordinate of the vertex */
+	public void glVertex2f(float x, float y);
+	
+	/** Ends the primitives started by {@link #glBegin(int)}. */
+	public void glEnd();
+	
+	/** @param index The generic vertex attribute to modify
+	 * @param size The number of components per attribute
+	 * @param type The data type of each component
+	 * @param normalized Whether or not fixed-point values are normalized
+	 * @param stride The byte offset between consecutive attributes
+	 * @param pointer The offset of the first component in the bound buffer */
+	public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer);
+	
+	/** @param index The generic vertex attribute array to enable */
+	public void glEnableVertexAttribArray(int index);
+	
+	/** @param pname The state variable to query
+	 * @return The state variable's value */
+	public int glGetInteger(int pname);
+	
+	/** {@link GLBackend} implementation that calls LWJGL directly.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static class LWJGLBackend implements GLBackend {
+		
+		/** Use {@link GLBackend#LWJGL} instead. */
+		protected LWJGLBackend() {
+		}
+		
+		@Override
+		public int glGenBuffers() {
+			return GL15.glGenBuffers();
+		}
+		
+		@Override
+		public void glDeleteBuffers(int buffer) {
+			GL15.glDeleteBuffers(buffer);
+		}
+		
+		@Override
+		public void glBindBuffer(int target, int buffer) {
+			GL15.glBindBuffer(target, buffer);
+		}
+		
+		@Override
+		public void glBufferData(int target, ByteBuffer data, int usage) {
+			GL15.glBufferData(target, data, usage);
+		}
+		
+		@Override
+		public void glBufferData(int target, FloatBuffer data, int usage) {
+			GL15.glBufferData(target, data, usage);
+		}
+		
+		@Override
+		public void glBufferData(int target, IntBuffer data, int usage) {
+			GL15.glBufferData(target, data, usage);
+		}
+		
+		@Override
+		public void glBufferData(int target, long size, int usage) {
+			GL15.glBufferData(target, size, usage);
+		}
+		
+		@Override
+		public void glBufferSubData(int target, long offset, ByteBuffer data) {
+			GL15.glBufferSubData(target, offset, data);
+		}
+		
+		@Override
+		public void glEnable(int cap) {
+			GL11.glEnable(cap);
+		}
+		
+		@Override
+		public void glDisable(int cap) {
+			GL11.glDisable(cap);
+		}
+		
+		@Override
+		public void glEnableClientState(int cap) {
+			GL11.glEnableClientState(cap);
+		}
+		
+		@Override
+		public void glDisableClientState(int cap) {
+			GL11.glDisableClientState(cap);
+		}
+		
+		@Override
+		public void glVertexPointer(int size, int type, int stride, long pointer) {
+			GL11.glVertexPointer(size, type, stride, pointer);
+		}
+		
+		@Override
+		public void glColorPointer(int size, int type, int stride, long pointer) {
+			GL11.glColorPointer(size, type, stride, pointer);
+		}
+		
+		@Override
+		public void glTexCoordPointer(int size, int type, int stride, long pointer) {
+			GL11.glTexCoordPointer(size, type, stride, pointer);
+		}
+		
+		@Override
+		public void glBlendFunc(int sfactor, int dfactor) {
+			GL11.glBlendFunc(sfactor, dfactor);
+		}
+		
+		@Override
+		public void glFrontFace(int mode) {
+			GL11.glFrontFace(mode);
+		}
+		
+		@Override
+		public void glCullFace(int mode) {
+			GL11.glCullFace(mode);
+		}
+		
+		@Override
+		public void glDrawArrays(int mode, int first, int count) {
+			GL11.glDrawArrays(mode, first, count);
+		}
+		
+		@Override
+		public void glDrawElements(int mode, int count, int type, long indices) {
+			GL11.glDrawElements(mode, count, type, indices);
+		}
+		
+		@Override
+		public void glMatrixMode(int mode) {
+			GL11.glMatrixMode(mode);
+		}
+		
+		@Override
+		public void glLoadMatrixf(float[] matrix) {
+			GL11.glLoadMatrixf(matrix);
+		}
+		
+		@Override
+		public void glLoadMatrixd(double[] matrix) {
+			GL11.glLoadMatrixd(matrix);
+		}
+		
+		@Override
+		public int glGenTextures() {
+			return GL11.glGenTextures();
+		}
+		
+		@Override
+		public void glDeleteTextures(int texture) {
+			GL11.glDeleteTextures(texture);
+		}
+		
+		@Override
+		public void glBindTexture(int target, int texture) {
+			GL11.glBindTexture(target, texture);
+		}
+		
+		@Override
+		public void glTexParameteri(int target, int pname, int param) {
+			GL11.glTexParameteri(target, pname, param);
+		}
+		
+		@Override
+		public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, ByteBuffer pixels) {
+			GL11.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+		}
+		
+		@Override
+		public void glViewport(int x, int y, int width, int height) {
+			GL11.glViewport(x, y, width, height);
+		}
+		
+		@Override
+		public void glClearColor(float red, float green, float blue, float alpha) {
+			GL11.glClearColor(red, green, blue, alpha);
+		}
+		
+		@Override
+		public void glClear(int mask) {
+			GL11.glClear(mask);
+		}
+		
+		@Override
+		public void glHint(int target, int mode) {
+			GL11.glHint(target, mode);
+		}
+		
+		@Override
+		public void glDepthFunc(int func) {
+			GL11.glDepthFunc(func);
+		}
+		
+		@Override
+		public void glLoadIdentity() {
+			GL11.glLoadIdentity();
+		}
+		
+		@Override
+		public void glColor3f(float red, float green, float blue) {
+			GL11.glColor3f(red, green, blue);
+		}
+		
+		@Override
+		public void glBegin(int mode) {
+			GL11.glBegin(mode);
+		}
+		
+		@Override
+		public void glVertex2f(float x, float y) {
+			GL11.glVertex2f(x, y);
+		}
+		
+		@Override
+		public void glEnd() {
+			GL11.glEnd();
+		}
+		
+		@Override
+		public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+			GL20.glVertexAttribPointer(index, size, type, normalized, stride, pointer);
+		}
+		
+		@Override
+		public void glEnableVertexAttribArray(int index) {
+			GL20.glEnableVertexAttribArray(index);
+		}
+		
+		@Override
+		public int glGetInteger(int pname) {
+			return GL11.glGetInteger(pname);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,510 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** A {@link GLBackend} that shadows the GL state that the renderers in this
+ * package change, and skips the calls that would set a piece of state to the
+ * value that it already has.<br>
+ * <br>
+ * The shadowed state is: enabled capabilities and client states, hints,
+ * buffer bindings, texture bindings (of the active texture unit, which the
+ * renderers never change), the vertex, color and texture coordinate
+ * pointers (along with the buffer that each one was set from), the blending
+ * function, the front face, the culled face, the depth function, the matrix
+ * mode, the viewport and the clear color. Every other call is passed straight
+ * through.<br>
+ * <br>
+ * The cache starts out knowing nothing, so the first call that sets each
+ * piece of state is always passed through. Whenever code changes GL state
+ * without going through this cache (e.g. another {@link com.gmail.br45entei.game.Game Game}
+ * that shares the GL context, or a library that calls {@link GL11} directly),
+ * {@link #invalidate()} must be called before the cache is used again.<br>
+ * Like the GL context itself, a GLStateCache must only be used by one thread
+ * at a time.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class GLStateCache implements GLBackend {
+	
+	/** The value of a piece of state that this cache doesn't know */
+	private static final int UNKNOWN = Integer.MIN_VALUE;
+	
+	/** A small map from GL enums (capabilities, targets) to the value of the
+	 * state that they name.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	private static final class StateTable {
+		private int[] keys = new int[8], values = new int[8];
+		private int size = 0;
+		
+		StateTable() {
+		}
+		
+		int get(int key) {
+			for(int i = 0; i < this.size; i++) {
+				if(this.keys[i] == key) {
+					return this.values[i];
+				}
+			}
+			return UNKNOWN;
+		}
+		
+		/** @return Whether or not the value changed */
+		boolean set(int key, int value) {
+			for(int i = 0; i < this.size; i++) {
+				if(this.keys[i] == key) {
+					if(this.values[i] == value) {
+						return false;
+					}
+					this.values[i] = value;
+					return true;
+				}
+			}
+			if(this.size == this.keys.length) {
+				this.keys = Arrays.copyOf(this.keys, this.size * 2);
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			this.keys[this.size] = key;
+			this.values[this.size++] = value;
+			return true;
+		}
+		
+		/** Sets every entry that has the given value to the other value. */
+		void replace(int value, int replacement) {
+			for(int i = 0; i < this.size; i++) {
+				if(this.values[i] == value) {
+					this.values[i] = replacement;
+				}
+			}
+		}
+		
+		void clear() {
+			this.size = 0;
+		}
+		
+	}
+	
+	/** The array pointers that are shadowed */
+	private static final int VERTEX = 0, COLOR = 1, TEX_COORD = 2;
+	/** The values that make up an array pointer: the array buffer it was set
+	 * from, size, type, stride and the pointer itself */
+	private static final int POINTER_STRIDE = 5;
+	
+	private final GLBackend gl;
+	
+	private final StateTable capabilities = new StateTable();
+	private final StateTable clientStates = new StateTable();
+	private final StateTable hints = new StateTable();
+	private final StateTable buffers = new StateTable();
+	private final StateTable textures = new StateTable();
+	private final long[] pointers = new long[3 * POINTER_STRIDE];
+	private int blendSFactor, blendDFactor, frontFace, cullFace, depthFunc, matrixMode;
+	private int viewportX, viewportY, viewportWidth, viewportHeight;
+	private float clearRed, clearGreen, clearBlue, clearAlpha;
+	private boolean clearColorKnown;
+	
+	private volatile boolean enabled = true;
+	private long forwarded = 0L, avoided = 0L;
+	
+	/** Creates a new GLStateCache.
+	 * 
+	 * @param gl The backend to pass the calls that change state on to */
+	public GLStateCache(GLBackend gl) {
+		this.gl = Objects.requireNonNull(gl, "GL backend cannot be null!");
+		this.invalidate();
+	}
+	
+	/** Forgets everything that this cache knows about the GL state, so that
+	 * the next call that sets each piece of state is passed through.
+	 * 
+	 * @return This GLStateCache */
+	public GLStateCache invalidate() {
+		this.capabilities.clear();
+		this.clientStates.clear();
+		this.hints.clear();
+		this.buffers.clear();
+		this.textures.clear();
+		Arrays.fill(this.pointers, UNKNOWN);
+		this.blendSFactor = this.blendDFactor = this.frontFace = this.cullFace = this.depthFunc = this.matrixMode = UNKNOWN;
+		this.viewportX = this.viewportY = this.viewportWidth = this.viewportHeight = UNKNOWN;
+		this.clearColorKnown = false;
+		return this;
+	}
+	
+	/** @return Whether or not this cache skips calls that wouldn't change
+	 *         anything */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+	
+	/** Sets whether or not this cache skips calls that wouldn't change
+	 * anything. A disabled cache passes every call through (and keeps
+	 * shadowing the state, so it can be enabled again at any time).
+	 * 
+	 * @param enabled Whether or not to skip redundant calls
+	 * @return This GLStateCache */
+	public GLStateCache setEnabled(boolean enabled) {
+		this.enabled = enabled;
+		return this;
+	}
+	
+	/** @return The backend that this cache passes calls on to */
+	public GLBackend getBackend() {
+		return this.gl;
+	}
+	
+	/** @return The number of calls that changed state and were passed
+	 *         through */
+	public long getForwardedCalls() {
+		return this.forwarded;
+	}
+	
+	/** @return The number of calls that would not have changed any state,
+	 *         and were skipped */
+	public long getAvoidedCalls() {
+		return this.avoided;
+	}
+	
+	/** Resets {@link #getForwardedCalls()} and {@link #getAvoidedCalls()} to
+	 * zero (but keeps the shadowed state).
+	 * 
+	 * @return This GLStateCache */
+	public GLStateCache resetCounters() {
+		this.forwarded = this.avoided = 0L;
+		return this;
+	}
+	
+	/** Counts a call that sets state.
+	 * 
+	 * @param changed Whether or not the call changes the state
+	 * @return Whether or not the call should be passed through */
+	private boolean count(boolean changed) {
+		if(changed || !this.enabled) {
+			this.forwarded++;
+			return true;
+		}
+		this.avoided++;
+		return false;
+	}
+	
+	private boolean setPointer(int array, int size, int type, int stride, long pointer) {
+		final long[] p = this.pointers;
+		final int i = array * POINTER_STRIDE;
+		final long buffer = this.buffers.get(GL15.GL_ARRAY_BUFFER);
+		// A pointer set from an unknown buffer binding can not be compared:
+		if(buffer != UNKNOWN && p[i] == buffer && p[i + 1] == size && p[i + 2] == type && p[i + 3] == stride && p[i + 4] == pointer) {
+			return this.count(false);
+		}
+		p[i] = buffer;
+		p[i + 1] = size;
+		p[i + 2] = type;
+		p[i + 3] = stride;
+		p[i + 4] = pointer;
+		return this.count(true);
+	}
+	
+	//=============================================================================================
+	
+	@Override
+	public int glGenBuffers() {
+		return this.gl.glGenBuffers();
+	}
+	
+	@Override
+	public void glDeleteBuffers(int buffer) {
+		this.gl.glDeleteBuffers(buffer);
+		if(buffer != 0) {
+			// Deleting a bound buffer binds zero in its place:
+			this.buffers.replace(buffer, 0);
+			for(int i = 0; i < this.pointers.length; i += POINTER_STRIDE) {
+				if(this.pointers[i] == buffer) {
+					this.pointers[i] = UNKNOWN;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		if(this.count(this.buffers.set(target, buffer))) {
+			this.gl.glBindBuffer(target, buffer);
+		}
+	}
+	
+	@Override
+	public void glBufferData(int target, ByteBuffer data, int usage) {
+		this.gl.glBufferData(target, data, usage);
+	}
+	
+	@Override
+	public void glBufferData(int target, FloatBuffer data, int usage) {
+		this.gl.glBufferData(target, data, usage);
+	}
+	
+	@Override
+	public void glBufferData(int target, IntBuffer data, int usage) {
+		this.gl.glBufferData(target, data, usage);
+	}
+	
+	@Override
+	public void glBufferData(int target, long size, int usage) {
+		this.gl.glBufferData(target, size, usage);
+	}
+	
+	@Override
+	public void glBufferSubData(int target, long offset, ByteBuffer data) {
+		this.gl.glBufferSubData(target, offset, data);
+	}
+	
+	@Override
+	public void glEnable(int cap) {
+		if(this.count(this.capabilities.set(cap, 1))) {
+			this.gl.glEnable(cap);
+		}
+	}
+	
+	@Override
+	public void glDisable(int cap) {
+		if(this.count(this.capabilities.set(cap, 0))) {
+			this.gl.glDisable(cap);
+		}
+	}
+	
+	@Override
+	public void glEnableClientState(int cap) {
+		if(this.count(this.clientStates.set(cap, 1))) {
+			this.gl.glEnableClientState(cap);
+		}
+	}
+	
+	@Override
+	public void glDisableClientState(int cap) {
+		if(this.count(this.clientStates.set(cap, 0))) {
+			this.gl.glDisableClientState(cap);
+		}
+	}
+	
+	@Override
+	public void glVertexPointer(int size, int type, int stride, long pointer) {
+		if(this.setPointer(VERTEX, size, type, stride, pointer)) {
+			this.gl.glVertexPointer(size, type, stride, pointer);
+		}
+	}
+	
+	@Override
+	public void glColorPointer(int size, int type, int stride, long pointer) {
+		if(this.setPointer(COLOR, size, type, stride, pointer)) {
+			this.gl.glColorPointer(size, type, stride, pointer);
+		}
+	}
+	
+	@Override
+	public void glTexCoordPointer(int size, int type, int stride, long pointer) {
+		if(this.setPointer(TEX_COORD, size, type, stride, pointer)) {
+			this.gl.glTexCoordPointer(size, type, stride, pointer);
+		}
+	}
+	
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		if(this.count(sfactor != this.blendSFactor || dfactor != this.blendDFactor)) {
+			this.blendSFactor = sfactor;
+			this.blendDFactor = dfactor;
+			this.gl.glBlendFunc(sfactor, dfactor);
+		}
+	}
+	
+	@Override
+	public void glFrontFace(int mode) {
+		if(this.count(mode != this.frontFace)) {
+			this.frontFace = mode;
+			this.gl.glFrontFace(mode);
+		}
+	}
+	
+	@Override
+	public void glCullFace(int mode) {
+		if(this.count(mode != this.cullFace)) {
+			this.cullFace = mode;
+			this.gl.glCullFace(mode);
+		}
+	}
+	
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		this.gl.glDrawArrays(mode, first, count);
+	}
+	
+	@Override
+	public void glDrawElements(int mode, int count, int type, long indices) {
+		this.gl.glDrawElements(mode, count, type, indices);
+	}
+	
+	@Override
+	public void glMatrixMode(int mode) {
+		if(this.count(mode != this.matrixMode)) {
+			this.matrixMode = mode;
+			this.gl.glMatrixMode(mode);
+		}
+	}
+	
+	@Override
+	public void glLoadMatrixf(float[] matrix) {
+		this.gl.glLoadMatrixf(matrix);
+	}
+	
+	@Override
+	public void glLoadMatrixd(double[] matrix) {
+		this.gl.glLoadMatrixd(matrix);
+	}
+	
+	@Override
+	public int glGenTextures() {
+		return this.gl.glGenTextures();
+	}
+	
+	@Override
+	public void glDeleteTextures(int texture) {
+		this.gl.glDeleteTextures(texture);
+		if(texture != 0) {
+			// Deleting a bound texture binds zero in its place:
+			this.textures.replace(texture, 0);
+		}
+	}
+	
+	@Override
+	public void glBindTexture(int target, int texture) {
+		if(this.count(this.textures.set(target, texture))) {
+			this.gl.glBindTexture(target, texture);
+		}
+	}
+	
+	@Override
+	public void glTexParameteri(int target, int pname, int param) {
+		this.gl.glTexParameteri(target, pname, param);
+	}
+	
+	@Override
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, ByteBuffer pixels) {
+		this.gl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+	}
+	
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		if(this.count(x != this.viewportX || y != this.viewportY || width != this.viewportWidth || height != this.viewportHeight)) {
+			this.viewportX = x;
+			this.viewportY = y;
+			this.viewportWidth = width;
+			this.viewportHeight = height;
+			this.gl.glViewport(x, y, width, height);
+		}
+	}
+	
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		if(this.count(!this.clearColorKnown || red != this.clearRed || green != this.clearGreen || blue != this.clearBlue || alpha != this.clearAlpha)) {
+			this.clearRed = red;
+			this.clearGreen = green;
+			this.clearBlue = blue;
+			this.clearAlpha = alpha;
+			this.clearColorKnown = true;
+			this.gl.glClearColor(red, green, blue, alpha);
+		}
+	}
+	
+	@Override
+	public void glClear(int mask) {
+		this.gl.glClear(mask);
+	}
+	
+	@Override
+	public void glHint(int target, int mode) {
+		if(this.count(this.hints.set(target, mode))) {
+			this.gl.glHint(target, mode);
+		}
+	}
+	
+	@Override
+	public void glDepthFunc(int func) {
+		if(this.count(func != this.depthFunc)) {
+			this.depthFunc = func;
+			this.gl.glDepthFunc(func);
+		}
+	}
+	
+	@Override
+	public void glLoadIdentity() {
+		this.gl.glLoadIdentity();
+	}
+	
+	@Override
+	public void glColor3f(float red, float green, float blue) {
+		// (The current color is left undefined by drawing with a color array, so it isn't shadowed)
+		this.gl.glColor3f(red, green, blue);
+	}
+	
+	@Override
+	public void glBegin(int mode) {
+		this.gl.glBegin(mode);
+	}
+	
+	@Override
+	public void glVertex2f(float x, float y) {
+		this.gl.glVertex2f(x, y);
+	}
+	
+	@Override
+	public void glEnd() {
+		this.gl.glEnd();
+	}
+	
+	@Override
+	public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+		this.gl.glVertexAttribPointer(index, size, type, normalized, stride, pointer);
+	}
+	
+	@Override
+	public void glEnableVertexAttribArray(int index) {
+		this.gl.glEnableVertexAttribArray(index);
+	}
+	
+	@Override
+	public int glGetInteger(int pname) {
+		return this.gl.glGetInteger(pname);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("GLStateCache: %s calls passed through, %s avoided", Long.toString(this.forwarded), Long.toString(this.avoided));
+	}
+	
+}
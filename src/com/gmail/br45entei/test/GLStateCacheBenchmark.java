@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** Headless test and benchmark of {@link GLStateCache}.<br>
+ * After measuring the cost of the cache itself, a {@link RecordingGLBackend}
+ * that also models the GL state that its calls result in is driven directly
+ * and through a cache, first by a long random sequence of calls (comparing
+ * the state after every call) and then by {@link TestGame} in 2D and 3D mode
+ * (comparing the state at every draw call). Then the calls that the cache
+ * avoids per frame of TestGame are counted.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class GLStateCacheBenchmark {
+	
+	/** A {@link RecordingGLBackend} that keeps track of the GL state that the
+	 * calls made to it would result in, and of the state at every draw
+	 * call. */
+	static final class StateTracker extends RecordingGLBackend {
+		final Map<Integer, Boolean> capabilities = new TreeMap<>(), clientStates = new TreeMap<>();
+		final Map<Integer, Integer> hints = new TreeMap<>(), buffers = new TreeMap<>(), textures = new TreeMap<>();
+		/** buffer, size, type, stride, pointer for the vertex, color and
+		 * texture coordinate arrays */
+		final long[] pointers = new long[15];
+		int blendSFactor = GL11.GL_ONE, blendDFactor = GL11.GL_ZERO, frontFace = GL11.GL_CCW, cullFace = GL11.GL_BACK, depthFunc = GL11.GL_LESS, matrixMode = GL11.GL_MODELVIEW;
+		final int[] viewport = new int[4];
+		final float[] clearColor = new float[4];
+		final Map<Integer, Integer> loadedMatrices = new TreeMap<>();
+		final List<String> draws = new ArrayList<>();
+		
+		@Override
+		public void glDeleteBuffers(int buffer) {
+			super.glDeleteBuffers(buffer);
+			this.buffers.replaceAll((target, bound) -> bound.intValue() == buffer ? Integer.valueOf(0) : bound);
+			for(int i = 0; i < this.pointers.length; i += 5) {
+				if(this.pointers[i] == buffer) {
+					this.pointers[i] = 0L;
+				}
+			}
+		}
+		
+		@Override
+		public void glBindBuffer(int target, int buffer) {
+			super.glBindBuffer(target, buffer);
+			this.buffers.put(Integer.valueOf(target), Integer.valueOf(buffer));
+		}
+		
+		@Override
+		public void glEnable(int cap) {
+			super.glEnable(cap);
+			this.capabilities.put(Integer.valueOf(cap), Boolean.TRUE);
+		}
+		
+		@Override
+		public void glDisable(int cap) {
+			super.glDisable(cap);
+			this.capabilities.put(Integer.valueOf(cap), Boolean.FALSE);
+		}
+		
+		@Override
+		public void glEnableClientState(int cap) {
+			super.glEnableClientState(cap);
+			this.clientStates.put(Integer.valueOf(cap), Boolean.TRUE);
+		}
+		
+		@Override
+		public void glDisableClientState(int cap) {
+			super.glDisableClientState(cap);
+			this.clientStates.put(Integer.valueOf(cap), Boolean.FALSE);
+		}
+		
+		private void pointer(int array, int size, int type, int stride, long pointer) {
+			final Integer buffer = this.buffers.get(Integer.valueOf(GL15.GL_ARRAY_BUFFER));
+			this.pointers[array * 5] = buffer == null ? 0 : buffer.intValue();
+			this.pointers[(array * 5) + 1] = size;
+			this.pointers[(array * 5) + 2] = type;
+			this.pointers[(array * 5) + 3] = stride;
+			this.pointers[(array * 5) + 4] = pointer;
+		}
+		
+		@Override
+		public void glVertexPointer(int size, int type, int stride, long pointer) {
+			super.glVertexPointer(size, type, stride, pointer);
+			this.pointer(0, size, type, stride, pointer);
+		}
+		
+		@Override
+		public void glColorPointer(int size, int type, int stride, long pointer) {
+			super.glColorPointer(size, type, stride, pointer);
+			this.pointer(1, size, type, stride, pointer);
+		}
+		
+		@Override
+		public void glTexCoordPointer(int size, int type, int stride, long pointer) {
+			super.glTexCoordPointer(size, type, stride, pointer);
+			this.pointer(2, size, type, stride, pointer);
+		}
+		
+		@Override
+		public void glBlendFunc(int sfactor, int dfactor) {
+			super.glBlendFunc(sfactor, dfactor);
+			this.blendSFactor = sfactor;
+			this.blendDFactor = dfactor;
+		}
+		
+		@Override
+		public void glFrontFace(int mode) {
+			super.glFrontFace(mode);
+			this.frontFace = mode;
+		}
+		
+		@Override
+		public void glCullFace(int mode) {
+			super.glCullFace(mode);
+			this.cullFace = mode;
+		}
+		
+		@Override
+		public void glDrawArrays(int mode, int first, int count) {
+			super.glDrawArrays(mode, first, count);
+			this.draws.add(this.snapshot());
+		}
+		
+		@Override
+		public void glDrawElements(int mode, int count, int type, long indices) {
+			super.glDrawElements(mode, count, type, indices);
+			this.draws.add(this.snapshot());
+		}
+		
+		@Override
+		public void glBegin(int mode) {
+			super.glBegin(mode);
+			this.draws.add(this.snapshot());
+		}
+		
+		@Override
+		public void glMatrixMode(int mode) {
+			super.glMatrixMode(mode);
+			this.matrixMode = mode;
+		}
+		
+		@Override
+		public void glLoadMatrixf(float[] matrix) {
+			super.glLoadMatrixf(matrix);
+			this.loadedMatrices.put(Integer.valueOf(this.matrixMode), Integer.valueOf(Arrays.hashCode(matrix)));
+		}
+		
+		@Override
+		public void glLoadMatrixd(double[] matrix) {
+			super.glLoadMatrixd(matrix);
+			this.loadedMatrices.put(Integer.valueOf(this.matrixMode), Integer.valueOf(Arrays.hashCode(matrix)));
+		}
+		
+		@Override
+		public void glLoadIdentity() {
+			super.glLoadIdentity();
+			this.loadedMatrices.put(Integer.valueOf(this.matrixMode), Integer.valueOf(0));
+		}
+		
+		@Override
+		public void glBindTexture(int target, int texture) {
+			super.glBindTexture(target, texture);
+			this.textures.put(Integer.valueOf(target), Integer.valueOf(texture));
+		}
+		
+		@Override
+		public void glDeleteTextures(int texture) {
+			super.glDeleteTextures(texture);
+			this.textures.replaceAll((target, bound) -> bound.intValue() == texture ? Integer.valueOf(0) : bound);
+		}
+		
+		@Override
+		public void glViewport(int x, int y, int width, int height) {
+			super.glViewport(x, y, width, height);
+			this.viewport[0] = x;
+			this.viewport[1] = y;
+			this.viewport[2] = width;
+			this.viewport[3] = height;
+		}
+		
+		@Override
+		public void glClearColor(float red, float green, float blue, float alpha) {
+			super.glClearColor(red, green, blue, alpha);
+			this.clearColor[0] = red;
+			this.clearColor[1] = green;
+			this.clearColor[2] = blue;
+			this.clearColor[3] = alpha;
+		}
+		
+		@Override
+		public void glHint(int target, int mode) {
+			super.glHint(target, mode);
+			this.hints.put(Integer.valueOf(target), Integer.valueOf(mode));
+		}
+		
+		@Override
+		public void glDepthFunc(int func) {
+			super.glDepthFunc(func);
+			this.depthFunc = func;
+		}
+		
+		/** @return A description of the current state */
+		String snapshot() {
+			return String.format("caps: %s; client: %s; hints: %s; buffers: %s; textures: %s; pointers: %s; blend: %s, %s; front: %s; cull: %s; depth: %s; matrix mode: %s; matrices: %s; viewport: %s; clear: %s", this.capabilities, this.clientStates, this.hints, this.buffers, this.textures, Arrays.toString(this.pointers), Integer.toString(this.blendSFactor), Integer.toString(this.blendDFactor), Integer.toString(this.frontFace), Integer.toString(this.cullFace), Integer.toString(this.depthFunc), Integer.toString(this.matrixMode), this.loadedMatrices, Arrays.toString(this.viewport), Arrays.toString(this.clearColor));
+		}
+		
+	}
+	
+	/** Makes a random call that changes (or re-sets) a piece of state. */
+	static final void randomCall(GLBackend gl, Random random, int[] buffers) {
+		final int[] caps = {GL11.GL_DEPTH_TEST, GL11.GL_CULL_FACE, GL11.GL_BLEND, GL11.GL_TEXTURE_2D};
+		final int[] arrays = {GL11.GL_VERTEX_ARRAY, GL11.GL_COLOR_ARRAY, GL11.GL_TEXTURE_COORD_ARRAY};
+		switch(random.nextInt(14)) {
+		case 0:
+			gl.glEnable(caps[random.nextInt(caps.length)]);
+			break;
+		case 1:
+			gl.glDisable(caps[random.nextInt(caps.length)]);
+			break;
+		case 2:
+			gl.glEnableClientState(arrays[random.nextInt(arrays.length)]);
+			break;
+		case 3:
+			gl.glDisableClientState(arrays[random.nextInt(arrays.length)]);
+			break;
+		case 4:
+			gl.glBindBuffer(random.nextBoolean() ? GL15.GL_ARRAY_BUFFER : GL15.GL_ELEMENT_ARRAY_BUFFER, random.nextInt(3) == 0 ? 0 : buffers[random.nextInt(buffers.length)]);
+			break;
+		case 5: {
+			// Replace a buffer; the new one usually gets the same name back:
+			final int i = random.nextInt(buffers.length);
+			gl.glDeleteBuffers(buffers[i]);
+			buffers[i] = gl.glGenBuffers();
+			break;
+		}
+		case 6: {
+			final int size = 2 + random.nextInt(2), stride = random.nextBoolean() ? 20 : 16;
+			final long pointer = random.nextBoolean() ? 0L : 8L;
+			switch(random.nextInt(3)) {
+			case 0:
+				gl.glVertexPointer(size, GL11.GL_FLOAT, stride, pointer);
+				break;
+			case 1:
+				gl.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, stride, pointer);
+				break;
+			default:
+				gl.glTexCoordPointer(size, GL11.GL_FLOAT, stride, pointer);
+				break;
+			}
+			break;
+		}
+		case 7:
+			gl.glBlendFunc(GL11.GL_SRC_ALPHA, random.nextBoolean() ? GL11.GL_ONE : GL11.GL_ONE_MINUS_SRC_ALPHA);
+			break;
+		case 8:
+			gl.glFrontFace(random.nextBoolean() ? GL11.GL_CW : GL11.GL_CCW);
+			gl.glCullFace(random.nextBoolean() ? GL11.GL_BACK : GL11.GL_FRONT);
+			break;
+		case 9:
+			gl.glDepthFunc(random.nextBoolean() ? GL11.GL_LESS : GL11.GL_LEQUAL);
+			break;
+		case 10:
+			gl.glMatrixMode(random.nextBoolean() ? GL11.GL_PROJECTION : GL11.GL_MODELVIEW);
+			if(random.nextBoolean()) {
+				gl.glLoadMatrixf(new float[] {random.nextInt(3)});
+			}
+			break;
+		case 11:
+			gl.glBindTexture(GL11.GL_TEXTURE_2D, random.nextInt(4));
+			if(random.nextInt(8) == 0) {
+				gl.glDeleteTextures(1 + random.nextInt(3));
+			}
+			break;
+		case 12:
+			gl.glViewport(0, 0, random.nextBoolean() ? 800 : 1280, random.nextBoolean() ? 600 : 720);
+			gl.glClearColor(0, 0, random.nextInt(2), 1);
+			break;
+		default:
+			gl.glDrawArrays(GL11.GL_QUADS, 0, 4);
+			break;
+		}
+	}
+	
+	/** Runs TestGame headlessly in 2D and 3D mode through the given
+	 * backend. */
+	static final HeadlessGameRunner runGame(StateTracker gl, boolean cached, int frames) {
+		final TestGame game = new TestGame().setGLBackend(gl);
+		game.getGLStateCache().setEnabled(cached);
+		final HeadlessGameRunner runner = new HeadlessGameRunner(game, gl).initialize().resize(800, 600).run(frames, 1.0 / 60.0);
+		game._3D = true;
+		runner.resize(1280, 720).run(frames, 1.0 / 60.0);
+		game._3D = false;
+		return runner.resize(800, 600).run(frames, 1.0 / 60.0).cleanup();
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		// The cost of the cache itself, on calls that are skipped and on calls that are passed through (measured first, before the other tests make the calls polymorphic):
+		final RecordingGLBackend sink = new RecordingGLBackend();
+		final GLStateCache overhead = new GLStateCache(sink);
+		MicroBenchmark.run("RecordingGLBackend, 8 state changes", 200000, 1000000, (i) -> {
+			sink.glEnable(GL11.GL_DEPTH_TEST);
+			sink.glEnable(GL11.GL_CULL_FACE);
+			sink.glFrontFace(GL11.GL_CCW);
+			sink.glCullFace(GL11.GL_BACK);
+			sink.glDepthFunc(GL11.GL_LEQUAL);
+			sink.glMatrixMode(GL11.GL_MODELVIEW);
+			sink.glBindBuffer(GL15.GL_ARRAY_BUFFER, 1);
+			sink.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+			return null;
+		});
+		MicroBenchmark.run("GLStateCache, 8 redundant state changes", 200000, 1000000, (i) -> {
+			overhead.glEnable(GL11.GL_DEPTH_TEST);
+			overhead.glEnable(GL11.GL_CULL_FACE);
+			overhead.glFrontFace(GL11.GL_CCW);
+			overhead.glCullFace(GL11.GL_BACK);
+			overhead.glDepthFunc(GL11.GL_LEQUAL);
+			overhead.glMatrixMode(GL11.GL_MODELVIEW);
+			overhead.glBindBuffer(GL15.GL_ARRAY_BUFFER, 1);
+			overhead.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+			return null;
+		});
+		MicroBenchmark.run("GLStateCache, 8 state changes", 200000, 1000000, (i) -> {
+			final boolean odd = (i & 1) != 0;
+			overhead.glEnable(odd ? GL11.GL_DEPTH_TEST : GL11.GL_BLEND);
+			overhead.glDisable(odd ? GL11.GL_BLEND : GL11.GL_DEPTH_TEST);
+			overhead.glFrontFace(odd ? GL11.GL_CCW : GL11.GL_CW);
+			overhead.glCullFace(odd ? GL11.GL_BACK : GL11.GL_FRONT);
+			overhead.glDepthFunc(odd ? GL11.GL_LEQUAL : GL11.GL_LESS);
+			overhead.glMatrixMode(odd ? GL11.GL_MODELVIEW : GL11.GL_PROJECTION);
+			overhead.glBindBuffer(GL15.GL_ARRAY_BUFFER, odd ? 1 : 2);
+			overhead.glEnableClientState(odd ? GL11.GL_VERTEX_ARRAY : GL11.GL_COLOR_ARRAY);
+			return null;
+		});
+		
+		// Random calls, comparing the whole state after every one:
+		final Random random = new Random(0x57A7EL);
+		final StateTracker direct = new StateTracker(), behindCache = new StateTracker();
+		final GLStateCache cache = new GLStateCache(behindCache);
+		final int[] directBuffers = {direct.glGenBuffers(), direct.glGenBuffers(), direct.glGenBuffers()};
+		final int[] cachedBuffers = {cache.glGenBuffers(), cache.glGenBuffers(), cache.glGenBuffers()};
+		final long seed = random.nextLong();
+		final Random directCalls = new Random(seed), cachedCalls = new Random(seed);
+		final int calls = 200000;
+		for(int i = 0; i < calls; i++) {
+			randomCall(direct, directCalls, directBuffers);
+			randomCall(cache, cachedCalls, cachedBuffers);
+			if(i % 10 == 0 || i == calls - 1) {
+				MicroBenchmark.check(direct.snapshot().equals(behindCache.snapshot()), String.format("The state differs after call #%s:\n%s\n%s", Integer.toString(i), direct.snapshot(), behindCache.snapshot()));
+			}
+		}
+		MicroBenchmark.check(direct.draws.equals(behindCache.draws), "The state at some draw call differs");
+		System.out.println(String.format("Random calls: %s; the state was identical after each, and %s of %s state changes (%.1f%%) were skipped.", Integer.toString(calls), Long.toString(cache.getAvoidedCalls()), Long.toString(cache.getAvoidedCalls() + cache.getForwardedCalls()), Double.valueOf((cache.getAvoidedCalls() * 100.0) / (cache.getAvoidedCalls() + cache.getForwardedCalls()))));
+		
+		// TestGame, switching between 2D and 3D mode:
+		final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 120;
+		final StateTracker uncachedGame = new StateTracker(), cachedGame = new StateTracker();
+		runGame(uncachedGame, false, frames);
+		runGame(cachedGame, true, frames);
+		MicroBenchmark.check(uncachedGame.draws.size() == cachedGame.draws.size() && uncachedGame.draws.equals(cachedGame.draws), "TestGame drew with different state through the cache");
+		MicroBenchmark.check(uncachedGame.snapshot().equals(cachedGame.snapshot()), "TestGame ended with different state through the cache");
+		MicroBenchmark.check(uncachedGame.getDrawCalls() == cachedGame.getDrawCalls() && uncachedGame.getVerticesDrawn() == cachedGame.getVerticesDrawn(), "The cache should only skip state changes");
+		System.out.println(String.format("TestGame, %s frames: the state at all %s draw calls was identical.", Integer.toString(frames * 3), Integer.toString(cachedGame.draws.size())));
+		
+		for(boolean _3D : new boolean[] {false, true}) {
+			final RecordingGLBackend uncached = new RecordingGLBackend(), recorder = new RecordingGLBackend();
+			final TestGame game = new TestGame().setGLBackend(recorder), reference = new TestGame().setGLBackend(uncached);
+			reference.getGLStateCache().setEnabled(false);
+			final HeadlessGameRunner runner = new HeadlessGameRunner(game, recorder).initialize().resize(1280, 720), referenceRunner = new HeadlessGameRunner(reference, uncached).initialize().resize(1280, 720);
+			game._3D = reference._3D = _3D;
+			runner.run(60, 1.0 / 60.0);
+			referenceRunner.run(60, 1.0 / 60.0);
+			uncached.reset();
+			recorder.reset();
+			game.getGLStateCache().resetCounters();
+			runner.run(frames, 1.0 / 60.0);
+			referenceRunner.run(frames, 1.0 / 60.0);
+			final GLStateCache gameCache = game.getGLStateCache();
+			System.out.println(String.format("%s mode: %.1f state changes per frame without the cache, %.1f with it (%.1f calls avoided per frame); GL calls per frame: %.1f -> %.1f", _3D ? "3D" : "2D", Double.valueOf(uncached.getStateChanges() / (double) frames), Double.valueOf(recorder.getStateChanges() / (double) frames), Double.valueOf(gameCache.getAvoidedCalls() / (double) frames), Double.valueOf(uncached.getTotalCalls() / (double) frames), Double.valueOf(recorder.getTotalCalls() / (double) frames)));
+			MicroBenchmark.check(uncached.getStateChanges() - recorder.getStateChanges() == gameCache.getAvoidedCalls(), "Every avoided call should be a state change");
+			runner.cleanup();
+			referenceRunner.cleanup();
+		}
+	}
+	
+}
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lwjgl.opengl.GL11;
+
+/** The printable ASCII glyphs of a font, rasterized once into a single
+ * {@link TextureAtlas}, along with the metrics needed to lay text out with
+ * them (see {@link TextBatch}).<br>
+ * <br>
+ * Each glyph is stored as white pixels whose alpha is the glyph's coverage,
+ * so that it can be tinted with the vertex color. Glyphs that have no pixels
+ * (such as the space) only have an advance. Characters outside of
+ * {@link #FIRST_CHAR} to {@link #LAST_CHAR} are drawn as
+ * {@link #REPLACEMENT_CHAR}.<br>
+ * <br>
+ * Atlases are cached per font (see {@link #get(Font)}), so every overlay that
+ * uses the same font shares one atlas and one texture.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class GlyphAtlas {
+	
+	/** The first character that is rasterized */
+	public static final char FIRST_CHAR = ' ';
+	/** The last character that is rasterized */
+	public static final char LAST_CHAR = '~';
+	/** The character that is drawn in place of characters that were not
+	 * rasterized */
+	public static final char REPLACEMENT_CHAR = '?';
+	
+	private static final ConcurrentHashMap<Font, GlyphAtlas> cache = new ConcurrentHashMap<>();
+	
+	private final Font font;
+	private final TextureAtlas atlas;
+	/** Per character: the glyph's frame in the atlas, or {@code -1} if it has
+	 * no pixels */
+	private final int[] frames;
+	private final float[] advances;
+	/** Per character: the x and y offsets from the pen position (on the
+	 * baseline) to the glyph's top-left corner; y grows downwards */
+	private final int[] offsets;
+	private final int ascent, descent, lineHeight;
+	
+	private GlyphAtlas(Font font, TextureAtlas atlas, int[] frames, float[] advances, int[] offsets, int ascent, int descent, int lineHeight) {
+		this.font = font;
+		this.atlas = atlas;
+		this.frames = frames;
+		this.advances = advances;
+		this.offsets = offsets;
+		this.ascent = ascent;
+		this.descent = descent;
+		this.lineHeight = lineHeight;
+	}
+	
+	/** Returns the cached atlas of the given font, rasterizing it the first
+	 * time.
+	 * 
+	 * @param font The font
+	 * @return The font's glyph atlas */
+	public static final GlyphAtlas get(Font font) {
+		return cache.computeIfAbsent(font, GlyphAtlas::create);
+	}
+	
+	/** Returns the cached atlas of the given font, rasterizing it the first
+	 * time.
+	 * 
+	 * @param name The font's name (falls back to the default font if it is
+	 *            not installed)
+	 * @param size The font's size, in pixels
+	 * @param bold Whether or not the font is bold
+	 * @param italic Whether or not the font is italic
+	 * @return The font's glyph atlas */
+	public static final GlyphAtlas get(String name, int size, boolean bold, boolean italic) {
+		return get(new Font(name, (bold ? Font.BOLD : Font.PLAIN) | (italic ? Font.ITALIC : Font.PLAIN), size));
+	}
+	
+	/** Rasterizes the given font's glyphs into a new atlas (without caching
+	 * it).
+	 * 
+	 * @param font The font
+	 * @return The new glyph atlas */
+	public static final GlyphAtlas create(Font font) {
+		final int count = LAST_CHAR - FIRST_CHAR + 1;
+		final FontRenderContext frc = new FontRenderContext(null, true, true);
+		final Rectangle[] bounds = new Rectangle[count];
+		final float[] advances = new float[count];
+		final int[] offsets = new int[count * 2], frames = new int[count];
+		int glyphs = 0;
+		for(int i = 0; i < count; i++) {
+			final GlyphVector vector = font.createGlyphVector(frc, new char[] {(char) (FIRST_CHAR + i)});
+			advances[i] = vector.getGlyphMetrics(0).getAdvance();
+			final Rectangle b = vector.getPixelBounds(frc, 0, 0);
+			offsets[i * 2] = b.x;
+			offsets[(i * 2) + 1] = b.y;
+			if(b.width > 0 && b.height > 0) {
+				bounds[i] = b;
+				frames[i] = glyphs++;
+			} else {
+				frames[i] = -1;
+			}
+		}
+		final int[] widths = new int[glyphs], heights = new int[glyphs];
+		for(int i = 0; i < count; i++) {
+			if(frames[i] >= 0) {
+				widths[frames[i]] = bounds[i].width;
+				heights[frames[i]] = bounds[i].height;
+			}
+		}
+		final TextureAtlas atlas = TextureAtlas.pack(widths, heights, TextureAtlas.DEFAULT_PADDING, 4096);
+		if(atlas == null) {
+			throw new IllegalArgumentException("The font's glyphs do not fit in a 4096x4096 atlas: ".concat(font.toString()));
+		}
+		for(int i = 0; i < count; i++) {
+			if(frames[i] < 0) {
+				continue;
+			}
+			final Rectangle b = bounds[i];
+			final BufferedImage image = new BufferedImage(b.width, b.height, BufferedImage.TYPE_INT_ARGB);
+			final Graphics2D g = image.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+			g.setFont(font);
+			g.setColor(Color.WHITE);
+			g.drawString(String.valueOf((char) (FIRST_CHAR + i)), -b.x, -b.y);
+			g.dispose();
+			final ByteBuffer pixels = ByteBuffer.allocate(b.width * b.height * 4).order(ByteOrder.nativeOrder());
+			for(int y = 0; y < b.height; y++) {
+				for(int x = 0; x < b.width; x++) {
+					pixels.put((byte) 0xFF).put((byte) 0xFF).put((byte) 0xFF).put((byte) (image.getRGB(x, y) >>> 24));
+				}
+			}
+			pixels.flip();
+			atlas.blit(frames[i], pixels);
+		}
+		final LineMetrics metrics = font.getLineMetrics("Ag", frc);
+		final int ascent = (int) Math.ceil(metrics.getAscent()), descent = (int) Math.ceil(metrics.getDescent());
+		return new GlyphAtlas(font, atlas, frames, advances, offsets, ascent, descent, (int) Math.ceil(metrics.getHeight()));
+	}
+	
+	/** @param c A character
+	 * @return The index of the glyph that is drawn for the character */
+	public static final int getGlyph(char c) {
+		return (c < FIRST_CHAR || c > LAST_CHAR ? REPLACEMENT_CHAR : c) - FIRST_CHAR;
+	}
+	
+	/** @return The font that this atlas was rasterized from */
+	public Font getFont() {
+		return this.font;
+	}
+	
+	/** @return The texture atlas that holds this font's glyphs */
+	public TextureAtlas getAtlas() {
+		return this.atlas;
+	}
+	
+	/** @param glyph The index of a glyph (see {@link #getGlyph(char)})
+	 * @return The glyph's frame in the {@link #getAtlas() atlas}, or
+	 *         {@code -1} if the glyph has no pixels */
+	public int getFrame(int glyph) {
+		return this.frames[glyph];
+	}
+	
+	/** @param glyph The index of a glyph (see {@link #getGlyph(char)})
+	 * @return How far the pen moves after drawing the glyph, in pixels */
+	public float getAdvance(int glyph) {
+		return this.advances[glyph];
+	}
+	
+	/** @param glyph The index of a glyph (see {@link #getGlyph(char)})
+	 * @return The horizontal offset from the pen position to the glyph's
+	 *         left edge, in pixels */
+	public int getOffsetX(int glyph) {
+		return this.offsets[glyph * 2];
+	}
+	
+	/** @param glyph The index of a glyph (see {@link #getGlyph(char)})
+	 * @return The vertical offset from the baseline to the glyph's top edge,
+	 *         in pixels (negative above the baseline) */
+	public int getOffsetY(int glyph) {
+		return this.offsets[(glyph * 2) + 1];
+	}
+	
+	/** @return The distance from the top of a line to its baseline, in
+	 *         pixels */
+	public int getAscent() {
+		return this.ascent;
+	}
+	
+	/** @return The distance from the baseline to the bottom of a line, in
+	 *         pixels */
+	public int getDescent() {
+		return this.descent;
+	}
+	
+	/** @return The distance between the baselines of two lines, in pixels */
+	public int getLineHeight() {
+		return this.lineHeight;
+	}
+	
+	/** @param text The text to measure
+	 * @return The width of the given single line of text, in pixels */
+	public float getWidth(CharSequence text) {
+		float width = 0.0f;
+		for(int i = 0; i < text.length(); i++) {
+			width += this.advances[getGlyph(text.charAt(i))];
+		}
+		return width;
+	}
+	
+	/** Uploads this atlas' texture if it hasn't been uploaded yet. Must be
+	 * called on the GL thread (unless the backend does not need a GL
+	 * context). Since atlases are shared, the texture belongs to the first GL
+	 * context that uploads it.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @return The atlas' texture */
+	public synchronized int upload(GLBackend gl) {
+		final int texture = this.atlas.getTexture();
+		return texture != 0 ? texture : this.atlas.upload(gl, GL11.GL_NEAREST, GL11.GL_NEAREST);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s %spx: %s glyphs in a %sx%s atlas", this.font.getFontName(), Integer.toString(this.font.getSize()), Integer.toString(this.atlas.getFrameCount()), Integer.toString(this.atlas.getWidth()), Integer.toString(this.atlas.getHeight()));
+	}
+	
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.Game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.eclipse.swt.graphics.Rectangle;
+
+/** Drives a {@link Game}'s lifecycle without a display or a GL context.<br>
+ * The game must route its GL calls through a {@link GLBackend} (see
+ * {@link TestGame#setGLBackend(GLBackend)}) and must tolerate
+ * {@link com.gmail.br45entei.game.ui.Window#getWindow()} returning
+ * {@code null} and being initialized with a {@code null} progress. The runner
+ * initializes the game, reports a viewport change, and then calls
+ * {@link Game#input(double) input}, {@link Game#update(double) update} and
+ * {@link Game#render(double, int, int) render} for the requested number of
+ * frames, measuring the CPU time spent in (and the GL calls made by) each
+ * phase.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class HeadlessGameRunner {
+	
+	/** The phases of a {@link Game}'s lifecycle that are measured.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static enum Phase {
+		/** {@link Game#initialize(com.gmail.br45entei.game.graphics.GLThread.InitializationProgress)}
+		 * and {@link Game#onSelected()} */
+		INITIALIZE,
+		/** {@link Game#onViewportChanged(Rectangle, Rectangle)} */
+		VIEWPORT,
+		/** {@link Game#input(double)} */
+		INPUT,
+		/** {@link Game#update(double)} */
+		UPDATE,
+		/** {@link Game#render(double, int, int)} */
+		RENDER,
+		/** {@link Game#onDeselected()} and {@link Game#onCleanup()} */
+		CLEANUP;
+	}
+	
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	
+	private final Game game;
+	private final RecordingGLBackend gl;
+	private final long[] invocations = new long[Phase.values().length];
+	private final long[] cpuNanos = new long[Phase.values().length];
+	private final long[] wallNanos = new long[Phase.values().length];
+	private final long[] calls = new long[Phase.values().length];
+	private final boolean cpuTimeSupported;
+	private Rectangle viewport = new Rectangle(0, 0, 0, 0);
+	
+	/** Creates a new HeadlessGameRunner.
+	 * 
+	 * @param game The game to run
+	 * @param gl The backend that the game's GL calls are routed through */
+	public HeadlessGameRunner(Game game, RecordingGLBackend gl) {
+		this.game = game;
+		this.gl = gl;
+		boolean supported = threadBean.isCurrentThreadCpuTimeSupported();
+		if(supported && !threadBean.isThreadCpuTimeEnabled()) {
+			try {
+				threadBean.setThreadCpuTimeEnabled(true);
+			} catch(UnsupportedOperationException ignored) {
+				supported = false;
+			}
+		}
+		this.cpuTimeSupported = supported;
+	}
+	
+	private long cpuTime() {
+		return this.cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+	
+	private void measure(Phase phase, Runnable code) {
+		final long calls = this.gl.getTotalCalls();
+		final long wall = System.nanoTime();
+		final long cpu = this.cpuTime();
+		code.run();
+		final int i = phase.ordinal();
+		this.cpuNanos[i] += this.cpuTime() - cpu;
+		this.wallNanos[i] += System.nanoTime() - wall;
+		this.calls[i] += this.gl.getTotalCalls() - calls;
+		this.invocations[i]++;
+	}
+	
+	/** Initializes and selects the game.
+	 * 
+	 * @return This HeadlessGameRunner */
+	public HeadlessGameRunner initialize() {
+		this.measure(Phase.INITIALIZE, () -> {
+			this.game.initialize(null);
+			this.game.onSelected();
+		});
+		return this;
+	}
+	
+	/** Tells the game that its viewport has changed to the given size.
+	 * 
+	 * @param width The new width of the viewport
+	 * @param height The new height of the viewport
+	 * @return This HeadlessGameRunner */
+	public HeadlessGameRunner resize(int width, int height) {
+		final Rectangle oldViewport = this.viewport, newViewport = new Rectangle(0, 0, width, height);
+		this.measure(Phase.VIEWPORT, () -> this.game.onViewportChanged(oldViewport, newViewport));
+		this.viewport = newViewport;
+		return this;
+	}
+	
+	/** Runs the given number of frames.
+	 * 
+	 * @param frames The number of frames to run
+	 * @param deltaTime The time that each frame is reported to take, in
+	 *            seconds
+	 * @return This HeadlessGameRunner */
+	public HeadlessGameRunner run(int frames, double deltaTime) {
+		for(int i = 0; i < frames; i++) {
+			this.frame(deltaTime);
+		}
+		return this;
+	}
+	
+	/** Runs a single frame.
+	 * 
+	 * @param deltaTime The time that the frame is reported to take, in
+	 *            seconds
+	 * @return How long the frame actually took, in nanoseconds of wall-clock
+	 *         time */
+	public long frame(double deltaTime) {
+		final int width = this.viewport.width, height = this.viewport.height;
+		final long start = System.nanoTime();
+		this.measure(Phase.INPUT, () -> this.game.input(deltaTime));
+		this.measure(Phase.UPDATE, () -> this.game.update(deltaTime));
+		this.measure(Phase.RENDER, () -> this.game.render(deltaTime, width, height));
+		return System.nanoTime() - start;
+	}
+	
+	/** @return The game that this runner drives */
+	public Game getGame() {
+		return this.game;
+	}
+	
+	/** Deselects the game and cleans it up.
+	 * 
+	 * @return This HeadlessGameRunner */
+	public HeadlessGameRunner cleanup() {
+		this.measure(Phase.CLEANUP, () -> {
+			this.game.onDeselected();
+			this.game.onCleanup();
+		});
+		return this;
+	}
+	
+	/** @param phase The phase
+	 * @return The number of times that the phase was run */
+	public long getInvocations(Phase phase) {
+		return this.invocations[phase.ordinal()];
+	}
+	
+	/** @param phase The phase
+	 * @return The total CPU time spent in the phase by the calling thread, in
+	 *         nanoseconds (wall-clock time if the JVM can not measure thread
+	 *         CPU time) */
+	public long getCpuNanos(Phase phase) {
+		return this.cpuNanos[phase.ordinal()];
+	}
+	
+	/** @param phase The phase
+	 * @return The total wall-clock time spent in the phase, in nanoseconds */
+	public long getWallNanos(Phase phase) {
+		return this.wallNanos[phase.ordinal()];
+	}
+	
+	/** @param phase The phase
+	 * @return The number of GL calls made during the phase */
+	public long getCalls(Phase phase) {
+		return this.calls[phase.ordinal()];
+	}
+	
+	/** Resets the per-phase measurements (but not the backend's counters).
+	 * 
+	 * @return This HeadlessGameRunner */
+	public HeadlessGameRunner reset() {
+		for(int i = 0; i < this.invocations.length; i++) {
+			this.invocations[i] = this.cpuNanos[i] = this.wallNanos[i] = this.calls[i] = 0L;
+		}
+		return this;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for(Phase phase : Phase.values()) {
+			final int i = phase.ordinal();
+			if(this.invocations[i] == 0L) {
+				continue;
+			}
+			final long n = this.invocations[i];
+			sb.append(String.format("%-10s x%-6s CPU: %10.3f ms (%9.2f us each); wall: %10.3f ms; GL calls: %8s (%7.1f each)", phase.name(), Long.toString(n), Double.valueOf(this.cpuNanos[i] / 1.0E6), Double.valueOf(this.cpuNanos[i] / 1.0E3 / n), Double.valueOf(this.wallNanos[i] / 1.0E6), Long.toString(this.calls[i]), Double.valueOf(this.calls[i] / (double) n))).append(System.lineSeparator());
+		}
+		return sb.append("GL: ").append(this.gl.toString()).toString();
+	}
+	
+	/** Runs {@link TestGame} headlessly in 2D mode and then in 3D mode and
+	 * prints what it did.
+	 * 
+	 * @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+		final RecordingGLBackend gl = new RecordingGLBackend();
+		final TestGame game = new TestGame().setGLBackend(gl);
+		final HeadlessGameRunner runner = new HeadlessGameRunner(game, gl);
+		
+		runner.initialize().resize(800, 600);
+		System.out.println("Initialization:");
+		System.out.println(runner);
+		System.out.println();
+		
+		gl.reset();
+		game.getGLStateCache().resetCounters();
+		runner.reset().run(frames, 1.0 / 60.0);
+		System.out.println(String.format("2D mode, %s frames:", Integer.toString(frames)));
+		System.out.println(runner);
+		System.out.println(String.format("Redundant GL calls avoided per frame: %.2f", Double.valueOf(game.getGLStateCache().getAvoidedCalls() / (double) frames)));
+		System.out.println();
+		
+		game._3D = true;
+		gl.reset();
+		game.getGLStateCache().resetCounters();
+		runner.reset().resize(1280, 720).run(frames, 1.0 / 60.0);
+		System.out.println(String.format("3D mode, %s frames:", Integer.toString(frames)));
+		System.out.println(runner);
+		System.out.println(String.format("Draw calls per frame: %.2f; state changes per frame: %.2f; redundant GL calls avoided per frame: %.2f; bytes uploaded: %s", Double.valueOf(gl.getDrawCalls() / (double) frames), Double.valueOf(gl.getStateChanges() / (double) frames), Double.valueOf(game.getGLStateCache().getAvoidedCalls() / (double) frames), Long.toString(gl.getBytesUploaded())));
+		final HudText profile = new HudText(FrameProfiler.MAX_SCOPES + 2, 80).setLineSeparator(System.lineSeparator()).begin();
+		game.getProfiler().getRecorder().appendTo(profile).end();
+		System.out.println(profile);
+		System.out.println();
+		
+		gl.reset();
+		runner.reset().cleanup();
+		System.out.println("Cleanup:");
+		System.out.println(runner);
+	}
+	
+}
@@ -0,0 +1,381 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.math.MathUtil;
+
+import java.util.Arrays;
+
+/** Reusable, allocation-free text buffer for debug overlays.<br>
+ * Each frame, the overlay is rebuilt line by line into a preallocated scratch
+ * buffer. When a line is finished, it is compared against what that line
+ * contained during the previous frame, and only lines whose contents actually
+ * changed are copied and marked as dirty.<br>
+ * The {@link String} returned by {@link #toString()} is cached and only
+ * re-created when at least one line has changed, so frames where nothing on
+ * the overlay changes do not allocate at all.
+ * 
+ * <pre>
+ * hud.begin();
+ * hud.append("X: ").append(x, 4).append(';').endLine();
+ * hud.appendMatrix("3D Model View", modelView, 6);
+ * hud.end();
+ * FontRender.drawString(font, hud.toString(), 0, height, 1, 1, 1);
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class HudText implements CharSequence {
+	
+	private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+	
+	/** Largest magnitude that a value scaled by its number of decimal places
+	 * can have and still be formatted without falling back to
+	 * {@link MathUtil#limitDecimalNoRounding(double, int, boolean)}; beyond
+	 * this, a {@code double} no longer holds every digit exactly (and a
+	 * {@code long} would eventually overflow) */
+	private static final double MAX_FIXED_VALUE = 1.0E15;
+	
+	private final char[][] lines;
+	private final int[] lineLengths;
+	private final boolean[] dirtyLines;
+	private final char[] scratch;
+	private final char[] digits = new char[20];
+	
+	private int lineCount = 0;
+	private int lastLineCount = 0;
+	private int scratchLength = 0;
+	private boolean changed = true;
+	
+	private String lineSeparator = "\r\n";
+	private String cachedString = "";
+	private char[] joined;
+	
+	/** Creates a new HudText buffer.
+	 * 
+	 * @param maxLines The maximum number of lines that the overlay may contain
+	 * @param maxLineLength The maximum number of characters that a single line
+	 *            may contain. Characters appended beyond this length are
+	 *            silently discarded. */
+	public HudText(int maxLines, int maxLineLength) {
+		if(maxLines <= 0 || maxLineLength <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid HudText dimensions: %s lines of %s characters", Integer.toString(maxLines), Integer.toString(maxLineLength)));
+		}
+		this.lines = new char[maxLines][maxLineLength];
+		this.lineLengths = new int[maxLines];
+		this.dirtyLines = new boolean[maxLines];
+		this.scratch = new char[maxLineLength];
+		this.joined = new char[maxLines * (maxLineLength + 2)];
+	}
+	
+	/** @return The line separator used when joining the lines of this
+	 *         overlay into a single string */
+	public String getLineSeparator() {
+		return this.lineSeparator;
+	}
+	
+	/** @param lineSeparator The line separator to use when joining the lines
+	 *            of this overlay into a single string
+	 * @return This HudText */
+	public HudText setLineSeparator(String lineSeparator) {
+		if(lineSeparator != null && !lineSeparator.equals(this.lineSeparator)) {
+			this.lineSeparator = lineSeparator;
+			this.joined = new char[this.lines.length * (this.scratch.length + lineSeparator.length())];
+			this.changed = true;
+		}
+		return this;
+	}
+	
+	/** Begins a new frame of text. Every line written after calling this
+	 * method is compared against the line at the same index from the previous
+	 * frame.
+	 * 
+	 * @return This HudText */
+	public HudText begin() {
+		this.lineCount = 0;
+		this.scratchLength = 0;
+		Arrays.fill(this.dirtyLines, false);
+		return this;
+	}
+	
+	/** Finishes the line currently being written, comparing it to the
+	 * previous contents of the same line and marking it as dirty if they
+	 * differ.
+	 * 
+	 * @return This HudText */
+	public HudText endLine() {
+		final int index = this.lineCount;
+		if(index >= this.lines.length) {
+			this.scratchLength = 0;
+			return this;
+		}
+		final int length = this.scratchLength;
+		final char[] line = this.lines[index];
+		boolean same = length == this.lineLengths[index];
+		for(int i = 0; same && i < length; i++) {
+			same = line[i] == this.scratch[i];
+		}
+		if(!same) {
+			System.arraycopy(this.scratch, 0, line, 0, length);
+			this.lineLengths[index] = length;
+			this.dirtyLines[index] = true;
+			this.changed = true;
+		}
+		this.lineCount = index + 1;
+		this.scratchLength = 0;
+		return this;
+	}
+	
+	/** Finishes the current frame of text. If the current line has any
+	 * characters in it, it is ended first.
+	 * 
+	 * @return Whether or not this overlay's text has changed since the last
+	 *         time it was retrieved via {@link #toString()} */
+	public boolean end() {
+		if(this.scratchLength > 0) {
+			this.endLine();
+		}
+		if(this.lineCount != this.lastLineCount) {
+			for(int i = this.lineCount; i < this.lastLineCount; i++) {
+				this.lineLengths[i] = 0;
+				this.dirtyLines[i] = true;
+			}
+			this.lastLineCount = this.lineCount;
+			this.changed = true;
+		}
+		return this.changed;
+	}
+	
+	/** @return The number of lines written during the last frame */
+	public int getLineCount() {
+		return this.lineCount;
+	}
+	
+	/** @param line The index of the line to check
+	 * @return Whether or not the specified line's contents changed during the
+	 *         last frame */
+	public boolean isLineDirty(int line) {
+		return line >= 0 && line < this.dirtyLines.length && this.dirtyLines[line];
+	}
+	
+	/** @param line The index of the line
+	 * @return The length of the specified line, in characters */
+	public int getLineLength(int line) {
+		return line >= 0 && line < this.lineCount ? this.lineLengths[line] : 0;
+	}
+	
+	/** Returns the backing character array of the specified line.<br>
+	 * The returned array must not be modified, and only the first
+	 * {@link #getLineLength(int)} characters are valid.
+	 * 
+	 * @param line The index of the line
+	 * @return The line's backing character array */
+	public char[] getLineChars(int line) {
+		return this.lines[line];
+	}
+	
+	//=============================================================================================
+	
+	/** @param c The character to append
+	 * @return This HudText */
+	public HudText append(char c) {
+		if(this.scratchLength < this.scratch.length) {
+			this.scratch[this.scratchLength++] = c;
+		}
+		return this;
+	}
+	
+	/** @param str The text to append. If {@code null}, {@code "null"} is
+	 *            appended instead.
+	 * @return This HudText */
+	public HudText append(String str) {
+		if(str == null) {
+			str = "null";
+		}
+		final int count = Math.min(str.length(), this.scratch.length - this.scratchLength);
+		str.getChars(0, count, this.scratch, this.scratchLength);
+		this.scratchLength += count;
+		return this;
+	}
+	
+	/** @param b The boolean to append
+	 * @return This HudText */
+	public HudText append(boolean b) {
+		return this.append(b ? "true" : "false");
+	}
+	
+	/** @param value The integer to append
+	 * @return This HudText */
+	public HudText append(long value) {
+		if(value == Long.MIN_VALUE) {
+			return this.append("-9223372036854775808");
+		}
+		if(value < 0) {
+			this.append('-');
+			value = -value;
+		}
+		int count = 0;
+		do {
+			this.digits[count++] = (char) ('0' + (value % 10L));
+			value /= 10L;
+		} while(value != 0);
+		while(count > 0) {
+			this.append(this.digits[--count]);
+		}
+		return this;
+	}
+	
+	/** Appends the given value with exactly the specified number of decimal
+	 * places, truncating (not rounding) any further digits and padding with
+	 * zeros as necessary.<br>
+	 * This matches the output of
+	 * {@code MathUtil.limitDecimalNoRounding(value, places, true)} without
+	 * allocating any strings (except for NaN, the infinities and very large
+	 * values, which are passed on to it).
+	 * 
+	 * @param value The value to append
+	 * @param places The number of decimal places to keep (0-9)
+	 * @return This HudText */
+	public HudText append(double value, int places) {
+		places = Math.max(0, Math.min(POWERS_OF_TEN.length - 1, places));
+		final double magnitude = Math.abs(value);
+		// NaN fails the comparison, as do the infinities and values that would lose digits (or overflow a long) when scaled:
+		if(!(magnitude < MAX_FIXED_VALUE / POWERS_OF_TEN[places])) {
+			return this.append(MathUtil.limitDecimalNoRounding(value, places, true));
+		}
+		if(value < 0 || (value == 0 && 1.0 / value < 0)) {
+			this.append('-');
+			value = -value;
+		}
+		final long scale = POWERS_OF_TEN[places];
+		double scaled = value * scale;
+		double nearest = Math.rint(scaled);
+		// Snap values that only miss the next whole number due to binary representation error (e.g. 0.3 * 10000 = 2999.9999999999995), as decimal string truncation would:
+		long fixed = (long) (Math.abs(scaled - nearest) <= Math.ulp(scaled) * 4.0 ? nearest : Math.floor(scaled));
+		this.append(fixed / scale);
+		if(places > 0) {
+			this.append('.');
+			long fraction = fixed % scale;
+			for(int i = places - 1; i >= 0; i--) {
+				this.append((char) ('0' + ((fraction / POWERS_OF_TEN[i]) % 10L)));
+			}
+		}
+		return this;
+	}
+	
+	/** Appends the given value right-aligned within the specified width.
+	 * 
+	 * @param value The value to append
+	 * @param places The number of decimal places to keep (0-9)
+	 * @param width The minimum number of characters the value should take up
+	 * @return This HudText
+	 * @see #append(double, int) */
+	public HudText appendPadded(double value, int places, int width) {
+		final int start = this.scratchLength;
+		this.append(value, places);
+		final int written = this.scratchLength - start;
+		final int padding = Math.min(width - written, this.scratch.length - this.scratchLength);
+		if(padding > 0) {
+			System.arraycopy(this.scratch, start, this.scratch, start + padding, written);
+			Arrays.fill(this.scratch, start, start + padding, ' ');
+			this.scratchLength += padding;
+		}
+		return this;
+	}
+	
+	/** Appends the given 4x4 column-major matrix as five lines: a header line
+	 * containing the given title, followed by one line per matrix row.<br>
+	 * The line currently being written (if any) is ended first.
+	 * 
+	 * @param title The title to display in the matrix's header line
+	 * @param matrix The matrix to append
+	 * @param places The number of decimal places to display for each value
+	 * @return This HudText */
+	public HudText appendMatrix(String title, float[] matrix, int places) {
+		if(this.scratchLength > 0) {
+			this.endLine();
+		}
+		final int width = places + 5;
+		final int rowLength = 2 + (4 * width) + 6;
+		this.append("==[").append(title).append(']');
+		while(this.scratchLength < rowLength) {
+			this.append('=');
+		}
+		this.endLine();
+		for(int row = 0; row < 4; row++) {
+			this.append('[');
+			for(int column = 0; column < 4; column++) {
+				this.appendPadded(matrix[(column * 4) + row], places, width);
+				if(column < 3) {
+					this.append(", ");
+				}
+			}
+			this.append(']').endLine();
+		}
+		return this;
+	}
+	
+	//=============================================================================================
+	
+	@Override
+	public int length() {
+		return this.toString().length();
+	}
+	
+	@Override
+	public char charAt(int index) {
+		return this.toString().charAt(index);
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return this.toString().subSequence(start, end);
+	}
+	
+	/** Returns the lines of this overlay joined by the
+	 * {@link #getLineSeparator() line separator}.<br>
+	 * The returned string is cached, and is only re-created when the overlay's
+	 * contents have changed.
+	 * 
+	 * @return This overlay's text */
+	@Override
+	public String toString() {
+		if(this.changed) {
+			final String separator = this.lineSeparator;
+			final char[] joined = this.joined;
+			int length = 0;
+			for(int i = 0; i < this.lineCount; i++) {
+				if(i > 0) {
+					separator.getChars(0, separator.length(), joined, length);
+					length += separator.length();
+				}
+				System.arraycopy(this.lines[i], 0, joined, length, this.lineLengths[i]);
+				length += this.lineLengths[i];
+			}
+			this.cachedString = new String(joined, 0, length);
+			this.changed = false;
+		}
+		return this.cachedString;
+	}
+	
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.GLUtil;
+import com.gmail.br45entei.game.math.MathUtil;
+import com.gmail.br45entei.util.StringUtil;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Compares the number of bytes allocated (and the time taken) per frame when
+ * building {@link TestGame}'s debug overlay using {@link String#format(String, Object...)}
+ * and string concatenation versus using a reusable {@link HudText}.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class HudTextBenchmark {
+	
+	static final float[] orthographicProjection = new float[16];
+	static final float[] perspectiveProjection = new float[16];
+	static final float[] modelView = new float[16];
+	
+	static {
+		for(int i = 0; i < 16; i++) {
+			orthographicProjection[i] = i % 5 == 0 ? 1.0f : 0.0f;
+			perspectiveProjection[i] = i % 5 == 0 ? 1.4281480f : 0.0f;
+			modelView[i] = i % 5 == 0 ? 1.0f : 0.0f;
+		}
+		orthographicProjection[0] = 2.0f / 800.0f;
+		orthographicProjection[5] = 2.0f / 600.0f;
+		perspectiveProjection[10] = -1.00002f;
+		perspectiveProjection[11] = -1.0f;
+		perspectiveProjection[14] = -0.0200002f;
+	}
+	
+	/** Builds the overlay text the way {@link TestGame} used to.
+	 * 
+	 * @param frame The current frame number
+	 * @return The overlay text */
+	static final String buildLegacy(int frame) {
+		float x = frame * 0.01f, y = 1.5f, z = -frame * 0.02f, zDist = 0.0f;
+		float yaw = (frame * 0.37f) % 360.0f, pitch = 12.25f, roll = 0.0f;
+		modelView[12] = -x;
+		String text = String.format("FPS: Current: %s; Last: %s; Vsync: %sabled;", MathUtil.limitDecimalNoRounding(143.9872 + (frame % 7) * 0.0013, 4, true), Long.toString(144L), "en");
+		text = text.concat("\r\n").concat(String.format("FreeLook: %sabled; FreeMove: %sabled; Camera Upside-down: %s;", "dis", "dis", Boolean.toString(false)));
+		text = text.concat("\r\n").concat(String.format("Mouse Sensitivity: %s; Movement Speed: %s;", MathUtil.limitDecimalNoRounding(0.15f, 4, true), MathUtil.limitDecimalNoRounding(1.2f, 4, true)));
+		text = text.concat("\r\n").concat(String.format("X: %s; Y: %s; Z: %s; ~: %s;", MathUtil.limitDecimalNoRounding(x, 4, true), MathUtil.limitDecimalNoRounding(y, 4, true), MathUtil.limitDecimalNoRounding(z, 4, true), MathUtil.limitDecimalNoRounding(zDist, 4, true)));
+		text = text.concat("\r\n").concat(String.format("Yaw: %s; Pitch: %s; Roll: %s;", MathUtil.limitDecimalNoRounding(yaw, 4, true), MathUtil.limitDecimalNoRounding(pitch, 4, true), MathUtil.limitDecimalNoRounding(roll, 4, true)));
+		text = text.concat("\r\n").concat(String.format("Field of View: %s; zNear: %s; zFar: %s;", MathUtil.limitDecimalNoRounding(70.0f, 4, true), MathUtil.limitDecimalNoRounding(0.01f, 4, true), MathUtil.limitDecimalNoRounding(1000.0f, 4, true)));
+		text = text.concat("\r\n").concat(String.format("Viewport: 0, 0, %s, %s;", Integer.toString(800), Integer.toString(600)));
+		text = text.concat("\r\n").concat(GLUtil.matrix4x4ToStringf(orthographicProjection, 6, true).replaceFirst(Pattern.quote(StringUtil.lineOf('=', "==[2D Projection]".length())), Matcher.quoteReplacement("==[2D Projection]")));
+		text = text.concat("\r\n").concat(GLUtil.matrix4x4ToStringf(perspectiveProjection, 8, true).replaceFirst(Pattern.quote(StringUtil.lineOf('=', "==[3D Projection]".length())), Matcher.quoteReplacement("==[3D Projection]")));
+		text = text.concat("\r\n").concat(GLUtil.matrix4x4ToStringf(modelView, 6, true).replaceFirst(Pattern.quote(StringUtil.lineOf('=', "==[3D Model View]".length())), Matcher.quoteReplacement("==[3D Model View]")));
+		return text;
+	}
+	
+	/** Builds the same overlay text using the given {@link HudText}.
+	 * 
+	 * @param hud The overlay text buffer to use
+	 * @param frame The current frame number
+	 * @return The overlay text */
+	static final String buildHud(HudText hud, int frame) {
+		float x = frame * 0.01f, y = 1.5f, z = -frame * 0.02f, zDist = 0.0f;
+		float yaw = (frame * 0.37f) % 360.0f, pitch = 12.25f, roll = 0.0f;
+		modelView[12] = -x;
+		hud.begin();
+		hud.append("FPS: Current: ").append(143.9872 + (frame % 7) * 0.0013, 4).append("; Last: ").append(144L).append("; Vsync: ").append("en").append("abled;").endLine();
+		hud.append("FreeLook: ").append("dis").append("abled; FreeMove: ").append("dis").append("abled; Camera Upside-down: ").append(false).append(';').endLine();
+		hud.append("Mouse Sensitivity: ").append(0.15f, 4).append("; Movement Speed: ").append(1.2f, 4).append(';').endLine();
+		hud.append("X: ").append(x, 4).append("; Y: ").append(y, 4).append("; Z: ").append(z, 4).append("; ~: ").append(zDist, 4).append(';').endLine();
+		hud.append("Yaw: ").append(yaw, 4).append("; Pitch: ").append(pitch, 4).append("; Roll: ").append(roll, 4).append(';').endLine();
+		hud.append("Field of View: ").append(70.0f, 4).append("; zNear: ").append(0.01f, 4).append("; zFar: ").append(1000.0f, 4).append(';').endLine();
+		hud.append("Viewport: 0, 0, ").append(800).append(", ").append(600).append(';').endLine();
+		hud.appendMatrix("2D Projection", orthographicProjection, 6);
+		hud.appendMatrix("3D Projection", perspectiveProjection, 8);
+		hud.appendMatrix("3D Model View", modelView, 6);
+		hud.end();
+		return hud.toString();
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final int warmup = 20000, iterations = 100000;
+		final HudText hud = new HudText(32, 160);
+		System.out.println(buildHud(hud, 0));
+		System.out.println();
+		
+		// Both ways must produce the same text, including for large and negative values:
+		final int[] frames = {Integer.MIN_VALUE, -2000000000, -123456789, -1000000, Integer.MAX_VALUE, 2000000000, 123456789, 1000000};
+		for(int frame = -2000; frame <= 2000 + frames.length; frame++) {
+			final int f = frame > 2000 ? frames[frame - 2001] : frame;
+			final String legacy = buildLegacy(f), text = buildHud(hud, f);
+			MicroBenchmark.check(legacy.equals(text), String.format("Frame %s differs:%n%s%n---%n%s", Integer.toString(f), legacy, text));
+		}
+		final double[] values = {0.0, -0.0, 0.3, -0.3, 1.0E-9, -1.0E-9, 123.456789, -98765.4321, 1.0E9, 92233720368.5, 1.0E12, -1.0E12, 9.2E14, 1.0E15, -1.0E18, 1.0E300, Double.MAX_VALUE, -Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		final HudText line = new HudText(1, 400);
+		for(double value : values) {
+			for(int places = 0; places <= 9; places++) {
+				line.begin().append(value, places);
+				line.end();
+				final String expected = MathUtil.limitDecimalNoRounding(value, places, true), actual = line.toString();
+				MicroBenchmark.check(expected.equals(actual), String.format("%s with %s places: expected \"%s\", got \"%s\"", Double.toString(value), Integer.toString(places), expected, actual));
+			}
+		}
+		System.out.println(String.format("The HudText overlay matches the String.format overlay over %s frames and %s values.", Integer.toString(4001 + frames.length), Integer.toString(values.length * 10)));
+		
+		MicroBenchmark.run("HUD text (String.format + concat)", warmup, iterations, (i) -> buildLegacy(i));
+		MicroBenchmark.run("HUD text (HudText, every frame changes)", warmup, iterations, (i) -> buildHud(hud, i));
+		MicroBenchmark.run("HUD text (HudText, static frame)", warmup, iterations, (i) -> buildHud(hud, 0));
+	}
+	
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.Arrays;
+
+/** Maps keys and mouse buttons to actions, and keeps track of which actions
+ * are active from the events in an {@link InputEventQueue}.<br>
+ * <br>
+ * Actions are bits of a {@code long}, chosen by whoever binds them, so up to
+ * 64 actions can be tested at once with a mask. Every time the input is
+ * {@link #tick(InputEventQueue) ticked}, the queued events are applied in
+ * order, which updates:
+ * <ul>
+ * <li>{@link #getDown() down}: the actions whose keys or buttons are held at
+ * the end of the tick,</li>
+ * <li>{@link #getPressed() pressed} and {@link #getReleased() released}: the
+ * actions that started or stopped at any point during the tick, so that a
+ * key that was pressed and released between two ticks is not missed,
+ * and</li>
+ * <li>the mouse movement and scrolling accumulated during the tick.</li>
+ * </ul>
+ * An action stays down for as long as any key or button bound to it is held.
+ * <br>
+ * Like {@link InputEventQueue#drain(InputEventQueue.Handler)}, ticking must
+ * only be done by one thread, and nothing in this class allocates once the
+ * bindings are set up.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class InputActionMap implements InputEventQueue.Handler {
+	
+	private int[] keys = new int[0];
+	private long[] keyActions = new long[0];
+	private boolean[] keysDown = new boolean[0];
+	private int[] buttons = new int[0];
+	private long[] buttonActions = new long[0];
+	private boolean[] buttonsDown = new boolean[0];
+	
+	private long down = 0L, pressed = 0L, released = 0L;
+	private int mouseDeltaX = 0, mouseDeltaY = 0;
+	private int verticalScroll = 0, horizontalScroll = 0;
+	private int events = 0;
+	
+	/** Creates a new InputActionMap with no bindings. */
+	public InputActionMap() {
+	}
+	
+	/** Binds the given key to the given actions, replacing any actions it was
+	 * bound to before.
+	 * 
+	 * @param key The key code
+	 * @param actions The action bits that the key triggers
+	 * @return This InputActionMap */
+	public InputActionMap bindKey(int key, long actions) {
+		for(int i = 0; i < this.keys.length; i++) {
+			if(this.keys[i] == key) {
+				this.keyActions[i] = actions;
+				return this;
+			}
+		}
+		final int length = this.keys.length + 1;
+		this.keys = Arrays.copyOf(this.keys, length);
+		this.keyActions = Arrays.copyOf(this.keyActions, length);
+		this.keysDown = Arrays.copyOf(this.keysDown, length);
+		this.keys[length - 1] = key;
+		this.keyActions[length - 1] = actions;
+		return this;
+	}
+	
+	/** Binds the given mouse button to the given actions, replacing any
+	 * actions it was bound to before.
+	 * 
+	 * @param button The mouse button
+	 * @param actions The action bits that the button triggers
+	 * @return This InputActionMap */
+	public InputActionMap bindButton(int button, long actions) {
+		for(int i = 0; i < this.buttons.length; i++) {
+			if(this.buttons[i] == button) {
+				this.buttonActions[i] = actions;
+				return this;
+			}
+		}
+		final int length = this.buttons.length + 1;
+		this.buttons = Arrays.copyOf(this.buttons, length);
+		this.buttonActions = Arrays.copyOf(this.buttonActions, length);
+		this.buttonsDown = Arrays.copyOf(this.buttonsDown, length);
+		this.buttons[length - 1] = button;
+		this.buttonActions[length - 1] = actions;
+		return this;
+	}
+	
+	/** Starts a new tick and applies every event in the given queue.
+	 * 
+	 * @param queue The queue to drain
+	 * @return This InputActionMap */
+	public InputActionMap tick(InputEventQueue queue) {
+		this.pressed = this.released = 0L;
+		this.mouseDeltaX = this.mouseDeltaY = 0;
+		this.verticalScroll = this.horizontalScroll = 0;
+		this.events = queue.drain(this);
+		return this;
+	}
+	
+	private void set(int[] codes, long[] actions, boolean[] states, int code, boolean down) {
+		for(int i = 0; i < codes.length; i++) {
+			if(codes[i] == code) {
+				if(states[i] == down) {
+					// Key repeat, or a release that we never saw the press for
+					return;
+				}
+				states[i] = down;
+				break;
+			}
+		}
+		long now = 0L;
+		for(int i = 0; i < this.keys.length; i++) {
+			now |= this.keysDown[i] ? this.keyActions[i] : 0L;
+		}
+		for(int i = 0; i < this.buttons.length; i++) {
+			now |= this.buttonsDown[i] ? this.buttonActions[i] : 0L;
+		}
+		this.pressed |= now & ~this.down;
+		this.released |= this.down & ~now;
+		this.down = now;
+	}
+	
+	@Override
+	public void onEvent(int type, int a, int b, long time) {
+		switch(type) {
+		case InputEventQueue.KEY_DOWN:
+		case InputEventQueue.KEY_UP:
+			this.set(this.keys, this.keyActions, this.keysDown, a, type == InputEventQueue.KEY_DOWN);
+			break;
+		case InputEventQueue.BUTTON_DOWN:
+		case InputEventQueue.BUTTON_UP:
+			this.set(this.buttons, this.buttonActions, this.buttonsDown, a, type == InputEventQueue.BUTTON_DOWN);
+			break;
+		case InputEventQueue.MOUSE_MOVED:
+			this.mouseDeltaX += a;
+			this.mouseDeltaY += b;
+			break;
+		case InputEventQueue.MOUSE_SCROLL:
+			if(b != 0) {
+				this.verticalScroll += a;
+			} else {
+				this.horizontalScroll += a;
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/** @return The actions that are held down at the end of this tick */
+	public long getDown() {
+		return this.down;
+	}
+	
+	/** @return The actions that started during this tick */
+	public long getPressed() {
+		return this.pressed;
+	}
+	
+	/** @return The actions that stopped during this tick */
+	public long getReleased() {
+		return this.released;
+	}
+	
+	/** @return The actions that were active at any point during this tick
+	 *         (held down now, or pressed and released again since the last
+	 *         tick) */
+	public long getActive() {
+		return this.down | this.pressed;
+	}
+	
+	/** @param actions The action bits to test
+	 * @return Whether or not any of the given actions are held down */
+	public boolean isDown(long actions) {
+		return (this.down & actions) != 0L;
+	}
+	
+	/** @param actions The action bits to test
+	 * @return Whether or not any of the given actions were active at any
+	 *         point during this tick */
+	public boolean isActive(long actions) {
+		return (this.getActive() & actions) != 0L;
+	}
+	
+	/** @param actions The action bits to test
+	 * @return Whether or not any of the given actions started during this
+	 *         tick */
+	public boolean wasPressed(long actions) {
+		return (this.pressed & actions) != 0L;
+	}
+	
+	/** @param actions The action bits to test
+	 * @return Whether or not any of the given actions stopped during this
+	 *         tick */
+	public boolean wasReleased(long actions) {
+		return (this.released & actions) != 0L;
+	}
+	
+	/** @return How far the mouse moved horizontally during this tick */
+	public int getMouseDeltaX() {
+		return this.mouseDeltaX;
+	}
+	
+	/** @return How far the mouse moved vertically during this tick */
+	public int getMouseDeltaY() {
+		return this.mouseDeltaY;
+	}
+	
+	/** @return The number of clicks that the vertical mouse wheel was
+	 *         scrolled during this tick */
+	public int getVerticalScroll() {
+		return this.verticalScroll;
+	}
+	
+	/** @return The number of clicks that the horizontal mouse wheel was
+	 *         scrolled during this tick */
+	public int getHorizontalScroll() {
+		return this.horizontalScroll;
+	}
+	
+	/** @return The number of events that were applied during this tick */
+	public int getEventCount() {
+		return this.events;
+	}
+	
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A bounded, lock-free, multiple-producer/single-consumer queue of input
+ * events.<br>
+ * Each event is a type, two {@code int} arguments and a timestamp, stored in
+ * preallocated parallel arrays, so neither adding nor draining an event
+ * allocates anything. Any thread may add events (the input callbacks, which
+ * are called by the window's thread); only one thread may
+ * {@link #drain(Handler) drain} them (the input tick).<br>
+ * <br>
+ * Which slots are free, being written or ready to be drained is tracked by a
+ * {@link SlotRing}; the consumer never waits, and stops draining at the first
+ * slot whose event has not been completely written yet.<br>
+ * <br>
+ * When the queue is full, new events are {@link #getDropCount() dropped}
+ * rather than making the input thread wait.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class InputEventQueue {
+	
+	/** A key was pressed; the first argument is the key code */
+	public static final int KEY_DOWN = 1;
+	/** A key was released; the first argument is the key code */
+	public static final int KEY_UP = 2;
+	/** A mouse button was pressed; the first argument is the button */
+	public static final int BUTTON_DOWN = 3;
+	/** A mouse button was released; the first argument is the button */
+	public static final int BUTTON_UP = 4;
+	/** The mouse moved; the arguments are the X and Y deltas */
+	public static final int MOUSE_MOVED = 5;
+	/** The mouse wheel was scrolled; the first argument is the number of
+	 * clicks, and the second is {@code 1} for vertical scrolling or {@code 0}
+	 * for horizontal scrolling */
+	public static final int MOUSE_SCROLL = 6;
+	
+	/** The default number of events that a queue can hold */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/** Receives events as they are {@link InputEventQueue#drain(Handler)
+	 * drained}.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static interface Handler {
+		
+		/** @param type The type of the event, such as {@link #KEY_DOWN}
+		 * @param a The event's first argument
+		 * @param b The event's second argument
+		 * @param time The value of {@link System#nanoTime()} when the event
+		 *            was added */
+		public void onEvent(int type, int a, int b, long time);
+		
+	}
+	
+	private final SlotRing ring;
+	private final int[] types, as, bs;
+	private final long[] times;
+	private final AtomicLong dropped = new AtomicLong(0L);
+	
+	/** Creates a new InputEventQueue that can hold
+	 * {@link #DEFAULT_CAPACITY} events. */
+	public InputEventQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/** Creates a new InputEventQueue.
+	 * 
+	 * @param capacity The number of events that the queue can hold (rounded
+	 *            up to the next power of two) */
+	public InputEventQueue(int capacity) {
+		this.ring = new SlotRing(capacity);
+		capacity = this.ring.capacity();
+		this.types = new int[capacity];
+		this.as = new int[capacity];
+		this.bs = new int[capacity];
+		this.times = new long[capacity];
+	}
+	
+	/** Adds an event to this queue.<br>
+	 * May be called from any thread.
+	 * 
+	 * @param type The type of the event, such as {@link #KEY_DOWN}
+	 * @param a The event's first argument
+	 * @param b The event's second argument
+	 * @param time The time of the event, as given by {@link System#nanoTime()}
+	 * @return Whether or not the event was added ({@code false} if the queue
+	 *         was full) */
+	public boolean offer(int type, int a, int b, long time) {
+		final long position = this.ring.claim();
+		if(position < 0L) {
+			this.dropped.incrementAndGet();
+			return false;
+		}
+		final int index = this.ring.index(position);
+		this.types[index] = type;
+		this.as[index] = a;
+		this.bs[index] = b;
+		this.times[index] = time;
+		this.ring.publish(position);
+		return true;
+	}
+	
+	/** @param key The key that was pressed
+	 * @return Whether or not the event was added */
+	public boolean keyDown(int key) {
+		return this.offer(KEY_DOWN, key, 0, System.nanoTime());
+	}
+	
+	/** @param key The key that was released
+	 * @return Whether or not the event was added */
+	public boolean keyUp(int key) {
+		return this.offer(KEY_UP, key, 0, System.nanoTime());
+	}
+	
+	/** @param button The mouse button that was pressed
+	 * @return Whether or not the event was added */
+	public boolean buttonDown(int button) {
+		return this.offer(BUTTON_DOWN, button, 0, System.nanoTime());
+	}
+	
+	/** @param button The mouse button that was released
+	 * @return Whether or not the event was added */
+	public boolean buttonUp(int button) {
+		return this.offer(BUTTON_UP, button, 0, System.nanoTime());
+	}
+	
+	/** @param deltaX How far the mouse moved horizontally
+	 * @param deltaY How far the mouse moved vertically
+	 * @return Whether or not the event was added */
+	public boolean mouseMoved(int deltaX, int deltaY) {
+		return this.offer(MOUSE_MOVED, deltaX, deltaY, System.nanoTime());
+	}
+	
+	/** @param vertical Whether the vertical or the horizontal wheel was
+	 *            scrolled
+	 * @param count The number of clicks that the wheel was scrolled
+	 * @return Whether or not the event was added */
+	public boolean mouseScroll(boolean vertical, int count) {
+		return this.offer(MOUSE_SCROLL, count, vertical ? 1 : 0, System.nanoTime());
+	}
+	
+	/** Passes every event that has been added so far to the given handler, in
+	 * the order in which they were added, and removes them from this queue.
+	 * <br>
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @param handler The handler that will receive the events
+	 * @return The number of events that were drained */
+	public int drain(Handler handler) {
+		int drained = 0;
+		for(int index; (index = this.ring.poll()) >= 0; drained++) {
+			handler.onEvent(this.types[index], this.as[index], this.bs[index], this.times[index]);
+			this.ring.release();
+		}
+		return drained;
+	}
+	
+	/** @return The number of events that can be held at once */
+	public int capacity() {
+		return this.ring.capacity();
+	}
+	
+	/** @return The approximate number of events waiting to be drained */
+	public int size() {
+		return this.ring.size();
+	}
+	
+	/** @return The number of events that were dropped because this queue was
+	 *         full */
+	public long getDropCount() {
+		return this.dropped.get();
+	}
+	
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Replay test and benchmark of {@link InputEventQueue} and
+ * {@link InputActionMap}.<br>
+ * A recorded stream of key, button, mouse and scroll events (including taps
+ * that start and end between two ticks) is replayed through the queue and
+ * the action map, and the action state after every tick is compared against a
+ * straightforward model of what the events should have done. Then several
+ * producer threads fill a small queue while it is being drained, to check
+ * that no event is lost, duplicated or reordered without being counted as
+ * dropped. Finally the number of events per second is measured.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class InputEventQueueBenchmark {
+	
+	static final int[] KEYS = {87, 83, 65, 68, 32, 340};
+	static final long[] KEY_ACTIONS = {CameraSimulation.MOVE_FORWARD, CameraSimulation.MOVE_BACKWARD, CameraSimulation.MOVE_LEFT, CameraSimulation.MOVE_RIGHT, CameraSimulation.MOVE_UP, CameraSimulation.MOVE_UP};
+	static final int BUTTON = 2;
+	static final long BUTTON_ACTION = TestGame.ACTION_RESET_ZOOM_DISTANCE;
+	
+	/** Records a random stream of input events.
+	 * 
+	 * @param random The random number generator to use
+	 * @param count The number of events to record
+	 * @return The events, four ints each: the tick they happen before, their
+	 *         type and their two arguments */
+	static final int[] record(Random random, int count) {
+		final int[] events = new int[count * 4];
+		final boolean[] keysDown = new boolean[KEYS.length];
+		boolean buttonDown = false;
+		int tick = 0;
+		for(int i = 0; i < count; i++) {
+			final int e = i * 4;
+			tick += random.nextInt(4) == 0 ? 1 : 0;
+			events[e] = tick;
+			final int kind = random.nextInt(10);
+			if(kind < 5) {
+				// Press or release a key (sometimes one that is already down, like key repeat does):
+				final int k = random.nextInt(KEYS.length);
+				keysDown[k] = random.nextInt(8) == 0 ? keysDown[k] : !keysDown[k];
+				events[e + 1] = keysDown[k] ? InputEventQueue.KEY_DOWN : InputEventQueue.KEY_UP;
+				events[e + 2] = KEYS[k];
+			} else if(kind < 6) {
+				buttonDown = !buttonDown;
+				events[e + 1] = buttonDown ? InputEventQueue.BUTTON_DOWN : InputEventQueue.BUTTON_UP;
+				events[e + 2] = BUTTON;
+			} else if(kind < 9) {
+				events[e + 1] = InputEventQueue.MOUSE_MOVED;
+				events[e + 2] = random.nextInt(41) - 20;
+				events[e + 3] = random.nextInt(41) - 20;
+			} else {
+				events[e + 1] = InputEventQueue.MOUSE_SCROLL;
+				events[e + 2] = random.nextInt(5) - 2;
+				events[e + 3] = random.nextInt(2);
+			}
+		}
+		return events;
+	}
+	
+	/** Replays recorded events through a queue and an action map, checking the
+	 * action state after every tick against a model built from sets.
+	 * 
+	 * @param events The recorded events
+	 * @return The number of ticks that were checked */
+	static final int replay(int[] events) {
+		final InputEventQueue queue = new InputEventQueue(64);
+		final InputActionMap actions = new InputActionMap();
+		for(int k = 0; k < KEYS.length; k++) {
+			actions.bindKey(KEYS[k], KEY_ACTIONS[k]);
+		}
+		actions.bindButton(BUTTON, BUTTON_ACTION);
+		
+		final Set<Integer> keysHeld = new HashSet<>();
+		boolean buttonHeld = false;
+		long modelDown = 0L;
+		int ticks = 0;
+		int i = 0;
+		final int count = events.length / 4;
+		while(i < count) {
+			final int tick = events[i * 4];
+			long modelPressed = 0L, modelReleased = 0L;
+			int mouseX = 0, mouseY = 0, vertical = 0, horizontal = 0, queued = 0;
+			for(; i < count && events[i * 4] == tick; i++) {
+				final int e = i * 4, type = events[e + 1], a = events[e + 2], b = events[e + 3];
+				MicroBenchmark.check(queue.offer(type, a, b, i), "The queue filled up during the replay!");
+				queued++;
+				if(type == InputEventQueue.KEY_DOWN) {
+					keysHeld.add(Integer.valueOf(a));
+				} else if(type == InputEventQueue.KEY_UP) {
+					keysHeld.remove(Integer.valueOf(a));
+				} else if(type == InputEventQueue.BUTTON_DOWN || type == InputEventQueue.BUTTON_UP) {
+					buttonHeld = type == InputEventQueue.BUTTON_DOWN;
+				} else if(type == InputEventQueue.MOUSE_MOVED) {
+					mouseX += a;
+					mouseY += b;
+				} else if(b != 0) {
+					vertical += a;
+				} else {
+					horizontal += a;
+				}
+				long now = buttonHeld ? BUTTON_ACTION : 0L;
+				for(int k = 0; k < KEYS.length; k++) {
+					now |= keysHeld.contains(Integer.valueOf(KEYS[k])) ? KEY_ACTIONS[k] : 0L;
+				}
+				modelPressed |= now & ~modelDown;
+				modelReleased |= modelDown & ~now;
+				modelDown = now;
+			}
+			actions.tick(queue);
+			final String where = "Tick ".concat(Integer.toString(tick)).concat(": ");
+			MicroBenchmark.check(actions.getEventCount() == queued, where.concat("not every event was drained"));
+			MicroBenchmark.check(actions.getDown() == modelDown, where.concat("held actions differ"));
+			MicroBenchmark.check(actions.getPressed() == modelPressed, where.concat("pressed actions differ"));
+			MicroBenchmark.check(actions.getReleased() == modelReleased, where.concat("released actions differ"));
+			MicroBenchmark.check(actions.getMouseDeltaX() == mouseX && actions.getMouseDeltaY() == mouseY, where.concat("mouse movement differs"));
+			MicroBenchmark.check(actions.getVerticalScroll() == vertical && actions.getHorizontalScroll() == horizontal, where.concat("scrolling differs"));
+			ticks++;
+		}
+		return ticks;
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws InterruptedException If interrupted while waiting for the
+	 *             producer threads */
+	public static final void main(String[] args) throws InterruptedException {
+		// A tap between two ticks:
+		final InputEventQueue queue = new InputEventQueue(16);
+		final InputActionMap actions = new InputActionMap().bindKey(87, CameraSimulation.MOVE_FORWARD);
+		queue.keyDown(87);
+		queue.keyUp(87);
+		actions.tick(queue);
+		MicroBenchmark.check(!actions.isDown(CameraSimulation.MOVE_FORWARD) && actions.isActive(CameraSimulation.MOVE_FORWARD), "A tap between two ticks was missed!");
+		MicroBenchmark.check(actions.wasPressed(CameraSimulation.MOVE_FORWARD) && actions.wasReleased(CameraSimulation.MOVE_FORWARD), "A tap between two ticks was not both pressed and released!");
+		actions.tick(queue);
+		MicroBenchmark.check(!actions.isActive(CameraSimulation.MOVE_FORWARD), "A tap lasted longer than one tick!");
+		System.out.println("Taps between ticks are seen for exactly one tick.");
+		
+		// Replay of a recorded stream:
+		int ticks = replay(record(new Random(0x1AB7L), 200000));
+		System.out.println(String.format("Replayed 200000 recorded events over %s ticks; every tick matched the model.", Integer.toString(ticks)));
+		
+		// Several producers racing the consumer on a small queue:
+		final int producers = 3, perProducer = 500000;
+		final InputEventQueue shared = new InputEventQueue(256);
+		final AtomicBoolean go = new AtomicBoolean(false);
+		final Thread[] threads = new Thread[producers];
+		for(int p = 0; p < producers; p++) {
+			final int producer = p;
+			threads[p] = new Thread(() -> {
+				while(!go.get()) {
+					Thread.onSpinWait();
+				}
+				for(int n = 0; n < perProducer; n++) {
+					shared.offer(InputEventQueue.KEY_DOWN, producer, n, 0L);
+					if((n & 63) == 0) {
+						Thread.yield();
+					}
+				}
+			}, "Producer ".concat(Integer.toString(p)));
+			threads[p].start();
+		}
+		final int[] last = {-1, -1, -1};
+		final long[] received = {0L};
+		final InputEventQueue.Handler verifier = (type, producer, n, time) -> {
+			MicroBenchmark.check(n > last[producer], "Events from one producer were reordered or duplicated!");
+			last[producer] = n;
+			received[0]++;
+		};
+		go.set(true);
+		boolean running = true;
+		while(running) {
+			shared.drain(verifier);
+			running = false;
+			for(Thread thread : threads) {
+				running |= thread.isAlive();
+			}
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		shared.drain(verifier);
+		MicroBenchmark.check(received[0] + shared.getDropCount() == producers * (long) perProducer, "Events were lost without being counted as dropped!");
+		System.out.println(String.format("%s producers: %s events received, %s dropped (queue full), none lost or reordered.", Integer.toString(producers), Long.toString(received[0]), Long.toString(shared.getDropCount())));
+		
+		// Events per second:
+		final InputEventQueue benchQueue = new InputEventQueue();
+		final InputActionMap benchActions = new InputActionMap();
+		for(int k = 0; k < KEYS.length; k++) {
+			benchActions.bindKey(KEYS[k], KEY_ACTIONS[k]);
+		}
+		final int batch = 64;
+		MicroBenchmark.Result result = MicroBenchmark.run(String.format("offer + tick (%s events per tick)", Integer.toString(batch)), 20000, 200000, (iteration) -> {
+			for(int n = 0; n < batch; n += 2) {
+				benchQueue.offer(InputEventQueue.KEY_DOWN, KEYS[n % KEYS.length], 0, n);
+				benchQueue.offer(InputEventQueue.MOUSE_MOVED, n, -n, n);
+			}
+			return benchActions.tick(benchQueue);
+		});
+		MicroBenchmark.check(result.bytesPerOp < 1.0, "Queueing or applying events allocated memory!");
+		System.out.println(String.format("Single thread: %s events per second", Long.toString(Math.round(result.getOpsPerSecond() * batch))));
+		
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final InputEventQueue crossQueue = new InputEventQueue();
+		Thread producer = new Thread(() -> {
+			int n = 0;
+			while(!stop.get()) {
+				if(!crossQueue.offer(InputEventQueue.MOUSE_MOVED, n, -n, 0L)) {
+					Thread.onSpinWait();
+				}
+				n++;
+			}
+		}, "Producer");
+		producer.start();
+		final long[] drained = {0L};
+		final InputEventQueue.Handler counter = (type, a, b, time) -> drained[0]++;
+		final long start = System.nanoTime(), end = start + 1000000000L;
+		while(System.nanoTime() < end) {
+			crossQueue.drain(counter);
+		}
+		stop.set(true);
+		producer.join();
+		System.out.println(String.format("Cross-thread: %s events per second", Long.toString(Math.round(drained[0] * 1.0E9 / (System.nanoTime() - start)))));
+	}
+	
+}
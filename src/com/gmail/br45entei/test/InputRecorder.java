@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.gmail.br45entei.game.input.InputCallback;
+
+/** An {@link InputCallback} that records the keyboard and mouse events it
+ * receives, with timestamps, into an {@link InputRecording}.<br>
+ * Register it with a window alongside the game whose input should be
+ * recorded (it ends a tick each time its {@link #input(double)} is called),
+ * then {@link InputRecording#save(java.io.File) save} the
+ * {@link #getRecording() recording} for {@link InputReplay} to play back.
+ * <br>
+ * Controller events are not recorded, since the {@link Controller} that sent
+ * them can't be recreated on playback.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class InputRecorder implements InputCallback {
+	
+	private final InputRecording recording = new InputRecording();
+	private final long start = System.nanoTime();
+	private long lastTick = this.start;
+	private volatile boolean inputInitialized = false;
+	
+	/** Creates a new InputRecorder. */
+	public InputRecorder() {
+	}
+	
+	/** @return The recording. It must not be read while events are still
+	 *         being recorded. */
+	public InputRecording getRecording() {
+		return this.recording;
+	}
+	
+	private synchronized void record(byte type, int a, int b, int c, int d) {
+		this.recording.addEvent(System.nanoTime() - this.start, type, a, b, c, d);
+	}
+	
+	@Override
+	public boolean isInputInitialized() {
+		return this.inputInitialized;
+	}
+	
+	@Override
+	public void inputInit() {
+		this.inputInitialized = true;
+	}
+	
+	@Override
+	public void inputCleanup() {
+		this.inputInitialized = false;
+	}
+	
+	@Override
+	public synchronized void input(double deltaTime) {
+		final long now = System.nanoTime();
+		this.recording.addTick(now - this.lastTick);
+		this.lastTick = now;
+	}
+	
+	@Override
+	public void update(double deltaTime) {
+	}
+	
+	@Override
+	public void onMouseMoved(int deltaX, int deltaY, int oldX, int oldY, int newX, int newY) {
+		this.record(InputRecording.MOUSE_MOVED, deltaX, deltaY, newX, newY);
+	}
+	
+	@Override
+	public void onMouseButtonDown(int button) {
+		this.record(InputRecording.BUTTON_DOWN, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onMouseButtonHeld(int button) {
+		this.record(InputRecording.BUTTON_HELD, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onMouseButtonUp(int button) {
+		this.record(InputRecording.BUTTON_UP, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onMouseDoubleClick(int button) {
+		this.record(InputRecording.DOUBLE_CLICK, button, 0, 0, 0);
+	}
+	
+	@Override
+	public void onMouseScroll(boolean vertical, int count) {
+		this.record(InputRecording.MOUSE_SCROLL, count, vertical ? 1 : 0, 0, 0);
+	}
+	
+	@Override
+	public void onKeyDown(int key) {
+		this.record(InputRecording.KEY_DOWN, key, 0, 0, 0);
+	}
+	
+	@Override
+	public void onKeyHeld(int key) {
+		this.record(InputRecording.KEY_HELD, key, 0, 0, 0);
+	}
+	
+	@Override
+	public void onKeyUp(int key) {
+		this.record(InputRecording.KEY_UP, key, 0, 0, 0);
+	}
+	
+	@Override
+	public void onControllerConnected(Controller controller) {
+	}
+	
+	@Override
+	public void onControllerDisconnected(Controller controller) {
+	}
+	
+	@Override
+	public void onControllerButtonDown(Controller controller, int button) {
+	}
+	
+	@Override
+	public void onControllerButtonRepeat(Controller controller, int button) {
+	}
+	
+	@Override
+	public void onControllerButtonUp(Controller controller, int button) {
+	}
+	
+	@Override
+	public void onControllerButtonDoubleTapped(Controller controller, int button) {
+	}
+	
+	@Override
+	public void onControllerAxisChanged(Controller controller, int axis, float oldValue, float newValue) {
+	}
+	
+	@Override
+	public boolean handleException(Throwable ex, String method, Object... params) {
+		return false;
+	}
+	
+}
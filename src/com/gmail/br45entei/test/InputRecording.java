@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.input.InputCallback;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/** A recording of input events, and of how long each input tick took, that
+ * can be saved to and loaded from a compact binary log and played back into
+ * an {@link InputCallback} (such as a {@link com.gmail.br45entei.game.Game
+ * Game}) one tick at a time.<br>
+ * <br>
+ * Every event belongs to the tick before which it arrived: playing back tick
+ * {@code n} delivers the events that arrived between the game's
+ * {@code n}th and {@code n+1}th calls to {@link InputCallback#input(double)},
+ * so a game that is fed the recording and then ticked with the recorded
+ * durations sees exactly the same input at exactly the same ticks.<br>
+ * <br>
+ * The log starts with {@link #MAGIC} and {@link #VERSION}, followed by the
+ * tick durations and then the events. Numbers are written as variable-length
+ * integers (seven bits per byte, signed values zig-zag encoded), and ticks and
+ * timestamps are written as differences from the previous event's, so a
+ * key event typically takes four to seven bytes and a mouse movement around
+ * a dozen.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class InputRecording {
+	
+	/** The first four bytes of a recording: {@code "IREC"} */
+	public static final int MAGIC = 0x49524543;
+	/** The version of the log format that this class reads and writes */
+	public static final int VERSION = 1;
+	
+	/** A key was pressed; {@code a} is the key */
+	public static final byte KEY_DOWN = 1;
+	/** A key is being held down; {@code a} is the key */
+	public static final byte KEY_HELD = 2;
+	/** A key was released; {@code a} is the key */
+	public static final byte KEY_UP = 3;
+	/** A mouse button was pressed; {@code a} is the button */
+	public static final byte BUTTON_DOWN = 4;
+	/** A mouse button is being held down; {@code a} is the button */
+	public static final byte BUTTON_HELD = 5;
+	/** A mouse button was released; {@code a} is the button */
+	public static final byte BUTTON_UP = 6;
+	/** A mouse button was double-clicked; {@code a} is the button */
+	public static final byte DOUBLE_CLICK = 7;
+	/** The mouse moved; {@code a} and {@code b} are the deltas, and {@code c}
+	 * and {@code d} are the new position */
+	public static final byte MOUSE_MOVED = 8;
+	/** The mouse wheel was scrolled; {@code a} is the number of clicks, and
+	 * {@code b} is {@code 1} for vertical scrolling or {@code 0} for
+	 * horizontal scrolling */
+	public static final byte MOUSE_SCROLL = 9;
+	
+	private static final int[] ARGUMENTS = {0, 1, 1, 1, 1, 1, 1, 1, 4, 2};
+	
+	private long[] tickNanos = new long[64];
+	private int ticks = 0;
+	
+	private int[] eventTicks = new int[256];
+	private long[] eventNanos = new long[256];
+	private byte[] types = new byte[256];
+	private int[] args = new int[256 * 4];
+	private int events = 0;
+	
+	/** Creates a new, empty InputRecording. */
+	public InputRecording() {
+	}
+	
+	/** Ends the current tick.
+	 * 
+	 * @param nanos How long the tick took, in nanoseconds
+	 * @return This InputRecording */
+	public InputRecording addTick(long nanos) {
+		if(this.ticks == this.tickNanos.length) {
+			this.tickNanos = Arrays.copyOf(this.tickNanos, this.ticks * 2);
+		}
+		this.tickNanos[this.ticks++] = nanos;
+		return this;
+	}
+	
+	/** Adds an event to the current tick.
+	 * 
+	 * @param nanos When the event happened, in nanoseconds since the
+	 *            recording started
+	 * @param type The type of the event, such as {@link #KEY_DOWN}
+	 * @param a The event's first argument
+	 * @param b The event's second argument
+	 * @param c The event's third argument
+	 * @param d The event's fourth argument
+	 * @return This InputRecording */
+	public InputRecording addEvent(long nanos, byte type, int a, int b, int c, int d) {
+		return this.add(this.ticks, nanos, type, a, b, c, d);
+	}
+	
+	private InputRecording add(int tick, long nanos, byte type, int a, int b, int c, int d) {
+		if(type <= 0 || type >= ARGUMENTS.length) {
+			throw new IllegalArgumentException("Unknown event type: ".concat(Integer.toString(type)));
+		}
+		if(this.events == this.types.length) {
+			final int length = this.events * 2;
+			this.eventTicks = Arrays.copyOf(this.eventTicks, length);
+			this.eventNanos = Arrays.copyOf(this.eventNanos, length);
+			this.types = Arrays.copyOf(this.types, length);
+			this.args = Arrays.copyOf(this.args, length * 4);
+		}
+		final int e = this.events++;
+		this.eventTicks[e] = tick;
+		this.eventNanos[e] = nanos;
+		this.types[e] = type;
+		this.args[e * 4] = a;
+		this.args[(e * 4) + 1] = b;
+		this.args[(e * 4) + 2] = c;
+		this.args[(e * 4) + 3] = d;
+		return this;
+	}
+	
+	/** @return The number of ticks that have been recorded */
+	public int getTickCount() {
+		return this.ticks;
+	}
+	
+	/** @param tick The tick
+	 * @return How long the given tick took, in nanoseconds */
+	public long getTickNanos(int tick) {
+		return this.tickNanos[tick];
+	}
+	
+	/** @return The number of events that have been recorded */
+	public int getEventCount() {
+		return this.events;
+	}
+	
+	/** @param event The index of the event
+	 * @return The tick that the event belongs to */
+	public int getEventTick(int event) {
+		return this.eventTicks[event];
+	}
+	
+	/** @param event The index of the event
+	 * @return When the event happened, in nanoseconds since the recording
+	 *         started */
+	public long getEventNanos(int event) {
+		return this.eventNanos[event];
+	}
+	
+	/** @param event The index of the event
+	 * @return The type of the event, such as {@link #KEY_DOWN} */
+	public byte getEventType(int event) {
+		return this.types[event];
+	}
+	
+	/** @param event The index of the event
+	 * @param arg Which argument to get, from {@code 0} to {@code 3}
+	 * @return The given argument of the event */
+	public int getEventArgument(int event, int arg) {
+		return this.args[(event * 4) + arg];
+	}
+	
+	/** Delivers one recorded event to the given callback.
+	 * 
+	 * @param event The index of the event
+	 * @param target The callback to deliver the event to */
+	public void dispatch(int event, InputCallback target) {
+		final int i = event * 4;
+		final int a = this.args[i], b = this.args[i + 1], c = this.args[i + 2], d = this.args[i + 3];
+		switch(this.types[event]) {
+		case KEY_DOWN:
+			target.onKeyDown(a);
+			break;
+		case KEY_HELD:
+			target.onKeyHeld(a);
+			break;
+		case KEY_UP:
+			target.onKeyUp(a);
+			break;
+		case BUTTON_DOWN:
+			target.onMouseButtonDown(a);
+			break;
+		case BUTTON_HELD:
+			target.onMouseButtonHeld(a);
+			break;
+		case BUTTON_UP:
+			target.onMouseButtonUp(a);
+			break;
+		case DOUBLE_CLICK:
+			target.onMouseDoubleClick(a);
+			break;
+		case MOUSE_MOVED:
+			target.onMouseMoved(a, b, c - a, d - b, c, d);
+			break;
+		case MOUSE_SCROLL:
+			target.onMouseScroll(b != 0, a);
+			break;
+		default:
+			break;
+		}
+	}
+	
+	private static final void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while((value & ~0x7FL) != 0L) {
+			out.writeByte((int) ((value & 0x7FL) | 0x80L));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+	
+	private static final long readVarLong(DataInputStream in) throws IOException {
+		long value = 0L;
+		for(int shift = 0; shift < 64; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+	
+	private static final int readVarInt(DataInputStream in) throws IOException {
+		final long value = readVarLong(in);
+		if(value < 0L || value > Integer.MAX_VALUE) {
+			throw new IOException("Value out of range: ".concat(Long.toUnsignedString(value)));
+		}
+		return (int) value;
+	}
+	
+	/** Writes this recording to the given stream.
+	 * 
+	 * @param out The stream to write to (it is not closed)
+	 * @throws IOException If an I/O error occurs */
+	public void write(OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeByte(VERSION);
+		writeVarLong(data, this.ticks);
+		for(int t = 0; t < this.ticks; t++) {
+			writeVarLong(data, this.tickNanos[t]);
+		}
+		writeVarLong(data, this.events);
+		int lastTick = 0;
+		long lastNanos = 0L;
+		for(int e = 0; e < this.events; e++) {
+			data.writeByte(this.types[e]);
+			writeVarLong(data, this.eventTicks[e] - lastTick);
+			// Zig-zag encoded, in case events were recorded out of order across threads:
+			final long delta = this.eventNanos[e] - lastNanos;
+			writeVarLong(data, (delta << 1) ^ (delta >> 63));
+			for(int i = 0; i < ARGUMENTS[this.types[e]]; i++) {
+				final int arg = this.args[(e * 4) + i];
+				writeVarLong(data, ((arg << 1) ^ (arg >> 31)) & 0xFFFFFFFFL);
+			}
+			lastTick = this.eventTicks[e];
+			lastNanos = this.eventNanos[e];
+		}
+		data.flush();
+	}
+	
+	/** Reads a recording from the given stream.
+	 * 
+	 * @param in The stream to read from (it is not closed)
+	 * @return The recording that was read
+	 * @throws IOException If an I/O error occurs or the stream does not
+	 *             contain a recording */
+	public static final InputRecording read(InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != MAGIC) {
+			throw new IOException("Not an input recording");
+		}
+		final int version = data.readUnsignedByte();
+		if(version != VERSION) {
+			throw new IOException("Unsupported input recording version: ".concat(Integer.toString(version)));
+		}
+		final InputRecording recording = new InputRecording();
+		final int ticks = readVarInt(data);
+		for(int t = 0; t < ticks; t++) {
+			recording.addTick(readVarLong(data));
+		}
+		final int events = readVarInt(data);
+		final int[] args = new int[4];
+		int tick = 0;
+		long nanos = 0L;
+		for(int e = 0; e < events; e++) {
+			final byte type = data.readByte();
+			if(type <= 0 || type >= ARGUMENTS.length) {
+				throw new IOException("Unknown event type: ".concat(Integer.toString(type)));
+			}
+			tick += readVarInt(data);
+			final long delta = readVarLong(data);
+			nanos += (delta >>> 1) ^ -(delta & 1L);
+			Arrays.fill(args, 0);
+			for(int i = 0; i < ARGUMENTS[type]; i++) {
+				final int arg = (int) readVarLong(data);
+				args[i] = (arg >>> 1) ^ -(arg & 1);
+			}
+			if(tick > ticks) {
+				throw new IOException("Event belongs to a tick that was not recorded: ".concat(Integer.toString(tick)));
+			}
+			recording.add(tick, nanos, type, args[0], args[1], args[2], args[3]);
+		}
+		return recording;
+	}
+	
+	/** @param file The file to save this recording to
+	 * @throws IOException If an I/O error occurs */
+	public void save(File file) throws IOException {
+		try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			this.write(out);
+		}
+	}
+	
+	/** @param file The file to load the recording from
+	 * @return The recording that was loaded
+	 * @throws IOException If an I/O error occurs or the file does not contain
+	 *             a recording */
+	public static final InputRecording load(File file) throws IOException {
+		try(InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			return read(in);
+		}
+	}
+	
+	/** @param recording The recording to compare against
+	 * @return Whether or not the given recording contains exactly the same
+	 *         ticks and events as this one */
+	public boolean equalTo(InputRecording recording) {
+		return recording != null && this.ticks == recording.ticks && this.events == recording.events && Arrays.equals(this.tickNanos, 0, this.ticks, recording.tickNanos, 0, recording.ticks) && Arrays.equals(this.eventTicks, 0, this.events, recording.eventTicks, 0, recording.events) && Arrays.equals(this.eventNanos, 0, this.events, recording.eventNanos, 0, recording.events) && Arrays.equals(this.types, 0, this.events, recording.types, 0, recording.events) && Arrays.equals(this.args, 0, this.events * 4, recording.args, 0, recording.events * 4);
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s ticks, %s events", Integer.toString(this.ticks), Integer.toString(this.events));
+	}
+	
+}
@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.input.InputCallback;
+import com.gmail.br45entei.game.input.Keyboard.Keys;
+import com.gmail.br45entei.game.input.Mouse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/** Plays an {@link InputRecording} back into a game one tick at a time, and
+ * keeps the clock that the game should be stepped with while it does.<br>
+ * The clock starts at zero and advances by each tick's recorded duration, so
+ * a game that takes its time from {@link #getTime()} (see
+ * {@link TestGame#setSimulationClock(java.util.function.LongSupplier)}) does
+ * exactly the same thing every time the recording is replayed, no matter how
+ * long each frame really takes.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class InputReplay {
+	
+	/** The name that replay results are written under */
+	public static final String NAME = "InputReplay";
+	/** The relative change in a frame time statistic beyond which it is
+	 * reported as a regression */
+	public static final double REGRESSION_THRESHOLD = 0.10;
+	
+	private final InputRecording recording;
+	private int tick = 0;
+	private int event = 0;
+	private volatile long time = 0L;
+	
+	/** Creates a new InputReplay.
+	 * 
+	 * @param recording The recording to play back */
+	public InputReplay(InputRecording recording) {
+		this.recording = recording;
+	}
+	
+	/** @return The recording that is being played back */
+	public InputRecording getRecording() {
+		return this.recording;
+	}
+	
+	/** @return The index of the next tick to be played back */
+	public int getTick() {
+		return this.tick;
+	}
+	
+	/** @return Whether or not there are any ticks left to play back */
+	public boolean hasNextTick() {
+		return this.tick < this.recording.getTickCount();
+	}
+	
+	/** @return The replay's clock: the total recorded duration of the ticks
+	 *         that have been played back so far, in nanoseconds */
+	public long getTime() {
+		return this.time;
+	}
+	
+	/** Delivers the next tick's events to the given callback and advances the
+	 * clock by the tick's recorded duration.
+	 * 
+	 * @param target The callback to deliver the events to
+	 * @return The tick's recorded duration, in seconds
+	 * @throws IllegalStateException If there are no ticks left */
+	public double nextTick(InputCallback target) {
+		if(!this.hasNextTick()) {
+			throw new IllegalStateException("The recording has no more ticks");
+		}
+		final int tick = this.tick++;
+		while(this.event < this.recording.getEventCount() && this.recording.getEventTick(this.event) == tick) {
+			this.recording.dispatch(this.event++, target);
+		}
+		final long nanos = this.recording.getTickNanos(tick);
+		this.time += nanos;
+		return nanos / 1.0E9;
+	}
+	
+	/** Rewinds this replay to its first tick and resets its clock.
+	 * 
+	 * @return This InputReplay */
+	public InputReplay rewind() {
+		this.tick = this.event = 0;
+		this.time = 0L;
+		return this;
+	}
+	
+	/** Plays the rest of the recording back into the runner's game, running
+	 * one frame per recorded tick.
+	 * 
+	 * @param runner The runner whose game receives the input
+	 * @param listener Called after each frame with the tick's index, or
+	 *            {@code null}
+	 * @return How long each frame took */
+	public FrameTimeReport run(HeadlessGameRunner runner, IntConsumer listener) {
+		final FrameTimeReport report = new FrameTimeReport();
+		while(this.hasNextTick()) {
+			final int tick = this.tick;
+			final double deltaTime = this.nextTick(runner.getGame());
+			report.add(runner.frame(deltaTime));
+			if(listener != null) {
+				listener.accept(tick);
+			}
+		}
+		return report;
+	}
+	
+	private static final void press(InputRecording recording, long nanos, int key) {
+		recording.addEvent(nanos, InputRecording.KEY_DOWN, key, 0, 0, 0);
+	}
+	
+	private static final void release(InputRecording recording, long nanos, int key) {
+		recording.addEvent(nanos, InputRecording.KEY_UP, key, 0, 0, 0);
+	}
+	
+	/** Creates a scripted flythrough of {@link TestGame}'s 3D mode: it
+	 * switches to 3D and then repeatedly flies forwards while looking
+	 * around, strafes, rises, rolls, zooms in and out, scrolls the zoom
+	 * distance and finally resets the camera (once every 1200 ticks), at 60
+	 * ticks per second with an occasional hitch.
+	 * 
+	 * @param ticks The number of ticks to record
+	 * @return The recording */
+	public static final InputRecording createFlythrough(int ticks) {
+		final long tickNanos = 16666667L;
+		final InputRecording recording = new InputRecording();
+		int x = 400, y = 300;
+		long now = 0L;
+		for(int tick = 0; tick < ticks; tick++) {
+			final int t = tick % 1200;
+			final long at = now + tickNanos / 2L;
+			switch(t) {
+			case 1:
+				if(tick == t) {
+					press(recording, at, Keys.VK_M);
+				}
+				break;
+			case 2:
+				if(tick == t) {
+					release(recording, at, Keys.VK_M);
+				}
+				break;
+			case 10:
+				press(recording, at, Keys.VK_W);
+				break;
+			case 400:
+				release(recording, at, Keys.VK_W);
+				press(recording, at, Keys.VK_D);
+				break;
+			case 401:
+				// A tap that is pressed and released between two ticks:
+				release(recording, at, Keys.VK_D);
+				press(recording, at, Keys.VK_D);
+				release(recording, at + 1000L, Keys.VK_D);
+				break;
+			case 500:
+				press(recording, at, Keys.VK_SPACE);
+				break;
+			case 600:
+				release(recording, at, Keys.VK_SPACE);
+				break;
+			case 650:
+				recording.addEvent(at, InputRecording.MOUSE_SCROLL, -3, 1, 0, 0);
+				break;
+			case 700:
+				press(recording, at, Keys.VK_Z);
+				break;
+			case 760:
+				release(recording, at, Keys.VK_Z);
+				break;
+			case 800:
+				press(recording, at, Keys.VK_A);
+				press(recording, at, Keys.VK_S);
+				break;
+			case 1000:
+				release(recording, at, Keys.VK_A);
+				release(recording, at, Keys.VK_S);
+				press(recording, at, Keys.VK_CLOSE_BRACKET);
+				break;
+			case 1100:
+				release(recording, at, Keys.VK_CLOSE_BRACKET);
+				recording.addEvent(at, InputRecording.MOUSE_SCROLL, 2, 1, 0, 0);
+				break;
+			case 1150:
+				recording.addEvent(at, InputRecording.BUTTON_DOWN, Mouse.BUTTON_MIDDLE, 0, 0, 0);
+				break;
+			case 1151:
+				recording.addEvent(at, InputRecording.BUTTON_UP, Mouse.BUTTON_MIDDLE, 0, 0, 0);
+				break;
+			case 1190:
+				press(recording, at, Keys.VK_R);
+				release(recording, at + 1000L, Keys.VK_R);
+				break;
+			default:
+				break;
+			}
+			if(t >= 10 && t < 1000) {
+				final int dx = (int) Math.round(6.0 * Math.sin(tick / 40.0));
+				final int dy = (int) Math.round(3.0 * Math.cos(tick / 55.0));
+				x += dx;
+				y += dy;
+				recording.addEvent(at + 2000L, InputRecording.MOUSE_MOVED, dx, dy, x, y);
+			}
+			final long nanos = tick % 300 == 299 ? tickNanos * 3L : tickNanos;
+			recording.addTick(nanos);
+			now += nanos;
+		}
+		return recording;
+	}
+	
+	private static final TestGame createGame(RecordingGLBackend gl, InputReplay replay) {
+		final TestGame game = new TestGame() {
+			@Override
+			protected boolean isListeningToInput() {
+				return true;
+			}
+		};
+		return game.setGLBackend(gl).setSimulationClock(replay::getTime);
+	}
+	
+	/** Replays the recording headlessly into a new {@link TestGame}.
+	 * 
+	 * @param recording The recording to replay
+	 * @param camera Receives the camera's position and orientation after each
+	 *            frame (six floats per tick), or {@code null}
+	 * @return How long each frame took */
+	public static final FrameTimeReport replay(InputRecording recording, float[] camera) {
+		final InputReplay replay = new InputReplay(recording);
+		final RecordingGLBackend gl = new RecordingGLBackend();
+		final TestGame game = createGame(gl, replay);
+		final HeadlessGameRunner runner = new HeadlessGameRunner(game, gl);
+		runner.initialize().resize(1280, 720);
+		try {
+			return replay.run(runner, camera == null ? null : (tick) -> {
+				final CameraSnapshot snapshot = game.getCameraSnapshot();
+				final int i = tick * 6;
+				camera[i] = snapshot.x;
+				camera[i + 1] = snapshot.y;
+				camera[i + 2] = snapshot.z;
+				camera[i + 3] = snapshot.yaw;
+				camera[i + 4] = snapshot.pitch;
+				camera[i + 5] = snapshot.roll;
+			});
+		} finally {
+			runner.cleanup();
+		}
+	}
+	
+	/** Replays a recording (or a scripted flythrough) headlessly into
+	 * {@link TestGame}, checks that replaying it twice moves the camera in
+	 * exactly the same way, and prints and saves the frame times.
+	 * 
+	 * @param args Program command line arguments: the recording to replay (or
+	 *            {@code -} for the scripted flythrough), the file to write the
+	 *            frame times to, and optionally a previous run's frame times
+	 *            to compare against
+	 * @throws IOException If the recording could not be read, the results
+	 *             could not be written or the baseline could not be read */
+	public static final void main(String[] args) throws IOException {
+		final InputRecording recording;
+		if(args.length > 0 && !args[0].equals("-")) {
+			recording = InputRecording.load(new File(args[0]));
+		} else {
+			recording = createFlythrough(3600);
+			final File file = File.createTempFile("flythrough", ".irec");
+			try {
+				recording.save(file);
+				MicroBenchmark.check(InputRecording.load(file).equalTo(recording), "The recording changed when it was saved and loaded again");
+				System.out.println(String.format("Flythrough: %s (%s bytes)", recording, Long.toString(file.length())));
+			} finally {
+				file.delete();
+			}
+		}
+		final File output = new File(args.length > 1 ? args[1] : "replay-results.json");
+		final Map<String, Double> baseline = args.length > 2 ? MicroBenchmark.readJSON(new File(args[2])) : null;
+		
+		final int ticks = recording.getTickCount();
+		final float[] first = new float[ticks * 6], second = new float[ticks * 6];
+		replay(recording, first);
+		final FrameTimeReport report = replay(recording, second);
+		double distance = 0.0;
+		for(int i = 0; i < first.length; i++) {
+			MicroBenchmark.check(Float.floatToIntBits(first[i]) == Float.floatToIntBits(second[i]), String.format("The replays diverged at tick %s", Integer.toString(i / 6)));
+			if(i >= 6 && i % 6 == 0) {
+				final double dx = first[i] - first[i - 6], dy = first[i + 1] - first[i - 5], dz = first[i + 2] - first[i - 4];
+				distance += Math.sqrt((dx * dx) + (dy * dy) + (dz * dz));
+			}
+		}
+		System.out.println(String.format("Both replays moved the camera identically (%.3f units in total).", Double.valueOf(distance)));
+		System.out.println(report);
+		
+		final List<MicroBenchmark.Result> results = report.toResults("replay frame time");
+		MicroBenchmark.writeJSON(output, NAME, results);
+		System.out.println("Results written to: ".concat(output.getAbsolutePath()));
+		if(baseline != null) {
+			System.out.println();
+			int regressions = MicroBenchmark.compare(baseline, results, REGRESSION_THRESHOLD);
+			System.out.println(String.format("%s regression(s) beyond %s%%.", Integer.toString(regressions), Long.toString(Math.round(REGRESSION_THRESHOLD * 100.0))));
+			System.exit(regressions);
+		}
+	}
+	
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Minimal benchmarking harness used by the various benchmark test classes in
+ * this package.<br>
+ * Each benchmark is run for a number of warm-up iterations (to give the JIT a
+ * chance to compile it), and then timed for a number of measured iterations.
+ * Where the JVM supports it, the number of bytes allocated by the benchmarking
+ * thread is recorded as well.<br>
+ * Results can be written as JSON (see {@link #writeJSON(File, String, List)})
+ * and compared against a previous run's results to spot regressions.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class MicroBenchmark {
+	
+	/** A task that can be benchmarked. */
+	@FunctionalInterface
+	public static interface Task {
+		
+		/** Runs a single iteration of this task.
+		 * 
+		 * @param iteration The current iteration
+		 * @return Any value computed by the task (it is consumed so that the
+		 *         JIT can not optimize the task away) */
+		public Object run(int iteration);
+		
+	}
+	
+	/** The result of a single benchmark.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static final class Result {
+		
+		/** The name of the benchmark */
+		public final String name;
+		/** The number of measured iterations */
+		public final int iterations;
+		/** The average time each iteration took, in nanoseconds */
+		public final double nsPerOp;
+		/** The average number of bytes allocated by each iteration, or
+		 * {@code -1} if the JVM does not support allocation measurement */
+		public final double bytesPerOp;
+		
+		Result(String name, int iterations, double nsPerOp, double bytesPerOp) {
+			this.name = name;
+			this.iterations = iterations;
+			this.nsPerOp = nsPerOp;
+			this.bytesPerOp = bytesPerOp;
+		}
+		
+		/** @return The number of operations per second that this result
+		 *         represents */
+		public double getOpsPerSecond() {
+			return this.nsPerOp <= 0 ? Double.POSITIVE_INFINITY : 1.0E9 / this.nsPerOp;
+		}
+		
+		/** @return This result as a JSON object */
+		public String toJSON() {
+			return String.format("{\"name\": %s, \"iterations\": %s, \"nsPerOp\": %s, \"opsPerSecond\": %s, \"bytesPerOp\": %s}", quote(this.name), Integer.toString(this.iterations), Double.toString(this.nsPerOp), Double.toString(this.getOpsPerSecond()), this.bytesPerOp < 0 ? "null" : Double.toString(this.bytesPerOp));
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%-48s %14.2f ns/op %14.2f ops/s %12s B/op", this.name, Double.valueOf(this.nsPerOp), Double.valueOf(this.getOpsPerSecond()), this.bytesPerOp < 0 ? "n/a" : String.format("%.1f", Double.valueOf(this.bytesPerOp)));
+		}
+		
+	}
+	
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private static final boolean allocationSupported;
+	
+	static {
+		boolean supported = false;
+		if(threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+			try {
+				if(bean.isThreadAllocatedMemorySupported()) {
+					bean.setThreadAllocatedMemoryEnabled(true);
+					supported = bean.isThreadAllocatedMemoryEnabled();
+				}
+			} catch(UnsupportedOperationException ignored) {
+			}
+		}
+		allocationSupported = supported;
+	}
+	
+	/** Values consumed by benchmarks are stored here so that the JIT can not
+	 * treat the benchmarked code as dead. */
+	private static volatile Object blackhole;
+	private static volatile long blackholeHash;
+	
+	private MicroBenchmark() {
+	}
+	
+	/** Checks a condition that a benchmark (or test) relies on.
+	 * 
+	 * @param condition The condition that must hold
+	 * @param message The message to fail with if it doesn't
+	 * @throws IllegalStateException If the condition doesn't hold */
+	public static final void check(boolean condition, String message) throws IllegalStateException {
+		if(!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+	
+	/** Consumes the given value so that the JIT can not optimize away the code
+	 * that produced it.
+	 * 
+	 * @param value The value to consume */
+	public static final void consume(Object value) {
+		blackhole = value;
+	}
+	
+	/** Consumes the given value so that the JIT can not optimize away the code
+	 * that produced it.
+	 * 
+	 * @param value The value to consume */
+	public static final void consume(long value) {
+		blackholeHash ^= value;
+	}
+	
+	/** @return Whether or not the number of bytes allocated by the current
+	 *         thread can be measured on this JVM */
+	public static final boolean isAllocationMeasurementSupported() {
+		return allocationSupported;
+	}
+	
+	/** @return The total number of bytes allocated by the current thread so
+	 *         far, or {@code -1} if unsupported */
+	public static final long getAllocatedBytes() {
+		if(!allocationSupported) {
+			return -1L;
+		}
+		return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/** @param string The string to quote
+	 * @return The given string as a JSON string literal */
+	static final String quote(String string) {
+		StringBuilder sb = new StringBuilder(string.length() + 2).append('"');
+		for(int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			switch(c) {
+			case '"':
+			case '\\':
+				sb.append('\\').append(c);
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
+	
+	/** Returns the given results as a JSON document, along with the suite's
+	 * name and the environment that the results were measured in.
+	 * 
+	 * @param suite The name of the benchmark suite
+	 * @param results The results to include
+	 * @return The JSON document */
+	public static final String toJSON(String suite, List<Result> results) {
+		final String nl = System.lineSeparator();
+		StringBuilder sb = new StringBuilder();
+		sb.append('{').append(nl);
+		sb.append("  \"suite\": ").append(quote(suite)).append(',').append(nl);
+		sb.append("  \"timestamp\": ").append(Long.toString(System.currentTimeMillis())).append(',').append(nl);
+		sb.append("  \"javaVersion\": ").append(quote(System.getProperty("java.version", "unknown"))).append(',').append(nl);
+		sb.append("  \"vm\": ").append(quote(System.getProperty("java.vm.name", "unknown"))).append(',').append(nl);
+		sb.append("  \"os\": ").append(quote(System.getProperty("os.name", "unknown").concat(" ").concat(System.getProperty("os.arch", "")))).append(',').append(nl);
+		sb.append("  \"processors\": ").append(Integer.toString(Runtime.getRuntime().availableProcessors())).append(',').append(nl);
+		sb.append("  \"results\": [");
+		for(int i = 0; i < results.size(); i++) {
+			sb.append(i == 0 ? "" : ",").append(nl).append("    ").append(results.get(i).toJSON());
+		}
+		return sb.append(nl).append("  ]").append(nl).append('}').append(nl).toString();
+	}
+	
+	/** Writes the given results to the given file as JSON.
+	 * 
+	 * @param file The file to write to
+	 * @param suite The name of the benchmark suite
+	 * @param results The results to write
+	 * @throws IOException If the file could not be written */
+	public static final void writeJSON(File file, String suite, List<Result> results) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if(parent != null) {
+			parent.mkdirs();
+		}
+		Files.write(file.toPath(), toJSON(suite, results).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static final Pattern resultPattern = Pattern.compile("\\{\"name\": (\"(?:[^\"\\\\]|\\\\.)*\"), \"iterations\": \\d+, \"nsPerOp\": ([^,]+),");
+	
+	/** Reads the average time per operation of each result in a JSON document
+	 * that was written by {@link #writeJSON(File, String, List)}.
+	 * 
+	 * @param file The file to read
+	 * @return A map of each benchmark's quoted name to its average time per
+	 *         operation, in nanoseconds
+	 * @throws IOException If the file could not be read */
+	public static final Map<String, Double> readJSON(File file) throws IOException {
+		Map<String, Double> results = new LinkedHashMap<>();
+		Matcher matcher = resultPattern.matcher(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		while(matcher.find()) {
+			try {
+				results.put(matcher.group(1), Double.valueOf(matcher.group(2)));
+			} catch(NumberFormatException ignored) {
+			}
+		}
+		return results;
+	}
+	
+	/** Prints how much faster or slower each of the given results is compared
+	 * to the same benchmark in a previous run.
+	 * 
+	 * @param baseline The previous run's results (see {@link #readJSON(File)})
+	 * @param results The current results
+	 * @param threshold The relative change (e.g. {@code 0.10} for 10%) beyond
+	 *            which a change is reported as a regression or improvement
+	 * @return The number of benchmarks that regressed */
+	public static final int compare(Map<String, Double> baseline, List<Result> results, double threshold) {
+		int regressions = 0;
+		for(Result result : results) {
+			Double previous = baseline.get(quote(result.name));
+			if(previous == null || previous.doubleValue() <= 0) {
+				System.out.println(String.format("%-48s %14s", result.name, "(new)"));
+				continue;
+			}
+			double change = (result.nsPerOp - previous.doubleValue()) / previous.doubleValue();
+			String verdict = change > threshold ? "REGRESSION" : (change < -threshold ? "improved" : "");
+			regressions += change > threshold ? 1 : 0;
+			System.out.println(String.format("%-48s %14.2f ns/op -> %14.2f ns/op %+8.1f%% %s", result.name, previous, Double.valueOf(result.nsPerOp), Double.valueOf(change * 100.0), verdict));
+		}
+		return regressions;
+	}
+	
+	/** Runs the given task for the specified number of warm-up and measured
+	 * iterations, and then prints and returns the result.
+	 * 
+	 * @param name The name of the benchmark
+	 * @param warmupIterations The number of iterations to run before
+	 *            measuring
+	 * @param iterations The number of iterations to measure
+	 * @param task The task to benchmark
+	 * @return The benchmark's result */
+	public static final Result run(String name, int warmupIterations, int iterations, Task task) {
+		for(int i = 0; i < warmupIterations; i++) {
+			consume(task.run(i));
+		}
+		final long startBytes = getAllocatedBytes();
+		final long startTime = System.nanoTime();
+		for(int i = 0; i < iterations; i++) {
+			consume(task.run(i));
+		}
+		final long elapsed = System.nanoTime() - startTime;
+		final long endBytes = getAllocatedBytes();
+		final double bytesPerOp = allocationSupported ? Math.max(0L, endBytes - startBytes) / (double) iterations : -1.0;
+		Result result = new Result(name, iterations, elapsed / (double) iterations, bytesPerOp);
+		System.out.println(result);
+		return result;
+	}
+	
+}
@@ -25,7 +25,6 @@ package com.gmail.br45entei.test;
 
 import com.gmail.br45entei.game.graphics.GLThread.InitializationProgress;
 import com.gmail.br45entei.game.graphics.Renderer;
-import com.gmail.br45entei.game.input.InputCallback.InputLogger;
 import com.gmail.br45entei.game.ui.Window;
 
 import org.lwjgl.opengl.swt.GLData;
@@ -43,7 +42,7 @@ public class MultiWindowedTest {
 		data.minorVersion = 0;
 		
 		Window window = new Window("SWT-LWJGL3 Framework #1", 800, 600, data);
-		window.registerInputCallback(new InputLogger(System.out));
+		window.registerInputCallback(new AsyncInputLogger(System.out));
 		window.setActiveRenderer(new Renderer.ColorDemo() {
 			@Override
 			public void initialize(InitializationProgress progress) {
@@ -52,7 +51,7 @@ public class MultiWindowedTest {
 					@Override
 					public void run() {
 						Window window = new Window("SWT-LWJGL3 Framework #2", 800, 600, data);
-						window.registerInputCallback(new InputLogger(System.err));
+						window.registerInputCallback(new AsyncInputLogger(System.err));
 						window.setActiveRenderer(new Renderer.ColorDemo());
 						window.open();
 					}
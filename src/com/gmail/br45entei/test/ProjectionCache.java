@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+/** Holds a viewport's perspective and orthographic projection matrices, and
+ * only recomputes them when the parameters that they are built from
+ * change.<br>
+ * <br>
+ * The perspective matrix depends on the viewport's aspect ratio, the field of
+ * view and the clipping planes; the orthographic matrix (which covers the
+ * viewport in pixels) depends on the viewport's size and the clipping planes.
+ * Each matrix has its own version number, which is incremented every time
+ * the matrix is recomputed, so that consumers can also skip re-uploading a
+ * matrix that they have already uploaded:
+ * 
+ * <pre>
+ * projection.update(width, height, fovy, zNear, zFar);
+ * if(projection.getPerspectiveVersion() != this.uploadedVersion) {
+ * 	gl.glLoadMatrixf(projection.getPerspective());
+ * 	this.uploadedVersion = projection.getPerspectiveVersion();
+ * }
+ * </pre>
+ * 
+ * A field of view that is being animated (see
+ * {@link #approach(float, float, float, double)}) changes every frame, so the
+ * perspective matrix is recomputed once per frame while it changes, and not
+ * at all once it has settled.<br>
+ * Like the matrices that it holds, a ProjectionCache should only be used by
+ * one thread (the render thread).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class ProjectionCache {
+	
+	/** How close an animated field of view has to get to its target, in
+	 * degrees, before it snaps to it */
+	public static final float SNAP_DISTANCE = 0.01f;
+	
+	private final float[] perspective = new float[16], orthographic = new float[16];
+	private int width, height;
+	private float fovy, zNear, zFar;
+	private long perspectiveVersion = 0L, orthographicVersion = 0L;
+	private long updates = 0L, recomputations = 0L;
+	
+	/** Creates a new ProjectionCache with the given initial parameters.
+	 * 
+	 * @param width The width of the viewport, in pixels
+	 * @param height The height of the viewport, in pixels
+	 * @param fovy The vertical field of view, in degrees
+	 * @param zNear The distance to the near clipping plane
+	 * @param zFar The distance to the far clipping plane */
+	public ProjectionCache(int width, int height, float fovy, float zNear, float zFar) {
+		this.width = width;
+		this.height = height;
+		this.fovy = fovy;
+		this.zNear = zNear;
+		this.zFar = zFar;
+		this.computePerspective();
+		this.computeOrthographic();
+	}
+	
+	private void computePerspective() {
+		FloatMatrixStack.getPerspectiveMatrix(this.fovy, (this.width + 0.0f) / Math.max(1, this.height), this.zNear, this.zFar, this.perspective, 0);
+		this.perspectiveVersion++;
+		this.recomputations++;
+	}
+	
+	private void computeOrthographic() {
+		FloatMatrixStack.getOrthographicMatrix(0, 0, Math.max(1, this.width), Math.max(1, this.height), this.zNear, this.zFar, this.orthographic, 0);
+		this.orthographicVersion++;
+		this.recomputations++;
+	}
+	
+	/** Updates the parameters of the projection matrices, recomputing only
+	 * the matrices that they affect (if any).
+	 * 
+	 * @param width The width of the viewport, in pixels
+	 * @param height The height of the viewport, in pixels
+	 * @param fovy The vertical field of view, in degrees
+	 * @param zNear The distance to the near clipping plane
+	 * @param zFar The distance to the far clipping plane
+	 * @return Whether or not either matrix changed */
+	public boolean update(int width, int height, float fovy, float zNear, float zFar) {
+		this.updates++;
+		final boolean viewport = width != this.width || height != this.height;
+		final boolean planes = zNear != this.zNear || zFar != this.zFar;
+		final boolean lens = fovy != this.fovy;
+		if(!viewport && !planes && !lens) {
+			return false;
+		}
+		// The perspective matrix only depends on the viewport's aspect ratio:
+		final boolean aspect = viewport && (width * (long) Math.max(1, this.height)) != (Math.max(1, height) * (long) this.width);
+		this.width = width;
+		this.height = height;
+		this.fovy = fovy;
+		this.zNear = zNear;
+		this.zFar = zFar;
+		if(aspect || planes || lens) {
+			this.computePerspective();
+		}
+		if(viewport || planes) {
+			this.computeOrthographic();
+		}
+		return true;
+	}
+	
+	/** Moves an animated value (such as the field of view while zooming)
+	 * towards its target, covering the same fraction of the remaining
+	 * distance in the same amount of time regardless of the frame rate, and
+	 * snapping to the target once it is within {@link #SNAP_DISTANCE} (so
+	 * that the value, and the matrix built from it, stop changing instead of
+	 * creeping towards the target forever).
+	 * 
+	 * @param current The current value
+	 * @param target The value to move towards
+	 * @param rate How quickly to move: the remaining distance shrinks by a
+	 *            factor of {@code e} every {@code 1 / rate} seconds
+	 * @param deltaTime The time since the last frame, in seconds
+	 * @return The new value */
+	public static final float approach(float current, float target, float rate, double deltaTime) {
+		if(Math.abs(target - current) <= SNAP_DISTANCE || rate <= 0.0f || deltaTime <= 0.0) {
+			return rate <= 0.0f || Math.abs(target - current) <= SNAP_DISTANCE ? target : current;
+		}
+		final float next = current + (float) ((target - current) * (1.0 - Math.exp(-rate * deltaTime)));
+		return Math.abs(target - next) <= SNAP_DISTANCE ? target : next;
+	}
+	
+	/** @return The perspective projection matrix, in column-major order. Do
+	 *         not modify. */
+	public float[] getPerspective() {
+		return this.perspective;
+	}
+	
+	/** @return The orthographic projection matrix (which maps the viewport's
+	 *         pixels to its whole area), in column-major order. Do not
+	 *         modify. */
+	public float[] getOrthographic() {
+		return this.orthographic;
+	}
+	
+	/** @return The number of times that the perspective matrix has been
+	 *         computed */
+	public long getPerspectiveVersion() {
+		return this.perspectiveVersion;
+	}
+	
+	/** @return The number of times that the orthographic matrix has been
+	 *         computed */
+	public long getOrthographicVersion() {
+		return this.orthographicVersion;
+	}
+	
+	/** @return The width of the viewport, in pixels */
+	public int getWidth() {
+		return this.width;
+	}
+	
+	/** @return The height of the viewport, in pixels */
+	public int getHeight() {
+		return this.height;
+	}
+	
+	/** @return The vertical field of view, in degrees */
+	public float getFovy() {
+		return this.fovy;
+	}
+	
+	/** @return The distance to the near clipping plane */
+	public float getZNear() {
+		return this.zNear;
+	}
+	
+	/** @return The distance to the far clipping plane */
+	public float getZFar() {
+		return this.zFar;
+	}
+	
+	/** @return The total number of times that {@link #update(int, int, float, float, float)
+	 *         update} has been called */
+	public long getUpdateCount() {
+		return this.updates;
+	}
+	
+	/** @return The total number of matrices that have been computed */
+	public long getRecomputeCount() {
+		return this.recomputations;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%sx%s, fovy %s, z %s to %s (perspective v%s, orthographic v%s; %s matrices computed in %s updates)", Integer.toString(this.width), Integer.toString(this.height), Float.toString(this.fovy), Float.toString(this.zNear), Float.toString(this.zFar), Long.toString(this.perspectiveVersion), Long.toString(this.orthographicVersion), Long.toString(this.recomputations), Long.toString(this.updates));
+	}
+	
+}
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.input.Keyboard.Keys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.lwjgl.opengl.GL11;
+
+/** Headless test and benchmark of {@link ProjectionCache}.<br>
+ * Checks that the cached matrices are the ones that {@link FloatMatrixStack}
+ * computes and that they (and their versions) only change when their inputs
+ * do, simulates zooming in and out at 60 frames per second, compares the
+ * cost of a cached update with recomputing the matrices every frame, and
+ * then counts the projection matrices that {@link TestGame} computes and
+ * loads per frame while it is replaying a zoom in 3D mode.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class ProjectionCacheBenchmark {
+	
+	/** A {@link RecordingGLBackend} that counts the matrices loaded into
+	 * GL_PROJECTION. */
+	static final class ProjectionCounter extends RecordingGLBackend {
+		int matrixMode = GL11.GL_MODELVIEW;
+		long projectionLoads = 0L;
+		
+		@Override
+		public void glMatrixMode(int mode) {
+			super.glMatrixMode(mode);
+			this.matrixMode = mode;
+		}
+		
+		@Override
+		public void glLoadMatrixf(float[] matrix) {
+			super.glLoadMatrixf(matrix);
+			if(this.matrixMode == GL11.GL_PROJECTION) {
+				this.projectionLoads++;
+			}
+		}
+		
+		@Override
+		public void glLoadMatrixd(double[] matrix) {
+			super.glLoadMatrixd(matrix);
+			if(this.matrixMode == GL11.GL_PROJECTION) {
+				this.projectionLoads++;
+			}
+		}
+		
+	}
+	
+	private static final void checkMatrices(ProjectionCache cache) {
+		final float[] perspective = FloatMatrixStack.getPerspectiveMatrix(cache.getFovy(), (cache.getWidth() + 0.0f) / Math.max(1, cache.getHeight()), cache.getZNear(), cache.getZFar(), new float[16], 0);
+		final float[] orthographic = FloatMatrixStack.getOrthographicMatrix(0, 0, Math.max(1, cache.getWidth()), Math.max(1, cache.getHeight()), cache.getZNear(), cache.getZFar(), new float[16], 0);
+		MicroBenchmark.check(Arrays.equals(perspective, cache.getPerspective()), "Wrong perspective matrix: ".concat(cache.toString()));
+		MicroBenchmark.check(Arrays.equals(orthographic, cache.getOrthographic()), "Wrong orthographic matrix: ".concat(cache.toString()));
+	}
+	
+	private static final void testCorrectness() {
+		final ProjectionCache cache = new ProjectionCache(800, 600, 70.0f, 0.01f, 1000.0f);
+		checkMatrices(cache);
+		MicroBenchmark.check(cache.getPerspectiveVersion() == 1L && cache.getOrthographicVersion() == 1L, "Both matrices should start at version 1");
+		
+		MicroBenchmark.check(!cache.update(800, 600, 70.0f, 0.01f, 1000.0f), "An unchanged update should not change anything");
+		MicroBenchmark.check(cache.getRecomputeCount() == 2L, "An unchanged update should not recompute anything");
+		
+		MicroBenchmark.check(cache.update(800, 600, 50.0f, 0.01f, 1000.0f), "Changing the field of view should change the perspective matrix");
+		MicroBenchmark.check(cache.getPerspectiveVersion() == 2L && cache.getOrthographicVersion() == 1L, "Changing the field of view should only recompute the perspective matrix");
+		checkMatrices(cache);
+		
+		MicroBenchmark.check(cache.update(1600, 1200, 50.0f, 0.01f, 1000.0f), "Resizing should change the orthographic matrix");
+		MicroBenchmark.check(cache.getPerspectiveVersion() == 2L && cache.getOrthographicVersion() == 2L, "Resizing without changing the aspect ratio should only recompute the orthographic matrix");
+		checkMatrices(cache);
+		
+		MicroBenchmark.check(cache.update(1280, 720, 50.0f, 0.01f, 1000.0f), "Resizing should change the orthographic matrix");
+		MicroBenchmark.check(cache.getPerspectiveVersion() == 3L && cache.getOrthographicVersion() == 3L, "Changing the aspect ratio should recompute both matrices");
+		checkMatrices(cache);
+		
+		MicroBenchmark.check(cache.update(1280, 720, 50.0f, 0.1f, 500.0f), "Changing the clipping planes should change both matrices");
+		MicroBenchmark.check(cache.getPerspectiveVersion() == 4L && cache.getOrthographicVersion() == 4L, "Changing the clipping planes should recompute both matrices");
+		checkMatrices(cache);
+		
+		MicroBenchmark.check(cache.update(1280, 0, 50.0f, 0.1f, 500.0f) && cache.update(1280, 720, 50.0f, 0.1f, 500.0f), "Minimizing and restoring should change the matrices");
+		checkMatrices(cache);
+		
+		// Random updates, most of which change nothing:
+		final Random random = new Random(24L);
+		final int[] widths = {640, 800, 1280, 1920}, heights = {480, 600, 720, 1080};
+		final float[] fovys = {20.0f, 45.0f, 70.0f}, zNears = {0.01f, 0.1f}, zFars = {100.0f, 1000.0f};
+		for(int i = 0; i < 100000; i++) {
+			final long perspective = cache.getPerspectiveVersion(), orthographic = cache.getOrthographicVersion();
+			final int width = random.nextInt(8) == 0 ? widths[random.nextInt(widths.length)] : cache.getWidth();
+			final int height = random.nextInt(8) == 0 ? heights[random.nextInt(heights.length)] : cache.getHeight();
+			final float fovy = random.nextInt(8) == 0 ? fovys[random.nextInt(fovys.length)] : cache.getFovy();
+			final float zNear = random.nextInt(32) == 0 ? zNears[random.nextInt(zNears.length)] : cache.getZNear();
+			final float zFar = random.nextInt(32) == 0 ? zFars[random.nextInt(zFars.length)] : cache.getZFar();
+			final boolean viewport = width != cache.getWidth() || height != cache.getHeight(), planes = zNear != cache.getZNear() || zFar != cache.getZFar();
+			final boolean changed = cache.update(width, height, fovy, zNear, zFar);
+			MicroBenchmark.check(changed == (cache.getPerspectiveVersion() != perspective || cache.getOrthographicVersion() != orthographic), "update() should return whether or not a matrix changed");
+			MicroBenchmark.check((cache.getOrthographicVersion() != orthographic) == (viewport || planes), "The orthographic matrix should only be recomputed when the viewport or the clipping planes change");
+			if(cache.getPerspectiveVersion() == perspective) {
+				// (only check the matrices when one of them was reused, which is the interesting case)
+				checkMatrices(cache);
+			} else if(cache.getOrthographicVersion() == orthographic) {
+				checkMatrices(cache);
+			}
+		}
+		System.out.println(String.format("Correctness: OK (%s)", cache));
+	}
+	
+	private static final void testZoom() {
+		final double deltaTime = 1.0 / 60.0;
+		final float rate = 15.0f;
+		final ProjectionCache cache = new ProjectionCache(1280, 720, 70.0f, 0.01f, 1000.0f);
+		float fovy = 70.0f;
+		final StringBuilder sb = new StringBuilder();
+		for(float target : new float[] {20.0f, 70.0f}) {
+			final long start = cache.getPerspectiveVersion();
+			int frames = 0, settled = -1;
+			for(; frames < 600; frames++) {
+				final float previous = fovy;
+				fovy = ProjectionCache.approach(fovy, target, rate, deltaTime);
+				MicroBenchmark.check(Math.abs(target - fovy) <= Math.abs(target - previous), "The field of view moved away from its target");
+				cache.update(1280, 720, fovy, 0.01f, 1000.0f);
+				if(settled == -1 && fovy == target) {
+					settled = frames + 1;
+				}
+			}
+			MicroBenchmark.check(settled > 1, "The field of view should settle on its target exactly, but not instantly");
+			final long recomputed = cache.getPerspectiveVersion() - start;
+			MicroBenchmark.check(recomputed == settled, String.format("The perspective matrix should only be recomputed while zooming (%s times in %s frames), but was recomputed %s times", Integer.toString(settled), Integer.toString(frames), Long.toString(recomputed)));
+			MicroBenchmark.check(cache.getOrthographicVersion() == 1L, "Zooming should not recompute the orthographic matrix");
+			sb.append(String.format("%nZooming to %s degrees: settled after %s frames (%.0f ms); perspective matrix recomputed %s times in %s frames", Float.toString(target), Integer.toString(settled), Double.valueOf(settled * deltaTime * 1000.0), Long.toString(recomputed), Integer.toString(frames)));
+		}
+		MicroBenchmark.check(ProjectionCache.approach(70.0f, 20.0f, 15.0f, 1.0E-4) < 70.0f, "A tiny time step should still make progress");
+		MicroBenchmark.check(ProjectionCache.approach(70.0f, 20.0f, 15.0f, 0.0) == 70.0f, "No time should mean no progress");
+		MicroBenchmark.check(ProjectionCache.approach(70.0f, 20.0f, 15.0f, 10.0) == 20.0f, "A long time step should arrive at the target");
+		System.out.println("Smooth zoom: OK".concat(sb.toString()));
+	}
+	
+	private static final void benchmark(List<MicroBenchmark.Result> results) {
+		final ProjectionCache cache = new ProjectionCache(1280, 720, 70.0f, 0.01f, 1000.0f);
+		final float[] orthographic = new float[16], perspective = new float[16];
+		// What TestGame did every frame in 3D mode before: one perspective matrix and two orthographic ones:
+		results.add(MicroBenchmark.run("recompute per frame", 200000, 2000000, (i) -> {
+			FloatMatrixStack.getOrthographicMatrix(0, 0, 1280, 720, 0.01f, 1000.0f, orthographic, 0);
+			FloatMatrixStack.getPerspectiveMatrix(70.0f, 1280.0f / 720.0f, 0.01f, 1000.0f, perspective, 0);
+			FloatMatrixStack.getOrthographicMatrix(0, 0, 1280, 720, 0.01f, 1000.0f, orthographic, 0);
+			return perspective;
+		}));
+		results.add(MicroBenchmark.run("cached update", 200000, 2000000, (i) -> {
+			cache.update(1280, 720, 70.0f, 0.01f, 1000.0f);
+			return cache.getPerspective();
+		}));
+		final float[] fovys = new float[64];
+		for(int i = 0; i < fovys.length; i++) {
+			fovys[i] = 20.0f + i;
+		}
+		results.add(MicroBenchmark.run("update while zooming", 200000, 2000000, (i) -> {
+			cache.update(1280, 720, fovys[i & 63], 0.01f, 1000.0f);
+			return cache.getPerspective();
+		}));
+	}
+	
+	private static final void testGame() {
+		final InputRecording recording = new InputRecording();
+		final long tickNanos = 16666667L;
+		long now = 0L;
+		for(int tick = 0; tick < 600; tick++) {
+			final long at = now + tickNanos / 2L;
+			if(tick == 1) {
+				recording.addEvent(at, InputRecording.KEY_DOWN, Keys.VK_M, 0, 0, 0);
+				recording.addEvent(at + 1000L, InputRecording.KEY_UP, Keys.VK_M, 0, 0, 0);
+			} else if(tick == 120) {
+				recording.addEvent(at, InputRecording.KEY_DOWN, Keys.VK_Z, 0, 0, 0);
+			} else if(tick == 300) {
+				recording.addEvent(at, InputRecording.KEY_UP, Keys.VK_Z, 0, 0, 0);
+			}
+			recording.addTick(tickNanos);
+			now += tickNanos;
+		}
+		
+		final InputReplay replay = new InputReplay(recording);
+		final ProjectionCounter gl = new ProjectionCounter();
+		final TestGame game = new TestGame() {
+			@Override
+			protected boolean isListeningToInput() {
+				return true;
+			}
+		}.setGLBackend(gl).setSimulationClock(replay::getTime);
+		final HeadlessGameRunner runner = new HeadlessGameRunner(game, gl);
+		runner.initialize().resize(1280, 720);
+		final ProjectionCache projection = game.getProjectionCache();
+		final long[] recomputed = new long[600], loads = new long[600];
+		final long[] last = {projection.getRecomputeCount(), gl.projectionLoads};
+		replay.run(runner, (tick) -> {
+			recomputed[tick] = projection.getRecomputeCount() - last[0];
+			loads[tick] = gl.projectionLoads - last[1];
+			last[0] = projection.getRecomputeCount();
+			last[1] = gl.projectionLoads;
+		});
+		runner.cleanup();
+		MicroBenchmark.check(game._3D, "The game should have switched to 3D mode");
+		
+		long zooming = 0L, steady = 0L, zoomingFrames = 0L, steadyFrames = 0L, steadyLoads = 0L;
+		for(int tick = 10; tick < 600; tick++) {
+			if((tick >= 120 && tick < 180) || (tick >= 300 && tick < 360)) {
+				zooming += recomputed[tick];
+				zoomingFrames++;
+			} else {
+				steady += recomputed[tick];
+				steadyLoads += loads[tick];
+				steadyFrames++;
+			}
+		}
+		MicroBenchmark.check(steady == 0L, String.format("The projection matrices should not be recomputed while nothing changes, but were recomputed %s times", Long.toString(steady)));
+		MicroBenchmark.check(zooming > 0L && zooming <= zoomingFrames, "The perspective matrix should be recomputed at most once per frame while zooming");
+		MicroBenchmark.check(steadyLoads == steadyFrames * 2L, "3D mode should load exactly two projection matrices per frame (the perspective one for the scene and the orthographic one for the overlay)");
+		System.out.println(String.format("TestGame (3D mode, zooming in at tick 120 and out at tick 300): %s matrices recomputed in %s zooming frames, %s in %s other frames; %.2f projection matrices loaded per frame (previously 2 loads and 3 computations per frame)", Long.toString(zooming), Long.toString(zoomingFrames), Long.toString(steady), Long.toString(steadyFrames), Double.valueOf(steadyLoads / (double) steadyFrames)));
+		
+		// In 2D mode, the orthographic matrix stays loaded:
+		final ProjectionCounter gl2D = new ProjectionCounter();
+		final TestGame game2D = new TestGame().setGLBackend(gl2D);
+		final HeadlessGameRunner runner2D = new HeadlessGameRunner(game2D, gl2D).initialize().resize(800, 600).run(10, 1.0 / 60.0);
+		final long before = gl2D.projectionLoads, recomputes = game2D.getProjectionCache().getRecomputeCount();
+		runner2D.run(600, 1.0 / 60.0).cleanup();
+		MicroBenchmark.check(gl2D.projectionLoads == before, "2D mode should not reload its projection matrix every frame");
+		MicroBenchmark.check(game2D.getProjectionCache().getRecomputeCount() == recomputes, "2D mode should not recompute its projection matrix every frame");
+		System.out.println(String.format("TestGame (2D mode, 600 frames): %s projection matrices loaded, %s recomputed", Long.toString(gl2D.projectionLoads - before), Long.toString(game2D.getProjectionCache().getRecomputeCount() - recomputes)));
+	}
+	
+	/** Runs the tests and benchmarks and prints the results.
+	 * 
+	 * @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final List<MicroBenchmark.Result> results = new ArrayList<>();
+		benchmark(results);
+		System.out.println();
+		testCorrectness();
+		testZoom();
+		testGame();
+	}
+	
+}
@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** Collects 2D quads (textured or not) during a frame and draws them with as
+ * few draw calls as possible, from a single streaming vertex buffer.<br>
+ * <br>
+ * Quads are sorted by layer first, then by blending mode and texture, so
+ * that every run of quads that share the same state is drawn with one
+ * {@link GL11#glDrawArrays(int, int, int) glDrawArrays} call. Quads that are
+ * in the same layer and share the same state are drawn in the order that
+ * they were added; quads that must be drawn on top of other quads with a
+ * different state belong in a higher layer.<br>
+ * <br>
+ * Every flush orphans the vertex buffer (by re-specifying it with
+ * {@link GL15#GL_STREAM_DRAW} and no data) before uploading the frame's
+ * vertices into it, so the driver never has to wait for the GPU to finish
+ * reading the previous frame's quads.
+ * 
+ * <pre>
+ * quads.begin(gl);
+ * quads.add(x, y, width, height, 1, 1, 1, 1);
+ * quads.add(1, texture, QuadBatch.Blend.ALPHA, x, y, width, height, 0, 0, 1, 1, 1, 1, 1, 1);
+ * quads.end();
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class QuadBatch {
+	
+	/** The blending modes that quads can be drawn with.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static enum Blend {
+		/** Blending is disabled */
+		OPAQUE(GL11.GL_ONE, GL11.GL_ZERO),
+		/** The quad's alpha blends it over what is already drawn */
+		ALPHA(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA),
+		/** The quad's color (times its alpha) is added to what is already
+		 * drawn */
+		ADDITIVE(GL11.GL_SRC_ALPHA, GL11.GL_ONE),
+		/** What is already drawn is inverted where the quad is white (as the
+		 * crosshairs are drawn, so that they are visible on any
+		 * background) */
+		INVERT(GL11.GL_ONE_MINUS_DST_COLOR, GL11.GL_ZERO);
+		
+		/** The source and destination blending factors of this mode */
+		public final int sfactor, dfactor;
+		
+		private Blend(int sfactor, int dfactor) {
+			this.sfactor = sfactor;
+			this.dfactor = dfactor;
+		}
+		
+	}
+	
+	private static final Blend[] blends = Blend.values();
+	
+	/** The size of a vertex, in bytes: the x and y position and the u and v
+	 * texture coordinates as floats, followed by the RGBA color as unsigned
+	 * bytes */
+	public static final int VERTEX_SIZE = (4 * Float.BYTES) + 4;
+	/** The size of a quad, in bytes */
+	public static final int QUAD_SIZE = 4 * VERTEX_SIZE;
+	/** The highest layer that a quad can be drawn in */
+	public static final int MAX_LAYER = 63;
+	/** The highest texture name that a quad can be drawn with (texture
+	 * names are allocated sequentially, starting at 1) */
+	public static final int MAX_TEXTURE = (1 << 22) - 1;
+	
+	// Sort keys: [0][layer: 6 bits][blend: 3 bits][texture: 22 bits][index: 32 bits]
+	private static final int LAYER_SHIFT = 57, BLEND_SHIFT = 54, TEXTURE_SHIFT = 32;
+	private static final long STATE_MASK = ~0xFFFFFFFFL;
+	
+	private final int capacity;
+	private long[] keys, sortBuffer;
+	private final int[] histogram = new int[256];
+	/** x0, y0, x1, y1, u0, v0, u1, v1 for each quad */
+	private final float[] quads;
+	private final int[] colors;
+	/** The vertices of the quads in sorted order, as raw bits, so that they
+	 * can be copied into {@link #vertices} in bulk */
+	private final int[] staging;
+	private final ByteBuffer vertices;
+	private final IntBuffer vertexInts;
+	private int count = 0;
+	private boolean sorted = true;
+	
+	private GLBackend gl = null;
+	private int vbo = 0;
+	private long flushes = 0L, drawCalls = 0L, quadsDrawn = 0L;
+	
+	/** Creates a new QuadBatch.
+	 * 
+	 * @param capacity The maximum number of quads that are drawn per flush
+	 *            (adding more quads than this flushes the batch early) */
+	public QuadBatch(int capacity) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Invalid QuadBatch capacity: ".concat(Integer.toString(capacity)));
+		}
+		this.capacity = capacity;
+		this.keys = new long[capacity];
+		this.sortBuffer = new long[capacity];
+		this.quads = new float[capacity * 8];
+		this.colors = new int[capacity];
+		this.staging = new int[capacity * (QUAD_SIZE / Integer.BYTES)];
+		this.vertices = ByteBuffer.allocateDirect(capacity * QUAD_SIZE).order(ByteOrder.nativeOrder());
+		this.vertexInts = this.vertices.asIntBuffer();
+	}
+	
+	private static final int toByte(float value) {
+		return value <= 0.0f ? 0 : (value >= 1.0f ? 255 : (int) ((value * 255.0f) + 0.5f));
+	}
+	
+	/** Starts a new batch of quads.
+	 * 
+	 * @param gl The GL backend that the quads will be drawn with
+	 * @return This QuadBatch */
+	public QuadBatch begin(GLBackend gl) {
+		this.gl = gl;
+		this.count = 0;
+		this.sorted = true;
+		return this;
+	}
+	
+	/** Adds an untextured, opaque quad to layer zero.
+	 * 
+	 * @param x The left edge of the quad
+	 * @param y The bottom edge of the quad
+	 * @param width The width of the quad
+	 * @param height The height of the quad
+	 * @param red The red component of the quad's color
+	 * @param green The green component of the quad's color
+	 * @param blue The blue component of the quad's color
+	 * @param alpha The alpha component of the quad's color
+	 * @return This QuadBatch */
+	public QuadBatch add(float x, float y, float width, float height, float red, float green, float blue, float alpha) {
+		return this.add(0, 0, Blend.OPAQUE, x, y, x + width, y + height, 0, 0, 0, 0, red, green, blue, alpha);
+	}
+	
+	/** Adds a quad.
+	 * 
+	 * @param layer The layer to draw the quad in (layers are drawn in
+	 *            ascending order, from {@code 0} to {@link #MAX_LAYER})
+	 * @param texture The texture to draw the quad with, or {@code 0} to draw
+	 *            it untextured
+	 * @param blend The blending mode to draw the quad with
+	 * @param x0 The x coordinate of one corner of the quad
+	 * @param y0 The y coordinate of one corner of the quad
+	 * @param x1 The x coordinate of the opposite corner
+	 * @param y1 The y coordinate of the opposite corner
+	 * @param u0 The horizontal texture coordinate at {@code x0}
+	 * @param v0 The vertical texture coordinate at {@code y0}
+	 * @param u1 The horizontal texture coordinate at {@code x1}
+	 * @param v1 The vertical texture coordinate at {@code y1}
+	 * @param red The red component of the quad's color
+	 * @param green The green component of the quad's color
+	 * @param blue The blue component of the quad's color
+	 * @param alpha The alpha component of the quad's color
+	 * @return This QuadBatch
+	 * @throws IllegalStateException Thrown if {@link #begin(GLBackend)} has
+	 *             not been called
+	 * @throws IllegalArgumentException Thrown if the layer or the texture is
+	 *             out of range */
+	public QuadBatch add(int layer, int texture, Blend blend, float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, float red, float green, float blue, float alpha) {
+		if(this.gl == null) {
+			throw new IllegalStateException("QuadBatch.begin() must be called before adding quads!");
+		}
+		if(layer < 0 || layer > MAX_LAYER || texture < 0 || texture > MAX_TEXTURE) {
+			throw new IllegalArgumentException(String.format("Invalid layer or texture: %s, %s", Integer.toString(layer), Integer.toString(texture)));
+		}
+		if(this.count == this.capacity) {
+			this.flush();
+		}
+		final int i = this.count++;
+		final long key = ((long) layer << LAYER_SHIFT) | ((long) blend.ordinal() << BLEND_SHIFT) | ((long) texture << TEXTURE_SHIFT) | i;
+		if(i > 0 && key < this.keys[i - 1]) {
+			this.sorted = false;
+		}
+		this.keys[i] = key;
+		final float[] quads = this.quads;
+		final int q = i * 8;
+		quads[q] = x0;
+		quads[q + 1] = y0;
+		quads[q + 2] = x1;
+		quads[q + 3] = y1;
+		quads[q + 4] = u0;
+		quads[q + 5] = v0;
+		quads[q + 6] = u1;
+		quads[q + 7] = v1;
+		final int r = toByte(red), g = toByte(green), b = toByte(blue), a = toByte(alpha);
+		this.colors[i] = this.vertices.order() == ByteOrder.LITTLE_ENDIAN ? (a << 24) | (b << 16) | (g << 8) | r : (r << 24) | (g << 16) | (b << 8) | a;
+		return this;
+	}
+	
+	/** Adds a crosshair: a horizontal and a vertical bar that cross at the
+	 * given point, drawn in the given layer with {@link Blend#INVERT}.
+	 * 
+	 * @param layer The layer to draw the crosshair in
+	 * @param x The x coordinate of the crosshair's center
+	 * @param y The y coordinate of the crosshair's center
+	 * @param size The length of each bar
+	 * @param thickness The thickness of each bar
+	 * @return This QuadBatch */
+	public QuadBatch addCrosshair(int layer, float x, float y, float size, float thickness) {
+		final float half = size / 2.0f, halfThickness = thickness / 2.0f;
+		this.add(layer, 0, Blend.INVERT, x - half, y - halfThickness, x + half, y + halfThickness, 0, 0, 0, 0, 1, 1, 1, 1);
+		// The vertical bar skips the center, so that it isn't inverted twice:
+		this.add(layer, 0, Blend.INVERT, x - halfThickness, y + halfThickness, x + halfThickness, y + half, 0, 0, 0, 0, 1, 1, 1, 1);
+		return this.add(layer, 0, Blend.INVERT, x - halfThickness, y - half, x + halfThickness, y - halfThickness, 0, 0, 0, 0, 1, 1, 1, 1);
+	}
+	
+	/** Draws the quads that have been added since the last flush.
+	 * 
+	 * @return This QuadBatch */
+	public QuadBatch flush() {
+		final int count = this.count;
+		final GLBackend gl = this.gl;
+		if(count == 0 || gl == null) {
+			return this;
+		}
+		if(!this.sorted) {
+			this.sort(count);
+		}
+		
+		// Write the vertices in sorted order:
+		final float[] quads = this.quads;
+		final int[] colors = this.colors, staging = this.staging;
+		final long[] keys = this.keys;
+		for(int i = 0, v = 0; i < count; i++) {
+			final int index = (int) keys[i], q = index * 8, rgba = colors[index];
+			final int x0 = Float.floatToRawIntBits(quads[q]), y0 = Float.floatToRawIntBits(quads[q + 1]), x1 = Float.floatToRawIntBits(quads[q + 2]), y1 = Float.floatToRawIntBits(quads[q + 3]);
+			final int u0 = Float.floatToRawIntBits(quads[q + 4]), v0 = Float.floatToRawIntBits(quads[q + 5]), u1 = Float.floatToRawIntBits(quads[q + 6]), v1 = Float.floatToRawIntBits(quads[q + 7]);
+			v = vertex(staging, v, x0, y0, u0, v0, rgba);
+			v = vertex(staging, v, x1, y0, u1, v0, rgba);
+			v = vertex(staging, v, x1, y1, u1, v1, rgba);
+			v = vertex(staging, v, x0, y1, u0, v1, rgba);
+		}
+		final ByteBuffer buf = this.vertices;
+		this.vertexInts.clear();
+		this.vertexInts.put(staging, 0, count * (QUAD_SIZE / Integer.BYTES));
+		
+		if(this.vbo == 0) {
+			this.vbo = gl.glGenBuffers();
+		}
+		gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo);
+		// Orphan last flush's storage rather than waiting for the GPU to finish with it:
+		gl.glBufferData(GL15.GL_ARRAY_BUFFER, buf.capacity(), GL15.GL_STREAM_DRAW);
+		buf.limit(count * QUAD_SIZE).position(0);
+		gl.glBufferSubData(GL15.GL_ARRAY_BUFFER, 0L, buf);
+		buf.clear();
+		
+		gl.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		gl.glEnableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glVertexPointer(2, GL11.GL_FLOAT, VERTEX_SIZE, 0L);
+		gl.glTexCoordPointer(2, GL11.GL_FLOAT, VERTEX_SIZE, 2L * Float.BYTES);
+		gl.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, VERTEX_SIZE, 4L * Float.BYTES);
+		
+		int texture = 0;
+		Blend blend = Blend.OPAQUE;
+		for(int first = 0; first < count;) {
+			final long state = keys[first] & STATE_MASK;
+			int last = first + 1;
+			while(last < count && (keys[last] & STATE_MASK) == state) {
+				last++;
+			}
+			final int runTexture = (int) (state >>> TEXTURE_SHIFT) & MAX_TEXTURE;
+			final Blend runBlend = blends[(int) (state >>> BLEND_SHIFT) & 0x7];
+			if(runTexture != texture) {
+				if(texture == 0) {
+					gl.glEnable(GL11.GL_TEXTURE_2D);
+				}
+				if(runTexture == 0) {
+					gl.glDisable(GL11.GL_TEXTURE_2D);
+				} else {
+					gl.glBindTexture(GL11.GL_TEXTURE_2D, runTexture);
+				}
+				texture = runTexture;
+			}
+			if(runBlend != blend) {
+				if(blend == Blend.OPAQUE) {
+					gl.glEnable(GL11.GL_BLEND);
+				}
+				if(runBlend == Blend.OPAQUE) {
+					gl.glDisable(GL11.GL_BLEND);
+				} else {
+					gl.glBlendFunc(runBlend.sfactor, runBlend.dfactor);
+				}
+				blend = runBlend;
+			}
+			gl.glDrawArrays(GL11.GL_QUADS, first * 4, (last - first) * 4);
+			this.drawCalls++;
+			first = last;
+		}
+		if(texture != 0) {
+			gl.glDisable(GL11.GL_TEXTURE_2D);
+		}
+		if(blend != Blend.OPAQUE) {
+			gl.glDisable(GL11.GL_BLEND);
+		}
+		
+		gl.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		gl.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		
+		this.flushes++;
+		this.quadsDrawn += count;
+		this.count = 0;
+		this.sorted = true;
+		return this;
+	}
+	
+	private static final int vertex(int[] staging, int i, int x, int y, int u, int v, int rgba) {
+		staging[i] = x;
+		staging[i + 1] = y;
+		staging[i + 2] = u;
+		staging[i + 3] = v;
+		staging[i + 4] = rgba;
+		return i + 5;
+	}
+	
+	/** Sorts the keys by their layer and state with a stable radix sort (one
+	 * pass per byte of the state that actually varies), which keeps quads
+	 * that share the same state in the order that they were added. */
+	private void sort(int count) {
+		final int[] histogram = this.histogram;
+		long[] keys = this.keys, sorted = this.sortBuffer;
+		for(int shift = TEXTURE_SHIFT; shift < Long.SIZE; shift += 8) {
+			Arrays.fill(histogram, 0);
+			for(int i = 0; i < count; i++) {
+				histogram[(int) (keys[i] >>> shift) & 0xFF]++;
+			}
+			if(histogram[(int) (keys[0] >>> shift) & 0xFF] == count) {
+				continue;// Every key has the same byte here
+			}
+			for(int digit = 0, offset = 0; digit < histogram.length; digit++) {
+				final int n = histogram[digit];
+				histogram[digit] = offset;
+				offset += n;
+			}
+			for(int i = 0; i < count; i++) {
+				final long key = keys[i];
+				sorted[histogram[(int) (key >>> shift) & 0xFF]++] = key;
+			}
+			final long[] swap = keys;
+			keys = sorted;
+			sorted = swap;
+		}
+		this.keys = keys;
+		this.sortBuffer = sorted;
+	}
+	
+	/** Flushes the remaining quads and ends this batch.
+	 * 
+	 * @return This QuadBatch */
+	public QuadBatch end() {
+		this.flush();
+		this.gl = null;
+		return this;
+	}
+	
+	/** Deletes this batch's vertex buffer.
+	 * 
+	 * @param gl The GL backend to delete the buffer with */
+	public void destroy(GLBackend gl) {
+		if(this.vbo != 0) {
+			gl.glDeleteBuffers(this.vbo);
+			this.vbo = 0;
+		}
+		this.count = 0;
+		this.gl = null;
+	}
+	
+	/** @return The maximum number of quads that are drawn per flush */
+	public int getCapacity() {
+		return this.capacity;
+	}
+	
+	/** @return The number of quads that have been added since the last
+	 *         flush */
+	public int getCount() {
+		return this.count;
+	}
+	
+	/** @return The vertex data of the last flush (see {@link #VERTEX_SIZE}),
+	 *         in the order that the quads were drawn in. Do not modify. */
+	public ByteBuffer getVertices() {
+		return this.vertices.duplicate().order(this.vertices.order());
+	}
+	
+	/** @return The total number of times that this batch has been flushed
+	 *         (with at least one quad) */
+	public long getFlushCount() {
+		return this.flushes;
+	}
+	
+	/** @return The total number of draw calls that this batch has made */
+	public long getDrawCallCount() {
+		return this.drawCalls;
+	}
+	
+	/** @return The total number of quads that this batch has drawn */
+	public long getQuadCount() {
+		return this.quadsDrawn;
+	}
+	
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.lwjgl.opengl.GL11;
+
+/** Headless test and benchmark of {@link QuadBatch}.<br>
+ * The GL calls that a batch makes are counted with a
+ * {@link RecordingGLBackend}, checking that quads are drawn with one draw
+ * call per run of shared state, in layer order, with the order in which they
+ * were added preserved within each run. Then 1k, 10k and 100k quads per frame
+ * are drawn with the batch and in immediate mode (one
+ * {@code glBegin}/{@code glEnd} pair per quad, as {@link TestGame} used to),
+ * comparing driver calls per quad and draw calls per frame, and the batch's
+ * own CPU cost per quad is measured. (Immediate mode is not timed, as calls
+ * to a {@link RecordingGLBackend} cost next to nothing.)
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class QuadBatchBenchmark {
+	
+	/** Draws the given quads in immediate mode, one quad at a time. */
+	static final void drawImmediate(GLBackend gl, float[] quads, int count) {
+		for(int i = 0, q = 0; i < count; i++, q += 4) {
+			final float x0 = quads[q], y0 = quads[q + 1], x1 = quads[q + 2], y1 = quads[q + 3];
+			gl.glColor3f(1.0f, 1.0f, 1.0f);
+			gl.glBegin(GL11.GL_TRIANGLE_STRIP);
+			gl.glVertex2f(x0, y0);
+			gl.glVertex2f(x1, y0);
+			gl.glVertex2f(x0, y1);
+			gl.glVertex2f(x1, y1);
+			gl.glEnd();
+		}
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final RecordingGLBackend gl = new RecordingGLBackend();
+		final QuadBatch batch = new QuadBatch(64);
+		
+		// Quads are sorted by layer, then by state; the order within a run is preserved:
+		batch.begin(gl);
+		batch.addCrosshair(2, 100, 100, 16, 2);// 3 quads
+		batch.add(1, 7, QuadBatch.Blend.ALPHA, 0, 0, 10, 10, 0, 0, 1, 1, 1, 1, 1, 0.5f);
+		batch.add(1, 5, QuadBatch.Blend.ALPHA, 10, 0, 20, 10, 0, 0, 1, 1, 1, 1, 1, 0.5f);
+		batch.add(1, 7, QuadBatch.Blend.ALPHA, 20, 0, 30, 10, 0, 0, 1, 1, 1, 1, 1, 0.5f);
+		batch.add(0, 0, 800, 600, 0.85f, 0.12f, 0.27f, 1);
+		batch.add(1, 5, QuadBatch.Blend.ALPHA, 30, 0, 40, 10, 0, 0, 1, 1, 1, 1, 1, 0.5f);
+		batch.add(50, 50, 8, 8, 1, 1, 1, 1);
+		MicroBenchmark.check(batch.getCount() == 9, "Nine quads were added");
+		batch.end();
+		// Runs: [opaque x2] [alpha, texture 5 x2] [alpha, texture 7 x2] [invert x3]
+		final float[] expectedX = {0, 50, 10, 30, 0, 20, 92, 99, 99};
+		final ByteBuffer vertices = batch.getVertices();
+		for(int i = 0; i < expectedX.length; i++) {
+			MicroBenchmark.check(vertices.getFloat(i * QuadBatch.QUAD_SIZE) == expectedX[i], String.format("Quad %s was drawn out of order", Integer.toString(i)));
+		}
+		MicroBenchmark.check((vertices.get(16) & 0xFF) == 217 && (vertices.get(17) & 0xFF) == 31 && (vertices.get(18) & 0xFF) == 69 && (vertices.get(19) & 0xFF) == 255, "Colors should be stored as RGBA bytes");
+		MicroBenchmark.check(gl.getDrawCalls() == 4 && batch.getDrawCallCount() == 4, "One draw call per run of shared state: ".concat(Long.toString(gl.getDrawCalls())));
+		MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.BIND_TEXTURE) == 2 && gl.getCount(RecordingGLBackend.Call.BLEND_FUNC) == 2, "State should only change between runs");
+		MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.ENABLE) == gl.getCount(RecordingGLBackend.Call.DISABLE), "Texturing and blending should be disabled again");
+		MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.BUFFER_DATA) == 1 && gl.getCount(RecordingGLBackend.Call.BUFFER_SUB_DATA) == 1 && gl.getBytesUploaded() == 9L * QuadBatch.QUAD_SIZE, "The buffer is orphaned and then filled once per flush");
+		MicroBenchmark.check(gl.getVerticesDrawn() == 9 * 4, "Every quad is drawn");
+		
+		// Quads that don't fit flush the batch early:
+		gl.reset();
+		final QuadBatch small = new QuadBatch(4).begin(gl);
+		for(int i = 0; i < 10; i++) {
+			small.add(i, 0, 1, 1, 1, 1, 1, 1);
+		}
+		small.end();
+		MicroBenchmark.check(small.getFlushCount() == 3 && gl.getDrawCalls() == 3 && small.getQuadCount() == 10, "A full batch should be flushed");
+		small.begin(gl).end();
+		MicroBenchmark.check(small.getFlushCount() == 3, "Empty batches make no GL calls");
+		try {
+			small.add(0, 0, 1, 1, 1, 1, 1, 1);
+			MicroBenchmark.check(false, "Adding quads outside of begin() and end() should fail");
+		} catch(IllegalStateException expected) {
+		}
+		System.out.println("Ordering, state changes and uploads are correct.");
+		
+		// Throughput; the quads are spread over a few textures, as sprites would be:
+		final Random random = new Random(0x0AD5L);
+		for(int quadCount : new int[] {1000, 10000, 100000}) {
+			final float[] quads = new float[quadCount * 4];
+			final int[] textures = new int[quadCount];
+			for(int i = 0, q = 0; i < quadCount; i++, q += 4) {
+				quads[q] = random.nextFloat() * 1280.0f;
+				quads[q + 1] = random.nextFloat() * 720.0f;
+				quads[q + 2] = quads[q] + 16.0f;
+				quads[q + 3] = quads[q + 1] + 16.0f;
+				textures[i] = 1 + random.nextInt(4);
+			}
+			final RecordingGLBackend batchGL = new RecordingGLBackend(), immediateGL = new RecordingGLBackend();
+			drawImmediate(immediateGL, quads, quadCount);
+			final QuadBatch quadBatch = new QuadBatch(quadCount);
+			final int warmup = Math.max(20, 2000000 / quadCount), iterations = Math.max(20, 5000000 / quadCount);
+			final MicroBenchmark.Result batched = MicroBenchmark.run(String.format("%s quads, QuadBatch", Integer.toString(quadCount)), warmup, iterations, (iteration) -> {
+				quadBatch.begin(batchGL);
+				for(int i = 0, q = 0; i < quadCount; i++, q += 4) {
+					quadBatch.add(0, textures[i], QuadBatch.Blend.ALPHA, quads[q], quads[q + 1], quads[q + 2], quads[q + 3], 0, 0, 1, 1, 1, 1, 1, 1);
+				}
+				return quadBatch.end();
+			});
+			final long frames = warmup + iterations;
+			final double immediateCalls = immediateGL.getTotalCalls() / (double) quadCount, batchedCalls = batchGL.getTotalCalls() / (double) (frames * quadCount);
+			System.out.println(String.format("%s quads: driver calls per quad: %.2f in immediate mode, %.4f batched (%.0fx fewer); draw calls per frame: %s vs %s", Integer.toString(quadCount), Double.valueOf(immediateCalls), Double.valueOf(batchedCalls), Double.valueOf(immediateCalls / batchedCalls), Long.toString(immediateGL.getDrawCalls()), Long.toString(batchGL.getDrawCalls() / frames)));
+			System.out.println(String.format("%s quads: QuadBatch CPU cost: %.1f ns per quad; %.3f ms per frame", Integer.toString(quadCount), Double.valueOf(batched.nsPerOp / quadCount), Double.valueOf(batched.nsPerOp / 1.0E6)));
+			MicroBenchmark.check(batchGL.getDrawCalls() == frames * 4, "Sorting should leave one draw call per texture");
+		}
+	}
+	
+}
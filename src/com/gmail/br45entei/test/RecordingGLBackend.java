@@ -0,0 +1,445 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.opengl.GL11;
+
+/** A {@link GLBackend} that does not require a GL context.<br>
+ * Instead of rendering anything, it counts how many times each GL function was
+ * called, how many bytes were uploaded into buffer objects, and how many draw
+ * calls and state changes were issued. This allows renderers to be verified
+ * and benchmarked headlessly.<br>
+ * Like a GL context, a recorder may only be used by one thread at a time;
+ * its counters are read by that thread (or after handing it off, e.g. by
+ * joining the thread that used it).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class RecordingGLBackend implements GLBackend {
+	
+	/** Enumeration of the GL functions that can be recorded.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static enum Call {
+		/** {@link GLBackend#glGenBuffers()} */
+		GEN_BUFFERS(false),
+		/** {@link GLBackend#glDeleteBuffers(int)} */
+		DELETE_BUFFERS(false),
+		/** {@link GLBackend#glBindBuffer(int, int)} */
+		BIND_BUFFER(true),
+		/** {@link GLBackend#glBufferData(int, ByteBuffer, int)} and its
+		 * overloads */
+		BUFFER_DATA(false),
+		/** {@link GLBackend#glBufferSubData(int, long, ByteBuffer)} */
+		BUFFER_SUB_DATA(false),
+		/** {@link GLBackend#glEnable(int)} */
+		ENABLE(true),
+		/** {@link GLBackend#glDisable(int)} */
+		DISABLE(true),
+		/** {@link GLBackend#glEnableClientState(int)} */
+		ENABLE_CLIENT_STATE(true),
+		/** {@link GLBackend#glDisableClientState(int)} */
+		DISABLE_CLIENT_STATE(true),
+		/** {@link GLBackend#glVertexPointer(int, int, int, long)} */
+		VERTEX_POINTER(true),
+		/** {@link GLBackend#glColorPointer(int, int, int, long)} */
+		COLOR_POINTER(true),
+		/** {@link GLBackend#glTexCoordPointer(int, int, int, long)} */
+		TEX_COORD_POINTER(true),
+		/** {@link GLBackend#glBlendFunc(int, int)} */
+		BLEND_FUNC(true),
+		/** {@link GLBackend#glFrontFace(int)} */
+		FRONT_FACE(true),
+		/** {@link GLBackend#glCullFace(int)} */
+		CULL_FACE(true),
+		/** {@link GLBackend#glDrawArrays(int, int, int)} */
+		DRAW_ARRAYS(false),
+		/** {@link GLBackend#glDrawElements(int, int, int, long)} */
+		DRAW_ELEMENTS(false),
+		/** {@link GLBackend#glMatrixMode(int)} */
+		MATRIX_MODE(true),
+		/** {@link GLBackend#glLoadMatrixf(float[])} and
+		 * {@link GLBackend#glLoadMatrixd(double[])} */
+		LOAD_MATRIX(false),
+		/** {@link GLBackend#glGenTextures()} */
+		GEN_TEXTURES(false),
+		/** {@link GLBackend#glDeleteTextures(int)} */
+		DELETE_TEXTURES(false),
+		/** {@link GLBackend#glBindTexture(int, int)} */
+		BIND_TEXTURE(true),
+		/** {@link GLBackend#glTexParameteri(int, int, int)} */
+		TEX_PARAMETER(true),
+		/** {@link GLBackend#glTexImage2D(int, int, int, int, int, int, int, int, ByteBuffer)} */
+		TEX_IMAGE_2D(false),
+		/** {@link GLBackend#glViewport(int, int, int, int)} */
+		VIEWPORT(true),
+		/** {@link GLBackend#glClearColor(float, float, float, float)} */
+		CLEAR_COLOR(true),
+		/** {@link GLBackend#glClear(int)} */
+		CLEAR(false),
+		/** {@link GLBackend#glHint(int, int)} */
+		HINT(true),
+		/** {@link GLBackend#glDepthFunc(int)} */
+		DEPTH_FUNC(true),
+		/** {@link GLBackend#glLoadIdentity()} */
+		LOAD_IDENTITY(false),
+		/** {@link GLBackend#glColor3f(float, float, float)} */
+		COLOR(true),
+		/** {@link GLBackend#glBegin(int)} (counted as a draw call) */
+		BEGIN(false),
+		/** {@link GLBackend#glVertex2f(float, float)} */
+		VERTEX(false),
+		/** {@link GLBackend#glEnd()} */
+		END(false),
+		/** {@link GLBackend#glVertexAttribPointer(int, int, int, boolean, int, long)} */
+		VERTEX_ATTRIB_POINTER(true),
+		/** {@link GLBackend#glEnableVertexAttribArray(int)} */
+		ENABLE_VERTEX_ATTRIB_ARRAY(true),
+		/** {@link GLBackend#glGetInteger(int)} */
+		GET_INTEGER(false);
+		
+		/** Whether or not this call changes the GL state machine (as opposed to
+		 * uploading data or drawing) */
+		public final boolean stateChange;
+		
+		private Call(boolean stateChange) {
+			this.stateChange = stateChange;
+		}
+		
+	}
+	
+	/** The largest texture that this backend claims to support, in pixels */
+	public static final int MAX_TEXTURE_SIZE = 4096;
+	
+	private final long[] counts = new long[Call.values().length];
+	private long bytesUploaded = 0L;
+	private long verticesDrawn = 0L;
+	private int nextBufferName = 1;
+	private int nextTextureName = 1;
+	
+	/** Creates a new RecordingGLBackend. */
+	public RecordingGLBackend() {
+	}
+	
+	/** Records a single call to the specified GL function.
+	 * 
+	 * @param call The GL function that was called */
+	protected void record(Call call) {
+		this.counts[call.ordinal()]++;
+	}
+	
+	/** Resets all of this backend's counters to zero. Buffer object names
+	 * that have already been generated remain reserved.
+	 * 
+	 * @return This RecordingGLBackend */
+	public RecordingGLBackend reset() {
+		for(int i = 0; i < this.counts.length; i++) {
+			this.counts[i] = 0L;
+		}
+		this.bytesUploaded = 0L;
+		this.verticesDrawn = 0L;
+		return this;
+	}
+	
+	/** @param call The GL function
+	 * @return The number of times the specified GL function was called */
+	public long getCount(Call call) {
+		return this.counts[call.ordinal()];
+	}
+	
+	/** @return The total number of GL calls recorded */
+	public long getTotalCalls() {
+		long total = 0L;
+		for(long count : this.counts) {
+			total += count;
+		}
+		return total;
+	}
+	
+	/** @return The number of draw calls recorded (each
+	 *         {@link GLBackend#glBegin(int) glBegin}/{@link GLBackend#glEnd()
+	 *         glEnd} pair counts as one) */
+	public long getDrawCalls() {
+		return this.getCount(Call.DRAW_ARRAYS) + this.getCount(Call.DRAW_ELEMENTS) + this.getCount(Call.BEGIN);
+	}
+	
+	/** @return The number of recorded calls that changed GL state */
+	public long getStateChanges() {
+		long total = 0L;
+		for(Call call : Call.values()) {
+			if(call.stateChange) {
+				total += this.counts[call.ordinal()];
+			}
+		}
+		return total;
+	}
+	
+	/** @return The number of bytes uploaded into buffer and texture
+	 *         objects */
+	public long getBytesUploaded() {
+		return this.bytesUploaded;
+	}
+	
+	/** @return The number of vertices (or elements) submitted by draw calls */
+	public long getVerticesDrawn() {
+		return this.verticesDrawn;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for(Call call : Call.values()) {
+			long count = this.counts[call.ordinal()];
+			if(count != 0) {
+				sb.append(call.name()).append(": ").append(count).append("; ");
+			}
+		}
+		return sb.append("Draw calls: ").append(this.getDrawCalls()).append("; State changes: ").append(this.getStateChanges()).append("; Bytes uploaded: ").append(this.bytesUploaded).append("; Vertices drawn: ").append(this.verticesDrawn).append(';').toString();
+	}
+	
+	//=============================================================================================
+	
+	@Override
+	public int glGenBuffers() {
+		this.record(Call.GEN_BUFFERS);
+		return this.nextBufferName++;
+	}
+	
+	@Override
+	public void glDeleteBuffers(int buffer) {
+		this.record(Call.DELETE_BUFFERS);
+	}
+	
+	@Override
+	public void glBindBuffer(int target, int buffer) {
+		this.record(Call.BIND_BUFFER);
+	}
+	
+	@Override
+	public void glBufferData(int target, ByteBuffer data, int usage) {
+		this.record(Call.BUFFER_DATA);
+		this.bytesUploaded += data == null ? 0 : data.remaining();
+	}
+	
+	@Override
+	public void glBufferData(int target, FloatBuffer data, int usage) {
+		this.record(Call.BUFFER_DATA);
+		this.bytesUploaded += data == null ? 0 : data.remaining() * (long) Float.BYTES;
+	}
+	
+	@Override
+	public void glBufferData(int target, IntBuffer data, int usage) {
+		this.record(Call.BUFFER_DATA);
+		this.bytesUploaded += data == null ? 0 : data.remaining() * (long) Integer.BYTES;
+	}
+	
+	@Override
+	public void glBufferData(int target, long size, int usage) {
+		this.record(Call.BUFFER_DATA);
+	}
+	
+	@Override
+	public void glBufferSubData(int target, long offset, ByteBuffer data) {
+		this.record(Call.BUFFER_SUB_DATA);
+		this.bytesUploaded += data == null ? 0 : data.remaining();
+	}
+	
+	@Override
+	public void glEnable(int cap) {
+		this.record(Call.ENABLE);
+	}
+	
+	@Override
+	public void glDisable(int cap) {
+		this.record(Call.DISABLE);
+	}
+	
+	@Override
+	public void glEnableClientState(int cap) {
+		this.record(Call.ENABLE_CLIENT_STATE);
+	}
+	
+	@Override
+	public void glDisableClientState(int cap) {
+		this.record(Call.DISABLE_CLIENT_STATE);
+	}
+	
+	@Override
+	public void glVertexPointer(int size, int type, int stride, long pointer) {
+		this.record(Call.VERTEX_POINTER);
+	}
+	
+	@Override
+	public void glColorPointer(int size, int type, int stride, long pointer) {
+		this.record(Call.COLOR_POINTER);
+	}
+	
+	@Override
+	public void glTexCoordPointer(int size, int type, int stride, long pointer) {
+		this.record(Call.TEX_COORD_POINTER);
+	}
+	
+	@Override
+	public void glBlendFunc(int sfactor, int dfactor) {
+		this.record(Call.BLEND_FUNC);
+	}
+	
+	@Override
+	public void glFrontFace(int mode) {
+		this.record(Call.FRONT_FACE);
+	}
+	
+	@Override
+	public void glCullFace(int mode) {
+		this.record(Call.CULL_FACE);
+	}
+	
+	@Override
+	public void glDrawArrays(int mode, int first, int count) {
+		this.record(Call.DRAW_ARRAYS);
+		this.verticesDrawn += count;
+	}
+	
+	@Override
+	public void glDrawElements(int mode, int count, int type, long indices) {
+		this.record(Call.DRAW_ELEMENTS);
+		this.verticesDrawn += count;
+	}
+	
+	@Override
+	public void glMatrixMode(int mode) {
+		this.record(Call.MATRIX_MODE);
+	}
+	
+	@Override
+	public void glLoadMatrixf(float[] matrix) {
+		this.record(Call.LOAD_MATRIX);
+	}
+	
+	@Override
+	public void glLoadMatrixd(double[] matrix) {
+		this.record(Call.LOAD_MATRIX);
+	}
+	
+	@Override
+	public int glGenTextures() {
+		this.record(Call.GEN_TEXTURES);
+		return this.nextTextureName++;
+	}
+	
+	@Override
+	public void glDeleteTextures(int texture) {
+		this.record(Call.DELETE_TEXTURES);
+	}
+	
+	@Override
+	public void glBindTexture(int target, int texture) {
+		this.record(Call.BIND_TEXTURE);
+	}
+	
+	@Override
+	public void glTexParameteri(int target, int pname, int param) {
+		this.record(Call.TEX_PARAMETER);
+	}
+	
+	@Override
+	public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, ByteBuffer pixels) {
+		this.record(Call.TEX_IMAGE_2D);
+		this.bytesUploaded += pixels == null ? 0 : pixels.remaining();
+	}
+	
+	@Override
+	public void glViewport(int x, int y, int width, int height) {
+		this.record(Call.VIEWPORT);
+	}
+	
+	@Override
+	public void glClearColor(float red, float green, float blue, float alpha) {
+		this.record(Call.CLEAR_COLOR);
+	}
+	
+	@Override
+	public void glClear(int mask) {
+		this.record(Call.CLEAR);
+	}
+	
+	@Override
+	public void glHint(int target, int mode) {
+		this.record(Call.HINT);
+	}
+	
+	@Override
+	public void glDepthFunc(int func) {
+		this.record(Call.DEPTH_FUNC);
+	}
+	
+	@Override
+	public void glLoadIdentity() {
+		this.record(Call.LOAD_IDENTITY);
+	}
+	
+	@Override
+	public void glColor3f(float red, float green, float blue) {
+		this.record(Call.COLOR);
+	}
+	
+	@Override
+	public void glBegin(int mode) {
+		this.record(Call.BEGIN);
+	}
+	
+	@Override
+	public void glVertex2f(float x, float y) {
+		this.record(Call.VERTEX);
+		this.verticesDrawn++;
+	}
+	
+	@Override
+	public void glEnd() {
+		this.record(Call.END);
+	}
+	
+	@Override
+	public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long pointer) {
+		this.record(Call.VERTEX_ATTRIB_POINTER);
+	}
+	
+	@Override
+	public void glEnableVertexAttribArray(int index) {
+		this.record(Call.ENABLE_VERTEX_ATTRIB_ARRAY);
+	}
+	
+	/** {@inheritDoc}<br>
+	 * Reports {@link #MAX_TEXTURE_SIZE} for {@link GL11#GL_MAX_TEXTURE_SIZE},
+	 * and {@code 0} for everything else. */
+	@Override
+	public int glGetInteger(int pname) {
+		this.record(Call.GET_INTEGER);
+		return pname == GL11.GL_MAX_TEXTURE_SIZE ? MAX_TEXTURE_SIZE : 0;
+	}
+	
+}
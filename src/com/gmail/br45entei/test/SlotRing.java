@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** The bookkeeping of a bounded, lock-free, multiple-producer/single-consumer
+ * queue: which slots of the queue's preallocated arrays are free, being
+ * written, or ready to be read.<br>
+ * The events themselves live in the owner's own (parallel) arrays, indexed by
+ * the {@link #index(long) slots} that this ring hands out, so that each
+ * queue can store whatever its events need without allocating.<br>
+ * <br>
+ * Each slot has a sequence number that tells producers when the slot is free
+ * and tells the consumer when the event in it has been completely written. A
+ * producer {@link #claim() claims} a slot by advancing the shared tail with a
+ * compare-and-set, writes the event, and then {@link #publish(long)
+ * publishes} the slot by advancing its sequence number. The consumer never
+ * waits: {@link #poll()} returns {@code -1} at the first slot whose event has
+ * not been published yet.
+ * 
+ * <pre>
+ * // Any thread:
+ * final long position = ring.claim();
+ * if(position >= 0L) {
+ * 	values[ring.index(position)] = value;
+ * 	ring.publish(position);
+ * }
+ * 
+ * // The consumer:
+ * for(int index; (index = ring.poll()) >= 0; ring.release()) {
+ * 	handle(values[index]);
+ * }
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class SlotRing {
+	
+	private final int mask;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong(0L);
+	/** Only ever accessed by the consumer */
+	private long head = 0L;
+	
+	/** Creates a new SlotRing.
+	 * 
+	 * @param capacity The number of slots (rounded up to the next power of
+	 *            two)
+	 * @throws IllegalArgumentException If the capacity is not between
+	 *             {@code 1} and {@code 2^30} */
+	public SlotRing(int capacity) throws IllegalArgumentException {
+		if(capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^30: ".concat(Integer.toString(capacity)));
+		}
+		capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		this.mask = capacity - 1;
+		this.sequences = new AtomicLongArray(capacity);
+		for(int i = 0; i < capacity; i++) {
+			this.sequences.set(i, i);
+		}
+	}
+	
+	/** Claims the next slot for a new event.<br>
+	 * May be called from any thread.
+	 * 
+	 * @return The position of the claimed slot (see {@link #index(long)}), or
+	 *         {@code -1} if every slot is still waiting to be read */
+	public long claim() {
+		for(;;) {
+			final long position = this.tail.get();
+			final long difference = this.sequences.get((int) position & this.mask) - position;
+			if(difference == 0L) {
+				if(this.tail.compareAndSet(position, position + 1L)) {
+					return position;
+				}
+			} else if(difference < 0L) {
+				// The consumer hasn't released this slot since the last time around:
+				return -1L;
+			}
+			// else another producer claimed this slot first; try the next one
+		}
+	}
+	
+	/** Hands a claimed slot, whose event has been completely written, over to
+	 * the consumer.
+	 * 
+	 * @param position The position returned by {@link #claim()} */
+	public void publish(long position) {
+		this.sequences.lazySet((int) position & this.mask, position + 1L);
+	}
+	
+	/** @param position A position returned by {@link #claim()}
+	 * @return The index of the position's slot in the owner's arrays */
+	public int index(long position) {
+		return (int) position & this.mask;
+	}
+	
+	/** Returns the slot of the oldest event that hasn't been read yet, if it
+	 * has been published. Calling this again before {@link #release()}
+	 * returns the same slot.<br>
+	 * Must only be called by the consumer thread.
+	 * 
+	 * @return The index of the slot to read, or {@code -1} if the next event
+	 *         hasn't been published yet */
+	public int poll() {
+		final long position = this.head;
+		final int index = (int) position & this.mask;
+		return this.sequences.get(index) == position + 1L ? index : -1;
+	}
+	
+	/** Frees the slot returned by {@link #poll()} for the producer that will
+	 * use it the next time around.<br>
+	 * Must only be called by the consumer thread, after a successful
+	 * {@link #poll()}. */
+	public void release() {
+		final long position = this.head;
+		this.sequences.lazySet((int) position & this.mask, position + this.mask + 1L);
+		this.head = position + 1L;
+	}
+	
+	/** @return The number of slots */
+	public int capacity() {
+		return this.mask + 1;
+	}
+	
+	/** @return The number of slots that have been claimed so far */
+	public long getClaimCount() {
+		return this.tail.get();
+	}
+	
+	/** @return The number of slots that have been released so far. Must only
+	 *         be called by the consumer thread. */
+	public long getReleaseCount() {
+		return this.head;
+	}
+	
+	/** @return The approximate number of events that are being written or
+	 *         waiting to be read (exact only on the consumer thread) */
+	public int size() {
+		return (int) Math.max(0L, Math.min(this.capacity(), this.tail.get() - this.head));
+	}
+	
+}
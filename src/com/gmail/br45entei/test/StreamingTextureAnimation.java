@@ -0,0 +1,395 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+
+import org.lwjgl.opengl.GL11;
+
+/** A {@link TextureAnimation} that streams its frames in as it plays instead
+ * of keeping every frame resident.<br>
+ * <br>
+ * Only a sliding window of frames starting at the current one is kept around:
+ * each time the animation is bound, the frames within the window that are not
+ * resident yet are queued up to be decoded on a background thread (through a
+ * {@link TextureLoadPipeline}, so a {@link TextureCache} can be used), and
+ * those that have finished decoding are uploaded. Once the textures' total
+ * size would exceed the memory budget, the least recently used frames outside
+ * of the window are evicted (or, failing that, the frames furthest ahead),
+ * and their texture names are reused for the new frames where possible. Once
+ * the size of a frame is known, no more frames are prefetched than fit in the
+ * budget.<br>
+ * <br>
+ * If the current frame is not resident when the animation is bound, the GL
+ * thread waits up to the {@link #setMaxStall(long, TimeUnit) maximum stall
+ * time} for it, and then falls back to showing the last frame that was shown.
+ * The number of hits, misses and stalls is counted so that the window size
+ * and budget can be tuned.<br>
+ * <br>
+ * Apart from the counters' getters, all methods must be called on the GL
+ * thread.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class StreamingTextureAnimation extends TextureAnimation implements Closeable {
+	
+	/** The default number of frames ahead of the current one to prefetch */
+	public static final int DEFAULT_WINDOW = 8;
+	/** The default maximum total size of the resident frames, in bytes */
+	public static final long DEFAULT_MEMORY_BUDGET = 16L * 1024L * 1024L;
+	/** The default maximum amount of time to wait for a frame that has not
+	 * been loaded yet, in nanoseconds */
+	public static final long DEFAULT_MAX_STALL_NANOS = 4000000L;
+	
+	private final String[] paths;
+	private final TextureLoadPipeline pipeline;
+	private final int window;
+	private final long memoryBudget;
+	private volatile long maxStallNanos = DEFAULT_MAX_STALL_NANOS;
+	
+	// Frame residency; only accessed on the GL thread:
+	private final int[] residentTextures;
+	private final long[] residentBytes;
+	private final long[] lastUsed;
+	private final boolean[] requested, failed;
+	private long tick = 0L, totalResidentBytes = 0L, frameBytes = 0L;
+	private int residentFrames = 0, shownFrame = -1;
+	
+	private volatile long peakResidentBytes = 0L;
+	private volatile long hits = 0L, misses = 0L, stalls = 0L, stallNanos = 0L;
+	private volatile long uploads = 0L, evictions = 0L, discards = 0L;
+	
+	/** Creates a new StreamingTextureAnimation. Nothing is loaded until the
+	 * animation is first {@link #bind(GLBackend, double) bound} (or
+	 * {@link #prefetch() prefetched}).
+	 * 
+	 * @param source The source to open the frames' images from
+	 * @param paths The paths of the frames' images, in order
+	 * @param frameTime The amount of time each frame is shown for, in
+	 *            milliseconds
+	 * @param window The number of frames ahead of the current one to prefetch
+	 * @param memoryBudget The maximum total size of the resident frames, in
+	 *            bytes. The current frame is always kept resident, even if it
+	 *            alone exceeds the budget.
+	 * @param cache The cache to read decoded frames from and write them to
+	 *            (may be {@code null}) */
+	public StreamingTextureAnimation(TextureLoadPipeline.Source source, String[] paths, double frameTime, int window, long memoryBudget, TextureCache cache) {
+		super(frameTime, new int[paths.length]);
+		this.paths = paths.clone();
+		this.window = Math.max(0, Math.min(window, paths.length - 1));
+		this.memoryBudget = memoryBudget;
+		this.pipeline = new TextureLoadPipeline(source, 1, this.window + 1).setCache(cache);
+		this.residentTextures = new int[paths.length];
+		this.residentBytes = new long[paths.length];
+		this.lastUsed = new long[paths.length];
+		this.requested = new boolean[paths.length];
+		this.failed = new boolean[paths.length];
+	}
+	
+	/** @return The pipeline that this animation's frames are loaded through */
+	public TextureLoadPipeline getPipeline() {
+		return this.pipeline;
+	}
+	
+	/** @return The number of frames ahead of the current one that are
+	 *         prefetched */
+	public int getWindow() {
+		return this.window;
+	}
+	
+	/** @return The maximum total size of the resident frames, in bytes */
+	public long getMemoryBudget() {
+		return this.memoryBudget;
+	}
+	
+	/** Sets the maximum amount of time to wait for the current frame if it
+	 * has not been loaded yet when the animation is bound.
+	 * 
+	 * @param time The maximum amount of time to wait (zero to never wait)
+	 * @param unit The unit of the time
+	 * @return This StreamingTextureAnimation */
+	public StreamingTextureAnimation setMaxStall(long time, TimeUnit unit) {
+		this.maxStallNanos = unit.toNanos(Math.max(0L, time));
+		return this;
+	}
+	
+	/** @return The number of times the current frame was resident when the
+	 *         animation was bound */
+	public long getHitCount() {
+		return this.hits;
+	}
+	
+	/** @return The number of times the current frame was not resident when
+	 *         the animation was bound */
+	public long getMissCount() {
+		return this.misses;
+	}
+	
+	/** @return The number of times the GL thread waited for a frame to load */
+	public long getStallCount() {
+		return this.stalls;
+	}
+	
+	/** @return The total time the GL thread spent waiting for frames to load,
+	 *         in nanoseconds */
+	public long getStallNanos() {
+		return this.stallNanos;
+	}
+	
+	/** @return The number of frames uploaded */
+	public long getUploadCount() {
+		return this.uploads;
+	}
+	
+	/** @return The number of frames evicted to stay within the memory budget */
+	public long getEvictionCount() {
+		return this.evictions;
+	}
+	
+	/** @return The number of decoded frames that were thrown away because
+	 *         they were no longer needed by the time they finished decoding,
+	 *         or did not fit in the memory budget */
+	public long getDiscardCount() {
+		return this.discards;
+	}
+	
+	/** @return The total size of the resident frames, in bytes */
+	public long getResidentBytes() {
+		return this.totalResidentBytes;
+	}
+	
+	/** @return The largest total size of the resident frames so far, in
+	 *         bytes */
+	public long getPeakResidentBytes() {
+		return this.peakResidentBytes;
+	}
+	
+	/** @return The number of frames that are currently resident */
+	public int getResidentFrameCount() {
+		return this.residentFrames;
+	}
+	
+	/** @param frame A frame of this animation
+	 * @return Whether or not the given frame is currently resident */
+	public boolean isResident(int frame) {
+		return this.residentTextures[frame] != 0;
+	}
+	
+	//=============================================================================================
+	
+	/** @return How many frames ahead of the current frame the given frame is */
+	private int getDistance(int frame, int current) {
+		final int count = this.paths.length;
+		return ((frame - current) + count) % count;
+	}
+	
+	/** Picks the resident frame to evict to make room for the given frame:
+	 * the least recently used frame outside of the window if there is one,
+	 * and otherwise the frame furthest ahead within the window (as long as it
+	 * is further ahead than the given frame). The last frame shown is kept as
+	 * a fallback until the current frame is loaded.
+	 * 
+	 * @return The frame to evict, or {@code -1} if there is none */
+	private int findVictim(int frame, int current) {
+		final int distance = this.getDistance(frame, current);
+		int victim = -1, victimDistance = -1;
+		boolean victimWanted = true;
+		for(int i = 0; i < this.residentTextures.length; i++) {
+			if(this.residentTextures[i] == 0 || (i == this.shownFrame && frame != current)) {
+				continue;
+			}
+			final int d = this.getDistance(i, current);
+			if(d > this.window) {
+				if(victimWanted || this.lastUsed[i] < this.lastUsed[victim]) {
+					victim = i;
+					victimWanted = false;
+				}
+			} else if(victimWanted && d > distance && d > victimDistance) {
+				victim = i;
+				victimDistance = d;
+			}
+		}
+		return victim;
+	}
+	
+	/** Queues up every frame within the window starting at the current frame
+	 * that is not resident or already queued, nearest first. */
+	public void prefetch() {
+		final int current = this.getFrame(), count = this.paths.length;
+		final int window = this.frameBytes > 0L ? (int) Math.min(this.window, Math.max(0L, (this.memoryBudget / this.frameBytes) - 1L)) : this.window;
+		for(int i = 0; i <= window; i++) {
+			final int frame = (current + i) % count;
+			if(this.residentTextures[frame] == 0 && !this.requested[frame] && !this.failed[frame]) {
+				this.requested[frame] = true;
+				this.pipeline.submit(frame, this.paths[frame]);
+			}
+		}
+	}
+	
+	/** Uploads a frame that has finished decoding, evicting other frames to
+	 * make room for it if necessary. */
+	private void accept(GLBackend gl, TextureLoadPipeline.DecodedImage image, int current) {
+		final int frame = image.index;
+		this.requested[frame] = false;
+		if(image.getPixels() == null) {
+			this.failed[frame] = true;
+			this.pipeline.upload(gl, image);// Logs the error
+			return;
+		}
+		if(this.getDistance(frame, current) > this.window || this.residentTextures[frame] != 0) {
+			this.pipeline.discard(image);
+			this.discards++;
+			return;
+		}
+		final long bytes = image.width * (long) image.height * 4L;
+		this.frameBytes = Math.max(this.frameBytes, bytes);
+		int reuse = 0;
+		while(this.totalResidentBytes + bytes > this.memoryBudget) {
+			final int victim = this.findVictim(frame, current);
+			if(victim == -1) {
+				break;
+			}
+			final int texture = this.evict(victim);
+			if(reuse == 0 && this.residentBytes[victim] == bytes) {
+				reuse = texture;// Same size; re-specifying the texture is cheaper than deleting it and generating a new one
+			} else {
+				gl.glDeleteTextures(texture);
+			}
+			this.residentBytes[victim] = 0L;
+		}
+		if(this.totalResidentBytes + bytes > this.memoryBudget && this.totalResidentBytes > 0L) {
+			if(reuse != 0) {
+				gl.glDeleteTextures(reuse);
+			}
+			this.pipeline.discard(image);
+			this.discards++;
+			return;
+		}
+		final int texture = this.pipeline.upload(gl, image, reuse);
+		this.residentTextures[frame] = texture;
+		this.residentBytes[frame] = bytes;
+		this.lastUsed[frame] = ++this.tick;
+		this.totalResidentBytes += bytes;
+		this.residentFrames++;
+		this.peakResidentBytes = Math.max(this.peakResidentBytes, this.totalResidentBytes);
+		this.uploads++;
+	}
+	
+	private int evict(int frame) {
+		final int texture = this.residentTextures[frame];
+		this.residentTextures[frame] = 0;
+		this.totalResidentBytes -= this.residentBytes[frame];
+		this.residentFrames--;
+		this.evictions++;
+		return texture;
+	}
+	
+	/** Waits up to the maximum stall time for the given frame to be loaded,
+	 * uploading whatever other frames finish in the meantime.
+	 * 
+	 * @return The frame's texture, or {@code 0} if it did not load in time */
+	private int waitFor(GLBackend gl, int frame) {
+		final long maxStallNanos = this.maxStallNanos;
+		if(maxStallNanos <= 0L || this.failed[frame]) {
+			return 0;
+		}
+		final long startTime = System.nanoTime(), deadline = startTime + maxStallNanos;
+		this.stalls++;
+		try {
+			long remaining;
+			while(this.residentTextures[frame] == 0 && this.requested[frame] && (remaining = deadline - System.nanoTime()) > 0L) {
+				TextureLoadPipeline.DecodedImage image = this.pipeline.poll(remaining, TimeUnit.NANOSECONDS);
+				if(image == null) {
+					break;
+				}
+				this.accept(gl, image, frame);
+			}
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		this.stallNanos += System.nanoTime() - startTime;
+		return this.residentTextures[frame];
+	}
+	
+	@Override
+	public int getTexture() {
+		return this.residentTextures[this.getFrame()];
+	}
+	
+	/** Advances this animation, uploads the frames that have finished
+	 * decoding, prefetches the frames in the window, and then binds the
+	 * current frame's texture (or the last frame shown, if the current frame
+	 * could not be loaded in time) to {@link GL11#GL_TEXTURE_2D}. */
+	@Override
+	public void bind(GLBackend gl, double deltaTime) {
+		this.update(deltaTime);
+		final int frame = this.getFrame();
+		TextureLoadPipeline.DecodedImage image;
+		while((image = this.pipeline.poll()) != null) {
+			this.accept(gl, image, frame);
+		}
+		this.prefetch();
+		
+		int texture = this.residentTextures[frame];
+		if(texture != 0) {
+			this.hits++;
+		} else {
+			this.misses++;
+			texture = this.waitFor(gl, frame);
+		}
+		if(texture != 0) {
+			this.shownFrame = frame;
+		} else if(this.shownFrame != -1) {
+			texture = this.residentTextures[this.shownFrame];
+		}
+		if(this.shownFrame != -1) {
+			this.lastUsed[this.shownFrame] = ++this.tick;
+		}
+		gl.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+	}
+	
+	/** Stops loading frames. Frames that are already resident are kept until
+	 * {@link #destroy(GLBackend)} is called. */
+	@Override
+	public void close() {
+		this.pipeline.close();
+	}
+	
+	/** Stops loading frames and deletes every resident frame's texture. */
+	@Override
+	public void destroy(GLBackend gl) {
+		this.close();
+		for(int i = 0; i < this.residentTextures.length; i++) {
+			if(this.residentTextures[i] != 0) {
+				gl.glDeleteTextures(this.residentTextures[i]);
+				this.residentTextures[i] = 0;
+				this.residentBytes[i] = 0L;
+			}
+		}
+		this.totalResidentBytes = 0L;
+		this.residentFrames = 0;
+		this.shownFrame = -1;
+	}
+	
+}
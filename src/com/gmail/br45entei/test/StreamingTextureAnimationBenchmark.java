@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/** Headless verification and benchmark of {@link StreamingTextureAnimation}.
+ * <br>
+ * A 120 frame animation is played back in real time at 60 frames per second
+ * against a {@link RecordingGLBackend} with a few different window sizes and
+ * memory budgets, checking that the texture bound is always the current frame
+ * (or, after a miss, the last frame shown) and that the resident frames stay
+ * within the budget. The hit, miss and stall counters and the peak memory use
+ * are then compared with loading every frame up front.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class StreamingTextureAnimationBenchmark {
+	
+	/** A {@link RecordingGLBackend} that remembers which frame was uploaded
+	 * into each texture (frames store their index in their first pixel) and
+	 * which texture is bound. */
+	static final class FrameTracker extends RecordingGLBackend {
+		final int[] frameOf = new int[65536];
+		int bound = 0, lastBound = 0;
+		
+		@Override
+		public void glBindTexture(int target, int texture) {
+			super.glBindTexture(target, texture);
+			this.bound = texture;
+		}
+		
+		@Override
+		public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, ByteBuffer pixels) {
+			super.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+			this.frameOf[this.bound] = ((pixels.get(0) & 0xFF) << 16) | ((pixels.get(1) & 0xFF) << 8) | (pixels.get(2) & 0xFF);
+		}
+		
+	}
+	
+	private static final void play(String name, TextureLoadPipeline.Source source, String[] paths, int window, long budget, long maxStallMillis, int frames) {
+		final long frameBytes = 256L * 256L * 4L;
+		final FrameTracker gl = new FrameTracker();
+		long startTime = System.nanoTime();
+		final StreamingTextureAnimation animation = new StreamingTextureAnimation(source, paths, 50.0, window, budget, null).setMaxStall(maxStallMillis, TimeUnit.MILLISECONDS);
+		animation.prefetch();
+		final long startupNanos = System.nanoTime() - startTime;
+		try {
+			int shownFrame = -1;
+			for(int i = 0; i < frames; i++) {
+				long frameStart = System.nanoTime();
+				long misses = animation.getMissCount();
+				animation.bind(gl, 1.0 / 60.0);
+				final int current = animation.getFrame();
+				if(gl.bound != 0) {
+					int boundFrame = gl.frameOf[gl.bound];
+					MicroBenchmark.check(boundFrame == current || (animation.getMissCount() > misses && boundFrame == shownFrame), String.format("Frame %s was bound while frame %s was current!", Integer.toString(boundFrame), Integer.toString(current)));
+					shownFrame = boundFrame;
+				}
+				MicroBenchmark.check(animation.getResidentBytes() <= Math.max(budget, frameBytes), "Resident frames exceeded the memory budget!");
+				MicroBenchmark.check(animation.getResidentFrameCount() * frameBytes == animation.getResidentBytes(), "Resident byte count is inconsistent!");
+				animation.unbind(gl);
+				long sleepNanos = (1000000000L / 60L) - (System.nanoTime() - frameStart);
+				if(sleepNanos > 0L) {
+					try {
+						Thread.sleep(sleepNanos / 1000000L, (int) (sleepNanos % 1000000L));
+					} catch(InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+			System.out.println(String.format("%s: startup: %s us; hits: %s; misses: %s; stalls: %s (%s ms total); uploads: %s; evictions: %s; discards: %s; peak resident: %s KB (%s frames)", name, Long.toString(startupNanos / 1000L), Long.toString(animation.getHitCount()), Long.toString(animation.getMissCount()), Long.toString(animation.getStallCount()), Long.toString(animation.getStallNanos() / 1000000L), Long.toString(animation.getUploadCount()), Long.toString(animation.getEvictionCount()), Long.toString(animation.getDiscardCount()), Long.toString(animation.getPeakResidentBytes() / 1024L), Long.toString(animation.getPeakResidentBytes() / frameBytes)));
+		} finally {
+			animation.destroy(gl);
+		}
+		MicroBenchmark.check(animation.getResidentFrameCount() == 0 && animation.getResidentBytes() == 0L, "Frames remained resident after the animation was destroyed!");
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws IOException Thrown if an image could not be encoded
+	 * @throws InterruptedException Thrown if the thread is interrupted while
+	 *             loading the frames up front */
+	public static final void main(String[] args) throws IOException, InterruptedException {
+		final Random random = new Random(0x57AEA4L);
+		final HashMap<String, byte[]> files = new HashMap<>();
+		final String[] paths = new String[120];
+		for(int i = 0; i < paths.length; i++) {
+			BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+			for(int y = 0; y < 256; y++) {
+				for(int x = 0; x < 256; x++) {
+					image.setRGB(x, y, ((x * 255 / 256) << 16) | ((y * 255 / 256) << 8) | random.nextInt(64));
+				}
+			}
+			image.setRGB(0, 0, i);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write(image, "png", out);
+			files.put(paths[i] = String.format("frames/%s.png", Integer.toString(i)), out.toByteArray());
+		}
+		final TextureLoadPipeline.Source source = (path) -> {
+			byte[] data = files.get(path);
+			if(data == null) {
+				throw new FileNotFoundException(path);
+			}
+			return new ByteArrayInputStream(data);
+		};
+		
+		// Loading every frame up front:
+		long startTime = System.nanoTime();
+		RecordingGLBackend recorder = new RecordingGLBackend();
+		try(TextureLoadPipeline pipeline = new TextureLoadPipeline(source, Runtime.getRuntime().availableProcessors(), 32)) {
+			MicroBenchmark.check(Arrays.stream(pipeline.loadAll(paths, null, "Loading frames", recorder)).allMatch((texture) -> texture != 0), "A frame failed to load!");
+		}
+		System.out.println(String.format("Fully resident: startup: %s us; resident: %s KB (%s frames)", Long.toString((System.nanoTime() - startTime) / 1000L), Long.toString(recorder.getBytesUploaded() / 1024L), Integer.toString(paths.length)));
+		
+		final long frameBytes = 256L * 256L * 4L;
+		play("Window 8, budget 16 frames", source, paths, 8, 16L * frameBytes, 4L, 360);
+		play("Window 2, budget 4 frames", source, paths, 2, 4L * frameBytes, 4L, 360);
+		play("Window 8, budget 4 frames", source, paths, 8, 4L * frameBytes, 4L, 360);
+		play("No prefetching, no stalls", source, paths, 0, 1L * frameBytes, 0L, 360);
+	}
+	
+}
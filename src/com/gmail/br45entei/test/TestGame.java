@@ -25,21 +25,15 @@ package com.gmail.br45entei.test;
 
 import com.badlogic.gdx.controllers.Controller;
 import com.gmail.br45entei.game.Game;
-import com.gmail.br45entei.game.graphics.AnimatedTexture;
 import com.gmail.br45entei.game.graphics.FontRender;
 import com.gmail.br45entei.game.graphics.FontRender.GLFont;
 import com.gmail.br45entei.game.graphics.GLThread.InitializationProgress;
 import com.gmail.br45entei.game.graphics.GLUtil;
-import com.gmail.br45entei.game.graphics.MatrixStack;
-import com.gmail.br45entei.game.graphics.MatrixStack.MultiplicationOrder;
-import com.gmail.br45entei.game.graphics.MatrixStack.RotationOrder;
 import com.gmail.br45entei.game.graphics.RandomColorGenerator;
 import com.gmail.br45entei.game.graphics.RandomRotationGenerator;
 import com.gmail.br45entei.game.graphics.Renderer;
 import com.gmail.br45entei.game.graphics.Texture;
-import com.gmail.br45entei.game.graphics.TextureLoader;
 import com.gmail.br45entei.game.input.ControllerManager;
-import com.gmail.br45entei.game.input.Keyboard;
 import com.gmail.br45entei.game.input.Keyboard.Keys;
 import com.gmail.br45entei.game.input.Mouse;
 import com.gmail.br45entei.game.math.MathUtil;
@@ -48,10 +42,14 @@ import com.gmail.br45entei.game.ui.Window;
 import com.gmail.br45entei.util.SWTUtil;
 import com.gmail.br45entei.util.StringUtil;
 
+import java.awt.AWTError;
+import java.io.File;
+import java.io.IOException;
 import java.nio.FloatBuffer;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -63,7 +61,6 @@ import org.libsdl.SDL;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
-import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.swt.GLData;
 import org.lwjgl.util.vector.Vector2f;
 import org.lwjgl.util.vector.Vector4f;
@@ -130,19 +127,35 @@ public class TestGame implements Game, MenuProvider {
 	private volatile int mWidth = 16, mHeight = 16;
 	
 	protected volatile boolean _3D = false;
-	private volatile float x, y, z, zDist;
-	private volatile float lastX, lastY, lastZ, lastZDist;
-	private volatile float yaw, pitch, roll;
-	private volatile float lastYaw, lastPitch, lastRoll;
-	private final MatrixStack stack = new MatrixStack();
-	private volatile float fovy = 70.0f, zNear = 0.01f, zFar = 1000.0f;
-	private volatile float targetFovy = this.fovy;
+	/** The camera's position, orientation and projection settings. Each thread
+	 * reads this once and uses that snapshot for everything it does with the
+	 * camera. Changes are published with compare-and-set, so the render
+	 * thread's view updates and the input thread's projection updates never
+	 * overwrite each other. */
+	private final AtomicReference<CameraSnapshot> cameraSnapshot = new AtomicReference<>(CameraSnapshot.DEFAULT);
+	private volatile CameraSnapshot lastPrintedCamera = null;
+	private final FloatMatrixStack stack = new FloatMatrixStack();
+	private volatile float targetFovy = CameraSnapshot.DEFAULT_FOVY;
 	private volatile float zoomFovy = 20.0f;
-	private volatile float lastZNear = this.zNear;
-	private volatile float lastZFar = this.zFar;
-	private volatile float[] orthographicProjection = this.stack.setOrthographicProjection(0, 0, 800, 600, this.zNear, this.zFar).peekf();
-	private volatile float[] perspectiveProjection = this.stack.setPerspectiveProjection(this.fovy, 800, 600, this.zNear, this.zFar).peekf();
-	private volatile float[] modelView = this.stack.setModelView(this.x, this.y, this.z, this.yaw, this.pitch, this.roll).peekf();
+	/** How quickly the rendered field of view follows the camera's (see
+	 * {@link ProjectionCache#approach(float, float, float, double)}) */
+	private volatile float zoomRate = 15.0f;
+	/** The field of view that is actually being rendered with, which eases
+	 * towards the camera's whenever it is changed (e.g. by zooming in). Only
+	 * used by the render thread. */
+	private float renderedFovy = CameraSnapshot.DEFAULT_FOVY;
+	/** The projection matrices, which are only recomputed when the viewport
+	 * or the camera's projection settings change. Only used by the render
+	 * thread. */
+	private final ProjectionCache projection = new ProjectionCache(800, 600, CameraSnapshot.DEFAULT_FOVY, CameraSnapshot.DEFAULT_ZNEAR, CameraSnapshot.DEFAULT_ZFAR);
+	/** The version of the matrix that was last loaded into GL_PROJECTION;
+	 * positive for the perspective matrix, negative for the orthographic
+	 * one, and zero if unknown */
+	private long loadedProjection = 0L;
+	/** The model-view matrix of the frame being rendered. Only used by the
+	 * render thread; other threads use the copy in the camera snapshot. */
+	private final float[] modelView = this.stack.loadIdentity().peek(new float[16]);
+	private final float[] cubeModelView = new float[16];
 	
 	private volatile boolean printCameraInfo = false;
 	
@@ -155,8 +168,42 @@ public class TestGame implements Game, MenuProvider {
 	private volatile boolean invertVerticalMovementWhenUpsideDown = false;
 	private volatile float movementSpeed = 1.2f;
 	
+	/** The camera is moved at a fixed rate on its own thread, and render()
+	 * interpolates between its last two steps */
+	private final CameraSimulation camera = new CameraSimulation();
+	private final FixedTimestepLoop<CameraSimulation.Snapshot> simulation = new FixedTimestepLoop<>(this.camera, CameraSimulation.Snapshot::new);
+	private final CameraSimulation.State cameraView = new CameraSimulation.State();
+	/** When set, the camera is stepped from update() using this clock instead
+	 * of on its own thread */
+	private volatile LongSupplier simulationClock = null;
+	
+	/** Action bit for resetting the camera (the movement and roll actions use
+	 * the {@link CameraSimulation} held bits) */
+	public static final long ACTION_RESET_CAMERA = 0x100L;
+	/** Action bit for zooming in */
+	public static final long ACTION_ZOOM = 0x200L;
+	/** Action bit for resetting the camera's orbiting distance */
+	public static final long ACTION_RESET_ZOOM_DISTANCE = 0x400L;
+	/** Action bit for switching between 2D and 3D */
+	public static final long ACTION_TOGGLE_3D = 0x800L;
+	/** Action bit for showing or hiding the profiler overlay */
+	public static final long ACTION_TOGGLE_PROFILER = 0x1000L;
+	/** Action bit for saving the profiler's recent scopes as a Chrome trace */
+	public static final long ACTION_EXPORT_PROFILE = 0x2000L;
+	/** The actions that are passed on to the camera as held keys */
+	private static final long CAMERA_ACTIONS = 0xFFL;
+	
+	/** Input events are queued by the input callbacks and applied once per
+	 * input tick, instead of polling every key each frame */
+	private final InputEventQueue inputEvents = new InputEventQueue();
+	private final InputActionMap actions = new InputActionMap();
+	
 	//============================================================
 	
+	/** The GL calls made by this game go through this cache (which skips
+	 * calls that wouldn't change anything) and then through a backend, so
+	 * that it can be run without a display (see {@link HeadlessGameRunner}) */
+	private volatile GLStateCache gl = new GLStateCache(GLBackend.LWJGL);
 	private volatile int[] vbo = new int[1];
 	private volatile float[] cubeVertices = null;
 	private volatile FloatBuffer cubeVertexBuf = null;
@@ -165,10 +212,44 @@ public class TestGame implements Game, MenuProvider {
 	private final RandomColorGenerator cube3ColorGenerator = new RandomColorGenerator();
 	private final RandomRotationGenerator cube3RotationGenerator = new RandomRotationGenerator();
 	private final RandomColorGenerator cube4ColorGenerator = new RandomColorGenerator();
+	private static final float[] cubePositions = {0, -1, -4, 0, 0, 0, 7, 4, 4, 4, 4, 7};
+	private final CubeBatch cubeBatch = new CubeBatch(1f, 1f, 1f, cubePositions.length / 3);
+	private final BoundingVolumeHierarchy sceneIndex = new BoundingVolumeHierarchy(cubePositions.length / 3);
+	private final FrustumCuller frustumCuller = new FrustumCuller();
+	private final int[] visibleCubes = new int[cubePositions.length / 3];
+	/** The blocky ground below the cubes; its chunks are meshed on worker
+	 * threads and uploaded a few at a time while rendering */
+	private volatile VoxelWorld voxels = null;
+	/** The most chunk meshes that are uploaded in a single frame */
+	private static final int maxChunkUploadsPerFrame = 4;
 	
 	//============================================================
 	
 	private volatile GLFont font = null;
+	private final HudText hud = new HudText(48, 160);
+	/** The HUD's glyphs; when these are available the HUD is drawn with
+	 * {@link #textBatch} instead of {@link FontRender} */
+	private volatile GlyphAtlas glyphs = null;
+	private final TextBatch textBatch = new TextBatch(48, 160);
+	/** The 2D shapes and the crosshairs */
+	private final QuadBatch quads = new QuadBatch(64);
+	
+	/** Times the phases of each frame; shown on the overlay while
+	 * {@link #showProfiler} is set */
+	private final FrameProfiler profiler = new FrameProfiler();
+	private final int profileInput = this.profiler.scope("input");
+	private final int profileUpdate = this.profiler.scope("update");
+	private final int profileRender = this.profiler.scope("render");
+	private final int profileCubes = this.profiler.scope("cubes");
+	private final int profileUpload = this.profiler.scope("upload");
+	private final int profileVoxels = this.profiler.scope("voxels");
+	private final int profileHud = this.profiler.scope("hud");
+	private final int profileFont = this.profiler.scope("font");
+	private volatile boolean showProfiler = false;
+	/** The render thread's recorder; {@link #input(double)} and
+	 * {@link #update(double)} only time their own frames when they are
+	 * called on another thread */
+	private volatile FrameProfiler.Recorder renderRecorder = null;
 	
 	//============================================================
 	
@@ -179,11 +260,71 @@ public class TestGame implements Game, MenuProvider {
 	
 	/** Default constructor */
 	public TestGame() {
+		this.actions.bindKey(Keys.VK_W, CameraSimulation.MOVE_FORWARD).bindKey(Keys.VK_S, CameraSimulation.MOVE_BACKWARD);
+		this.actions.bindKey(Keys.VK_A, CameraSimulation.MOVE_LEFT).bindKey(Keys.VK_D, CameraSimulation.MOVE_RIGHT);
+		this.actions.bindKey(Keys.VK_SPACE, CameraSimulation.MOVE_UP).bindKey(Keys.VK_LSHIFT, CameraSimulation.MOVE_DOWN);
+		this.actions.bindKey(Keys.VK_OPEN_BRACKET, CameraSimulation.ROLL_LEFT).bindKey(Keys.VK_CLOSE_BRACKET, CameraSimulation.ROLL_RIGHT);
+		this.actions.bindKey(Keys.VK_R, ACTION_RESET_CAMERA).bindKey(Keys.VK_Z, ACTION_ZOOM).bindKey(Keys.VK_M, ACTION_TOGGLE_3D);
+		this.actions.bindKey(Keys.VK_F3, ACTION_TOGGLE_PROFILER).bindKey(Keys.VK_P, ACTION_EXPORT_PROFILE);
+		this.actions.bindButton(Mouse.BUTTON_MIDDLE, ACTION_RESET_ZOOM_DISTANCE);
+	}
+	
+	/** Makes this game step its camera from {@link #update(double)} using the
+	 * given clock, instead of on its own thread using the system clock. This
+	 * makes the camera's movement depend only on the input and on the times
+	 * that the clock returns, so that {@link InputReplay replayed} input
+	 * always moves the camera the same way.<br>
+	 * Must be set before the game is initialized.
+	 * 
+	 * @param clock The clock, returning the current time in nanoseconds, or
+	 *            {@code null} to step the camera on its own thread
+	 * @return This TestGame */
+	public TestGame setSimulationClock(LongSupplier clock) {
+		this.simulationClock = clock;
+		return this;
+	}
+	
+	private long simulationTime() {
+		final LongSupplier clock = this.simulationClock;
+		return clock == null ? System.nanoTime() : clock.getAsLong();
+	}
+	
+	/** @return Whether or not keyboard and mouse input should currently move
+	 *         the camera (by default, while the mouse is captured) */
+	protected boolean isListeningToInput() {
+		return Mouse.isCaptured() && Mouse.shouldIListenToClickEvents();
+	}
+	
+	/** @return The profiler that times this game's frames */
+	public FrameProfiler getProfiler() {
+		return this.profiler;
+	}
+	
+	/** @return Whether or not the profiler overlay is shown */
+	public boolean isProfilerShown() {
+		return this.showProfiler;
+	}
+	
+	/** @param showProfiler Whether or not the profiler overlay should be
+	 *            shown
+	 * @return This TestGame */
+	public TestGame setProfilerShown(boolean showProfiler) {
+		this.showProfiler = showProfiler;
+		return this;
+	}
+	
+	/** @return The queue that this game's input callbacks add their events
+	 *         to */
+	public InputEventQueue getInputEvents() {
+		return this.inputEvents;
 	}
 	
 	/** Opens a new {@link Window} and tests this {@link TestGame}.
 	 * 
-	 * @param args Program command line arguments */
+	 * @param args Program command line arguments. Pass
+	 *            <code>-record &lt;file&gt;</code> to record the session's
+	 *            keyboard and mouse input to the given file, for
+	 *            {@link InputReplay} to play back. */
 	public static void main(String[] args) {
 		Game game = new TestGame();
 		
@@ -220,11 +361,12 @@ public class TestGame implements Game, MenuProvider {
 		window.registerRenderer(Renderer.colorDemo);
 		window.registerGame(new GameAdapter() {
 			
-			volatile AnimatedTexture[] animatedTextures = null;
+			volatile TextureAnimation[] animatedTextures = null;
 			volatile int animatedTextureIndex = 0;
 			
 			volatile boolean initialized = false, inputInitialized = false;
 			volatile int width, height;
+			final GLStateCache gl = new GLStateCache(GLBackend.LWJGL);
 			
 			@Override
 			public String getName() {
@@ -240,36 +382,49 @@ public class TestGame implements Game, MenuProvider {
 			public void initialize(InitializationProgress progress) {
 				progress.set(0.0f, "Loading animation textures...", "blocks/lava_fall/0.png");
 				if(this.animatedTextures == null) {
-					this.animatedTextures = new AnimatedTexture[3];
-					int j = 0;
-					
-					Texture[] textures = new Texture[16];
-					for(int i = 0; i < textures.length; i++) {
-						String path = String.format("blocks/lava_fall/%s.png", Integer.toString(i));
-						progress.set(i / 256.0f, String.format("Loading animation textures (%s/256)\r\n(\"%s\")", Integer.toString(i + 1), path));
-						textures[i] = TextureLoader.getTexture(path);
+					String[] paths = new String[256];
+					for(int i = 0; i < 16; i++) {
+						paths[i] = String.format("blocks/lava_fall/%s.png", Integer.toString(i));
 					}
-					this.animatedTextures[j++] = new AnimatedTexture(160L, textures);
-					
-					String path = "textures/textures.Pixel-Furnace.com/Animated_Water_Normal_Map/%s.png";
-					textures = new Texture[120];
-					for(int i = 0; i < textures.length; i++) {
+					for(int i = 0; i < 120; i++) {
 						String num = Integer.toString(i + 1);
-						String curPath = String.format(path, StringUtil.lineOf('0', 4 - num.length()).concat(num));
-						textures[i] = TextureLoader.getTexture(curPath);
-						progress.set((i + 16.0f) / 256.0f, String.format("Loading animation textures (%s/256)\r\n(\"%s\")", Integer.toString(i + 17), curPath));
+						num = StringUtil.lineOf('0', 4 - num.length()).concat(num);
+						paths[i + 16] = String.format("textures/textures.Pixel-Furnace.com/Animated_Water_Normal_Map/%s.png", num);
+						paths[i + 136] = String.format("textures/textures.Pixel-Furnace.com/Animated_Water_Normal_Map_2/%s.png", num);
 					}
-					this.animatedTextures[j++] = new AnimatedTexture(3000.0 / Window.getDefaultRefreshRate(), textures);
 					
-					path = "textures/textures.Pixel-Furnace.com/Animated_Water_Normal_Map_2/%s.png";
-					textures = new Texture[120];
-					for(int i = 0; i < textures.length; i++) {
-						String num = Integer.toString(i + 1);
-						String curPath = String.format(path, StringUtil.lineOf('0', 4 - num.length()).concat(num));
-						textures[i] = TextureLoader.getTexture(curPath);
-						progress.set((i + 136.0f) / 256.0f, String.format("Loading animation textures (%s/256)\r\n(\"%s\")", Integer.toString(i + 137), curPath));
+					final TextureCache cache = new TextureCache(new File("cache", "textures"), false);
+					TextureAnimation[] animatedTextures = new TextureAnimation[3];
+					
+					// The lava animation is small, so decode all of its frames up front (in parallel, or from the cache of previously decoded images) and pack them into an atlas so that changing frames doesn't rebind textures:
+					String[] frames = Arrays.copyOfRange(paths, 0, 16);
+					try(TextureLoadPipeline pipeline = new TextureLoadPipeline().setCache(cache)) {
+						TextureAtlas atlas = pipeline.decodeAtlas(frames, progress, "Loading animation textures", 0, paths.length, TextureAtlas.DEFAULT_PADDING, this.gl.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE));
+						if(atlas != null) {
+							atlas.upload(this.gl, GL11.GL_LINEAR, GL11.GL_LINEAR);
+							this.gl.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+							animatedTextures[0] = new TextureAnimation(160.0, atlas);
+						} else {
+							// Too big for one texture; fall back to one texture per frame:
+							try {
+								animatedTextures[0] = new TextureAnimation(160.0, pipeline.loadAll(frames, progress, "Loading animation textures", 0, paths.length, this.gl));
+							} catch(InterruptedException ex) {
+								Thread.currentThread().interrupt();
+								return;
+							}
+						}
 					}
-					this.animatedTextures[j++] = new AnimatedTexture(textures);
+					
+					// The normal map animations are 120 frames long, so only stream in the frames around the one being shown:
+					StreamingTextureAnimation water = new StreamingTextureAnimation(TextureLoadPipeline.CLASSPATH, Arrays.copyOfRange(paths, 16, 136), 3000.0 / Window.getDefaultRefreshRate(), StreamingTextureAnimation.DEFAULT_WINDOW, StreamingTextureAnimation.DEFAULT_MEMORY_BUDGET, cache);
+					StreamingTextureAnimation water2 = new StreamingTextureAnimation(TextureLoadPipeline.CLASSPATH, Arrays.copyOfRange(paths, 136, 256), TextureAnimation.DEFAULT_FRAME_TIME, StreamingTextureAnimation.DEFAULT_WINDOW, StreamingTextureAnimation.DEFAULT_MEMORY_BUDGET, cache);
+					water.prefetch();
+					progress.set(136.0f / paths.length, String.format("Streaming animation textures (136/256)\r\n(\"%s\")", paths[135]));
+					water2.prefetch();
+					progress.set(1.0f, String.format("Streaming animation textures (256/256)\r\n(\"%s\")", paths[255]));
+					animatedTextures[1] = water;
+					animatedTextures[2] = water2;
+					this.animatedTextures = animatedTextures;
 				}
 				
 				progress.set(1.0f, "Whew, that was a lot of animation textures!");
@@ -297,34 +452,50 @@ public class TestGame implements Game, MenuProvider {
 			
 			@Override
 			public void onSelected() {
-				GL11.glEnable(GL11.GL_TEXTURE_2D);
+				this.gl.invalidate();
+				this.gl.glEnable(GL11.GL_TEXTURE_2D);
 			}
 			
 			@Override
 			public void onViewportChanged(Rectangle oldViewport, Rectangle newViewport) {
-				GL11.glViewport(0, 0, this.width = newViewport.width, this.height = newViewport.height);
-				GL11.glMatrixMode(GL11.GL_PROJECTION);
-				GL11.glLoadMatrixd(GLUtil.getOrthographicMatrixd(0, 0, this.width, this.height, 0.01, 1000.0));
-				GL11.glMatrixMode(GL11.GL_MODELVIEW);
-				GL11.glLoadIdentity();
+				this.gl.glViewport(0, 0, this.width = newViewport.width, this.height = newViewport.height);
+				this.gl.glMatrixMode(GL11.GL_PROJECTION);
+				this.gl.glLoadMatrixd(GLUtil.getOrthographicMatrixd(0, 0, this.width, this.height, 0.01, 1000.0));
+				this.gl.glMatrixMode(GL11.GL_MODELVIEW);
+				this.gl.glLoadIdentity();
 			}
 			
 			@Override
 			public void render(double deltaTime, int width, int height) {
-				GL11.glClearColor(0, 0, 0, 1);
-				GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
-				this.animatedTextures[this.animatedTextureIndex].bind(deltaTime);
+				this.gl.glClearColor(0, 0, 0, 1);
+				this.gl.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+				TextureAnimation animation = this.animatedTextures[this.animatedTextureIndex];
+				animation.bind(this.gl, deltaTime);
 				GLUtil.glRenderQuad(null, new Vector2f(this.width, this.height), new Vector4f(1, 1, 1, 0));
+				this.gl.invalidate();// (GLUtil calls GL directly)
+				animation.unbind(this.gl);
 			}
 			
 			@Override
 			public void onDeselected() {
 				Texture.unbindAllTextures();
-				GL11.glDisable(GL11.GL_TEXTURE_2D);
+				this.gl.invalidate();// (Texture calls GL directly)
+				this.gl.glDisable(GL11.GL_TEXTURE_2D);
 			}
 			
 			@Override
 			public void onCleanup() {
+				final TextureAnimation[] animatedTextures = this.animatedTextures;
+				if(animatedTextures != null) {
+					// (Also stops the streaming animations' decoder threads and frees their buffers)
+					for(TextureAnimation animation : animatedTextures) {
+						if(animation != null) {
+							animation.destroy(this.gl);
+						}
+					}
+					this.animatedTextures = null;
+					this.animatedTextureIndex = 0;
+				}
 				
 				this.initialized = false;
 			}
@@ -349,8 +520,20 @@ public class TestGame implements Game, MenuProvider {
 			
 		});
 		window.registerGame(new InterfaceTest());
-		window.registerInputCallback(new InputLogger(System.out).setPrintKeyboardButtons(false).setPrintKeyboardButtonHelds(false).setPrintMouseButtons(false).setPrintMouseButtonHelds(false).setPrintControllerAxisChanges(false));
+		window.registerInputCallback(new AsyncInputLogger(System.out).setPrintKeyboardButtons(false).setPrintKeyboardButtonHelds(false).setPrintMouseButtons(false).setPrintMouseButtonHelds(false).setPrintControllerAxisChanges(false));
+		final InputRecorder recorder = args.length >= 2 && args[0].equalsIgnoreCase("-record") ? new InputRecorder() : null;
+		if(recorder != null) {
+			window.registerInputCallback(recorder);
+		}
 		window.open();
+		if(recorder != null) {
+			try {
+				recorder.getRecording().save(new File(args[1]));
+				System.out.println(String.format("Input recording saved to \"%s\" (%s).", args[1], recorder.getRecording().toString()));
+			} catch(IOException ex) {
+				System.err.println("Failed to save the input recording: ".concat(ex.toString()));
+			}
+		}
 	}
 	
 	@Override
@@ -365,25 +548,64 @@ public class TestGame implements Game, MenuProvider {
 	
 	@Override
 	public void initialize(InitializationProgress progress) {
-		progress.set(0.25f, "Creating the goodness... :D", "blocks/demo/cogs.png");
-		//final int width = Window.getWindow().getWidth();
-		final int height = Window.getWindow().getHeight();
-		
-		//this.mx = width / 2;
-		//this.my = height / 2;
-		
-		java.awt.Point mLoc = Mouse.getLocation();
-		java.awt.Point topLeft = Mouse.getCursorCanvasLocation();
-		this.mx = mLoc.x - topLeft.x;
-		this.my = height - (mLoc.y - topLeft.y);
+		if(progress != null) {
+			progress.set(0.25f, "Creating the goodness... :D", "blocks/demo/cogs.png");
+		}
+		this.renderRecorder = this.profiler.getRecorder();
+		final Window window = Window.getWindow();// null when running headless
+		if(window != null) {
+			//final int width = window.getWidth();
+			final int height = window.getHeight();
+			
+			//this.mx = width / 2;
+			//this.my = height / 2;
+			
+			java.awt.Point mLoc = Mouse.getLocation();
+			java.awt.Point topLeft = Mouse.getCursorCanvasLocation();
+			this.mx = mLoc.x - topLeft.x;
+			this.my = height - (mLoc.y - topLeft.y);
+		}
 		
 		this.glSetCubeSize(1f, 1f, 1f);
+		this.cubeBatch.clear();
+		this.sceneIndex.clear();
+		final float radius = this.cubeBatch.getBoundingRadius();
+		for(int i = 0; i < cubePositions.length; i += 3) {
+			final float x = cubePositions[i], y = cubePositions[i + 1], z = cubePositions[i + 2];
+			this.cubeBatch.add(x, y, z, 0, 0, 0, 1, 1, 1);
+			// The cubes never move, and their bounding spheres don't change when they rotate:
+			this.sceneIndex.insert(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+		}
+		this.sceneIndex.rebuild();
+		
+		if(this.voxels == null) {
+			this.voxels = new VoxelWorld().generateTerrain(-64, -64, 64, 64, -16, 8, 0x3D6A3EL);
+		}
+		try {
+			// Mesh and upload the ground up front so that the first frames (and headless runs) always show all of it:
+			this.voxels.finish(this.gl);
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
 		
-		if(this.font == null) {
+		if(this.glyphs == null) {
+			try {
+				this.glyphs = GlyphAtlas.get("Consolas", 12, false, false);
+			} catch(RuntimeException | AWTError ex) {
+				System.err.print("Failed to rasterize the HUD's glyphs; falling back to FontRender: ");
+				ex.printStackTrace(System.err);
+			}
+		}
+		if(this.glyphs == null && this.font == null && window != null) {
 			this.font = FontRender.createFont("Consolas", 12, false, false, true, true);
 		}
+		if(this.simulationClock == null) {
+			this.simulation.start("TestGame Simulation");
+		}
 		
-		progress.setProgress(1.0f);
+		if(progress != null) {
+			progress.setProgress(1.0f);
+		}
 		this.initialized = true;
 	}
 	
@@ -416,30 +638,34 @@ public class TestGame implements Game, MenuProvider {
 		}
 		this.cubeVertexBuf.rewind();
 		if(this.vbo[0] == 0) {
-			GL15.glGenBuffers(this.vbo);
+			this.vbo[0] = this.gl.glGenBuffers();
 		}
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo[0]);
-		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, this.cubeVertexBuf, GL15.GL_STATIC_DRAW);
+		this.gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo[0]);
+		this.gl.glBufferData(GL15.GL_ARRAY_BUFFER, this.cubeVertexBuf, GL15.GL_STATIC_DRAW);
+		this.cubeBatch.setCubeVertices(this.cubeVertices);
 	}
 	
 	public void glDrawCube(float x, float y, float z, float yaw, float pitch, float roll) {
-		GL11.glLoadMatrixf(this.stack.push().loadIdentity().multMatrix4x4(this.modelView).translate(x, y, z).rotate(yaw, pitch, roll).popf());
+		this.gl.glLoadMatrixf(this.stack.push().load(this.modelView).translate(x, y, z).rotate(yaw, pitch, roll).pop(this.cubeModelView));
 		
 		//Bind the cube's VBO:
-		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo[0]);
-		GL20.glVertexAttribPointer(0, 3, GL11.GL_FLOAT, false, 0, 0);
-		GL20.glEnableVertexAttribArray(0);
+		this.gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo[0]);
+		this.gl.glVertexAttribPointer(0, 3, GL11.GL_FLOAT, false, 0, 0);
+		this.gl.glEnableVertexAttribArray(0);
 		
 		//Adjust OpenGL settings and draw the cube:
-		GL11.glFrontFace(GL11.GL_CW);
-		GL11.glEnable(GL11.GL_CULL_FACE);
-		GL11.glCullFace(GL11.GL_BACK);
-		GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, this.cubeVertices.length / 3);
+		this.gl.glFrontFace(GL11.GL_CW);
+		this.gl.glEnable(GL11.GL_CULL_FACE);
+		this.gl.glCullFace(GL11.GL_BACK);
+		this.gl.glDrawArrays(GL11.GL_TRIANGLES, 0, this.cubeVertices.length / 3);
 	}
 	
 	@Override
 	public void onSelected() {
-		GL11.glHint(GL11.GL_PERSPECTIVE_CORRECTION_HINT, GL11.GL_NICEST);
+		// Other games share the GL context, and may have changed anything since we were last selected:
+		this.gl.invalidate();
+		this.loadedProjection = 0L;
+		this.gl.glHint(GL11.GL_PERSPECTIVE_CORRECTION_HINT, GL11.GL_NICEST);
 		
 	}
 	
@@ -463,144 +689,304 @@ public class TestGame implements Game, MenuProvider {
 	public void onViewportChanged(Rectangle oldViewport, Rectangle newViewport) {
 		this.my = oldViewport.height - this.my;
 		this.my = newViewport.height - this.my;
-		if(Mouse.isCaptured()) {
-			this.mx = Math.min(Window.getWindow().getWidth(), Math.max(0, this.mx));
-			this.my = Math.min(Window.getWindow().getHeight(), Math.max(0, this.my));
+		final Window window = Window.getWindow();
+		if(window == null) {
+			this.mx = Math.min(newViewport.width, Math.max(0, this.mx));
+			this.my = Math.min(newViewport.height, Math.max(0, this.my));
+		} else if(Mouse.isCaptured()) {
+			this.mx = Math.min(window.getWidth(), Math.max(0, this.mx));
+			this.my = Math.min(window.getHeight(), Math.max(0, this.my));
 		} else {
 			this.updateMousePosition(0, 0);
 		}
 		
-		GL11.glViewport(newViewport.x, newViewport.y, newViewport.width, newViewport.height);// Set the GL viewport
-		GL11.glMatrixMode(GL11.GL_PROJECTION);
-		GL11.glLoadMatrixf(this._3D ? GLUtil.getPerspectiveMatrixf(70.0f, (newViewport.width + 0.0f) / (newViewport.height + 0.0f), 0.01f, 1000.0f, true) : GLUtil.getOrthographicMatrixf(newViewport.x, newViewport.y, newViewport.width, newViewport.height, 0.01f, 1000.0f));
-		GL11.glMatrixMode(GL11.GL_MODELVIEW);
-		GL11.glLoadIdentity();
+		final CameraSnapshot camera = this.cameraSnapshot.get();
+		this.projection.update(newViewport.width, newViewport.height, this.renderedFovy, camera.zNear, camera.zFar);
+		this.gl.glViewport(newViewport.x, newViewport.y, newViewport.width, newViewport.height);// Set the GL viewport
+		this.loadProjection(this._3D);
+		this.gl.glMatrixMode(GL11.GL_MODELVIEW);
+		this.gl.glLoadIdentity();
 	}
 	
 	@Override
 	public void render(double deltaTime, int width, int height) {
-		if(width != this.lastWidth || height != this.lastHeight || this.fovy != this.targetFovy || this.zNear != this.lastZNear || this.zFar != this.lastZFar) {
-			GL11.glViewport(0, 0, this.lastWidth = width, this.lastHeight = height);// Set the GL viewport
+		this.renderRecorder = this.profiler.getRecorder();
+		this.profiler.beginFrame();
+		this.profiler.begin(this.profileRender);
+		CameraSnapshot camera = this.cameraSnapshot.get();
+		// Ease into (and out of) zooming, and only recompute the projection matrices while something actually changes:
+		this.renderedFovy = ProjectionCache.approach(this.renderedFovy, camera.fovy, this.zoomRate, deltaTime);
+		if(this.projection.update(width, height, this.renderedFovy, camera.zNear, camera.zFar) || width != this.lastWidth || height != this.lastHeight) {
+			this.gl.glViewport(0, 0, this.lastWidth = width, this.lastHeight = height);// Set the GL viewport
 			if(!this._3D) {
-				this.set2DMode(0, 0, width, height);
+				this.set2DMode();
 			}
 		}
-		GL11.glClearColor(0, 0, 0, 1);// Set the clear color
-		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);// Clear the viewport using the clear color
+		this.gl.glClearColor(0, 0, 0, 1);// Set the clear color
+		this.gl.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);// Clear the viewport using the clear color
 		
 		if(!this._3D) {
+			this.quads.begin(this.gl);
 			// Render a red rectangle that scales with the size of the canvas:
-			GL11.glColor3f(0.85f, 0.12f, 0.27f);
-			GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glVertex2f(width * 0.25f, height * 0.25f);
-			GL11.glVertex2f(width * 0.75f, height * 0.25f);
-			GL11.glVertex2f(width * 0.25f, height * 0.75f);
-			GL11.glVertex2f(width * 0.75f, height * 0.75f);
-			GL11.glEnd();
+			this.quads.add(width * 0.25f, height * 0.25f, width * 0.5f, height * 0.5f, 0.85f, 0.12f, 0.27f, 1.0f);
 			
 			// Render a square with a fixed size that follows the mouse cursor:
 			int mx = this.mx - (this.mWidth / 2);
 			int my = this.my - (this.mHeight / 2);
-			GL11.glColor3f(1.0f, 1.0f, 1.0f);
-			GL11.glBegin(GL11.GL_TRIANGLE_STRIP);
-			GL11.glVertex2f(mx, my);
-			GL11.glVertex2f(mx + this.mWidth, my);
-			GL11.glVertex2f(mx, my + this.mHeight);
-			GL11.glVertex2f(mx + this.mWidth, my + this.mHeight);
-			GL11.glEnd();
+			this.quads.add(mx, my, this.mWidth, this.mHeight, 1.0f, 1.0f, 1.0f, 1.0f);
+			this.quads.end();
 		} else {
 			// Render the 3D Environment:
 			
-			this.set3DMode(width, height);
-			//GL11.glColor3f(0.85f, 0.12f, 0.27f);// Sets the color of the cube
+			// Place the camera between its last two simulated states:
+			final CameraSimulation.Snapshot snapshot = this.simulation.read();
+			final CameraSimulation.State view = this.cameraView.interpolate(snapshot.previous, snapshot.current, (float) this.simulation.getAlpha(snapshot, this.simulationTime()));
+			camera = this.set3DMode(view);
+			//this.gl.glColor3f(0.85f, 0.12f, 0.27f);// Sets the color of the cube
 			//this.glDrawCube(0, -1, -4, 0, 0, 0);// Draws the cube
 			
+			// Update the cubes and then draw them all at once:
+			this.profiler.begin(this.profileCubes);
+			final float[] p = cubePositions;
 			float[] rgb = this.cube1ColorGenerator.getColor();
-			GL11.glColor3f(rgb[0], rgb[1], rgb[2]);
-			this.glDrawCube(0, -1, -4, 0, 0, 0);
+			this.cubeBatch.set(0, p[0], p[1], p[2], 0, 0, 0, rgb[0], rgb[1], rgb[2]);
 			rgb = this.cube2ColorGenerator.getColor();
-			GL11.glColor3f(rgb[0], rgb[1], rgb[2]);
-			this.glDrawCube(0, 0, 0, 0, 0, 0);
+			this.cubeBatch.set(1, p[3], p[4], p[5], 0, 0, 0, rgb[0], rgb[1], rgb[2]);
 			rgb = this.cube3ColorGenerator.getColor();
-			GL11.glColor3f(rgb[0], rgb[1], rgb[2]);
 			float[] ypr = this.cube3RotationGenerator.getRotation();
-			this.glDrawCube(7, 4, 4, ypr[0], ypr[1], ypr[2]);
+			this.cubeBatch.set(2, p[6], p[7], p[8], ypr[0], ypr[1], ypr[2], rgb[0], rgb[1], rgb[2]);
 			rgb = this.cube4ColorGenerator.getColor();
-			GL11.glColor3f(rgb[0], rgb[1], rgb[2]);
-			this.glDrawCube(4, 4, 7, 0, 0, 0);
+			this.cubeBatch.set(3, p[9], p[10], p[11], 0, 0, 0, rgb[0], rgb[1], rgb[2]);
+			// Skip the cubes that are outside of the camera's view (the scene index' handles are the cubes' indices):
+			this.frustumCuller.update(this.projection.getPerspective(), this.modelView);
+			this.profiler.begin(this.profileUpload);
+			this.cubeBatch.upload(this.gl);
+			this.profiler.end();
+			this.cubeBatch.draw(this.gl, this.visibleCubes, this.sceneIndex.queryFrustum(this.frustumCuller, this.visibleCubes));
+			this.profiler.end();
+			
+			// Draw the ground, picking up any chunks that were remeshed since the last frame:
+			final VoxelWorld voxels = this.voxels;
+			if(voxels != null) {
+				this.profiler.begin(this.profileVoxels);
+				voxels.remeshDirty();
+				voxels.uploadPending(this.gl, maxChunkUploadsPerFrame);
+				voxels.draw(this.gl, this.frustumCuller);
+				this.profiler.end();
+			}
 			
 			// Render the 2D UI:
-			this.set2DMode(0, 0, width, height);
+			this.set2DMode();
 		}
 		
-		Window window = Window.getWindow();
-		//System.out.println(StringUtil.getCurrentStackTraceElement());//System.out.println(StringUtil.class.getProtectionDomain().getCodeSource().getLocation().getPath());
-		String text = String.format("FPS: Current: %s; Last: %s; Vsync: %sabled;", MathUtil.limitDecimalNoRounding(window.getGLThread().getCurrentAverageFPS(), 4, true), Long.toString(window.getGLThread().getLastFPS()), (window.isVsyncEnabled() ? "en" : "dis"));
-		if(this._3D) {
-			text = text.concat("\r\n").concat(String.format("FreeLook: %sabled; FreeMove: %sabled; Camera Upside-down: %s;", this.freeLook ? "en" : "dis", this.freeMove ? "en" : "dis", Boolean.toString(this.isCameraUpsideDown())));
-			text = text.concat("\r\n").concat(String.format("Mouse Sensitivity: %s; Movement Speed: %s;", MathUtil.limitDecimalNoRounding(this.mouseSensitivity, 4, true), MathUtil.limitDecimalNoRounding(this.movementSpeed, 4, true)));
-			text = text.concat("\r\n").concat(String.format("X: %s; Y: %s; Z: %s; ~: %s;", MathUtil.limitDecimalNoRounding(this.x, 4, true), MathUtil.limitDecimalNoRounding(this.y, 4, true), MathUtil.limitDecimalNoRounding(this.z, 4, true), MathUtil.limitDecimalNoRounding(this.zDist, 4, true)));
-			text = text.concat("\r\n").concat(String.format("Yaw: %s; Pitch: %s; Roll: %s;", MathUtil.limitDecimalNoRounding(this.yaw, 4, true), MathUtil.limitDecimalNoRounding(this.pitch, 4, true), MathUtil.limitDecimalNoRounding(this.roll, 4, true)));
-			text = text.concat("\r\n").concat(String.format("Field of View: %s; zNear: %s; zFar: %s;", MathUtil.limitDecimalNoRounding(this.fovy, 4, true), MathUtil.limitDecimalNoRounding(this.zNear, 4, true), MathUtil.limitDecimalNoRounding(this.zFar, 4, true)));
-			text = text.concat("\r\n").concat(String.format("Viewport: 0, 0, %s, %s;", Integer.toString(this.lastWidth), Integer.toString(this.lastHeight)));
-			text = text.concat("\r\n").concat(GLUtil.matrix4x4ToStringf(this.orthographicProjection, 6, true).replaceFirst(Pattern.quote(StringUtil.lineOf('=', "==[2D Projection]".length())), Matcher.quoteReplacement("==[2D Projection]")));
-			text = text.concat("\r\n").concat(GLUtil.matrix4x4ToStringf(this.perspectiveProjection, 8, true).replaceFirst(Pattern.quote(StringUtil.lineOf('=', "==[3D Projection]".length())), Matcher.quoteReplacement("==[3D Projection]")));
-			text = text.concat("\r\n").concat(GLUtil.matrix4x4ToStringf(this.modelView, 6, true).replaceFirst(Pattern.quote(StringUtil.lineOf('=', "==[3D Model View]".length())), Matcher.quoteReplacement("==[3D Model View]")));
+		final Window window = Window.getWindow();// null when running headless
+		this.profiler.begin(this.profileHud);
+		if(window != null) {
+			this.updateHud(camera, window.getGLThread().getCurrentAverageFPS(), window.getGLThread().getLastFPS(), window.isVsyncEnabled());
+		} else {
+			this.updateHud(camera, 1.0 / deltaTime, Math.round(1.0 / deltaTime), false);
 		}
+		this.profiler.end();
 		/*GLUtil.glPushColor();
 		GLUtil.glPushBlendMode();
 		GLUtil.glSetBlendEnabled(true);
 		GLUtil.glColord(1, 0, 0, 0.25);
-		GLUtil.glDrawRect2d(FontRender.sizeOf(this.font, text, 0, height).getBounds());
+		GLUtil.glDrawRect2d(FontRender.sizeOf(this.font, this.hud.toString(), 0, height).getBounds());
 		GLUtil.glPopColor();
 		GLUtil.glPopBlendMode();//*/
-		FontRender.drawString(this.font, text, 0, height - (this.font.getLineHeight() * 0), 1, 1, 1);
+		if(this.glyphs != null) {
+			this.profiler.begin(this.profileFont);
+			this.textBatch.update(this.hud, this.glyphs, 0, height, 1, 1, 1);
+			this.textBatch.draw(this.gl);
+			this.profiler.end();
+		} else if(this.font != null) {
+			this.profiler.begin(this.profileFont);
+			FontRender.drawString(this.font, this.hud.toString(), 0, height - (this.font.getLineHeight() * 0), 1, 1, 1);
+			this.gl.invalidate();// (FontRender calls GL directly)
+			this.loadedProjection = 0L;
+			this.profiler.end();
+		}
 		
-		if(this._3D) {
-			ControllerManager manager = Window.getWindow().getControllerManager();
-			if(Mouse.isCaptured() || (manager != null && manager.getController1() != null)) {
-				GLUtil.glLegacyRenderCrosshairsAt(this.lastWidth / 2.0, this.lastHeight / 2.0, 1.0, true);
-			} else {
-				GLUtil.glLegacyRenderCrosshairsOnMouse(true);
+		if(this._3D && window != null) {
+			ControllerManager manager = window.getControllerManager();
+			float x = this.lastWidth / 2.0f, y = this.lastHeight / 2.0f;
+			if(!Mouse.isCaptured() && (manager == null || manager.getController1() == null)) {
+				java.awt.Point mLoc = Mouse.getLocation();
+				java.awt.Point topLeft = Mouse.getCursorCanvasLocation();
+				x = mLoc.x - topLeft.x;
+				y = this.lastHeight - (mLoc.y - topLeft.y);
 			}
+			this.quads.begin(this.gl).addCrosshair(0, x, y, 16.0f, 2.0f).end();
 		}
 		
+		this.profiler.end();
+		this.profiler.endFrame();
 	}
 	
-	private void set2DMode(float x, float y, float width, float height) {
-		GL11.glMatrixMode(GL11.GL_PROJECTION);
-		GL11.glLoadMatrixf(this.orthographicProjection = GLUtil.getOrthographicMatrixf(x, y, width, height, this.zNear, this.zFar));
-		GL11.glMatrixMode(GL11.GL_MODELVIEW);
-		GL11.glLoadIdentity();
-		
-		GL11.glDisable(GL11.GL_DEPTH_TEST);
-		GL11.glDisable(GL11.GL_CULL_FACE);
-		GL11.glFrontFace(GL11.GL_CCW);
-		GL11.glCullFace(GL11.GL_BACK);
+	/** Rebuilds this game's debug overlay text.<br>
+	 * Only lines whose values have actually changed since the last frame are
+	 * re-written, and the resulting text is only re-allocated when something
+	 * changed.
+	 * 
+	 * @param camera The camera snapshot that the frame was rendered with
+	 * @param averageFPS The current average framerate
+	 * @param lastFPS The framerate measured during the last second
+	 * @param vsyncEnabled Whether or not vertical sync is enabled
+	 * @return This game's overlay text */
+	HudText updateHud(CameraSnapshot camera, double averageFPS, long lastFPS, boolean vsyncEnabled) {
+		final HudText hud = this.hud.begin();
+		hud.append("FPS: Current: ").append(averageFPS, 4).append("; Last: ").append(lastFPS).append("; Vsync: ").append(vsyncEnabled ? "en" : "dis").append("abled;").endLine();
+		if(this._3D) {
+			hud.append("FreeLook: ").append(this.freeLook ? "en" : "dis").append("abled; FreeMove: ").append(this.freeMove ? "en" : "dis").append("abled; Camera Upside-down: ").append(camera.upsideDown).append(';').endLine();
+			hud.append("Mouse Sensitivity: ").append(this.mouseSensitivity, 4).append("; Movement Speed: ").append(this.movementSpeed, 4).append(';').endLine();
+			hud.append("X: ").append(camera.x, 4).append("; Y: ").append(camera.y, 4).append("; Z: ").append(camera.z, 4).append("; ~: ").append(camera.zDist, 4).append(';').endLine();
+			hud.append("Yaw: ").append(camera.yaw, 4).append("; Pitch: ").append(camera.pitch, 4).append("; Roll: ").append(camera.roll, 4).append(';').endLine();
+			hud.append("Field of View: ").append(camera.fovy, 4).append("; zNear: ").append(camera.zNear, 4).append("; zFar: ").append(camera.zFar, 4).append(';').endLine();
+			hud.append("Viewport: 0, 0, ").append(this.lastWidth).append(", ").append(this.lastHeight).append(';').endLine();
+			final VoxelWorld voxels = this.voxels;
+			if(voxels != null) {
+				hud.append("Chunks: ").append(voxels.getDrawnChunks()).append(" / ").append(voxels.getChunks().size()).append(" drawn (").append(voxels.getDrawnQuads()).append(" quads); Meshing: ").append(voxels.getPendingCount()).append(';').endLine();
+			}
+			hud.appendMatrix("2D Projection", this.projection.getOrthographic(), 6);
+			hud.appendMatrix("3D Projection", this.projection.getPerspective(), 8);
+			hud.appendMatrix("3D Model View", this.modelView, 6);
+		}
+		if(this.showProfiler) {
+			this.profiler.getRecorder().appendTo(hud);
+		}
+		hud.end();
+		return hud;
 	}
 	
-	private void set3DMode(float width, float height) {
-		GL11.glMatrixMode(GL11.GL_PROJECTION);
-		GL11.glLoadMatrixf(this.perspectiveProjection = GLUtil.getPerspectiveMatrixf(/*this.lastFovy = */this.fovy, (width + 0.0f) / (height + 0.0f), this.lastZNear = this.zNear, this.lastZFar = this.zFar, true));
-		GL11.glMatrixMode(GL11.GL_MODELVIEW);
-		GL11.glLoadMatrixf(this.modelView = this.stack.loadIdentity().translate(0, 0, -this.zDist).rotate(-this.yaw, -this.pitch, -this.roll, RotationOrder.ZXY, MultiplicationOrder.NEWxOLD).translate(-this.x, -this.y, -this.z, MultiplicationOrder.NEWxOLD).peekf());//GL11.glLoadMatrixf(this.modelView = this.stack.setModelView(this.x, this.y, this.z, this.yaw, this.pitch, this.roll).peekf());// Updates the modelView using our position and rotation
+	/** Loads one of the cached projection matrices into GL_PROJECTION,
+	 * unless that exact matrix is already loaded (in which case the matrix
+	 * mode is left unchanged, too).
+	 * 
+	 * @param perspective Whether to load the perspective matrix or the
+	 *            orthographic one */
+	private void loadProjection(boolean perspective) {
+		final long version = perspective ? this.projection.getPerspectiveVersion() : -this.projection.getOrthographicVersion();
+		if(version == this.loadedProjection) {
+			return;
+		}
+		this.gl.glMatrixMode(GL11.GL_PROJECTION);
+		this.gl.glLoadMatrixf(perspective ? this.projection.getPerspective() : this.projection.getOrthographic());
+		this.loadedProjection = version;
+	}
+	
+	private void set2DMode() {
+		this.loadProjection(false);
+		this.gl.glMatrixMode(GL11.GL_MODELVIEW);
+		this.gl.glLoadIdentity();
+		
+		this.gl.glDisable(GL11.GL_DEPTH_TEST);
+		this.gl.glDisable(GL11.GL_CULL_FACE);
+		this.gl.glFrontFace(GL11.GL_CCW);
+		this.gl.glCullFace(GL11.GL_BACK);
+	}
+	
+	private CameraSnapshot set3DMode(CameraSimulation.State view) {
+		CameraController.getViewMatrix(view.x, view.y, view.z, view.zDist, view.yaw, view.pitch, view.roll, this.modelView);
+		final CameraSnapshot camera = this.publishView(view, this.modelView);
+		this.loadProjection(true);
+		this.gl.glMatrixMode(GL11.GL_MODELVIEW);
+		this.gl.glLoadMatrixf(this.modelView);//this.gl.glLoadMatrixf(this.modelView = this.stack.setModelView(this.x, this.y, this.z, this.yaw, this.pitch, this.roll).peekf());// Updates the modelView using our position and rotation
 		
-		GL11.glEnable(GL11.GL_DEPTH_TEST);
-		GL11.glDepthFunc(GL11.GL_LEQUAL);
-		GL11.glFrontFace(GL11.GL_CCW);
-		GL11.glEnable(GL11.GL_CULL_FACE);
-		GL11.glCullFace(GL11.GL_BACK);
+		this.gl.glEnable(GL11.GL_DEPTH_TEST);
+		this.gl.glDepthFunc(GL11.GL_LEQUAL);
+		this.gl.glFrontFace(GL11.GL_CCW);
+		this.gl.glEnable(GL11.GL_CULL_FACE);
+		this.gl.glCullFace(GL11.GL_BACK);
+		return camera;
+	}
+	
+	/** Publishes a new camera snapshot with the given view (keeping the
+	 * current projection settings).
+	 * 
+	 * @param view The camera's new position and orientation
+	 * @param modelView The model-view matrix built from the given view
+	 * @return The published snapshot */
+	private CameraSnapshot publishView(CameraSimulation.State view, float[] modelView) {
+		CameraSnapshot current, next;
+		do {
+			current = this.cameraSnapshot.get();
+			next = current.withView(view, modelView);
+		} while(!this.cameraSnapshot.compareAndSet(current, next));
+		return next;
+	}
+	
+	/** Publishes a new camera snapshot with the given field of view (keeping
+	 * everything else).
+	 * 
+	 * @param fovy The new vertical field of view, in degrees
+	 * @return The published snapshot */
+	private CameraSnapshot publishFieldOfView(float fovy) {
+		CameraSnapshot current, next;
+		do {
+			current = this.cameraSnapshot.get();
+			next = current.withProjection(fovy, current.zNear, current.zFar);
+		} while(!this.cameraSnapshot.compareAndSet(current, next));
+		return next;
+	}
+	
+	/** @return The backend that this game's GL calls go through */
+	public GLBackend getGLBackend() {
+		return this.gl.getBackend();
+	}
+	
+	/** @return The cache that this game's GL calls go through before they
+	 *         reach its {@link #getGLBackend() backend} */
+	public GLStateCache getGLStateCache() {
+		return this.gl;
+	}
+	
+	/** Sets the backend that this game's GL calls go through.<br>
+	 * Should only be changed while this game is not initialized, since GL
+	 * objects created through one backend can not be used through another.
+	 * 
+	 * @param gl The backend to use
+	 * @return This TestGame */
+	public TestGame setGLBackend(GLBackend gl) {
+		this.gl = new GLStateCache(Objects.requireNonNull(gl, "GL backend cannot be null!"));
+		return this;
+	}
+	
+	/** @return The projection matrices that this game renders with. Should
+	 *         only be used by the render thread. */
+	public ProjectionCache getProjectionCache() {
+		return this.projection;
+	}
+	
+	/** @return The blocky ground below the cubes, or {@code null} if this game
+	 *         hasn't been initialized yet (or has been cleaned up) */
+	public VoxelWorld getVoxelWorld() {
+		return this.voxels;
+	}
+	
+	/** @return The most recently published snapshot of this game's camera */
+	public CameraSnapshot getCameraSnapshot() {
+		return this.cameraSnapshot.get();
 	}
 	
 	@Override
 	public void onDeselected() {
-		GL11.glHint(GL11.GL_PERSPECTIVE_CORRECTION_HINT, GL11.GL_DONT_CARE);
+		this.gl.glHint(GL11.GL_PERSPECTIVE_CORRECTION_HINT, GL11.GL_DONT_CARE);
 	}
 	
 	@Override
 	public void onCleanup() {
-		GL15.glDeleteBuffers(this.vbo[0]);
+		this.simulation.stop();
+		this.gl.glDeleteBuffers(this.vbo[0]);
+		this.vbo[0] = 0;
 		this.cubeVertexBuf = null;
+		this.cubeBatch.destroy(this.gl);
+		this.textBatch.destroy(this.gl);
+		this.quads.destroy(this.gl);
+		if(this.voxels != null) {
+			this.voxels.destroy(this.gl);
+			this.voxels.close();
+			this.voxels = null;
+		}
 		if(this.font != null) {
 			this.font.destroy();
 			this.font = null;
@@ -619,82 +1005,36 @@ public class TestGame implements Game, MenuProvider {
 	private volatile long lastSecond = 0L;
 	
 	public void moveForward(double deltaTime) {
-		double moveAmount = this.movementSpeed * deltaTime;
-		if(this.freeMove) {
-			this.x -= this.modelView[2] * moveAmount;
-			this.y -= this.modelView[6] * moveAmount;
-			this.z -= this.modelView[10] * moveAmount;
-		} else {
-			moveAmount *= (this.isCameraUpsideDown() && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f);
-			this.x += this.modelView[8] * moveAmount;
-			this.z -= this.modelView[0] * moveAmount;
-		}
+		this.camera.addMovement(0, 0, (float) -deltaTime);
 	}
 	
 	public void moveBackward(double deltaTime) {
-		double moveAmount = this.movementSpeed * deltaTime;
-		if(this.freeMove) {
-			this.x += this.modelView[2] * moveAmount;
-			this.y += this.modelView[6] * moveAmount;
-			this.z += this.modelView[10] * moveAmount;
-		} else {
-			moveAmount *= (this.isCameraUpsideDown() && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f);
-			this.x -= this.modelView[8] * moveAmount;
-			this.z += this.modelView[0] * moveAmount;
-		}
+		this.camera.addMovement(0, 0, (float) deltaTime);
 	}
 	
 	public void moveLeft(double deltaTime) {
-		double moveAmount = this.movementSpeed * deltaTime;
-		if(this.freeMove) {
-			this.x -= this.modelView[0] * moveAmount;
-			this.y -= this.modelView[4] * moveAmount;
-			this.z -= this.modelView[8] * moveAmount;
-		} else {
-			this.x -= this.modelView[0] * moveAmount;
-			this.z -= this.modelView[8] * moveAmount;
-		}
+		this.camera.addMovement((float) -deltaTime, 0, 0);
 	}
 	
 	public void moveRight(double deltaTime) {
-		double moveAmount = this.movementSpeed * deltaTime;
-		if(this.freeMove) {
-			this.x += this.modelView[0] * moveAmount;
-			this.y += this.modelView[4] * moveAmount;
-			this.z += this.modelView[8] * moveAmount;
-		} else {
-			this.x += this.modelView[0] * moveAmount;
-			this.z += this.modelView[8] * moveAmount;
-		}
+		this.camera.addMovement((float) deltaTime, 0, 0);
 	}
 	
 	public void moveUp(double deltaTime) {
-		double moveAmount = this.movementSpeed * deltaTime;
-		if(this.freeMove) {
-			this.x += this.modelView[1] * moveAmount;
-			this.y += this.modelView[5] * moveAmount;
-			this.z += this.modelView[9] * moveAmount;
-		} else {
-			this.y += moveAmount * (this.isCameraUpsideDown() && this.invertVerticalMovementWhenUpsideDown ? -1.0f : 1.0f);
-		}
+		this.camera.addMovement(0, (float) deltaTime, 0);
 	}
 	
 	public void moveDown(double deltaTime) {
-		double moveAmount = this.movementSpeed * deltaTime;
-		if(this.freeMove) {
-			this.x -= this.modelView[1] * moveAmount;
-			this.y -= this.modelView[5] * moveAmount;
-			this.z -= this.modelView[9] * moveAmount;
-		} else {
-			this.y -= moveAmount * (this.isCameraUpsideDown() && this.invertVerticalMovementWhenUpsideDown ? -1.0f : 1.0f);
-		}
+		this.camera.addMovement(0, (float) -deltaTime, 0);
 	}
 	
 	public void resetCameraFields() {
-		this.x = this.y = this.z = this.zDist = this.yaw = this.pitch = this.roll = 0;
-		this.zNear = 0.01f;
-		this.zFar = 1000.0f;
-		this.fovy = this.fovy == this.targetFovy || this.fovy == this.zoomFovy ? this.fovy : this.targetFovy;
+		CameraSnapshot current, next;
+		do {
+			current = this.cameraSnapshot.get();
+			next = current.withProjection(current.fovy == this.targetFovy || current.fovy == this.zoomFovy ? current.fovy : this.targetFovy, CameraSnapshot.DEFAULT_ZNEAR, CameraSnapshot.DEFAULT_ZFAR);
+		} while(!this.cameraSnapshot.compareAndSet(current, next));
+		this.camera.reset();
 	}
 	
 	/** Returns whether or not camera info is printed every second, as well as
@@ -731,6 +1071,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setFreeLookEnabled(boolean freeLook) {
 		this.freeLook = freeLook;
+		this.camera.setFreeLook(freeLook);
 		return this;
 	}
 	
@@ -744,6 +1085,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setInvertYawWhileUpsideDownEnabled(boolean invertYawWhenUpsideDown) {
 		this.invertYawWhenUpsideDown = invertYawWhenUpsideDown;
+		this.camera.setInvertYawWhenUpsideDown(invertYawWhenUpsideDown);
 		return this;
 	}
 	
@@ -757,6 +1099,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setInvertPitchWhileUpsideDownEnabled(boolean invertPitchWhenUpsideDown) {
 		this.invertPitchWhenUpsideDown = invertPitchWhenUpsideDown;
+		this.camera.setInvertPitchWhenUpsideDown(invertPitchWhenUpsideDown);
 		return this;
 	}
 	
@@ -770,6 +1113,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setMovementSpeed(float movementSpeed) {
 		this.movementSpeed = movementSpeed != movementSpeed || Float.isInfinite(movementSpeed) ? this.movementSpeed : movementSpeed;
+		this.camera.setMovementSpeed(this.movementSpeed);
 		return this;
 	}
 	
@@ -779,6 +1123,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setFreeMoveEnabled(boolean freeMove) {
 		this.freeMove = freeMove;
+		this.camera.setFreeMove(freeMove);
 		return this;
 	}
 	
@@ -792,6 +1137,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setInvertForwardMovementWhileUpsideDownEnabled(boolean invertForwardMovementWhenUpsideDown) {
 		this.invertForwardMovementWhenUpsideDown = invertForwardMovementWhenUpsideDown;
+		this.camera.setInvertForwardMovementWhenUpsideDown(invertForwardMovementWhenUpsideDown);
 		return this;
 	}
 	
@@ -805,6 +1151,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	public TestGame setInvertVerticalMovementWhileUpsideDownEnabled(boolean invertVerticalMovementWhenUpsideDown) {
 		this.invertVerticalMovementWhenUpsideDown = invertVerticalMovementWhenUpsideDown;
+		this.camera.setInvertVerticalMovementWhenUpsideDown(invertVerticalMovementWhenUpsideDown);
 		return this;
 	}
 	
@@ -813,161 +1160,118 @@ public class TestGame implements Game, MenuProvider {
 	}
 	
 	public boolean isCameraUpsideDown() {
-		return Float.parseFloat(MathUtil.limitDecimalNoRounding(this.modelView[5], 4)) < -0.0f;//return this.pitch > 90.0f && this.pitch < 270.0f;
+		return this.cameraSnapshot.get().upsideDown;//return this.pitch > 90.0f && this.pitch < 270.0f;
 	}
 	
 	@Override
 	public void input(double deltaTime) {
-		if(Keyboard.getKeyDown(Keys.VK_M)) {
+		final boolean frame = this.beginOffThreadFrame();
+		this.profiler.begin(this.profileInput);
+		final InputActionMap actions = this.actions.tick(this.inputEvents);
+		if(actions.wasPressed(ACTION_TOGGLE_3D)) {
 			this._3D = !this._3D;
 		}
+		if(actions.wasPressed(ACTION_TOGGLE_PROFILER)) {
+			this.showProfiler = !this.showProfiler;
+		}
+		if(actions.wasPressed(ACTION_EXPORT_PROFILE)) {
+			final File file = new File(String.format("profile-%s.json", Long.toString(System.currentTimeMillis())));
+			try {
+				System.out.println(String.format("Wrote %s profiler scopes to \"%s\".", Integer.toString(this.profiler.writeChromeTrace(file)), file.getAbsolutePath()));
+			} catch(IOException ex) {
+				System.err.println("Failed to write the profiler trace: ".concat(ex.toString()));
+			}
+		}
+		this.camera.setEnabled(this._3D);
 		if(this._3D) {
-			float x = this.x, y = this.y, z = this.z, zDist = this.zDist;
-			float yaw = this.yaw, pitch = this.pitch, roll = this.roll;
-			if(Mouse.isCaptured() && Mouse.shouldIListenToClickEvents()) {
-				double moveAmount = this.movementSpeed * deltaTime;
-				final boolean upsideDown = this.isCameraUpsideDown();//this.modelView[4] < -0.0f;
-				//final boolean pitchedOver = pitch > 90.0f && pitch < 270.0f;
-				final boolean rolledOver = roll > 90.0f && roll < 270.0f;
+			// Only sample the input here; the camera itself is moved by this.simulation at a fixed rate:
+			final CameraSnapshot camera = this.cameraSnapshot.get();
+			int held = 0;
+			if(this.isListeningToInput()) {
+				// Keys that were pressed and released again since the last tick still count as held for this one:
+				held = (int) (actions.getActive() & CAMERA_ACTIONS);
 				
-				if(Keyboard.isKeyDown(Keys.VK_W)) {
-					if(this.freeMove) {
-						x -= this.modelView[2] * moveAmount;
-						y -= this.modelView[6] * moveAmount;
-						z -= this.modelView[10] * moveAmount;
-					} else {
-						x += this.modelView[8] * moveAmount * (upsideDown && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f);
-						z -= this.modelView[0] * moveAmount * (upsideDown && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f);
-					}
-				}
-				if(Keyboard.isKeyDown(Keys.VK_S)) {
-					if(this.freeMove) {
-						x += this.modelView[2] * moveAmount;
-						y += this.modelView[6] * moveAmount;
-						z += this.modelView[10] * moveAmount;
-					} else {
-						x -= this.modelView[8] * moveAmount * (upsideDown && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f);
-						z += this.modelView[0] * moveAmount * (upsideDown && this.invertForwardMovementWhenUpsideDown ? -1.0f : 1.0f);
-					}
-				}
-				if(Keyboard.isKeyDown(Keys.VK_A)) {
-					if(this.freeMove) {
-						x -= this.modelView[0] * moveAmount;
-						y -= this.modelView[4] * moveAmount;
-						z -= this.modelView[8] * moveAmount;
-					} else {
-						x -= this.modelView[0] * moveAmount;
-						z -= this.modelView[8] * moveAmount;
-					}
-				}
-				if(Keyboard.isKeyDown(Keys.VK_D)) {
-					if(this.freeMove) {
-						x += this.modelView[0] * moveAmount;
-						y += this.modelView[4] * moveAmount;
-						z += this.modelView[8] * moveAmount;
-					} else {
-						x += this.modelView[0] * moveAmount;
-						z += this.modelView[8] * moveAmount;
-					}
-				}
-				if(Keyboard.isKeyDown(Keys.VK_SPACE)) {
-					if(this.freeMove) {
-						x += this.modelView[1] * moveAmount;
-						y += this.modelView[5] * moveAmount;
-						z += this.modelView[9] * moveAmount;
-					} else {
-						y += moveAmount * (upsideDown && this.invertVerticalMovementWhenUpsideDown ? -1.0f : 1.0f);
-					}
-				}
-				if(Keyboard.isKeyDown(Keys.VK_LSHIFT)) {
-					if(this.freeMove) {
-						x -= this.modelView[1] * moveAmount;
-						y -= this.modelView[5] * moveAmount;
-						z -= this.modelView[9] * moveAmount;
-					} else {
-						y -= moveAmount * (upsideDown && this.invertVerticalMovementWhenUpsideDown ? -1.0f : 1.0f);
-					}
-				}
-				
-				java.awt.Point dxy = Mouse.getΔXY(false);
-				yaw += dxy.x * this.mouseSensitivity * (this.fovy / this.targetFovy) * (upsideDown && this.invertYawWhenUpsideDown ? -1.0f : 1.0f);
-				pitch += dxy.y * this.mouseSensitivity * (this.fovy / this.targetFovy) * ((rolledOver && this.invertPitchWhenUpsideDown) ? -1.0f : 1.0f);
+				// The camera inverts these itself while upside-down or rolled over (if enabled):
+				float yaw = actions.getMouseDeltaX() * this.mouseSensitivity * (camera.fovy / this.targetFovy);
+				float pitch = actions.getMouseDeltaY() * this.mouseSensitivity * (camera.fovy / this.targetFovy);
+				this.camera.addLook(yaw, pitch, 0);
 				
-				//if(this.freeLook) {
-				if(Keyboard.isKeyDown(Keys.VK_OPEN_BRACKET)) {
-					roll -= deltaTime * this.mouseSensitivity * (this.fovy / this.targetFovy) * 100.0f;
+				final int scroll = actions.getVerticalScroll();
+				if(scroll != 0) {
+					this.camera.addZoomDistance(-scroll / 3.0f);
 				}
-				if(Keyboard.isKeyDown(Keys.VK_CLOSE_BRACKET)) {
-					roll += deltaTime * this.mouseSensitivity * (this.fovy / this.targetFovy) * 100.0f;
-				}
-				//}
 				
-				if(Keyboard.getKeyDown(Keys.VK_Z)) {
-					this.fovy = this.zoomFovy;
+				if(actions.wasPressed(ACTION_ZOOM)) {
+					this.publishFieldOfView(this.zoomFovy);
 				}
-				if(Keyboard.getKeyUp(Keys.VK_Z)) {
-					this.fovy = this.targetFovy;
+				if(actions.wasReleased(ACTION_ZOOM)) {
+					this.publishFieldOfView(this.targetFovy);
 				}
 				
-				if(Mouse.isButtonDown(Mouse.BUTTON_MIDDLE)) {
-					zDist = 0;
+				if(actions.isActive(ACTION_RESET_ZOOM_DISTANCE)) {
+					this.camera.resetZoomDistance();
 				}
-				if(Keyboard.isKeyDown(Keys.VK_R)) {
-					x = y = z = yaw = pitch = roll = 0;
+				if(actions.isActive(ACTION_RESET_CAMERA)) {
 					this.resetCameraFields();
 				}
 			}
-			
-			yaw = (360.0f + yaw) % 360.0f;
-			pitch = (360.0f + pitch) % 360.0f;
-			roll = (360.0f + roll) % 360.0f;
-			if(!this.freeLook) {
-				pitch = pitch > 90.0f && pitch <= 180.0f ? 90.0f : (pitch < 270.0f && pitch > 180.0f ? 270.0f : pitch);
-				if(roll > 180.0f) {
-					roll -= 360.0f;
-					roll *= 0.95f;
-					roll += 360.0f;
-				} else {
-					roll *= 0.95f;
-				}
-				roll = (360.0f + roll) % 360.0f;
-				roll = Math.abs(roll) < 0.01f || Math.abs(roll) > 359.99f ? 0.0f : roll;
-			}
+			this.camera.setRollSpeed(this.mouseSensitivity * (this.cameraSnapshot.get().fovy / this.targetFovy) * 100.0f).setHeld(held);
 			
 			//Using the stack from the display thread and the GLThread at the same time causes the rendered frame to sometimes flicker about, so we won't do that.
 			//this.modelView = this.stack.modelView(this.x, this.y, this.z, this.yaw, this.pitch, this.roll).peekf();
 			
 			long now = System.currentTimeMillis();
-			if(now - this.lastSecond >= 1000L || (x != this.lastX || y != this.lastY || z != this.lastZ || zDist != this.lastZDist) || (yaw != this.lastYaw || pitch != this.lastPitch || roll != this.lastRoll)) {
+			if(now - this.lastSecond >= 1000L || !camera.isSameView(this.lastPrintedCamera)) {
 				this.lastSecond = now;
-				this.lastX = this.x = x;
-				this.lastY = this.y = y;
-				this.lastZ = this.z = z;
-				this.lastZDist = this.zDist = zDist;
-				this.lastYaw = this.yaw = yaw;
-				this.lastPitch = this.pitch = pitch;
-				this.lastRoll = this.roll = roll;
+				this.lastPrintedCamera = camera;
 				if(this.printCameraInfo) {
 					System.out.println("===================================");
-					System.out.println(String.format("X: %s; Y: %s; Z: %s;", MathUtil.limitDecimalNoRounding(this.x, 4, true), MathUtil.limitDecimalNoRounding(this.y, 4, true), MathUtil.limitDecimalNoRounding(this.z, 4, true)));
+					System.out.println(String.format("X: %s; Y: %s; Z: %s;", MathUtil.limitDecimalNoRounding(camera.x, 4, true), MathUtil.limitDecimalNoRounding(camera.y, 4, true), MathUtil.limitDecimalNoRounding(camera.z, 4, true)));
 					System.out.println("===================================");
-					System.out.println(String.format("Yaw: %s; Pitch: %s; Roll: %s;", MathUtil.limitDecimalNoRounding(this.yaw, 4, true), MathUtil.limitDecimalNoRounding(this.pitch, 4, true), MathUtil.limitDecimalNoRounding(this.roll, 4, true)));
-					System.out.println(GLUtil.matrix4x4ToStringf(this.modelView, 4, true));
+					System.out.println(String.format("Yaw: %s; Pitch: %s; Roll: %s;", MathUtil.limitDecimalNoRounding(camera.yaw, 4, true), MathUtil.limitDecimalNoRounding(camera.pitch, 4, true), MathUtil.limitDecimalNoRounding(camera.roll, 4, true)));
+					System.out.println(GLUtil.matrix4x4ToStringf(camera.getModelView(new float[16]), 4, true));
 				}
 			}
 			
 		}
-		
+		this.profiler.end();
+		if(frame) {
+			this.profiler.endFrame();
+		}
 	}
 	
 	@Override
 	public void update(double deltaTime) {
-		
+		final boolean frame = this.beginOffThreadFrame();
+		this.profiler.begin(this.profileUpdate);
+		if(this.simulationClock != null) {
+			this.simulation.advance(this.simulationTime());
+		}
+		this.profiler.end();
+		if(frame) {
+			this.profiler.endFrame();
+		}
+	}
+	
+	/** Profiler frames must begin and end on the same thread, so
+	 * {@link #input(double)} and {@link #update(double)} time frames of their
+	 * own when they aren't called on the render thread (on the render thread,
+	 * their scopes count towards the next frame that
+	 * {@link #render(double, int, int)} ends).
+	 * 
+	 * @return Whether or not a frame was begun (and must be ended) */
+	private boolean beginOffThreadFrame() {
+		if(this.profiler.getRecorder() == this.renderRecorder) {
+			return false;
+		}
+		this.profiler.beginFrame();
+		return true;
 	}
 	
 	@Override
 	public void onMouseMoved(int deltaX, int deltaY, int oldX, int oldY, int newX, int newY) {
-		if(!this._3D) {
+		this.inputEvents.mouseMoved(deltaX, deltaY);
+		if(!this._3D && Window.getWindow() != null) {
 			if(Mouse.isCaptured()) {
 				this.mx = Math.min(Window.getWindow().getWidth(), Math.max(0, this.mx + deltaX));
 				this.my = Math.min(Window.getWindow().getHeight(), Math.max(0, this.my - deltaY));
@@ -980,19 +1284,12 @@ public class TestGame implements Game, MenuProvider {
 	
 	@Override
 	public void onMouseScroll(boolean vertical, int count) {
-		if(Window.getWindow().getActiveRenderer() != this) {
-			return;
-		}
-		if(this._3D && Mouse.isCaptured() && Mouse.shouldIListenToClickEvents()) {
-			if(vertical) {
-				this.zDist -= count / 3.0f;
-			}
-		}
+		this.inputEvents.mouseScroll(vertical, count);
 	}
 	
 	@Override
 	public void onMouseButtonDown(int button) {
-		
+		this.inputEvents.buttonDown(button);
 	}
 	
 	@Override
@@ -1002,7 +1299,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	@Override
 	public void onMouseButtonUp(int button) {
-		
+		this.inputEvents.buttonUp(button);
 	}
 	
 	@Override
@@ -1012,7 +1309,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	@Override
 	public void onKeyDown(int key) {
-		
+		this.inputEvents.keyDown(key);
 	}
 	
 	@Override
@@ -1022,7 +1319,7 @@ public class TestGame implements Game, MenuProvider {
 	
 	@Override
 	public void onKeyUp(int key) {
-		
+		this.inputEvents.keyUp(key);
 	}
 	
 	@Override
@@ -1041,7 +1338,7 @@ public class TestGame implements Game, MenuProvider {
 			ControllerManager manager = Window.getWindow().getControllerManager();
 			if(controller == manager.getController1()) {
 				if(button == SDL.SDL_CONTROLLER_BUTTON_DPAD_UP) {
-					this.fovy = this.zoomFovy;
+					this.publishFieldOfView(this.zoomFovy);
 				}
 				
 			}
@@ -1066,14 +1363,15 @@ public class TestGame implements Game, MenuProvider {
 				}
 				if(button == SDL.SDL_CONTROLLER_BUTTON_LEFTSHOULDER || button == SDL.SDL_CONTROLLER_BUTTON_RIGHTSHOULDER) {
 					//if(this.freeLook) {
-					float roll = this.roll;
+					final float fovy = this.cameraSnapshot.get().fovy;
+					float roll = 0;
 					if(button == SDL.SDL_CONTROLLER_BUTTON_LEFTSHOULDER) {
-						roll -= deltaTime * this.mouseSensitivity * (this.fovy / this.targetFovy) * 100.0f;
+						roll -= deltaTime * this.mouseSensitivity * (fovy / this.targetFovy) * 100.0f;
 					}
 					if(button == SDL.SDL_CONTROLLER_BUTTON_RIGHTSHOULDER) {
-						roll += deltaTime * this.mouseSensitivity * (this.fovy / this.targetFovy) * 100.0f;
+						roll += deltaTime * this.mouseSensitivity * (fovy / this.targetFovy) * 100.0f;
 					}
-					this.lastRoll = this.roll = (360.0f + roll) % 360.0f;
+					this.camera.addLook(0, 0, roll);
 					//}
 				}
 				
@@ -1101,7 +1399,7 @@ public class TestGame implements Game, MenuProvider {
 			ControllerManager manager = Window.getWindow().getControllerManager();
 			if(controller == manager.getController1()) {
 				if(button == SDL.SDL_CONTROLLER_BUTTON_DPAD_UP) {
-					this.fovy = this.targetFovy;
+					this.publishFieldOfView(this.targetFovy);
 				}
 				
 			}
@@ -1139,8 +1437,7 @@ public class TestGame implements Game, MenuProvider {
 		if(Window.getWindow().isVisible()) {
 			ControllerManager manager = Window.getWindow().getControllerManager();
 			if(controller == manager.getController1()) {
-				final boolean upsideDown = this.isCameraUpsideDown();
-				final boolean rolledOver = this.roll > 90.0f && this.roll < 270.0f;//this.modelView[4] != 0.0f;
+				final CameraSnapshot camera = this.cameraSnapshot.get();
 				
 				if(axis == SDL.SDL_CONTROLLER_AXIS_LEFTX) {
 					this.moveRight(deltaTime * value);
@@ -1150,22 +1447,15 @@ public class TestGame implements Game, MenuProvider {
 				}
 				
 				if(axis == SDL.SDL_CONTROLLER_AXIS_RIGHTX || axis == SDL.SDL_CONTROLLER_AXIS_RIGHTY) {
-					float yaw = this.yaw, pitch = this.pitch;
+					float yaw = 0, pitch = 0;
 					
 					if(axis == SDL.SDL_CONTROLLER_AXIS_RIGHTX) {
-						yaw += value * this.mouseSensitivity * (this.fovy / this.targetFovy) * (upsideDown && this.invertYawWhenUpsideDown ? -1.0f : 1.0f) * 625.0f * deltaTime;
+						yaw += value * this.mouseSensitivity * (camera.fovy / this.targetFovy) * 625.0f * deltaTime;
 					}
 					if(axis == SDL.SDL_CONTROLLER_AXIS_RIGHTY) {
-						pitch += value * this.mouseSensitivity * (this.fovy / this.targetFovy) * (upsideDown && rolledOver && this.invertPitchWhenUpsideDown ? -1.0f : 1.0f) * 625.0f * deltaTime;
-					}
-					
-					yaw = (360.0f + yaw) % 360.0f;
-					pitch = (360.0f + pitch) % 360.0f;
-					if(!this.freeLook) {
-						pitch = pitch > 90.0f && pitch <= 180.0f ? 90.0f : (pitch < 270.0f && pitch > 180.0f ? 270.0f : pitch);
+						pitch += value * this.mouseSensitivity * (camera.fovy / this.targetFovy) * 625.0f * deltaTime;
 					}
-					this.lastYaw = this.yaw = yaw;
-					this.lastPitch = this.pitch = pitch;
+					this.camera.addLook(yaw, pitch, 0);
 				}
 				
 			}
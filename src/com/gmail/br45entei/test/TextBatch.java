@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** Draws the text of a {@link HudText} with a {@link GlyphAtlas}, as a single
+ * vertex buffer of textured quads and a single draw call.<br>
+ * <br>
+ * Every line has a fixed slot of {@link #getMaxLineLength()} quads in the
+ * vertex buffer (one per character; characters without pixels, and the rest
+ * of the slot, are empty quads). That way a line can be rebuilt without
+ * moving any other line, so only the lines that the {@link HudText} reports
+ * as {@link HudText#isLineDirty(int) dirty} are rebuilt, and only the runs of
+ * consecutive rebuilt lines are re-uploaded (with
+ * {@link GLBackend#glBufferSubData(int, long, ByteBuffer)}).<br>
+ * <br>
+ * {@link #update(HudText, GlyphAtlas, float, float, float, float, float)} must
+ * be called after every frame of the text (i.e. after every
+ * {@link HudText#end()}), since the text's dirty lines are only known until
+ * its next frame begins.
+ * 
+ * <pre>
+ * hud.begin();
+ * ...
+ * hud.end();
+ * textBatch.update(hud, glyphs, 0, height, 1, 1, 1);
+ * textBatch.draw(gl);
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextBatch {
+	
+	/** The size of a vertex, in bytes: the x and y position and the u and v
+	 * texture coordinates as floats, followed by the RGBA color as unsigned
+	 * bytes */
+	public static final int VERTEX_SIZE = (4 * Float.BYTES) + 4;
+	/** The number of vertices that make up a glyph's quad */
+	public static final int VERTICES_PER_GLYPH = 4;
+	/** The size of a glyph's quad, in bytes */
+	public static final int GLYPH_SIZE = VERTICES_PER_GLYPH * VERTEX_SIZE;
+	
+	private final int maxLines, maxLineLength;
+	private final ByteBuffer vertices;
+	/** The number of quads that have been written into each line's slot */
+	private final int[] lineGlyphs;
+	/** Whether or not each line has been rebuilt since it was last uploaded */
+	private final boolean[] dirty;
+	private int lineCount = 0;
+	
+	private GlyphAtlas glyphs = null;
+	private float x, y;
+	private int rgba;
+	
+	private int vbo = 0;
+	private long rebuiltLines = 0L;
+	private long uploadedRuns = 0L;
+	
+	/** Creates a new TextBatch.
+	 * 
+	 * @param maxLines The maximum number of lines to draw
+	 * @param maxLineLength The maximum number of characters to draw per
+	 *            line */
+	public TextBatch(int maxLines, int maxLineLength) {
+		if(maxLines <= 0 || maxLineLength <= 0) {
+			throw new IllegalArgumentException(String.format("Invalid TextBatch dimensions: %s lines of %s characters", Integer.toString(maxLines), Integer.toString(maxLineLength)));
+		}
+		this.maxLines = maxLines;
+		this.maxLineLength = maxLineLength;
+		this.vertices = ByteBuffer.allocateDirect(maxLines * maxLineLength * GLYPH_SIZE).order(ByteOrder.nativeOrder());
+		this.lineGlyphs = new int[maxLines];
+		this.dirty = new boolean[maxLines];
+	}
+	
+	private static final int toByte(float value) {
+		return value <= 0.0f ? 0 : (value >= 1.0f ? 255 : (int) ((value * 255.0f) + 0.5f));
+	}
+	
+	/** Rebuilds the quads of the lines of the given text that changed.<br>
+	 * This does not require a GL context.
+	 * 
+	 * @param text The text to draw
+	 * @param glyphs The glyphs to draw the text with
+	 * @param x The left edge of the text, in pixels
+	 * @param y The top edge of the text, in pixels (the text runs downwards,
+	 *            towards smaller y values)
+	 * @param red The red component of the text's color
+	 * @param green The green component of the text's color
+	 * @param blue The blue component of the text's color
+	 * @return The number of lines that were rebuilt */
+	public int update(HudText text, GlyphAtlas glyphs, float x, float y, float red, float green, float blue) {
+		final int r = toByte(red), g = toByte(green), b = toByte(blue);
+		final int rgba = this.vertices.order() == ByteOrder.LITTLE_ENDIAN ? (0xFF << 24) | (b << 16) | (g << 8) | r : (r << 24) | (g << 16) | (b << 8) | 0xFF;
+		// Moving or re-coloring the text, or changing its font, changes every line:
+		final boolean relayout = glyphs != this.glyphs || x != this.x || y != this.y || rgba != this.rgba;
+		this.glyphs = glyphs;
+		this.x = x;
+		this.y = y;
+		this.rgba = rgba;
+		
+		final int lines = Math.min(text.getLineCount(), this.maxLines);
+		int rebuilt = 0;
+		for(int line = 0; line < lines; line++) {
+			// Lines that weren't drawn last time may still hold the glyphs they had before that:
+			if(relayout || line >= this.lineCount || text.isLineDirty(line)) {
+				this.rebuild(line, text.getLineChars(line), Math.min(text.getLineLength(line), this.maxLineLength));
+				rebuilt++;
+			}
+		}
+		this.lineCount = lines;
+		this.rebuiltLines += rebuilt;
+		return rebuilt;
+	}
+	
+	private void rebuild(int line, char[] chars, int length) {
+		final ByteBuffer buf = this.vertices;
+		final GlyphAtlas glyphs = this.glyphs;
+		final int[] rects = glyphs.getAtlas().getRects();
+		final float[] uvs = glyphs.getAtlas().getUVs();
+		final float baseline = this.y - glyphs.getAscent() - (line * glyphs.getLineHeight());
+		float pen = this.x;
+		int offset = line * this.maxLineLength * GLYPH_SIZE;
+		for(int i = 0; i < length; i++) {
+			final int glyph = GlyphAtlas.getGlyph(chars[i]), frame = glyphs.getFrame(glyph);
+			if(frame < 0) {
+				clear(buf, offset);
+			} else {
+				// Snap to whole pixels, so that the glyphs stay crisp with nearest filtering:
+				final float x0 = Math.round(pen) + glyphs.getOffsetX(glyph), x1 = x0 + rects[(frame * TextureAtlas.RECT_STRIDE) + 2];
+				final float y0 = Math.round(baseline) - glyphs.getOffsetY(glyph), y1 = y0 - rects[(frame * TextureAtlas.RECT_STRIDE) + 3];
+				final int uv = frame * TextureAtlas.UV_STRIDE;
+				final float u0 = uvs[uv], v0 = uvs[uv + 1], u1 = uvs[uv + 2], v1 = uvs[uv + 3];
+				// Counter-clockwise, starting at the top-left corner (the atlas' first row is the top of the glyph):
+				this.vertex(offset, x0, y0, u0, v0);
+				this.vertex(offset + VERTEX_SIZE, x0, y1, u0, v1);
+				this.vertex(offset + (VERTEX_SIZE * 2), x1, y1, u1, v1);
+				this.vertex(offset + (VERTEX_SIZE * 3), x1, y0, u1, v0);
+			}
+			pen += glyphs.getAdvance(glyph);
+			offset += GLYPH_SIZE;
+		}
+		for(int i = length; i < this.lineGlyphs[line]; i++) {
+			clear(buf, offset);
+			offset += GLYPH_SIZE;
+		}
+		this.lineGlyphs[line] = length;
+		this.dirty[line] = true;
+	}
+	
+	private void vertex(int offset, float x, float y, float u, float v) {
+		final ByteBuffer buf = this.vertices;
+		buf.putFloat(offset, x);
+		buf.putFloat(offset + 4, y);
+		buf.putFloat(offset + 8, u);
+		buf.putFloat(offset + 12, v);
+		buf.putInt(offset + 16, this.rgba);
+	}
+	
+	/** Turns the quad at the given offset into an empty one. */
+	private static final void clear(ByteBuffer buf, int offset) {
+		for(int i = 0; i < GLYPH_SIZE; i += Long.BYTES) {
+			buf.putLong(offset + i, 0L);
+		}
+	}
+	
+	/** Uploads the lines that were rebuilt since the last draw and draws the
+	 * text with a single draw call.<br>
+	 * Blending is enabled with {@link GL11#GL_SRC_ALPHA} and
+	 * {@link GL11#GL_ONE_MINUS_SRC_ALPHA}, the glyphs' texture is left bound
+	 * and texturing and blending are disabled again afterwards.
+	 * 
+	 * @param gl The GL backend to draw with */
+	public void draw(GLBackend gl) {
+		if(this.lineCount == 0 || this.glyphs == null) {
+			return;
+		}
+		final int texture = this.glyphs.upload(gl);
+		if(this.vbo == 0) {
+			this.vbo = gl.glGenBuffers();
+			gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo);
+			gl.glBufferData(GL15.GL_ARRAY_BUFFER, this.vertices.capacity(), GL15.GL_DYNAMIC_DRAW);
+		} else {
+			gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, this.vbo);
+		}
+		this.uploadDirtyRuns(gl);
+		
+		gl.glEnable(GL11.GL_TEXTURE_2D);
+		gl.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+		gl.glEnable(GL11.GL_BLEND);
+		gl.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		gl.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		gl.glEnableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glVertexPointer(2, GL11.GL_FLOAT, VERTEX_SIZE, 0L);
+		gl.glTexCoordPointer(2, GL11.GL_FLOAT, VERTEX_SIZE, 2L * Float.BYTES);
+		gl.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, VERTEX_SIZE, 4L * Float.BYTES);
+		
+		gl.glDrawArrays(GL11.GL_QUADS, 0, this.lineCount * this.maxLineLength * VERTICES_PER_GLYPH);
+		
+		gl.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		gl.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glDisable(GL11.GL_BLEND);
+		gl.glDisable(GL11.GL_TEXTURE_2D);
+		gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+	}
+	
+	/** Uploads each run of consecutive rebuilt lines with one call. */
+	private void uploadDirtyRuns(GLBackend gl) {
+		final int lineBytes = this.maxLineLength * GLYPH_SIZE;
+		final ByteBuffer run = this.vertices.duplicate().order(this.vertices.order());
+		for(int line = 0; line < this.lineCount; line++) {
+			if(!this.dirty[line]) {
+				continue;
+			}
+			final int first = line;
+			while(line < this.lineCount && this.dirty[line]) {
+				this.dirty[line++] = false;
+			}
+			run.limit(line * lineBytes).position(first * lineBytes);
+			gl.glBufferSubData(GL15.GL_ARRAY_BUFFER, first * (long) lineBytes, run);
+			this.uploadedRuns++;
+		}
+	}
+	
+	/** Deletes this batch's vertex buffer. The glyph atlas' texture is shared,
+	 * and is not deleted.
+	 * 
+	 * @param gl The GL backend to delete the buffer with */
+	public void destroy(GLBackend gl) {
+		if(this.vbo != 0) {
+			gl.glDeleteBuffers(this.vbo);
+			this.vbo = 0;
+		}
+		this.lineCount = 0;
+		this.glyphs = null;
+	}
+	
+	/** @return The maximum number of lines that this batch draws */
+	public int getMaxLines() {
+		return this.maxLines;
+	}
+	
+	/** @return The maximum number of characters per line that this batch
+	 *         draws */
+	public int getMaxLineLength() {
+		return this.maxLineLength;
+	}
+	
+	/** @return The number of lines that the next draw will draw */
+	public int getLineCount() {
+		return this.lineCount;
+	}
+	
+	/** @return The number of vertices that the next draw will submit
+	 *         (including those of empty quads) */
+	public int getVertexCount() {
+		return this.lineCount * this.maxLineLength * VERTICES_PER_GLYPH;
+	}
+	
+	/** @return This batch's vertex data (see {@link #VERTEX_SIZE}); line
+	 *         {@code n} starts at byte
+	 *         {@code n * getMaxLineLength() * GLYPH_SIZE}. Do not modify. */
+	public ByteBuffer getVertices() {
+		return this.vertices.duplicate().order(this.vertices.order());
+	}
+	
+	/** @return The total number of lines that have been rebuilt */
+	public long getRebuiltLineCount() {
+		return this.rebuiltLines;
+	}
+	
+	/** @return The total number of runs of lines that have been uploaded */
+	public long getUploadedRunCount() {
+		return this.uploadedRuns;
+	}
+	
+}
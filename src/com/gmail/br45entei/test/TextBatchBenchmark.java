@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.GL11;
+
+/** Headless test and benchmark of {@link GlyphAtlas} and {@link TextBatch}.<br>
+ * The quads that a batch builds for known text are checked against the
+ * atlas' metrics and texture coordinates, and the batch is checked to
+ * re-upload only the runs of lines that changed, with a single draw call per
+ * frame. Then {@link TestGame}'s overlay is drawn with the batch and with a
+ * model of the per-glyph path ({@link com.gmail.br45entei.game.graphics.FontRender}
+ * itself needs a GL context: a texture bind and an immediate-mode quad per
+ * glyph), both through a {@link RecordingGLBackend}, comparing glyphs drawn
+ * per millisecond and GL calls per frame.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextBatchBenchmark {
+	
+	private static final boolean isEmpty(ByteBuffer vertices, int offset) {
+		for(int i = 0; i < TextBatch.GLYPH_SIZE; i++) {
+			if(vertices.get(offset + i) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/** Checks that the quads of the given line match the glyphs of the given
+	 * text, and that the rest of the line's slot is empty. */
+	static final void verifyLine(TextBatch batch, GlyphAtlas glyphs, int line, String text, float x, float y) {
+		final ByteBuffer vertices = batch.getVertices();
+		final int[] rects = glyphs.getAtlas().getRects();
+		final float[] uvs = glyphs.getAtlas().getUVs();
+		final float baseline = Math.round(y - glyphs.getAscent() - (line * glyphs.getLineHeight()));
+		float pen = x;
+		for(int i = 0; i < batch.getMaxLineLength(); i++) {
+			final int offset = ((line * batch.getMaxLineLength()) + i) * TextBatch.GLYPH_SIZE;
+			final int glyph = i < text.length() ? GlyphAtlas.getGlyph(text.charAt(i)) : -1;
+			final int frame = glyph < 0 ? -1 : glyphs.getFrame(glyph);
+			if(frame < 0) {
+				MicroBenchmark.check(isEmpty(vertices, offset), String.format("Character %s of line %s should be an empty quad", Integer.toString(i), Integer.toString(line)));
+			} else {
+				final float left = Math.round(pen) + glyphs.getOffsetX(glyph), top = baseline - glyphs.getOffsetY(glyph);
+				final float right = left + rects[(frame * TextureAtlas.RECT_STRIDE) + 2], bottom = top - rects[(frame * TextureAtlas.RECT_STRIDE) + 3];
+				final int uv = frame * TextureAtlas.UV_STRIDE;
+				final float[] expected = {left, top, uvs[uv], uvs[uv + 1], left, bottom, uvs[uv], uvs[uv + 3], right, bottom, uvs[uv + 2], uvs[uv + 3], right, top, uvs[uv + 2], uvs[uv + 1]};
+				for(int v = 0; v < TextBatch.VERTICES_PER_GLYPH; v++) {
+					for(int f = 0; f < 4; f++) {
+						MicroBenchmark.check(vertices.getFloat(offset + (v * TextBatch.VERTEX_SIZE) + (f * Float.BYTES)) == expected[(v * 4) + f], String.format("Vertex %s of '%s' (line %s) is wrong", Integer.toString(v), Character.toString(text.charAt(i)), Integer.toString(line)));
+					}
+				}
+			}
+			if(glyph >= 0) {
+				pen += glyphs.getAdvance(glyph);
+			}
+		}
+	}
+	
+	/** Draws the given text the way that a font with a texture per glyph does:
+	 * a bind and an immediate-mode quad per glyph (with texture coordinates
+	 * that this backend can not record). */
+	static final int drawPerGlyph(GLBackend gl, GlyphAtlas glyphs, CharSequence text, float x, float y) {
+		int drawn = 0;
+		float penX = x, penY = y - glyphs.getAscent();
+		gl.glEnable(GL11.GL_TEXTURE_2D);
+		gl.glEnable(GL11.GL_BLEND);
+		gl.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		for(int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if(c == '\n') {
+				penX = x;
+				penY -= glyphs.getLineHeight();
+				continue;
+			}
+			final int glyph = GlyphAtlas.getGlyph(c), frame = glyphs.getFrame(glyph);
+			if(c != '\r' && frame >= 0) {
+				final int r = frame * TextureAtlas.RECT_STRIDE;
+				final float left = penX + glyphs.getOffsetX(glyph), top = penY - glyphs.getOffsetY(glyph);
+				final float right = left + glyphs.getAtlas().getRects()[r + 2], bottom = top - glyphs.getAtlas().getRects()[r + 3];
+				gl.glBindTexture(GL11.GL_TEXTURE_2D, 1 + glyph);
+				gl.glColor3f(1, 1, 1);
+				gl.glBegin(GL11.GL_QUADS);
+				gl.glVertex2f(left, top);
+				gl.glVertex2f(left, bottom);
+				gl.glVertex2f(right, bottom);
+				gl.glVertex2f(right, top);
+				gl.glEnd();
+				drawn++;
+			}
+			if(c != '\r') {
+				penX += glyphs.getAdvance(glyph);
+			}
+		}
+		gl.glDisable(GL11.GL_BLEND);
+		gl.glDisable(GL11.GL_TEXTURE_2D);
+		return drawn;
+	}
+	
+	/** @param args Program command line arguments */
+	public static final void main(String[] args) {
+		final GlyphAtlas glyphs = GlyphAtlas.get("Consolas", 12, false, false);
+		System.out.println(glyphs);
+		MicroBenchmark.check(GlyphAtlas.get("Consolas", 12, false, false) == glyphs, "Atlases should be cached per font");
+		MicroBenchmark.check(glyphs.getFrame(GlyphAtlas.getGlyph(' ')) < 0 && glyphs.getFrame(GlyphAtlas.getGlyph('A')) >= 0, "Spaces have no pixels, letters do");
+		MicroBenchmark.check(GlyphAtlas.getGlyph('é') == GlyphAtlas.getGlyph(GlyphAtlas.REPLACEMENT_CHAR), "Unsupported characters are replaced");
+		TextureAtlasBenchmark.verifyLayout(glyphs.getAtlas(), widthsOf(glyphs), heightsOf(glyphs));
+		
+		// Quads for known text:
+		final HudText text = new HudText(8, 32).setLineSeparator("\n");
+		final TextBatch batch = new TextBatch(8, 32);
+		final RecordingGLBackend gl = new RecordingGLBackend();
+		final String[] lines = {"Hello, World!", "gjpqy ~|", "", "x = 1.25;"};
+		text.begin();
+		for(String line : lines) {
+			text.append(line).endLine();
+		}
+		text.end();
+		MicroBenchmark.check(batch.update(text, glyphs, 10, 300, 1, 0, 0) == lines.length, "Every line is new");
+		for(int line = 0; line < lines.length; line++) {
+			verifyLine(batch, glyphs, line, lines[line], 10, 300);
+		}
+		final ByteBuffer vertices = batch.getVertices();
+		MicroBenchmark.check((vertices.get(16) & 0xFF) == 0xFF && vertices.get(17) == 0 && vertices.get(18) == 0 && (vertices.get(19) & 0xFF) == 0xFF, "Colors should be stored as RGBA bytes");
+		glyphs.upload(gl);// (the atlas' texture is only uploaded once, by whichever batch draws first)
+		gl.reset();
+		batch.draw(gl);
+		MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.DRAW_ARRAYS) == 1 && gl.getDrawCalls() == 1, "A batch is drawn with a single draw call");
+		MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.BUFFER_SUB_DATA) == 1 && gl.getBytesUploaded() == lines.length * 32L * TextBatch.GLYPH_SIZE, "The first frame uploads every line at once");
+		MicroBenchmark.check(gl.getVerticesDrawn() == batch.getVertexCount(), "Every line's slot is drawn");
+		
+		// Only the lines that changed are re-uploaded, one run of adjacent lines at a time:
+		final String[][] frames = {//
+				{"Hello, World!", "gjpqy ~|", "", "x = 1.25;"},// nothing changed
+				{"Hello, World?", "gjpqy ~|", "", "x = 1.25;"},// one line
+				{"Hello, World?", "gjpqy ~", "?", "x = 1.25;"},// two adjacent lines, the first one shorter
+				{"Hi", "gjpqy ~", "?", "x = 1.5;"},// two separate lines
+				{"Hi", "gjpqy ~", "?", "x = 1.5;", "more"},// a new line
+				{"Hi", "gjpqy ~"},// fewer lines
+				{"Hi", "gjpqy ~", "?", "x = 1.5;"}// lines that come back must be rebuilt
+		};
+		final int[] expectedLines = {0, 1, 2, 2, 1, 0, 2}, expectedRuns = {0, 1, 1, 2, 1, 0, 1};
+		for(int f = 0; f < frames.length; f++) {
+			text.begin();
+			for(String line : frames[f]) {
+				text.append(line).endLine();
+			}
+			text.end();
+			gl.reset();
+			final int rebuilt = batch.update(text, glyphs, 10, 300, 1, 0, 0);
+			batch.draw(gl);
+			MicroBenchmark.check(rebuilt == expectedLines[f], String.format("Frame %s: expected %s lines to be rebuilt, got %s", Integer.toString(f), Integer.toString(expectedLines[f]), Integer.toString(rebuilt)));
+			MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.BUFFER_SUB_DATA) == expectedRuns[f], String.format("Frame %s: expected %s uploads", Integer.toString(f), Integer.toString(expectedRuns[f])));
+			MicroBenchmark.check(gl.getBytesUploaded() == expectedLines[f] * 32L * TextBatch.GLYPH_SIZE, String.format("Frame %s: only the changed lines should be uploaded", Integer.toString(f)));
+			MicroBenchmark.check(gl.getDrawCalls() == 1 && batch.getLineCount() == frames[f].length, String.format("Frame %s: one draw call for every line", Integer.toString(f)));
+			for(int line = 0; line < frames[f].length; line++) {
+				verifyLine(batch, glyphs, line, frames[f][line], 10, 300);
+			}
+		}
+		gl.reset();
+		batch.update(text, glyphs, 10, 280, 1, 0, 0);
+		batch.draw(gl);
+		MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.BUFFER_SUB_DATA) == 1 && gl.getBytesUploaded() == 4L * 32L * TextBatch.GLYPH_SIZE, "Moving the text rebuilds every line");
+		verifyLine(batch, glyphs, 3, "x = 1.5;", 10, 280);
+		batch.destroy(gl);
+		System.out.println("Quads, partial uploads and draw calls are correct.");
+		
+		// TestGame's overlay; only its first line changes from frame to frame:
+		final HudText hud = new HudText(48, 160).setLineSeparator("\n");
+		final TextBatch hudBatch = new TextBatch(48, 160);
+		final RecordingGLBackend batchGL = new RecordingGLBackend(), glyphGL = new RecordingGLBackend();
+		final int warmup = 2000, frameCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		long glyphCount = 0L, perGlyphNanos = 0L, batchedNanos = 0L, drawn = 0L;
+		for(int frame = -warmup; frame < frameCount; frame++) {
+			if(frame == 0) {
+				batchGL.reset();
+				glyphGL.reset();
+			}
+			// Only the drawing is timed, not the building of the text:
+			final String string = HudTextBenchmark.buildHud(hud, frame);
+			long start = System.nanoTime();
+			drawn += drawPerGlyph(glyphGL, glyphs, string, 0, 600);
+			final long perGlyph = System.nanoTime() - start;
+			start = System.nanoTime();
+			hudBatch.update(hud, glyphs, 0, 600, 1, 1, 1);
+			hudBatch.draw(batchGL);
+			final long batched = System.nanoTime() - start;
+			if(frame >= 0) {
+				perGlyphNanos += perGlyph;
+				batchedNanos += batched;
+				for(int i = 0; i < hud.length(); i++) {
+					glyphCount += glyphs.getFrame(GlyphAtlas.getGlyph(hud.charAt(i))) >= 0 && hud.charAt(i) > ' ' ? 1 : 0;
+				}
+			}
+		}
+		MicroBenchmark.consume(drawn);
+		System.out.println(String.format("%.1f glyphs per frame: %.0f glyphs/ms with a draw per glyph (%.1f us per frame), %.0f glyphs/ms with TextBatch (%.1f us per frame): %.1fx", Double.valueOf(glyphCount / (double) frameCount), Double.valueOf((glyphCount * 1.0E6) / perGlyphNanos), Double.valueOf(perGlyphNanos / 1.0E3 / frameCount), Double.valueOf((glyphCount * 1.0E6) / batchedNanos), Double.valueOf(batchedNanos / 1.0E3 / frameCount), Double.valueOf(perGlyphNanos / (double) batchedNanos)));
+		System.out.println(String.format("Draw calls per frame: %.1f vs %.1f; GL calls per frame: %.1f vs %.1f; TextBatch bytes uploaded per frame: %.0f (of %s)", Double.valueOf(glyphGL.getDrawCalls() / (double) frameCount), Double.valueOf(batchGL.getDrawCalls() / (double) frameCount), Double.valueOf(glyphGL.getTotalCalls() / (double) frameCount), Double.valueOf(batchGL.getTotalCalls() / (double) frameCount), Double.valueOf(batchGL.getBytesUploaded() / (double) frameCount), Integer.toString(hud.getLineCount() * hudBatch.getMaxLineLength() * TextBatch.GLYPH_SIZE)));
+		MicroBenchmark.check(batchGL.getDrawCalls() == frameCount, "TextBatch should draw the overlay with one draw call per frame");
+		MicroBenchmark.check(glyphGL.getDrawCalls() == glyphCount, "The per-glyph path draws every glyph separately");
+		MicroBenchmark.check(batchGL.getBytesUploaded() < frameCount * (long) hud.getLineCount() * hudBatch.getMaxLineLength() * TextBatch.GLYPH_SIZE, "Only the overlay's changing lines should be uploaded");
+	}
+	
+	private static final int[] widthsOf(GlyphAtlas glyphs) {
+		final int[] widths = new int[glyphs.getAtlas().getFrameCount()];
+		for(int i = 0; i < widths.length; i++) {
+			widths[i] = glyphs.getAtlas().getRects()[(i * TextureAtlas.RECT_STRIDE) + 2];
+		}
+		return widths;
+	}
+	
+	private static final int[] heightsOf(GlyphAtlas glyphs) {
+		final int[] heights = new int[glyphs.getAtlas().getFrameCount()];
+		for(int i = 0; i < heights.length; i++) {
+			heights[i] = glyphs.getAtlas().getRects()[(i * TextureAtlas.RECT_STRIDE) + 3];
+		}
+		return heights;
+	}
+	
+}
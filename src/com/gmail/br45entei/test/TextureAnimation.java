@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.AnimatedTexture;
+
+import org.lwjgl.opengl.GL11;
+
+/** An animation made up of a sequence of GL textures, one per frame, or of
+ * the frames packed into a single {@link TextureAtlas}.<br>
+ * This works the same way as {@link AnimatedTexture}, but refers to its frames
+ * by GL texture name, so that it can be used with textures loaded through a
+ * {@link TextureLoadPipeline}.<br>
+ * <br>
+ * When the frames are packed into an atlas, the atlas' texture stays bound
+ * and changing frames only changes the texture matrix, which maps the
+ * {@code [0, 1]} texture coordinates of whatever is drawn onto the current
+ * frame. Call {@link #unbind(GLBackend)} once done drawing with the
+ * animation to reset the texture matrix.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureAnimation {
+	
+	/** The default amount of time each frame is shown for, in milliseconds */
+	public static final double DEFAULT_FRAME_TIME = 50.0;
+	
+	private static final float[] IDENTITY = new float[16];
+	
+	static {
+		FloatMatrixStack.setIdentity(IDENTITY, 0);
+	}
+	
+	private final int[] textures;
+	private final TextureAtlas atlas;
+	private final float[] textureMatrix;
+	private volatile double frameTime;
+	private volatile double elapsedTime = 0.0;
+	private volatile int frame = 0;
+	
+	/** Creates a new TextureAnimation that shows each frame for
+	 * {@link #DEFAULT_FRAME_TIME} milliseconds.
+	 * 
+	 * @param textures The names of the textures to show, in order */
+	public TextureAnimation(int... textures) {
+		this(DEFAULT_FRAME_TIME, textures);
+	}
+	
+	/** Creates a new TextureAnimation.
+	 * 
+	 * @param frameTime The amount of time each frame is shown for, in
+	 *            milliseconds
+	 * @param textures The names of the textures to show, in order */
+	public TextureAnimation(double frameTime, int... textures) {
+		if(textures.length == 0) {
+			throw new IllegalArgumentException("An animation needs at least one frame!");
+		}
+		this.textures = textures;
+		this.atlas = null;
+		this.textureMatrix = null;
+		this.frameTime = frameTime;
+	}
+	
+	/** Creates a new TextureAnimation that shows the frames of the given
+	 * atlas in order.
+	 * 
+	 * @param frameTime The amount of time each frame is shown for, in
+	 *            milliseconds
+	 * @param atlas The atlas containing the frames. Its texture must have
+	 *            been uploaded. */
+	public TextureAnimation(double frameTime, TextureAtlas atlas) {
+		if(atlas.getFrameCount() == 0) {
+			throw new IllegalArgumentException("An animation needs at least one frame!");
+		}
+		this.textures = null;
+		this.atlas = atlas;
+		this.textureMatrix = new float[16];
+		this.frameTime = frameTime;
+	}
+	
+	/** @return The atlas this animation's frames are packed into, or
+	 *         {@code null} if each frame is a separate texture */
+	public TextureAtlas getAtlas() {
+		return this.atlas;
+	}
+	
+	/** @return The number of frames in this animation */
+	public int getFrameCount() {
+		return this.atlas != null ? this.atlas.getFrameCount() : this.textures.length;
+	}
+	
+	/** @return The index of the frame that is currently shown */
+	public int getFrame() {
+		return this.frame;
+	}
+	
+	/** @return The name of the texture that is currently shown (the atlas'
+	 *         texture, if the frames are packed into one) */
+	public int getTexture() {
+		return this.atlas != null ? this.atlas.getTexture() : this.textures[this.frame];
+	}
+	
+	/** Advances this animation by the given amount of time.
+	 * 
+	 * @param deltaTime The time since the last update, in seconds
+	 * @return This TextureAnimation */
+	public TextureAnimation update(double deltaTime) {
+		final double frameTime = this.frameTime;
+		final int frameCount = this.getFrameCount();
+		if(frameTime <= 0.0) {
+			this.frame = (this.frame + 1) % frameCount;
+			return this;
+		}
+		double elapsedTime = this.elapsedTime + (deltaTime * 1000.0);
+		final int frames = (int) (elapsedTime / frameTime);
+		if(frames > 0) {
+			elapsedTime -= frames * frameTime;
+			this.frame = (int) ((this.frame + (long) frames) % frameCount);
+		}
+		this.elapsedTime = elapsedTime;
+		return this;
+	}
+	
+	/** Advances this animation and then binds the current frame's texture to
+	 * {@link GL11#GL_TEXTURE_2D}. If the frames are packed into an atlas, the
+	 * atlas is bound instead and the texture matrix is set to the current
+	 * frame's region of it (leaving {@link GL11#GL_MODELVIEW} as the current
+	 * matrix mode).
+	 * 
+	 * @param gl The GL backend to bind the texture with
+	 * @param deltaTime The time since the last frame, in seconds */
+	public void bind(GLBackend gl, double deltaTime) {
+		gl.glBindTexture(GL11.GL_TEXTURE_2D, this.update(deltaTime).getTexture());
+		if(this.atlas != null) {
+			gl.glMatrixMode(GL11.GL_TEXTURE);
+			gl.glLoadMatrixf(this.atlas.getTextureMatrix(this.frame, this.textureMatrix));
+			gl.glMatrixMode(GL11.GL_MODELVIEW);
+		}
+	}
+	
+	/** Resets the texture matrix if this animation's frames are packed into
+	 * an atlas. Does nothing otherwise.
+	 * 
+	 * @param gl The GL backend to reset the texture matrix with */
+	public void unbind(GLBackend gl) {
+		if(this.atlas != null) {
+			gl.glMatrixMode(GL11.GL_TEXTURE);
+			gl.glLoadMatrixf(IDENTITY);
+			gl.glMatrixMode(GL11.GL_MODELVIEW);
+		}
+	}
+	
+	/** Deletes all of this animation's textures.
+	 * 
+	 * @param gl The GL backend to delete the textures with */
+	public void destroy(GLBackend gl) {
+		if(this.atlas != null) {
+			this.atlas.destroy(gl);
+			return;
+		}
+		for(int texture : this.textures) {
+			if(texture != 0) {
+				gl.glDeleteTextures(texture);
+			}
+		}
+	}
+	
+}
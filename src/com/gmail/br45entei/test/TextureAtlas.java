@@ -0,0 +1,537 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+
+/** A single texture that holds every frame of an animation (or any other set
+ * of images), along with the table of where each frame was placed.<br>
+ * <br>
+ * Frames are packed with a bottom-left skyline packer, which is fast and
+ * packs the equally sized frames of an animation perfectly. Each frame is
+ * surrounded by a gutter of {@link #getPadding() padding} pixels that repeat
+ * its edges, so that linear filtering never samples a neighbouring frame.<br>
+ * <br>
+ * Switching between frames only requires changing texture coordinates, which
+ * {@link TextureAnimation} does by loading
+ * {@link #getTextureMatrix(int, float[])} into the texture matrix instead of
+ * binding a different texture.<br>
+ * <br>
+ * Atlases can be built at runtime with
+ * {@link TextureLoadPipeline#decodeAtlas(String[], com.gmail.br45entei.game.graphics.GLThread.InitializationProgress, String, int, int)
+ * TextureLoadPipeline.decodeAtlas},
+ * or ahead of time with this class' {@link #main(String[]) main} method, which
+ * writes the atlas image and its table to disk.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureAtlas {
+	
+	/** The default number of pixels between (and around) packed frames */
+	public static final int DEFAULT_PADDING = 1;
+	/** The number of ints that make up a frame's rectangle in
+	 * {@link #getRects()}: x, y, width, height */
+	public static final int RECT_STRIDE = 4;
+	/** The number of floats that make up a frame's texture coordinates in
+	 * {@link #getUVs()}: u0, v0, u1, v1 */
+	public static final int UV_STRIDE = 4;
+	
+	private final int width, height, padding;
+	private final int[] rects;
+	private final float[] uvs;
+	private volatile ByteBuffer pixels = null;
+	private volatile int texture = 0;
+	
+	/** Creates a new TextureAtlas from an existing layout.
+	 * 
+	 * @param width The width of the atlas, in pixels
+	 * @param height The height of the atlas, in pixels
+	 * @param padding The number of pixels between (and around) the frames
+	 * @param rects The position and size of each frame within the atlas (see
+	 *            {@link #RECT_STRIDE}) */
+	public TextureAtlas(int width, int height, int padding, int[] rects) {
+		if(width <= 0 || height <= 0 || padding < 0 || rects.length % RECT_STRIDE != 0) {
+			throw new IllegalArgumentException(String.format("Invalid atlas layout: %sx%s (padding %s) with %s rectangle values", Integer.toString(width), Integer.toString(height), Integer.toString(padding), Integer.toString(rects.length)));
+		}
+		this.width = width;
+		this.height = height;
+		this.padding = padding;
+		this.rects = rects;
+		this.uvs = new float[(rects.length / RECT_STRIDE) * UV_STRIDE];
+		for(int i = 0, r = 0; r < rects.length; i += UV_STRIDE, r += RECT_STRIDE) {
+			this.uvs[i] = rects[r] / (width + 0.0f);
+			this.uvs[i + 1] = rects[r + 1] / (height + 0.0f);
+			this.uvs[i + 2] = (rects[r] + rects[r + 2]) / (width + 0.0f);
+			this.uvs[i + 3] = (rects[r + 1] + rects[r + 3]) / (height + 0.0f);
+		}
+	}
+	
+	//=============================================================================================
+	
+	/** Packs rectangles of the given sizes into an atlas that is as small as
+	 * possible.<br>
+	 * A handful of atlas widths around the square root of the total area (and
+	 * whole multiples of the widest frame, which suit animations whose frames
+	 * are all the same size) are tried, and the layout that uses the least
+	 * area is kept. The atlas' sides are not rounded up to powers of two,
+	 * which OpenGL 2.0 and later do not require; padded power-of-two frames
+	 * would otherwise waste most of the atlas.
+	 * 
+	 * @param widths The width of each frame, in pixels
+	 * @param heights The height of each frame, in pixels
+	 * @param padding The number of pixels to leave between (and around) the
+	 *            frames
+	 * @param maxSize The maximum width and height of the atlas (e.g.
+	 *            {@link GL11#GL_MAX_TEXTURE_SIZE})
+	 * @return The new atlas' layout, or {@code null} if the frames do not fit
+	 *         in an atlas of the maximum size */
+	public static final TextureAtlas pack(int[] widths, int[] heights, int padding, int maxSize) {
+		final int count = widths.length;
+		if(heights.length != count) {
+			throw new IllegalArgumentException("The number of widths and heights do not match!");
+		}
+		// Pack the tallest frames first; the skyline stays flatter that way:
+		Integer[] boxed = new Integer[count];
+		long area = 0L;
+		int widest = 1, tallest = 1;
+		for(int i = 0; i < count; i++) {
+			boxed[i] = Integer.valueOf(i);
+			int w = widths[i] + (padding * 2), h = heights[i] + (padding * 2);
+			area += w * (long) h;
+			widest = Math.max(widest, w);
+			tallest = Math.max(tallest, h);
+		}
+		Arrays.sort(boxed, (a, b) -> heights[b.intValue()] != heights[a.intValue()] ? Integer.compare(heights[b.intValue()], heights[a.intValue()]) : Integer.compare(widths[b.intValue()], widths[a.intValue()]));
+		final int[] order = new int[count];
+		for(int i = 0; i < count; i++) {
+			order[i] = boxed[i].intValue();
+		}
+		
+		if(widest > maxSize || tallest > maxSize) {
+			return null;
+		}
+		final double side = Math.sqrt(area);
+		final int columns = Math.max(1, (int) (side / widest));
+		final int[] candidates = {widest * columns, widest * (columns + 1), (int) Math.ceil(side), (int) Math.ceil(side * 1.1), (int) Math.ceil(side * 1.25), (int) Math.ceil(side * 1.5), (int) Math.ceil(side * 2.0)};
+		int[] rects = new int[count * RECT_STRIDE], bestRects = null;
+		int bestWidth = 0, bestHeight = 0;
+		for(int candidate : candidates) {
+			final int width = Math.min(maxSize, Math.max(widest, candidate));
+			final int height = packSkyline(order, widths, heights, padding, width, maxSize, rects);
+			if(height > 0 && (bestRects == null || width * (long) height < bestWidth * (long) bestHeight)) {
+				int[] swap = bestRects == null ? new int[rects.length] : bestRects;
+				bestRects = rects;
+				rects = swap;
+				bestWidth = width;
+				bestHeight = height;
+			}
+		}
+		return bestRects == null ? null : new TextureAtlas(bestWidth, bestHeight, padding, bestRects);
+	}
+	
+	/** Packs the given rectangles into an atlas of a fixed size using the
+	 * bottom-left skyline heuristic: each rectangle is placed where its top
+	 * edge ends up the lowest, with the skyline tracking the highest occupied
+	 * point along the atlas' width.
+	 * 
+	 * @param order The order to place the rectangles in
+	 * @param widths The width of each rectangle
+	 * @param heights The height of each rectangle
+	 * @param padding The gutter to leave around each rectangle
+	 * @param width The width of the atlas
+	 * @param height The height of the atlas
+	 * @param rects The array to store each rectangle's position and size in
+	 * @return The height actually used by the rectangles, or {@code 0} if
+	 *         they did not all fit */
+	static final int packSkyline(int[] order, int[] widths, int[] heights, int padding, int width, int height, int[] rects) {
+		// The skyline is a list of horizontal segments, sorted by x, that together span the atlas' width:
+		int[] nodeX = new int[order.length + 2], nodeY = new int[order.length + 2], nodeWidth = new int[order.length + 2];
+		int nodes = 1, usedHeight = 1;
+		nodeWidth[0] = width;
+		for(int index : order) {
+			final int w = widths[index] + (padding * 2), h = heights[index] + (padding * 2);
+			int bestNode = -1, bestX = 0, bestY = 0, bestTop = Integer.MAX_VALUE, bestWidth = Integer.MAX_VALUE;
+			for(int i = 0; i < nodes; i++) {
+				final int x = nodeX[i];
+				if(x + w > width) {
+					break;
+				}
+				// The rectangle rests on the highest segment underneath it:
+				int y = 0;
+				for(int j = i, remaining = w; remaining > 0; j++) {
+					y = Math.max(y, nodeY[j]);
+					remaining -= nodeWidth[j];
+				}
+				if(y + h <= height && (y + h < bestTop || (y + h == bestTop && nodeWidth[i] < bestWidth))) {
+					bestNode = i;
+					bestX = x;
+					bestY = y;
+					bestTop = y + h;
+					bestWidth = nodeWidth[i];
+				}
+			}
+			if(bestNode == -1) {
+				return 0;
+			}
+			usedHeight = Math.max(usedHeight, bestTop);
+			final int r = index * RECT_STRIDE;
+			rects[r] = bestX + padding;
+			rects[r + 1] = bestY + padding;
+			rects[r + 2] = widths[index];
+			rects[r + 3] = heights[index];
+			
+			// Insert the new segment, then trim or remove the segments it now covers:
+			if(nodes + 1 > nodeX.length) {
+				nodeX = Arrays.copyOf(nodeX, nodeX.length * 2);
+				nodeY = Arrays.copyOf(nodeY, nodeY.length * 2);
+				nodeWidth = Arrays.copyOf(nodeWidth, nodeWidth.length * 2);
+			}
+			System.arraycopy(nodeX, bestNode, nodeX, bestNode + 1, nodes - bestNode);
+			System.arraycopy(nodeY, bestNode, nodeY, bestNode + 1, nodes - bestNode);
+			System.arraycopy(nodeWidth, bestNode, nodeWidth, bestNode + 1, nodes - bestNode);
+			nodeX[bestNode] = bestX;
+			nodeY[bestNode] = bestTop;
+			nodeWidth[bestNode] = w;
+			nodes++;
+			final int right = bestX + w;
+			int i = bestNode + 1;
+			while(i < nodes && nodeX[i] < right) {
+				final int end = nodeX[i] + nodeWidth[i];
+				if(end <= right) {
+					System.arraycopy(nodeX, i + 1, nodeX, i, nodes - i - 1);
+					System.arraycopy(nodeY, i + 1, nodeY, i, nodes - i - 1);
+					System.arraycopy(nodeWidth, i + 1, nodeWidth, i, nodes - i - 1);
+					nodes--;
+				} else {
+					nodeX[i] = right;
+					nodeWidth[i] = end - right;
+					break;
+				}
+			}
+			// Merge neighbouring segments of the same height:
+			for(i = Math.max(0, bestNode - 1); i < nodes - 1 && i <= bestNode + 1;) {
+				if(nodeY[i] == nodeY[i + 1]) {
+					nodeWidth[i] += nodeWidth[i + 1];
+					System.arraycopy(nodeX, i + 2, nodeX, i + 1, nodes - i - 2);
+					System.arraycopy(nodeY, i + 2, nodeY, i + 1, nodes - i - 2);
+					System.arraycopy(nodeWidth, i + 2, nodeWidth, i + 1, nodes - i - 2);
+					nodes--;
+				} else {
+					i++;
+				}
+			}
+		}
+		return usedHeight;
+	}
+	
+	//=============================================================================================
+	
+	/** @return The width of this atlas, in pixels */
+	public int getWidth() {
+		return this.width;
+	}
+	
+	/** @return The height of this atlas, in pixels */
+	public int getHeight() {
+		return this.height;
+	}
+	
+	/** @return The number of pixels between (and around) this atlas' frames */
+	public int getPadding() {
+		return this.padding;
+	}
+	
+	/** @return The number of frames in this atlas */
+	public int getFrameCount() {
+		return this.rects.length / RECT_STRIDE;
+	}
+	
+	/** @return The position and size of each frame within this atlas, in
+	 *         pixels (see {@link #RECT_STRIDE}). Do not modify. */
+	public int[] getRects() {
+		return this.rects;
+	}
+	
+	/** @return The texture coordinates of each frame's corners (see
+	 *         {@link #UV_STRIDE}). Do not modify. */
+	public float[] getUVs() {
+		return this.uvs;
+	}
+	
+	/** @return The fraction of this atlas' area that is covered by frames
+	 *         (not counting their padding) */
+	public double getOccupancy() {
+		long used = 0L;
+		for(int r = 0; r < this.rects.length; r += RECT_STRIDE) {
+			used += this.rects[r + 2] * (long) this.rects[r + 3];
+		}
+		return used / (this.width * (double) this.height);
+	}
+	
+	/** @return The amount of texture memory this atlas takes up, in bytes */
+	public long getMemoryUsage() {
+		return this.width * (long) this.height * 4L;
+	}
+	
+	/** Computes the texture matrix that maps the texture coordinates of a
+	 * whole image ({@code [0, 1]} on both axes) onto the given frame.
+	 * 
+	 * @param frame The frame to map onto
+	 * @param dst The array to store the column-major 4x4 matrix in
+	 * @return The given array */
+	public float[] getTextureMatrix(int frame, float[] dst) {
+		final int i = frame * UV_STRIDE;
+		FloatMatrixStack.setIdentity(dst, 0);
+		dst[0] = this.uvs[i + 2] - this.uvs[i];
+		dst[5] = this.uvs[i + 3] - this.uvs[i + 1];
+		dst[12] = this.uvs[i];
+		dst[13] = this.uvs[i + 1];
+		return dst;
+	}
+	
+	//=============================================================================================
+	
+	/** @return This atlas' RGBA pixel data, allocating it if it has not been
+	 *         already (or {@code null} if it has already been uploaded) */
+	public ByteBuffer getPixels() {
+		ByteBuffer pixels = this.pixels;
+		if(pixels == null && this.texture == 0) {
+			this.pixels = pixels = ByteBuffer.allocateDirect((int) this.getMemoryUsage()).order(ByteOrder.nativeOrder());
+		}
+		return pixels;
+	}
+	
+	/** Copies a frame's RGBA pixel data into its place in this atlas, then
+	 * repeats its edges into the padding around it. Different frames may be
+	 * copied in from different threads at the same time.
+	 * 
+	 * @param frame The frame to copy
+	 * @param src The frame's pixels, four bytes per pixel, starting with the
+	 *            top row
+	 * @return This TextureAtlas */
+	public TextureAtlas blit(int frame, ByteBuffer src) {
+		final ByteBuffer pixels = this.getPixels();
+		final int r = frame * RECT_STRIDE, x = this.rects[r], y = this.rects[r + 1], w = this.rects[r + 2], h = this.rects[r + 3];
+		final int p = this.padding, rowBytes = w * 4, stride = this.width * 4;
+		if(w == 0 || h == 0) {
+			return this;
+		}
+		if(src.remaining() < rowBytes * h) {
+			throw new IllegalArgumentException(String.format("Frame %s needs %s bytes of pixel data, but only %s were given!", Integer.toString(frame), Integer.toString(rowBytes * h), Integer.toString(src.remaining())));
+		}
+		final ByteBuffer in = src.duplicate(), out = pixels.duplicate();
+		final int base = src.position();
+		for(int row = 0; row < h; row++) {
+			final int offset = ((y + row) * stride) + (x * 4);
+			in.limit(base + ((row + 1) * rowBytes)).position(base + (row * rowBytes));
+			out.position(offset);
+			out.put(in);
+			final int left = pixels.getInt(offset), right = pixels.getInt(offset + rowBytes - 4);
+			for(int i = 1; i <= p; i++) {
+				pixels.putInt(offset - (i * 4), left);
+				pixels.putInt(offset + rowBytes - 4 + (i * 4), right);
+			}
+		}
+		final ByteBuffer edge = pixels.duplicate();
+		final int paddedStart = (x - p) * 4, paddedBytes = rowBytes + (p * 8);
+		for(int i = 1; i <= p; i++) {
+			edge.limit((y * stride) + paddedStart + paddedBytes).position((y * stride) + paddedStart);
+			out.position(((y - i) * stride) + paddedStart);
+			out.put(edge);
+			edge.limit(((y + h - 1) * stride) + paddedStart + paddedBytes).position(((y + h - 1) * stride) + paddedStart);
+			out.position(((y + h - 1 + i) * stride) + paddedStart);
+			out.put(edge);
+		}
+		return this;
+	}
+	
+	/** Uploads this atlas' pixel data into a new texture, after which the
+	 * pixel data is released. Must be called on the GL thread (unless the
+	 * backend does not need a GL context).<br>
+	 * The new texture is left bound to {@link GL11#GL_TEXTURE_2D}.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @param minFilter The texture minifying function
+	 * @param magFilter The texture magnification function
+	 * @return The new texture's name */
+	public int upload(GLBackend gl, int minFilter, int magFilter) {
+		final ByteBuffer pixels = this.getPixels();
+		if(pixels == null) {
+			return this.texture;
+		}
+		final int texture = gl.glGenTextures();
+		gl.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+		gl.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, minFilter);
+		gl.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, magFilter);
+		gl.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+		gl.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+		gl.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, this.width, this.height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+		this.texture = texture;
+		this.pixels = null;
+		return texture;
+	}
+	
+	/** @return The name of this atlas' texture, or {@code 0} if it has not
+	 *         been uploaded */
+	public int getTexture() {
+		return this.texture;
+	}
+	
+	/** Uses an existing texture (e.g. an atlas image that was packed ahead of
+	 * time and then loaded normally) as this atlas' texture.
+	 * 
+	 * @param texture The name of the texture
+	 * @return This TextureAtlas */
+	public TextureAtlas setTexture(int texture) {
+		this.texture = texture;
+		this.pixels = null;
+		return this;
+	}
+	
+	/** Deletes this atlas' texture.
+	 * 
+	 * @param gl The GL backend to delete the texture with */
+	public void destroy(GLBackend gl) {
+		if(this.texture != 0) {
+			gl.glDeleteTextures(this.texture);
+			this.texture = 0;
+		}
+	}
+	
+	//=============================================================================================
+	
+	/** Writes this atlas' layout as text: a header line containing the
+	 * atlas' width, height, padding and frame count, followed by one line per
+	 * frame containing its x, y, width and height.
+	 * 
+	 * @param out The writer to write the layout to */
+	public void writeTable(PrintWriter out) {
+		out.println(String.format("%s %s %s %s", Integer.toString(this.width), Integer.toString(this.height), Integer.toString(this.padding), Integer.toString(this.getFrameCount())));
+		for(int r = 0; r < this.rects.length; r += RECT_STRIDE) {
+			out.println(String.format("%s %s %s %s", Integer.toString(this.rects[r]), Integer.toString(this.rects[r + 1]), Integer.toString(this.rects[r + 2]), Integer.toString(this.rects[r + 3])));
+		}
+		out.flush();
+	}
+	
+	/** Reads an atlas' layout that was written by
+	 * {@link #writeTable(PrintWriter)}.
+	 * 
+	 * @param in The reader to read the layout from
+	 * @return The atlas' layout
+	 * @throws IOException Thrown if an I/O error occurs or the layout is
+	 *             malformed */
+	public static final TextureAtlas readTable(BufferedReader in) throws IOException {
+		try {
+			String[] header = String.valueOf(in.readLine()).trim().split("\\s+");
+			final int width = Integer.parseInt(header[0]), height = Integer.parseInt(header[1]), padding = Integer.parseInt(header[2]), count = Integer.parseInt(header[3]);
+			final int[] rects = new int[count * RECT_STRIDE];
+			for(int r = 0; r < rects.length; r += RECT_STRIDE) {
+				String[] values = String.valueOf(in.readLine()).trim().split("\\s+");
+				for(int i = 0; i < RECT_STRIDE; i++) {
+					rects[r + i] = Integer.parseInt(values[i]);
+				}
+			}
+			return new TextureAtlas(width, height, padding, rects);
+		} catch(NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+			throw new IOException("Malformed texture atlas table", ex);
+		}
+	}
+	
+	/** @return A copy of this atlas' pixel data as an image, or {@code null}
+	 *         if it has already been uploaded */
+	public BufferedImage toImage() {
+		final ByteBuffer pixels = this.pixels;
+		if(pixels == null) {
+			return null;
+		}
+		final BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
+		final int[] row = new int[this.width];
+		for(int y = 0, i = 0; y < this.height; y++) {
+			for(int x = 0; x < this.width; x++, i += 4) {
+				row[x] = ((pixels.get(i + 3) & 0xFF) << 24) | ((pixels.get(i) & 0xFF) << 16) | ((pixels.get(i + 1) & 0xFF) << 8) | (pixels.get(i + 2) & 0xFF);
+			}
+			image.setRGB(0, y, this.width, 1, row, 0, this.width);
+		}
+		return image;
+	}
+	
+	/** Packs images into an atlas ahead of time, writing the atlas to a PNG
+	 * image and its layout to a text file next to it (with the extension
+	 * {@code .atlas}).<br>
+	 * Usage: {@code TextureAtlas <output.png> <images or directories of images...>}
+	 * 
+	 * @param args Program command line arguments
+	 * @throws IOException Thrown if an image could not be read or written */
+	public static final void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.out.println("Usage: TextureAtlas <output.png> <images or directories of images...>");
+			return;
+		}
+		List<String> paths = new ArrayList<>();
+		for(int i = 1; i < args.length; i++) {
+			File file = new File(args[i]);
+			if(file.isDirectory()) {
+				File[] files = file.listFiles((dir, name) -> name.toLowerCase().endsWith(".png"));
+				Arrays.sort(files);
+				for(File image : files) {
+					paths.add(image.getPath());
+				}
+			} else {
+				paths.add(file.getPath());
+			}
+		}
+		long startTime = System.nanoTime();
+		TextureAtlas atlas;
+		try(TextureLoadPipeline pipeline = new TextureLoadPipeline()) {
+			atlas = pipeline.decodeAtlas(paths.toArray(new String[paths.size()]), null, "Packing textures", DEFAULT_PADDING, 16384);
+		}
+		if(atlas == null) {
+			System.err.println("The images do not fit in a 16384x16384 atlas!");
+			return;
+		}
+		File output = new File(args[0]);
+		ImageIO.write(atlas.toImage(), "png", output);
+		String name = output.getName();
+		name = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+		try(PrintWriter out = new PrintWriter(new File(output.getAbsoluteFile().getParentFile(), name.concat(".atlas")), StandardCharsets.UTF_8.name())) {
+			atlas.writeTable(out);
+		}
+		System.out.println(String.format("Packed %s images into a %sx%s atlas (%s%% occupied) in %s ms.", Integer.toString(atlas.getFrameCount()), Integer.toString(atlas.getWidth()), Integer.toString(atlas.getHeight()), Long.toString(Math.round(atlas.getOccupancy() * 100.0)), Long.toString((System.nanoTime() - startTime) / 1000000L)));
+	}
+	
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.opengl.GL11;
+
+/** Headless verification and benchmark of {@link TextureAtlas}: checks that
+ * packed frames never overlap (padding included), that frames and their
+ * padding are copied into the right place, and that an animation played from
+ * an atlas never binds a different texture; then measures packing time and
+ * compares the atlas' memory footprint with that of one texture per frame.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureAtlasBenchmark {
+	
+	/** Checks that every frame (and its padding) lies within the atlas, that
+	 * no two frames' padded rectangles overlap, and that the UV table matches
+	 * the rectangles. */
+	static final void verifyLayout(TextureAtlas atlas, int[] widths, int[] heights) {
+		final int[] rects = atlas.getRects();
+		final float[] uvs = atlas.getUVs();
+		final int p = atlas.getPadding(), count = atlas.getFrameCount();
+		MicroBenchmark.check(count == widths.length, "Wrong number of frames!");
+		for(int i = 0; i < count; i++) {
+			final int r = i * TextureAtlas.RECT_STRIDE, x = rects[r], y = rects[r + 1], w = rects[r + 2], h = rects[r + 3];
+			MicroBenchmark.check(w == widths[i] && h == heights[i], "Frame size was not preserved: ".concat(Integer.toString(i)));
+			MicroBenchmark.check(x - p >= 0 && y - p >= 0 && x + w + p <= atlas.getWidth() && y + h + p <= atlas.getHeight(), "Frame lies outside of the atlas: ".concat(Integer.toString(i)));
+			final int u = i * TextureAtlas.UV_STRIDE;
+			MicroBenchmark.check(Math.abs((uvs[u] * atlas.getWidth()) - x) < 1.0E-3f && Math.abs((uvs[u + 1] * atlas.getHeight()) - y) < 1.0E-3f && Math.abs((uvs[u + 2] * atlas.getWidth()) - (x + w)) < 1.0E-3f && Math.abs((uvs[u + 3] * atlas.getHeight()) - (y + h)) < 1.0E-3f, "UV table does not match frame: ".concat(Integer.toString(i)));
+			for(int j = i + 1; j < count; j++) {
+				final int s = j * TextureAtlas.RECT_STRIDE;
+				boolean separate = x + w + p <= rects[s] - p || rects[s] + rects[s + 2] + p <= x - p || y + h + p <= rects[s + 1] - p || rects[s + 1] + rects[s + 3] + p <= y - p;
+				MicroBenchmark.check(separate, String.format("Frames %s and %s overlap!", Integer.toString(i), Integer.toString(j)));
+			}
+		}
+	}
+	
+	private static final ByteBuffer randomPixels(Random random, int width, int height) {
+		ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+		for(int i = 0; i < pixels.capacity(); i += 4) {
+			pixels.putInt(i, random.nextInt());
+		}
+		return pixels;
+	}
+	
+	private static final int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+	
+	/** Checks that each frame's pixels (and the edges repeated into its
+	 * padding) were copied into the right place in the atlas. */
+	static final void verifyPixels(TextureAtlas atlas, ByteBuffer[] frames) {
+		final ByteBuffer pixels = atlas.getPixels();
+		final int[] rects = atlas.getRects();
+		final int p = atlas.getPadding();
+		for(int i = 0; i < frames.length; i++) {
+			final int r = i * TextureAtlas.RECT_STRIDE, x = rects[r], y = rects[r + 1], w = rects[r + 2], h = rects[r + 3];
+			for(int py = -p; py < h + p; py++) {
+				for(int px = -p; px < w + p; px++) {
+					int expected = frames[i].getInt(((clamp(py, 0, h - 1) * w) + clamp(px, 0, w - 1)) * 4);
+					int actual = pixels.getInt((((y + py) * atlas.getWidth()) + x + px) * 4);
+					MicroBenchmark.check(expected == actual, String.format("Pixel (%s, %s) of frame %s was not copied correctly!", Integer.toString(px), Integer.toString(py), Integer.toString(i)));
+				}
+			}
+		}
+	}
+	
+	/** A {@link RecordingGLBackend} that also counts how many times the bound
+	 * texture actually changed. */
+	static final class TextureBindCounter extends RecordingGLBackend {
+		int boundTexture = 0;
+		long textureChanges = 0L;
+		
+		@Override
+		public void glBindTexture(int target, int texture) {
+			super.glBindTexture(target, texture);
+			if(texture != this.boundTexture) {
+				this.boundTexture = texture;
+				this.textureChanges++;
+			}
+		}
+		
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws IOException Thrown if an image could not be encoded */
+	public static final void main(String[] args) throws IOException {
+		final Random random = new Random(0xA71A5L);
+		
+		// Layouts: the "Texture Test"'s animations, plus a set of arbitrarily sized images:
+		final int[][] widthSets = new int[4][], heightSets = new int[4][];
+		final String[] names = {"16 frames of 16x16", "120 frames of 256x256", "240 frames of 128x128", "500 random sizes"};
+		final int[] counts = {16, 120, 240, 500}, sizes = {16, 256, 128, 0};
+		for(int set = 0; set < widthSets.length; set++) {
+			widthSets[set] = new int[counts[set]];
+			heightSets[set] = new int[counts[set]];
+			for(int i = 0; i < counts[set]; i++) {
+				widthSets[set][i] = sizes[set] != 0 ? sizes[set] : 4 + random.nextInt(197);
+				heightSets[set][i] = sizes[set] != 0 ? sizes[set] : 4 + random.nextInt(197);
+			}
+		}
+		for(int set = 0; set < widthSets.length; set++) {
+			final int[] widths = widthSets[set], heights = heightSets[set];
+			final TextureAtlas atlas = TextureAtlas.pack(widths, heights, TextureAtlas.DEFAULT_PADDING, 16384);
+			MicroBenchmark.check(atlas != null, "Frames did not fit: ".concat(names[set]));
+			verifyLayout(atlas, widths, heights);
+			
+			long separateBytes = 0L, separatePow2Bytes = 0L;
+			for(int i = 0; i < widths.length; i++) {
+				separateBytes += widths[i] * (long) heights[i] * 4L;
+				int pw = Integer.highestOneBit(widths[i]), ph = Integer.highestOneBit(heights[i]);
+				separatePow2Bytes += (pw < widths[i] ? pw << 1 : pw) * (long) (ph < heights[i] ? ph << 1 : ph) * 4L;
+			}
+			System.out.println(String.format("%s: %sx%s atlas, %s%% occupied; %s KB (one texture per frame: %s KB, or %s KB with power-of-two sizes)", names[set], Integer.toString(atlas.getWidth()), Integer.toString(atlas.getHeight()), Long.toString(Math.round(atlas.getOccupancy() * 100.0)), Long.toString(atlas.getMemoryUsage() / 1024L), Long.toString(separateBytes / 1024L), Long.toString(separatePow2Bytes / 1024L)));
+			MicroBenchmark.run("TextureAtlas.pack(): ".concat(names[set]), 50, 500, (iteration) -> TextureAtlas.pack(widths, heights, TextureAtlas.DEFAULT_PADDING, 16384));
+		}
+		
+		// Pixel copies, including the repeated edges in the padding:
+		for(int padding : new int[] {0, 1, 3}) {
+			final int[] widths = widthSets[3], heights = heightSets[3];
+			final TextureAtlas atlas = TextureAtlas.pack(widths, heights, padding, 16384);
+			verifyLayout(atlas, widths, heights);
+			final ByteBuffer[] frames = new ByteBuffer[widths.length];
+			for(int i = 0; i < frames.length; i++) {
+				atlas.blit(i, frames[i] = randomPixels(random, widths[i], heights[i]));
+			}
+			verifyPixels(atlas, frames);
+		}
+		
+		// Texture matrices and the layout table:
+		final TextureAtlas layout = TextureAtlas.pack(widthSets[3], heightSets[3], TextureAtlas.DEFAULT_PADDING, 16384);
+		final float[] matrix = new float[16];
+		for(int i = 0; i < layout.getFrameCount(); i++) {
+			layout.getTextureMatrix(i, matrix);
+			final int u = i * TextureAtlas.UV_STRIDE;
+			MicroBenchmark.check(matrix[12] == layout.getUVs()[u] && matrix[13] == layout.getUVs()[u + 1], "Texture matrix does not map (0, 0) onto the frame's corner!");
+			MicroBenchmark.check(Math.abs(matrix[0] + matrix[12] - layout.getUVs()[u + 2]) < 1.0E-6f && Math.abs(matrix[5] + matrix[13] - layout.getUVs()[u + 3]) < 1.0E-6f, "Texture matrix does not map (1, 1) onto the frame's corner!");
+		}
+		StringWriter table = new StringWriter();
+		layout.writeTable(new PrintWriter(table));
+		TextureAtlas read = TextureAtlas.readTable(new BufferedReader(new StringReader(table.toString())));
+		MicroBenchmark.check(read.getWidth() == layout.getWidth() && read.getHeight() == layout.getHeight() && read.getPadding() == layout.getPadding() && Arrays.equals(read.getRects(), layout.getRects()), "The layout table did not read back the same!");
+		System.out.println("Atlas layouts, pixel copies, texture matrices and layout tables verified.");
+		
+		// Texture changes while playing an animation back at 60 frames per second:
+		final int[] textures = new int[120];
+		for(int i = 0; i < textures.length; i++) {
+			textures[i] = i + 1;
+		}
+		final TextureAtlas waterAtlas = TextureAtlas.pack(widthSets[1], heightSets[1], TextureAtlas.DEFAULT_PADDING, 16384).setTexture(1);
+		for(TextureAnimation animation : new TextureAnimation[] {new TextureAnimation(50.0, textures), new TextureAnimation(50.0, waterAtlas)}) {
+			TextureBindCounter counter = new TextureBindCounter();
+			for(int frame = 0; frame < 600; frame++) {
+				animation.bind(counter, 1.0 / 60.0);
+				animation.unbind(counter);
+			}
+			System.out.println(String.format("%s: %s texture changes over 600 frames; %s", animation.getAtlas() == null ? "One texture per frame" : "Atlas", Long.toString(counter.textureChanges), counter.toString()));
+			MicroBenchmark.check(animation.getAtlas() == null || counter.textureChanges == 1, "The atlas animation changed textures!");
+		}
+		
+		// Decoding straight into an atlas, end to end:
+		final HashMap<String, byte[]> files = new HashMap<>();
+		final String[] paths = new String[64];
+		final BufferedImage[] images = new BufferedImage[paths.length];
+		for(int i = 0; i < paths.length; i++) {
+			images[i] = new BufferedImage(24 + random.nextInt(100), 24 + random.nextInt(100), BufferedImage.TYPE_INT_ARGB);
+			for(int y = 0; y < images[i].getHeight(); y++) {
+				for(int x = 0; x < images[i].getWidth(); x++) {
+					images[i].setRGB(x, y, random.nextInt());
+				}
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write(images[i], "png", out);
+			files.put(paths[i] = String.format("frames/%s.png", Integer.toString(i)), out.toByteArray());
+		}
+		final TextureLoadPipeline.Source source = (path) -> {
+			byte[] data = files.get(path);
+			if(data == null) {
+				throw new FileNotFoundException(path);
+			}
+			return new ByteArrayInputStream(data);
+		};
+		TextureAtlas decoded;
+		try(TextureLoadPipeline pipeline = new TextureLoadPipeline(source, Runtime.getRuntime().availableProcessors(), 8)) {
+			decoded = pipeline.decodeAtlas(paths, null, "Packing textures", TextureAtlas.DEFAULT_PADDING, 4096);
+		}
+		final int[] rects = decoded.getRects();
+		for(int i = 0; i < images.length; i++) {
+			final int r = i * TextureAtlas.RECT_STRIDE;
+			for(int y = 0; y < images[i].getHeight(); y++) {
+				for(int x = 0; x < images[i].getWidth(); x++) {
+					int argb = images[i].getRGB(x, y), offset = (((rects[r + 1] + y) * decoded.getWidth()) + rects[r] + x) * 4;
+					ByteBuffer pixels = decoded.getPixels();
+					int rgba = ((pixels.get(offset) & 0xFF) << 16) | ((pixels.get(offset + 1) & 0xFF) << 8) | (pixels.get(offset + 2) & 0xFF) | ((pixels.get(offset + 3) & 0xFF) << 24);
+					MicroBenchmark.check(argb == rgba, String.format("Pixel (%s, %s) of image %s was not decoded into the atlas correctly!", Integer.toString(x), Integer.toString(y), Integer.toString(i)));
+				}
+			}
+		}
+		RecordingGLBackend recorder = new RecordingGLBackend();
+		decoded.upload(recorder, GL11.GL_LINEAR, GL11.GL_LINEAR);
+		MicroBenchmark.check(recorder.getCount(RecordingGLBackend.Call.TEX_IMAGE_2D) == 1 && recorder.getBytesUploaded() == decoded.getMemoryUsage() && decoded.getPixels() == null, "The atlas was not uploaded as a single texture!");
+		System.out.println(String.format("Decoded %s images into a %sx%s atlas and uploaded it with one texture upload.", Integer.toString(paths.length), Integer.toString(decoded.getWidth()), Integer.toString(decoded.getHeight())));
+	}
+	
+}
@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A persistent on-disk cache of decoded RGBA pixel data, so that images only
+ * have to be decoded the first time they are loaded.<br>
+ * <br>
+ * Each image is stored in its own file, named after a hash of the image's
+ * path. The file's header records the full path along with the length and
+ * CRC32C checksum of the encoded image it was decoded from, so a cached entry
+ * is only used if the source image has not changed since; otherwise the image
+ * is decoded again and the entry is rewritten. The pixel data (optionally
+ * compressed with {@link Deflater}) is followed by its own checksum, which is
+ * verified on every read, so truncated or corrupt entries are detected and
+ * treated as misses.<br>
+ * <br>
+ * Entries are read through memory-mapped {@link FileChannel}s and written to
+ * a temporary file that then replaces the old entry, so concurrent readers
+ * never see a partially written entry. All methods are thread-safe.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureCache {
+	
+	/** The first four bytes of every cache entry ({@code "TXC1"}) */
+	public static final int MAGIC = 0x54584331;
+	/** The version of the cache entry format */
+	public static final int VERSION = 1;
+	/** The file extension used for cache entries */
+	public static final String EXTENSION = ".rgba";
+	
+	private static final int FLAG_DEFLATED = 0x1;
+	/** magic, version, flags, width, height, source length, source checksum,
+	 * path length */
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8 + 4 + 4;
+	/** stored length, raw length (then the data, then its checksum) */
+	private static final int PAYLOAD_HEADER_SIZE = 4 + 4;
+	
+	private final File directory;
+	private volatile boolean compress;
+	
+	private final AtomicLong hits = new AtomicLong(0L), misses = new AtomicLong(0L), stale = new AtomicLong(0L), corrupt = new AtomicLong(0L), writes = new AtomicLong(0L);
+	private final AtomicLong bytesRead = new AtomicLong(0L), bytesWritten = new AtomicLong(0L);
+	
+	/** Creates a new TextureCache.
+	 * 
+	 * @param directory The directory to store cache entries in. It is created
+	 *            when the first entry is written.
+	 * @param compress Whether or not to compress the pixel data of new
+	 *            entries. Compressed entries take up less disk space but take
+	 *            longer to read back. */
+	public TextureCache(File directory, boolean compress) {
+		this.directory = directory;
+		this.compress = compress;
+	}
+	
+	/** @return The directory that this cache stores its entries in */
+	public File getDirectory() {
+		return this.directory;
+	}
+	
+	/** @return Whether or not new entries are compressed */
+	public boolean isCompressing() {
+		return this.compress;
+	}
+	
+	/** @param compress Whether or not to compress new entries
+	 * @return This TextureCache */
+	public TextureCache setCompressing(boolean compress) {
+		this.compress = compress;
+		return this;
+	}
+	
+	/** @return The number of images that were read from this cache */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+	
+	/** @return The number of images that had to be decoded because they were
+	 *         not cached (including stale and corrupt entries) */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+	
+	/** @return The number of entries that were ignored because their source
+	 *         image has changed since they were written */
+	public long getStaleCount() {
+		return this.stale.get();
+	}
+	
+	/** @return The number of entries that were ignored because they were
+	 *         truncated, corrupt or in an unknown format */
+	public long getCorruptCount() {
+		return this.corrupt.get();
+	}
+	
+	/** @return The number of entries written */
+	public long getWriteCount() {
+		return this.writes.get();
+	}
+	
+	/** @return The number of bytes read from cache entries */
+	public long getBytesRead() {
+		return this.bytesRead.get();
+	}
+	
+	/** @return The number of bytes written to cache entries */
+	public long getBytesWritten() {
+		return this.bytesWritten.get();
+	}
+	
+	//=============================================================================================
+	
+	/** @param data The encoded image
+	 * @param offset The offset of the image's first byte
+	 * @param length The length of the image, in bytes
+	 * @return The CRC32C checksum of the encoded image */
+	public static final int checksum(byte[] data, int offset, int length) {
+		CRC32C crc = new CRC32C();
+		crc.update(data, offset, length);
+		return (int) crc.getValue();
+	}
+	
+	/** @param path The path of an image
+	 * @return The file that the image's cache entry is stored in */
+	public File getFile(String path) {
+		// Two 32-bit hashes of the path make collisions unlikely; the full path is checked when the entry is read anyway.
+		byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+		String name = String.format("%08x%08x", Integer.valueOf(path.hashCode()), Integer.valueOf(checksum(bytes, 0, bytes.length)));
+		return new File(this.directory, name.concat(EXTENSION));
+	}
+	
+	/** Reads an image's pixel data from this cache.
+	 * 
+	 * @param path The path of the image
+	 * @param sourceLength The length of the encoded image, in bytes
+	 * @param sourceChecksum The {@link #checksum(byte[], int, int) checksum}
+	 *            of the encoded image
+	 * @param bufferPool The pool to acquire the pixel buffer from
+	 * @param size An array to store the image's width and height in
+	 * @return The image's pixels (four bytes per pixel in RGBA order,
+	 *         starting with the top row), or {@code null} if the image is not
+	 *         cached or its entry is stale or corrupt */
+	public ByteBuffer read(String path, long sourceLength, int sourceChecksum, DirectBufferPool bufferPool, int[] size) {
+		final Path file = this.getFile(path).toPath();
+		ByteBuffer pixels = null;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long fileSize = channel.size();
+			if(fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+				throw new DataFormatException("Truncated header");
+			}
+			final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0L, fileSize);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if(map.getInt() != MAGIC || map.getInt() != VERSION) {
+				throw new DataFormatException("Unknown format");
+			}
+			final int flags = map.getInt(), width = map.getInt(), height = map.getInt();
+			final long entrySourceLength = map.getLong();
+			final int entrySourceChecksum = map.getInt(), pathLength = map.getInt();
+			if(width <= 0 || height <= 0 || pathLength < 0 || map.remaining() < pathLength + PAYLOAD_HEADER_SIZE) {
+				throw new DataFormatException("Invalid header");
+			}
+			final byte[] pathBytes = new byte[pathLength];
+			map.get(pathBytes);
+			if(!path.equals(new String(pathBytes, StandardCharsets.UTF_8))) {
+				this.misses.incrementAndGet();
+				return null;// A different image whose path hashes the same
+			}
+			if(entrySourceLength != sourceLength || entrySourceChecksum != sourceChecksum) {
+				this.stale.incrementAndGet();
+				this.misses.incrementAndGet();
+				return null;
+			}
+			final int storedLength = map.getInt(), rawLength = map.getInt();
+			final long expectedLength = (long) width * height * 4L;
+			if(expectedLength > Integer.MAX_VALUE || rawLength != expectedLength || storedLength < 0 || map.remaining() != storedLength + 4L) {
+				throw new DataFormatException("Invalid payload length");
+			}
+			final ByteBuffer payload = map.slice();
+			payload.limit(storedLength);
+			CRC32C crc = new CRC32C();
+			crc.update(payload.duplicate());
+			if((int) crc.getValue() != map.getInt(map.position() + storedLength)) {
+				throw new DataFormatException("Checksum mismatch");
+			}
+			
+			pixels = bufferPool.acquire(rawLength);
+			if((flags & FLAG_DEFLATED) == 0) {
+				if(storedLength != rawLength) {
+					throw new DataFormatException("Invalid payload length");
+				}
+				pixels.put(payload).flip();
+			} else {
+				final byte[] compressed = new byte[storedLength], raw = new byte[rawLength];
+				payload.get(compressed);
+				final Inflater inflater = new Inflater();
+				try {
+					inflater.setInput(compressed);
+					if(inflater.inflate(raw) != rawLength || !inflater.finished()) {
+						throw new DataFormatException("Decompressed length mismatch");
+					}
+				} finally {
+					inflater.end();
+				}
+				pixels.put(raw).flip();
+			}
+			size[0] = width;
+			size[1] = height;
+			this.bytesRead.addAndGet(fileSize);
+			this.hits.incrementAndGet();
+			return pixels;
+		} catch(NoSuchFileException ex) {
+			this.misses.incrementAndGet();
+		} catch(DataFormatException | IOException | RuntimeException ex) {
+			// Truncated, corrupt or otherwise unreadable; the entry will be rewritten once the image has been decoded again
+			this.corrupt.incrementAndGet();
+			this.misses.incrementAndGet();
+		}
+		bufferPool.release(pixels);
+		return null;
+	}
+	
+	/** Writes an image's pixel data to this cache, replacing any existing
+	 * entry for it.
+	 * 
+	 * @param path The path of the image
+	 * @param sourceLength The length of the encoded image, in bytes
+	 * @param sourceChecksum The {@link #checksum(byte[], int, int) checksum}
+	 *            of the encoded image
+	 * @param width The width of the image, in pixels
+	 * @param height The height of the image, in pixels
+	 * @param pixels The image's pixels (left unmodified)
+	 * @return Whether or not the entry was written. Failures are not fatal;
+	 *         the image will just be decoded again next time. */
+	public boolean write(String path, long sourceLength, int sourceChecksum, int width, int height, ByteBuffer pixels) {
+		final Path file = this.getFile(path).toPath();
+		final byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+		final long expectedLength = (long) width * height * 4L;
+		if(width <= 0 || height <= 0 || expectedLength > Integer.MAX_VALUE) {
+			return false;// Too big to be read back in
+		}
+		final int rawLength = (int) expectedLength;
+		ByteBuffer payload = pixels.duplicate();
+		payload.limit(payload.position() + rawLength);
+		int flags = 0;
+		if(this.compress) {
+			final byte[] raw = new byte[rawLength], compressed = new byte[(int) Math.min(Integer.MAX_VALUE - 8L, rawLength + (rawLength >> 8) + 64L)];
+			payload.get(raw);
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			int compressedLength;
+			try {
+				deflater.setInput(raw);
+				deflater.finish();
+				compressedLength = deflater.deflate(compressed);
+				if(!deflater.finished()) {
+					compressedLength = -1;
+				}
+			} finally {
+				deflater.end();
+			}
+			if(compressedLength >= 0 && compressedLength < rawLength) {
+				payload = ByteBuffer.wrap(compressed, 0, compressedLength);
+				flags |= FLAG_DEFLATED;
+			} else {
+				payload = ByteBuffer.wrap(raw);// Incompressible; store it as-is
+			}
+		}
+		final int storedLength = payload.remaining();
+		final CRC32C crc = new CRC32C();
+		crc.update(payload.duplicate());
+		
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + pathBytes.length + PAYLOAD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(width).putInt(height).putLong(sourceLength).putInt(sourceChecksum).putInt(pathBytes.length);
+		header.put(pathBytes).putInt(storedLength).putInt(rawLength).flip();
+		final ByteBuffer footer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) crc.getValue());
+		footer.flip();
+		
+		Path temp = null;
+		try {
+			Files.createDirectories(this.directory.toPath());
+			temp = Files.createTempFile(this.directory.toPath(), file.getFileName().toString(), ".tmp");
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				final ByteBuffer[] buffers = {header, payload, footer};
+				while(footer.hasRemaining()) {
+					channel.write(buffers);
+				}
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch(AtomicMoveNotSupportedException ex) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			temp = null;
+			this.writes.incrementAndGet();
+			this.bytesWritten.addAndGet(HEADER_SIZE + pathBytes.length + PAYLOAD_HEADER_SIZE + storedLength + 4L);
+			return true;
+		} catch(IOException ex) {
+			// e.g. the entry is still mapped by a reader on Windows, or the disk is full
+			return false;
+		} finally {
+			if(temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch(IOException ignored) {
+				}
+			}
+		}
+	}
+	
+	/** Deletes every entry in this cache.
+	 * 
+	 * @return The number of entries deleted */
+	public int clear() {
+		int deleted = 0;
+		File[] files = this.directory.listFiles((dir, name) -> name.endsWith(EXTENSION) || name.endsWith(".tmp"));
+		if(files != null) {
+			for(File file : files) {
+				if(file.delete()) {
+					deleted++;
+				}
+			}
+		}
+		return deleted;
+	}
+	
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+/** Headless verification and benchmark of {@link TextureCache}: compares the
+ * time it takes to load a set of textures through a {@link TextureLoadPipeline}
+ * without a cache, with an empty ("cold") cache and with a filled ("warm")
+ * cache, and checks that changed source images, corrupt entries and truncated
+ * entries are detected and fall back to decoding the image again.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureCacheBenchmark {
+	
+	private static final byte[] generate(Random random, int size, int type) throws IOException {
+		BufferedImage image = new BufferedImage(size, size, type);
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				int r = (x * 255) / size, g = (y * 255) / size, b = ((x + y) * 127) / size + random.nextInt(32);
+				image.setRGB(x, y, ((128 + random.nextInt(128)) << 24) | (r << 16) | (g << 8) | Math.min(255, b));
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+	
+	/** Decodes an image both with and without the cache and checks that the
+	 * results are identical.
+	 * 
+	 * @return Whether or not the image was read from the cache */
+	private static final boolean decodeAndCompare(TextureLoadPipeline.Source source, String path, TextureCache cache, DirectBufferPool pool, ThreadLocal<int[]> rowBuffers) {
+		TextureLoadPipeline.DecodedImage expected = TextureLoadPipeline.decode(source, 0, path, pool, rowBuffers);
+		TextureLoadPipeline.DecodedImage actual = TextureLoadPipeline.decode(source, 0, path, pool, rowBuffers, cache);
+		MicroBenchmark.check(actual.error == null && actual.width == expected.width && actual.height == expected.height, String.format("\"%s\" failed to load: %s", path, String.valueOf(actual.error)));
+		MicroBenchmark.check(actual.getPixels().equals(expected.getPixels()), String.format("\"%s\" was not loaded correctly (cached: %s)!", path, Boolean.toString(actual.cached)));
+		pool.release(expected.getPixels());
+		pool.release(actual.getPixels());
+		return actual.cached;
+	}
+	
+	private static final long load(TextureLoadPipeline.Source source, String[] paths, TextureCache cache) throws InterruptedException {
+		final long startTime = System.nanoTime();
+		try(TextureLoadPipeline pipeline = new TextureLoadPipeline(source, Runtime.getRuntime().availableProcessors(), 32).setCache(cache)) {
+			for(int texture : pipeline.loadAll(paths, null, "Loading textures", new RecordingGLBackend())) {
+				MicroBenchmark.check(texture != 0, "A texture failed to load!");
+			}
+		}
+		return System.nanoTime() - startTime;
+	}
+	
+	private static final long getDiskUsage(File directory) {
+		long total = 0L;
+		for(File file : directory.listFiles()) {
+			total += file.length();
+		}
+		return total;
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws IOException Thrown if a temporary directory could not be
+	 *             created
+	 * @throws InterruptedException Thrown if the thread is interrupted while
+	 *             loading the textures */
+	public static final void main(String[] args) throws IOException, InterruptedException {
+		final Random random = new Random(0xCAC4EL);
+		final ConcurrentHashMap<String, byte[]> files = new ConcurrentHashMap<>();
+		final String[] paths = new String[120];
+		final int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY};
+		for(int i = 0; i < paths.length; i++) {
+			paths[i] = String.format("textures/generated/%s.png", Integer.toString(i));
+			files.put(paths[i], generate(random, 256, types[i % types.length]));
+		}
+		final TextureLoadPipeline.Source source = (path) -> {
+			byte[] data = files.get(path);
+			if(data == null) {
+				throw new FileNotFoundException(path);
+			}
+			return new ByteArrayInputStream(data);
+		};
+		final File directory = Files.createTempDirectory("texture-cache").toFile();
+		final DirectBufferPool pool = new DirectBufferPool(16L * 1024L * 1024L);
+		final ThreadLocal<int[]> rowBuffers = ThreadLocal.withInitial(() -> new int[256]);
+		try {
+			for(boolean compress : new boolean[] {false, true}) {
+				final String mode = compress ? "compressed" : "uncompressed";
+				new TextureCache(directory, compress).clear();
+				for(int run = 0; run < 3; run++) {
+					long uncachedNanos = load(source, paths, null);
+					TextureCache cold = new TextureCache(directory, compress);
+					cold.clear();
+					long coldNanos = load(source, paths, cold);
+					MicroBenchmark.check(cold.getMissCount() == paths.length && cold.getWriteCount() == paths.length && cold.getHitCount() == 0, "Cold cache did not miss and write every image!");
+					TextureCache warm = new TextureCache(directory, compress);
+					long warmNanos = load(source, paths, warm);
+					MicroBenchmark.check(warm.getHitCount() == paths.length && warm.getMissCount() == 0, "Warm cache did not hit every image!");
+					System.out.println(String.format("Run %s (%s): no cache: %s ms; cold cache: %s ms; warm cache: %s ms; %s KB on disk", Integer.toString(run + 1), mode, Long.toString(uncachedNanos / 1000000L), Long.toString(coldNanos / 1000000L), Long.toString(warmNanos / 1000000L), Long.toString(getDiskUsage(directory) / 1024L)));
+				}
+				
+				// Cached pixels must match freshly decoded ones:
+				final TextureCache cache = new TextureCache(directory, compress);
+				for(String path : paths) {
+					MicroBenchmark.check(decodeAndCompare(source, path, cache, pool, rowBuffers), "Image was not read from the cache: ".concat(path));
+				}
+				
+				// Changing a source image invalidates its entry:
+				files.put(paths[0], generate(random, 128, BufferedImage.TYPE_INT_ARGB));
+				MicroBenchmark.check(!decodeAndCompare(source, paths[0], cache, pool, rowBuffers) && cache.getStaleCount() == 1, "Changed image was read from its stale cache entry!");
+				MicroBenchmark.check(decodeAndCompare(source, paths[0], cache, pool, rowBuffers), "Changed image was not cached again!");
+				
+				// Corrupt, truncated and unrecognized entries are detected:
+				try(RandomAccessFile file = new RandomAccessFile(cache.getFile(paths[1]), "rw")) {
+					long offset = file.length() / 2L;
+					file.seek(offset);
+					int value = file.read();
+					file.seek(offset);
+					file.write(value ^ 0x40);
+				}
+				MicroBenchmark.check(!decodeAndCompare(source, paths[1], cache, pool, rowBuffers) && cache.getCorruptCount() == 1, "Corrupt cache entry was not detected!");
+				MicroBenchmark.check(decodeAndCompare(source, paths[1], cache, pool, rowBuffers), "Corrupt cache entry was not rewritten!");
+				try(RandomAccessFile file = new RandomAccessFile(cache.getFile(paths[2]), "rw")) {
+					file.setLength(file.length() - 5L);
+				}
+				MicroBenchmark.check(!decodeAndCompare(source, paths[2], cache, pool, rowBuffers) && cache.getCorruptCount() == 2, "Truncated cache entry was not detected!");
+				try(RandomAccessFile file = new RandomAccessFile(cache.getFile(paths[3]), "rw")) {
+					file.writeInt(0xDEADBEEF);
+				}
+				MicroBenchmark.check(!decodeAndCompare(source, paths[3], cache, pool, rowBuffers) && cache.getCorruptCount() == 3, "Unrecognized cache entry was not detected!");
+				// A size whose pixel count only matches the payload after overflowing an int (the header is little-endian):
+				try(RandomAccessFile file = new RandomAccessFile(cache.getFile(paths[4]), "rw")) {
+					file.seek(32L);
+					final int pathLength = Integer.reverseBytes(file.readInt());
+					file.seek(36L + pathLength + 4L);
+					final int rawLength = Integer.reverseBytes(file.readInt());
+					file.seek(12L);
+					file.writeInt(Integer.reverseBytes((rawLength / 4) + (1 << 30)));
+					file.writeInt(Integer.reverseBytes(1));
+				}
+				MicroBenchmark.check(!decodeAndCompare(source, paths[4], cache, pool, rowBuffers) && cache.getCorruptCount() == 4, "Cache entry with an overflowing size was not detected!");
+				System.out.println(String.format("Cache invalidation and corruption detection verified (%s).", mode));
+			}
+		} finally {
+			new TextureCache(directory, false).clear();
+			directory.delete();
+		}
+	}
+	
+}
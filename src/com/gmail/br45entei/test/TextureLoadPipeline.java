@@ -0,0 +1,753 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import com.gmail.br45entei.game.graphics.GLThread.InitializationProgress;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.lwjgl.opengl.GL11;
+
+/** Loads textures by decoding their images on a pool of worker threads while
+ * the GL thread uploads the ones that are ready.<br>
+ * <br>
+ * Images are decoded with {@link ImageIO} straight into RGBA pixel data held
+ * in pooled direct {@link ByteBuffer}s. Decoded images are queued up for the
+ * GL thread, which uploads them in batches with
+ * {@link #uploadPending(GLBackend, int[], int)} (or all at once with
+ * {@link #loadAll(String[], InitializationProgress, String, GLBackend)
+ * loadAll}), after which their buffers are returned to the pool. The number
+ * of decoded images waiting to be uploaded is bounded, so the workers simply
+ * stall if the GL thread falls behind instead of holding every image in
+ * memory at once.<br>
+ * <br>
+ * If a {@link #setCache(TextureCache) cache} is set, images that have not
+ * changed since they were last decoded are read from it instead of being
+ * decoded again.<br>
+ * <br>
+ * Nothing in this class except for the upload methods requires a GL context,
+ * and those only use the given {@link GLBackend}, so the whole pipeline can be
+ * run headlessly with a {@link RecordingGLBackend}.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureLoadPipeline implements Closeable {
+	
+	/** Opens the images that a {@link TextureLoadPipeline} decodes.
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	@FunctionalInterface
+	public static interface Source {
+		
+		/** @param path The path of the image to open
+		 * @return A new stream that reads the image's (encoded) data
+		 * @throws IOException Thrown if the image could not be opened */
+		public InputStream open(String path) throws IOException;
+		
+	}
+	
+	/** Opens images as resources on the classpath, falling back to files
+	 * relative to the working directory. */
+	public static final Source CLASSPATH = (path) -> {
+		InputStream in = TextureLoadPipeline.class.getClassLoader().getResourceAsStream(path);
+		if(in != null) {
+			return in;
+		}
+		File file = new File(path);
+		if(!file.isFile()) {
+			throw new FileNotFoundException(String.format("Unable to find image \"%s\" on the classpath or on disk!", path));
+		}
+		return new FileInputStream(file);
+	};
+	
+	/** The number of decoded images uploaded before
+	 * {@link #loadAll(String[], InitializationProgress, String, GLBackend)
+	 * loadAll} reports its progress */
+	public static final int DEFAULT_BATCH_SIZE = 8;
+	
+	/** An image that has been decoded into RGBA pixel data (or that failed to
+	 * decode).
+	 * 
+	 * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+	public static final class DecodedImage {
+		/** The index that the image was submitted with */
+		public final int index;
+		/** The path of the image */
+		public final String path;
+		/** The size of the image, in pixels */
+		public final int width, height;
+		/** The time it took to decode the image, in nanoseconds */
+		public final long decodeNanos;
+		/** Whether or not the image's pixels were read from a
+		 * {@link TextureCache} instead of being decoded */
+		public final boolean cached;
+		/** The exception that prevented the image from being decoded, or
+		 * {@code null} if it was decoded successfully */
+		public final Throwable error;
+		volatile ByteBuffer pixels;
+		
+		DecodedImage(int index, String path, int width, int height, ByteBuffer pixels, long decodeNanos, boolean cached, Throwable error) {
+			this.index = index;
+			this.path = path;
+			this.width = width;
+			this.height = height;
+			this.pixels = pixels;
+			this.decodeNanos = decodeNanos;
+			this.cached = cached;
+			this.error = error;
+		}
+		
+		/** @return The image's pixels (four bytes per pixel in RGBA order,
+		 *         starting with the top row), or {@code null} if the image
+		 *         failed to decode or has already been uploaded */
+		public ByteBuffer getPixels() {
+			return this.pixels;
+		}
+		
+	}
+	
+	private final Source source;
+	private final ExecutorService workers;
+	private final DirectBufferPool bufferPool;
+	private final Semaphore pending;
+	private final LinkedBlockingQueue<DecodedImage> decoded = new LinkedBlockingQueue<>();
+	private final ThreadLocal<int[]> rowBuffers = ThreadLocal.withInitial(() -> new int[256]);
+	
+	private final AtomicInteger decodedCount = new AtomicInteger(0);
+	private final AtomicLong decodeNanos = new AtomicLong(0L);
+	private final AtomicLong decodedBytes = new AtomicLong(0L);
+	private volatile int uploadedCount = 0;
+	private volatile int minFilter = GL11.GL_LINEAR, magFilter = GL11.GL_LINEAR;
+	private volatile TextureCache cache = null;
+	/** Incremented (while holding {@link #decoded}'s lock) by
+	 * {@link #cancel()} so that images submitted before then are thrown away
+	 * instead of being queued */
+	private volatile int generation = 0;
+	
+	/** Creates a new TextureLoadPipeline that loads images from the classpath
+	 * using one worker thread per available processor. */
+	public TextureLoadPipeline() {
+		this(CLASSPATH, Runtime.getRuntime().availableProcessors(), 32);
+	}
+	
+	/** Creates a new TextureLoadPipeline.
+	 * 
+	 * @param source The source to open images from
+	 * @param threads The number of worker threads to decode images on
+	 * @param maxPendingImages The maximum number of decoded images that may be
+	 *            waiting to be uploaded at any one time */
+	public TextureLoadPipeline(Source source, int threads, int maxPendingImages) {
+		this.source = source;
+		this.pending = new Semaphore(Math.max(1, maxPendingImages));
+		this.bufferPool = new DirectBufferPool(64L * 1024L * 1024L);
+		final AtomicInteger threadNumber = new AtomicInteger(0);
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads), (r) -> {
+			Thread thread = new Thread(r, "TextureDecoder-".concat(Integer.toString(threadNumber.incrementAndGet())));
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		});
+	}
+	
+	/** Sets the filters used for textures uploaded from now on.
+	 * 
+	 * @param minFilter The texture minifying function (e.g.
+	 *            {@link GL11#GL_LINEAR})
+	 * @param magFilter The texture magnification function (e.g.
+	 *            {@link GL11#GL_NEAREST})
+	 * @return This TextureLoadPipeline */
+	public TextureLoadPipeline setFilters(int minFilter, int magFilter) {
+		this.minFilter = minFilter;
+		this.magFilter = magFilter;
+		return this;
+	}
+	
+	/** Sets the cache that decoded images are read from and written to.
+	 * 
+	 * @param cache The cache to use, or {@code null} to always decode images
+	 * @return This TextureLoadPipeline */
+	public TextureLoadPipeline setCache(TextureCache cache) {
+		this.cache = cache;
+		return this;
+	}
+	
+	/** @return The cache that decoded images are read from and written to, or
+	 *         {@code null} if images are always decoded */
+	public TextureCache getCache() {
+		return this.cache;
+	}
+	
+	/** @return The pool that decoded pixel data is stored in */
+	public DirectBufferPool getBufferPool() {
+		return this.bufferPool;
+	}
+	
+	/** @return The number of images that have been decoded so far (including
+	 *         those that failed to decode) */
+	public int getDecodedCount() {
+		return this.decodedCount.get();
+	}
+	
+	/** @return The number of decoded images that have been uploaded, copied
+	 *         into an atlas or discarded so far */
+	public int getUploadedCount() {
+		return this.uploadedCount;
+	}
+	
+	/** @return The total time spent decoding images, summed across all worker
+	 *         threads, in nanoseconds */
+	public long getDecodeNanos() {
+		return this.decodeNanos.get();
+	}
+	
+	/** @return The total amount of RGBA pixel data decoded, in bytes */
+	public long getDecodedBytes() {
+		return this.decodedBytes.get();
+	}
+	
+	//=============================================================================================
+	
+	/** Queues an image to be decoded on one of the worker threads. Returns
+	 * immediately.
+	 * 
+	 * @param index The index to identify the image by once it is decoded
+	 * @param path The path of the image */
+	public void submit(final int index, final String path) {
+		final int generation = this.generation;
+		this.workers.execute(() -> {
+			if(generation != this.generation) {
+				return;
+			}
+			try {
+				this.pending.acquire();
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if(generation != this.generation) {
+				this.pending.release();
+				return;
+			}
+			DecodedImage image = decode(this.source, index, path, this.bufferPool, this.rowBuffers, this.cache);
+			this.decodeNanos.addAndGet(image.decodeNanos);
+			if(image.pixels != null) {
+				this.decodedBytes.addAndGet(image.pixels.remaining());
+			}
+			this.decodedCount.incrementAndGet();
+			synchronized(this.decoded) {
+				if(generation == this.generation) {
+					this.decoded.add(image);
+					return;
+				}
+			}
+			this.bufferPool.release(image.pixels);
+			image.pixels = null;
+			this.pending.release();
+		});
+	}
+	
+	/** Throws away every image that has been submitted so far but not taken
+	 * out of this pipeline yet: images that have already been decoded are
+	 * {@link #discard(DecodedImage) discarded}, and the rest are not queued
+	 * once they finish decoding (or are not decoded at all). The pipeline can
+	 * still be used afterwards. */
+	public void cancel() {
+		synchronized(this.decoded) {
+			this.generation++;
+			DecodedImage image;
+			while((image = this.decoded.poll()) != null) {
+				this.discard(image);
+			}
+		}
+	}
+	
+	/** @return The next decoded image, or {@code null} if none are ready */
+	public DecodedImage poll() {
+		return this.decoded.poll();
+	}
+	
+	/** @param timeout The maximum amount of time to wait
+	 * @param unit The unit of the timeout
+	 * @return The next decoded image, or {@code null} if none became ready in
+	 *         time
+	 * @throws InterruptedException Thrown if the current thread was
+	 *             interrupted while waiting */
+	public DecodedImage poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.decoded.poll(timeout, unit);
+	}
+	
+	/** Decodes an image into RGBA pixel data on the current thread.
+	 * 
+	 * @param source The source to open the image from
+	 * @param index The index to identify the image by
+	 * @param path The path of the image
+	 * @param bufferPool The pool to acquire the pixel buffer from
+	 * @param rowBuffers Per-thread scratch space for image types that need to
+	 *            be converted pixel by pixel
+	 * @return The decoded image. If the image could not be decoded, its
+	 *         {@link DecodedImage#error error} is set instead of its pixels. */
+	public static final DecodedImage decode(Source source, int index, String path, DirectBufferPool bufferPool, ThreadLocal<int[]> rowBuffers) {
+		return decode(source, index, path, bufferPool, rowBuffers, null);
+	}
+	
+	/** Decodes an image into RGBA pixel data on the current thread, or reads
+	 * it from the given cache if the image has not changed since it was
+	 * cached. Images that are decoded are written to the cache.
+	 * 
+	 * @param source The source to open the image from
+	 * @param index The index to identify the image by
+	 * @param path The path of the image
+	 * @param bufferPool The pool to acquire the pixel buffer from
+	 * @param rowBuffers Per-thread scratch space for image types that need to
+	 *            be converted pixel by pixel
+	 * @param cache The cache to use (may be {@code null})
+	 * @return The decoded image. If the image could not be decoded, its
+	 *         {@link DecodedImage#error error} is set instead of its pixels. */
+	public static final DecodedImage decode(Source source, int index, String path, DirectBufferPool bufferPool, ThreadLocal<int[]> rowBuffers, TextureCache cache) {
+		final long startTime = System.nanoTime();
+		ByteBuffer pixels = null;
+		try {
+			byte[] data = null;
+			int checksum = 0;
+			if(cache != null) {
+				// The encoded image has to be read anyway to tell whether the cached entry is still up to date:
+				try(InputStream in = source.open(path)) {
+					data = in.readAllBytes();
+				}
+				checksum = TextureCache.checksum(data, 0, data.length);
+				final int[] size = new int[2];
+				pixels = cache.read(path, data.length, checksum, bufferPool, size);
+				if(pixels != null) {
+					return new DecodedImage(index, path, size[0], size[1], pixels, System.nanoTime() - startTime, true, null);
+				}
+			}
+			BufferedImage image;
+			try(InputStream in = data != null ? new ByteArrayInputStream(data) : source.open(path)) {
+				// ImageIO.read(ImageInputStream) closes the stream itself:
+				image = ImageIO.read(new MemoryCacheImageInputStream(new BufferedInputStream(in)));
+			}
+			if(image == null) {
+				throw new IOException(String.format("Unsupported image format: \"%s\"", path));
+			}
+			final int width = image.getWidth(), height = image.getHeight();
+			pixels = bufferPool.acquire(width * height * 4);
+			toRGBA(image, pixels, rowBuffers);
+			if(cache != null) {
+				cache.write(path, data.length, checksum, width, height, pixels);
+			}
+			return new DecodedImage(index, path, width, height, pixels, System.nanoTime() - startTime, false, null);
+		} catch(IOException | RuntimeException ex) {
+			bufferPool.release(pixels);
+			return new DecodedImage(index, path, 0, 0, null, System.nanoTime() - startTime, false, ex);
+		}
+	}
+	
+	/** Converts the given image into tightly packed RGBA bytes, using the
+	 * image's backing array directly for the formats that ImageIO commonly
+	 * produces. */
+	private static final void toRGBA(BufferedImage image, ByteBuffer dst, ThreadLocal<int[]> rowBuffers) {
+		final int width = image.getWidth(), height = image.getHeight();
+		final boolean littleEndian = dst.order() == ByteOrder.LITTLE_ENDIAN;
+		final Raster raster = image.getRaster();
+		final boolean untranslated = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0 && raster.getDataBuffer().getNumBanks() == 1 && raster.getDataBuffer().getOffset() == 0;
+		final int type = image.getType();
+		int offset = 0;
+		if(untranslated && (type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_3BYTE_BGR) && raster.getSampleModel() instanceof PixelInterleavedSampleModel) {
+			final PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+			final byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+			final boolean alpha = type == BufferedImage.TYPE_4BYTE_ABGR;
+			final int pixelStride = model.getPixelStride(), scanlineStride = model.getScanlineStride();
+			for(int y = 0; y < height; y++) {
+				for(int x = 0, i = y * scanlineStride; x < width; x++, i += pixelStride) {
+					final int a = alpha ? data[i] & 0xFF : 0xFF;
+					final int b = data[alpha ? i + 1 : i] & 0xFF, g = data[alpha ? i + 2 : i + 1] & 0xFF, r = data[alpha ? i + 3 : i + 2] & 0xFF;
+					dst.putInt(offset, littleEndian ? (a << 24) | (b << 16) | (g << 8) | r : (r << 24) | (g << 16) | (b << 8) | a);
+					offset += 4;
+				}
+			}
+			return;
+		}
+		if(untranslated && (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			final int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+			final int scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+			final boolean alpha = type == BufferedImage.TYPE_INT_ARGB;
+			for(int y = 0; y < height; y++) {
+				for(int x = 0, i = y * scanlineStride; x < width; x++, i++) {
+					offset = putARGB(dst, offset, alpha ? data[i] : data[i] | 0xFF000000, littleEndian);
+				}
+			}
+			return;
+		}
+		// Indexed, grayscale and custom images:
+		int[] row = rowBuffers.get();
+		if(row.length < width) {
+			row = new int[width];
+			rowBuffers.set(row);
+		}
+		for(int y = 0; y < height; y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for(int x = 0; x < width; x++) {
+				offset = putARGB(dst, offset, row[x], littleEndian);
+			}
+		}
+	}
+	
+	private static final int putARGB(ByteBuffer dst, int offset, int argb, boolean littleEndian) {
+		// ARGB -> bytes in RGBA order
+		dst.putInt(offset, littleEndian ? (argb & 0xFF00FF00) | ((argb >>> 16) & 0xFF) | ((argb & 0xFF) << 16) : (argb << 8) | (argb >>> 24));
+		return offset + 4;
+	}
+	
+	//=============================================================================================
+	
+	/** Uploads a decoded image into a new texture, then returns its pixel
+	 * buffer to the pool. Must be called on a thread with a current GL
+	 * context (unless the backend does not need one).<br>
+	 * The new texture is left bound to {@link GL11#GL_TEXTURE_2D}.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @param image The image to upload
+	 * @return The new texture's name, or {@code 0} if the image failed to
+	 *         decode */
+	public int upload(GLBackend gl, DecodedImage image) {
+		return this.upload(gl, image, 0);
+	}
+	
+	/** Uploads a decoded image into the given texture (replacing whatever it
+	 * held before), or into a new texture, then returns its pixel buffer to
+	 * the pool. Must be called on a thread with a current GL context (unless
+	 * the backend does not need one).<br>
+	 * The texture is left bound to {@link GL11#GL_TEXTURE_2D}.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @param image The image to upload
+	 * @param texture The name of the texture to upload into, or {@code 0} to
+	 *            generate a new one
+	 * @return The texture's name, or {@code 0} if the image failed to decode
+	 *         (in which case the given texture is left untouched) */
+	public int upload(GLBackend gl, DecodedImage image, int texture) {
+		final ByteBuffer pixels = image.pixels;
+		image.pixels = null;
+		try {
+			if(pixels != null) {
+				texture = texture == 0 ? gl.glGenTextures() : texture;
+				gl.glBindTexture(GL11.GL_TEXTURE_2D, texture);
+				gl.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, this.minFilter);
+				gl.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, this.magFilter);
+				gl.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, image.width, image.height, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixels);
+			} else {
+				texture = 0;
+				if(image.error != null) {
+					System.err.println(String.format("Failed to load texture \"%s\": %s", image.path, image.error.toString()));
+					System.err.flush();
+				}
+			}
+		} finally {
+			this.recycle(pixels);
+		}
+		return texture;
+	}
+	
+	/** Throws away a decoded image that is no longer needed without uploading
+	 * it, returning its pixel buffer to the pool.
+	 * 
+	 * @param image The image to discard */
+	public void discard(DecodedImage image) {
+		final ByteBuffer pixels = image.pixels;
+		image.pixels = null;
+		this.recycle(pixels);
+	}
+	
+	/** Returns a consumed image's pixel buffer to the pool and lets the
+	 * workers decode another image in its place. */
+	private void recycle(ByteBuffer pixels) {
+		this.bufferPool.release(pixels);
+		this.pending.release();
+		this.uploadedCount++;
+	}
+	
+	/** Uploads up to {@code maxUploads} of the images that have finished
+	 * decoding, without waiting for any others. Intended to be called once per
+	 * frame on the GL thread while textures are streamed in.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @param textureIds The array to store the new textures' names in, at the
+	 *            index each image was submitted with
+	 * @param maxUploads The maximum number of images to upload
+	 * @return The number of images uploaded */
+	public int uploadPending(GLBackend gl, int[] textureIds, int maxUploads) {
+		int uploaded = 0;
+		DecodedImage image;
+		while(uploaded < maxUploads && (image = this.decoded.poll()) != null) {
+			textureIds[image.index] = this.upload(gl, image);
+			uploaded++;
+		}
+		if(uploaded > 0) {
+			gl.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+		}
+		return uploaded;
+	}
+	
+	/** Loads every given image into a texture, blocking until all of them
+	 * have been uploaded. Must be called on the GL thread, and not while any
+	 * images {@link #submit(int, String) submitted} separately are still
+	 * pending.
+	 * 
+	 * @param paths The paths of the images to load
+	 * @param progress The progress to report to as textures are uploaded
+	 *            (may be {@code null})
+	 * @param description The message to report progress with, e.g.
+	 *            {@code "Loading textures"}
+	 * @param gl The GL backend to upload with
+	 * @return The new textures' names, in the same order as {@code paths}.
+	 *         Images that failed to load are given the name {@code 0}.
+	 * @throws InterruptedException Thrown if the current thread was
+	 *             interrupted while waiting for the images to decode. The
+	 *             remaining images are {@link #cancel() cancelled} and the
+	 *             textures that were already uploaded are deleted. */
+	public int[] loadAll(String[] paths, InitializationProgress progress, String description, GLBackend gl) throws InterruptedException {
+		return this.loadAll(paths, progress, description, 0, paths.length, gl);
+	}
+	
+	/** Loads every given image into a texture, blocking until all of them
+	 * have been uploaded, and reports progress as part of a larger set of
+	 * images (so that several calls can share one progress bar).
+	 * 
+	 * @param paths The paths of the images to load
+	 * @param progress The progress to report to as textures are uploaded
+	 *            (may be {@code null})
+	 * @param description The message to report progress with
+	 * @param offset The number of images in the larger set that were loaded
+	 *            before these ones
+	 * @param count The total number of images in the larger set
+	 * @param gl The GL backend to upload with
+	 * @return The new textures' names, in the same order as {@code paths}
+	 * @throws InterruptedException Thrown if the current thread was
+	 *             interrupted while waiting for the images to decode
+	 * @see #loadAll(String[], InitializationProgress, String, GLBackend) */
+	public int[] loadAll(String[] paths, InitializationProgress progress, String description, int offset, int count, GLBackend gl) throws InterruptedException {
+		final int[] textureIds = new int[paths.length];
+		for(int i = 0; i < paths.length; i++) {
+			this.submit(i, paths[i]);
+		}
+		final String total = Integer.toString(count);
+		int uploaded = 0;
+		while(uploaded < paths.length) {
+			DecodedImage image;
+			try {
+				image = this.decoded.take();
+			} catch(InterruptedException ex) {
+				this.cancel();
+				for(int texture : textureIds) {
+					if(texture != 0) {
+						gl.glDeleteTextures(texture);
+					}
+				}
+				throw ex;
+			}
+			DecodedImage last;
+			int batch = 0;
+			do {
+				textureIds[image.index] = this.upload(gl, image);
+				last = image;
+				uploaded++;
+			} while(++batch < DEFAULT_BATCH_SIZE && (image = this.decoded.poll()) != null);
+			gl.glBindTexture(GL11.GL_TEXTURE_2D, 0);
+			if(progress != null) {
+				progress.set((offset + uploaded) / (count + 0.0f), String.format("%s (%s/%s)\r\n(\"%s\")", description, Integer.toString(offset + uploaded), total, last.path));
+			}
+		}
+		return textureIds;
+	}
+	
+	/** Reads the size of an image without decoding its pixels.
+	 * 
+	 * @param source The source to open the image from
+	 * @param path The path of the image
+	 * @return The size of the image, in pixels
+	 * @throws IOException Thrown if the image could not be read or is not in
+	 *             a supported format */
+	public static final Dimension readImageSize(Source source, String path) throws IOException {
+		try(InputStream in = source.open(path); ImageInputStream stream = new MemoryCacheImageInputStream(new BufferedInputStream(in))) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if(!readers.hasNext()) {
+				throw new IOException(String.format("Unsupported image format: \"%s\"", path));
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, true, true);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	/** Decodes every given image into a single {@link TextureAtlas}, blocking
+	 * until all of them have been copied into it. The atlas' pixel data can
+	 * then be uploaded with {@link TextureAtlas#upload(GLBackend, int, int)}
+	 * (or saved). Does not require a GL context, and must not be called while
+	 * any images {@link #submit(int, String) submitted} separately are still
+	 * pending.<br>
+	 * <br>
+	 * The images' sizes are read first (on the worker threads) so that the
+	 * atlas can be laid out before anything is decoded; each image is then
+	 * copied into the atlas as soon as it has been decoded, so at most
+	 * {@code maxPendingImages} decoded images are held in memory at once in
+	 * addition to the atlas itself.
+	 * 
+	 * @param paths The paths of the images to load, in frame order
+	 * @param progress The progress to report to as images are decoded (may
+	 *            be {@code null})
+	 * @param description The message to report progress with
+	 * @param padding The number of pixels to leave between (and around) the
+	 *            frames
+	 * @param maxSize The maximum width and height of the atlas
+	 * @return The atlas, or {@code null} if the images do not fit in an atlas
+	 *         of the maximum size. Images that failed to load are left
+	 *         blank. */
+	public TextureAtlas decodeAtlas(String[] paths, InitializationProgress progress, String description, int padding, int maxSize) {
+		return this.decodeAtlas(paths, progress, description, 0, paths.length, padding, maxSize);
+	}
+	
+	/** Decodes every given image into a single {@link TextureAtlas}, and
+	 * reports progress as part of a larger set of images (so that several
+	 * calls can share one progress bar).
+	 * 
+	 * @param paths The paths of the images to load, in frame order
+	 * @param progress The progress to report to as images are decoded (may
+	 *            be {@code null})
+	 * @param description The message to report progress with
+	 * @param offset The number of images in the larger set that were loaded
+	 *            before these ones
+	 * @param count The total number of images in the larger set
+	 * @param padding The number of pixels to leave between (and around) the
+	 *            frames
+	 * @param maxSize The maximum width and height of the atlas
+	 * @return The atlas, or {@code null} if the images do not fit in an atlas
+	 *         of the maximum size
+	 * @see #decodeAtlas(String[], InitializationProgress, String, int, int) */
+	public TextureAtlas decodeAtlas(String[] paths, InitializationProgress progress, String description, int offset, int count, int padding, int maxSize) {
+		final List<Future<Dimension>> sizes = new ArrayList<>(paths.length);
+		for(final String path : paths) {
+			sizes.add(this.workers.submit(() -> readImageSize(this.source, path)));
+		}
+		final int[] widths = new int[paths.length], heights = new int[paths.length];
+		for(int i = 0; i < paths.length; i++) {
+			try {
+				Dimension size = sizes.get(i).get();
+				widths[i] = size.width;
+				heights[i] = size.height;
+			} catch(ExecutionException ex) {
+				System.err.println(String.format("Failed to read the size of texture \"%s\": %s", paths[i], ex.getCause().toString()));
+				System.err.flush();
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		final TextureAtlas atlas = TextureAtlas.pack(widths, heights, padding, maxSize);
+		if(atlas == null) {
+			return null;
+		}
+		atlas.getPixels();
+		for(int i = 0; i < paths.length; i++) {
+			this.submit(i, paths[i]);
+		}
+		final String total = Integer.toString(count);
+		for(int copied = 0; copied < paths.length;) {
+			DecodedImage image;
+			try {
+				image = this.decoded.take();
+			} catch(InterruptedException ex) {
+				this.cancel();
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			final ByteBuffer pixels = image.pixels;
+			image.pixels = null;
+			try {
+				if(pixels != null && image.width == widths[image.index] && image.height == heights[image.index]) {
+					atlas.blit(image.index, pixels);
+				} else {
+					System.err.println(String.format("Failed to load texture \"%s\": %s", image.path, image.error == null ? "Image size changed while loading" : image.error.toString()));
+					System.err.flush();
+				}
+			} finally {
+				this.recycle(pixels);
+			}
+			if(++copied % DEFAULT_BATCH_SIZE == 0 || copied == paths.length) {
+				if(progress != null) {
+					progress.set((offset + copied) / (count + 0.0f), String.format("%s (%s/%s)\r\n(\"%s\")", description, Integer.toString(offset + copied), total, image.path));
+				}
+			}
+		}
+		return atlas;
+	}
+	
+	/** Stops this pipeline's worker threads. Images that have not been
+	 * decoded yet are discarded. */
+	@Override
+	public void close() {
+		this.workers.shutdownNow();
+		DecodedImage image;
+		while((image = this.decoded.poll()) != null) {
+			this.bufferPool.release(image.pixels);
+			image.pixels = null;
+		}
+	}
+	
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/** Headless comparison of loading textures one at a time (decode, then
+ * upload, then the next image) against loading them through a
+ * {@link TextureLoadPipeline}, using a {@link RecordingGLBackend} in place of
+ * a GL context.<br>
+ * <br>
+ * If a directory is given on the command line, every PNG in it is loaded;
+ * otherwise 256 images are generated in memory to match the "Texture Test"
+ * (16 small frames and 240 larger ones, in a mix of PNG color types).
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class TextureLoadPipelineBenchmark {
+	
+	private static final byte[] encode(BufferedImage image) {
+		try(ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+			ImageIO.write(image, "png", out);
+			return out.toByteArray();
+		} catch(IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+	
+	private static final BufferedImage generate(Random random, int size, int type) {
+		BufferedImage image = new BufferedImage(size, size, type);
+		for(int y = 0; y < size; y++) {
+			for(int x = 0; x < size; x++) {
+				// Smooth gradients with a little noise compress about as well as real textures do:
+				int r = (x * 255) / size, g = (y * 255) / size, b = ((x + y) * 127) / size + random.nextInt(32);
+				image.setRGB(x, y, ((128 + random.nextInt(128)) << 24) | (r << 16) | (g << 8) | Math.min(255, b));
+			}
+		}
+		return image;
+	}
+	
+	/** Checks a decoded image's pixels against {@link BufferedImage#getRGB(int, int)}. */
+	private static final void verify(TextureLoadPipeline.DecodedImage decoded, byte[] data) throws IOException {
+		MicroBenchmark.check(decoded.error == null, String.format("Failed to decode \"%s\": %s", decoded.path, String.valueOf(decoded.error)));
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+		ByteBuffer pixels = decoded.getPixels();
+		MicroBenchmark.check(decoded.width == image.getWidth() && decoded.height == image.getHeight() && pixels.remaining() == decoded.width * decoded.height * 4, "Decoded image has the wrong size: ".concat(decoded.path));
+		for(int y = 0; y < image.getHeight(); y++) {
+			for(int x = 0; x < image.getWidth(); x++) {
+				int argb = image.getRGB(x, y), i = ((y * image.getWidth()) + x) * 4;
+				int rgba = ((pixels.get(i) & 0xFF) << 16) | ((pixels.get(i + 1) & 0xFF) << 8) | (pixels.get(i + 2) & 0xFF) | ((pixels.get(i + 3) & 0xFF) << 24);
+				MicroBenchmark.check(argb == rgba, String.format("Pixel (%s, %s) of \"%s\" (image type %s) was decoded incorrectly!", Integer.toString(x), Integer.toString(y), decoded.path, Integer.toString(image.getType())));
+			}
+		}
+	}
+	
+	/** @param args Program command line arguments
+	 * @throws IOException Thrown if an image could not be read
+	 * @throws InterruptedException Thrown if the thread is interrupted while
+	 *             loading the textures */
+	public static final void main(String[] args) throws IOException, InterruptedException {
+		final HashMap<String, byte[]> files = new HashMap<>();
+		final List<String> paths = new ArrayList<>();
+		if(args.length > 0) {
+			for(File file : new File(args[0]).listFiles()) {
+				if(file.getName().toLowerCase().endsWith(".png")) {
+					try(FileInputStream in = new FileInputStream(file)) {
+						files.put(file.getName(), in.readAllBytes());
+					}
+					paths.add(file.getName());
+				}
+			}
+		} else {
+			final Random random = new Random(0x7E47L);
+			final int[] types = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+			for(int i = 0; i < 256; i++) {
+				String path = String.format("generated/%s.png", Integer.toString(i));
+				files.put(path, encode(generate(random, i < 16 ? 16 : 256, types[i % types.length])));
+				paths.add(path);
+			}
+		}
+		final TextureLoadPipeline.Source source = (path) -> {
+			byte[] data = files.get(path);
+			if(data == null) {
+				throw new FileNotFoundException(path);
+			}
+			return new ByteArrayInputStream(data);
+		};
+		final String[] pathArray = paths.toArray(new String[paths.size()]);
+		final DirectBufferPool pool = new DirectBufferPool(64L * 1024L * 1024L);
+		final ThreadLocal<int[]> rowBuffers = ThreadLocal.withInitial(() -> new int[256]);
+		
+		// Verify the decoded pixels of a few images of each type:
+		for(int i = 0; i < Math.min(8, pathArray.length); i++) {
+			TextureLoadPipeline.DecodedImage decoded = TextureLoadPipeline.decode(source, i, pathArray[i], pool, rowBuffers);
+			verify(decoded, files.get(pathArray[i]));
+			pool.release(decoded.getPixels());
+		}
+		TextureLoadPipeline.DecodedImage missing = TextureLoadPipeline.decode(source, 0, "missing.png", pool, rowBuffers);
+		MicroBenchmark.check(missing.error instanceof FileNotFoundException && missing.getPixels() == null, "Missing image did not fail to decode!");
+		System.out.println("Decoded pixel data verified.");
+		
+		// Interrupting loadAll: the decoded images and the rest of the queued work are thrown away, and the pipeline can still be used afterwards:
+		final TextureLoadPipeline.Source slowSource = (path) -> {
+			try {
+				Thread.sleep(2L);
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			return source.open(path);
+		};
+		try(TextureLoadPipeline pipeline = new TextureLoadPipeline(slowSource, 2, 4)) {
+			final RecordingGLBackend recorder = new RecordingGLBackend();
+			final boolean[] interrupted = {false};
+			Thread loader = new Thread(() -> {
+				try {
+					pipeline.loadAll(pathArray, null, "Loading textures", recorder);
+				} catch(InterruptedException ex) {
+					interrupted[0] = true;
+				}
+			}, "Loader");
+			loader.start();
+			Thread.sleep(50L);
+			loader.interrupt();
+			loader.join();
+			MicroBenchmark.check(interrupted[0], "loadAll did not throw an InterruptedException when interrupted!");
+			MicroBenchmark.check(recorder.getCount(RecordingGLBackend.Call.DELETE_TEXTURES) == recorder.getCount(RecordingGLBackend.Call.GEN_TEXTURES), "loadAll did not delete the textures it uploaded before it was interrupted!");
+			
+			final String[] more = Arrays.copyOfRange(pathArray, 0, Math.min(16, pathArray.length));
+			final int[][] textures = {null};
+			Thread reloader = new Thread(() -> {
+				try {
+					textures[0] = pipeline.loadAll(more, null, "Loading textures", new RecordingGLBackend());
+				} catch(InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}, "Reloader");
+			reloader.setDaemon(true);
+			reloader.start();
+			reloader.join(10000L);
+			MicroBenchmark.check(textures[0] != null && Arrays.stream(textures[0]).allMatch((texture) -> texture != 0), "The pipeline could not load images again after being interrupted!");
+			System.out.println(String.format("Interrupted loadAll after %s of %s uploads; the pipeline loaded %s more images afterwards.", Long.toString(recorder.getCount(RecordingGLBackend.Call.GEN_TEXTURES)), Integer.toString(pathArray.length), Integer.toString(more.length)));
+		}
+		
+		final int threads = Runtime.getRuntime().availableProcessors();
+		for(int run = 0; run < 3; run++) {
+			// Sequential path: decode and upload each image in turn, like calling TextureLoader.getTexture for each one
+			RecordingGLBackend recorder = new RecordingGLBackend();
+			long startTime = System.nanoTime(), decodeNanos = 0L, decodedBytes = 0L;
+			TextureLoadPipeline uploader = new TextureLoadPipeline(source, 1, pathArray.length);
+			for(int i = 0; i < pathArray.length; i++) {
+				TextureLoadPipeline.DecodedImage image = TextureLoadPipeline.decode(source, i, pathArray[i], pool, rowBuffers);
+				decodeNanos += image.decodeNanos;
+				decodedBytes += image.getPixels().remaining();
+				uploader.upload(recorder, image);
+			}
+			uploader.close();
+			long sequentialNanos = System.nanoTime() - startTime;
+			
+			// Pipeline:
+			RecordingGLBackend pipelineRecorder = new RecordingGLBackend();
+			startTime = System.nanoTime();
+			int[] textures;
+			TextureLoadPipeline pipeline = new TextureLoadPipeline(source, threads, 32);
+			try {
+				textures = pipeline.loadAll(pathArray, null, "Loading textures", pipelineRecorder);
+			} finally {
+				pipeline.close();
+			}
+			long pipelineNanos = System.nanoTime() - startTime;
+			for(int texture : textures) {
+				MicroBenchmark.check(texture != 0, "A texture failed to load!");
+			}
+			MicroBenchmark.check(pipeline.getUploadedCount() == pathArray.length && pipelineRecorder.getCount(RecordingGLBackend.Call.TEX_IMAGE_2D) == pathArray.length, "Not every image was uploaded!");
+			MicroBenchmark.check(pipelineRecorder.getBytesUploaded() == recorder.getBytesUploaded(), "The pipeline uploaded a different amount of data than the sequential path!");
+			
+			System.out.println(String.format("Run %s: %s images, %s MB of pixel data", Integer.toString(run + 1), Integer.toString(pathArray.length), Long.toString(decodedBytes / (1024L * 1024L))));
+			System.out.println(String.format("    Sequential:                 %s ms wall clock; decode throughput: %s images/s", Long.toString(sequentialNanos / 1000000L), Long.toString(Math.round(pathArray.length / (decodeNanos / 1.0E9)))));
+			System.out.println(String.format("    Pipeline (%s worker threads): %s ms wall clock; decode throughput: %s images/s per thread; %s pooled buffer reuses", Integer.toString(threads), Long.toString(pipelineNanos / 1000000L), Long.toString(Math.round(pathArray.length / (pipeline.getDecodeNanos() / 1.0E9))), Long.toString(pipeline.getBufferPool().getReuseCount())));
+		}
+	}
+	
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/** A lock-free, single-producer/single-consumer handoff of mutable state
+ * between two threads.<br>
+ * The producer writes into its own {@link #getWriteBuffer() back buffer} and
+ * then {@link #publish() publishes} it, which swaps it with the shared middle
+ * buffer. The consumer {@link #read() reads} by swapping the middle buffer
+ * with its own front buffer whenever something new was published. Neither side
+ * ever waits for the other, and neither side ever sees a buffer that the other
+ * side is still writing to or reading from.<br>
+ * <br>
+ * The producer may publish any number of times between two reads; the
+ * consumer always gets the most recently published state, and re-reads the
+ * same state if nothing new was published.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt;
+ * @param <T> The type of state that is handed off */
+public class TripleBuffer<T> {
+	
+	private static final int INDEX_MASK = 0x3;
+	private static final int FRESH = 0x4;
+	
+	private final Object[] buffers = new Object[3];
+	/** The index of the middle buffer, along with the {@link #FRESH} bit when
+	 * the producer has published it since the consumer last read */
+	private final AtomicInteger middle = new AtomicInteger(1);
+	/** Only ever accessed by the producer */
+	private int back = 0;
+	/** Only ever accessed by the consumer */
+	private int front = 2;
+	private volatile long published = 0L;
+	
+	/** Creates a new TripleBuffer.
+	 * 
+	 * @param factory The factory used to create the three buffers */
+	public TripleBuffer(Supplier<T> factory) {
+		for(int i = 0; i < this.buffers.length; i++) {
+			this.buffers[i] = factory.get();
+		}
+	}
+	
+	/** Returns the buffer that the producer writes the next state into.<br>
+	 * Must only be called by the producer thread.
+	 * 
+	 * @return The producer's back buffer */
+	@SuppressWarnings("unchecked")
+	public T getWriteBuffer() {
+		return (T) this.buffers[this.back];
+	}
+	
+	/** Publishes the {@link #getWriteBuffer() back buffer}, making it
+	 * available to the consumer. The producer receives a new back buffer,
+	 * whose contents are whatever was written into it the last time it was
+	 * used (so state that is only partially updated each time should be
+	 * copied over in full).<br>
+	 * Must only be called by the producer thread. */
+	public void publish() {
+		this.back = this.middle.getAndSet(this.back | FRESH) & INDEX_MASK;
+		this.published++;
+	}
+	
+	/** Returns the most recently published state.<br>
+	 * Must only be called by the consumer thread. The returned buffer remains
+	 * valid (and unchanged) until the next call to this method.
+	 * 
+	 * @return The most recently published state */
+	@SuppressWarnings("unchecked")
+	public T read() {
+		if((this.middle.get() & FRESH) != 0) {
+			this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+		}
+		return (T) this.buffers[this.front];
+	}
+	
+	/** @return Whether or not something was published that the consumer has
+	 *         not read yet */
+	public boolean isFresh() {
+		return (this.middle.get() & FRESH) != 0;
+	}
+	
+	/** @return The number of times that the producer has published its back
+	 *         buffer */
+	public long getPublishCount() {
+		return this.published;
+	}
+	
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.Arrays;
+
+/** A {@link #SIZE}&sup3; block section of a {@link VoxelWorld}.<br>
+ * <br>
+ * Blocks are stored as one unsigned byte each (their id, where {@code 0} is
+ * air) in a single flat array, ordered Y-major, then Z, then X, so that
+ * each row of blocks along the X axis is contiguous. Every change to the
+ * chunk's blocks (or to the blocks of a neighbouring chunk that border it)
+ * increments its {@link #getVersion() version}, which is how the world knows
+ * that the chunk needs to be meshed again.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public final class VoxelChunk {
+	
+	/** The base-2 logarithm of {@link #SIZE} */
+	public static final int SHIFT = 5;
+	/** The number of blocks along each edge of a chunk */
+	public static final int SIZE = 1 << SHIFT;
+	/** The mask that turns a block coordinate into a coordinate within its
+	 * chunk */
+	public static final int MASK = SIZE - 1;
+	/** The number of blocks in a chunk */
+	public static final int VOLUME = SIZE * SIZE * SIZE;
+	
+	/** The chunk's coordinates, in chunks */
+	public final int x, y, z;
+	private final byte[] blocks = new byte[VOLUME];
+	private int solidCount = 0;
+	private int version = 1;
+	
+	// Used by the VoxelWorld that this chunk belongs to (on its thread):
+	/** The version that was last sent off to be meshed */
+	int scheduledVersion = 0;
+	/** The version that the chunk's uploaded mesh was built from */
+	int uploadedVersion = 0;
+	/** The chunk's vertex buffer, or {@code 0} */
+	int vbo = 0;
+	/** The number of quads in the chunk's uploaded mesh */
+	int quads = 0;
+	
+	/** Creates a new chunk full of air.
+	 * 
+	 * @param x The chunk's X coordinate, in chunks
+	 * @param y The chunk's Y coordinate, in chunks
+	 * @param z The chunk's Z coordinate, in chunks */
+	public VoxelChunk(int x, int y, int z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+	
+	/** @param x The block's X coordinate within the chunk (0-31)
+	 * @param y The block's Y coordinate within the chunk (0-31)
+	 * @param z The block's Z coordinate within the chunk (0-31)
+	 * @return The index of the block in the chunk's block array */
+	public static final int index(int x, int y, int z) {
+		return (((y << SHIFT) | z) << SHIFT) | x;
+	}
+	
+	/** @param x The block's X coordinate within the chunk (0-31)
+	 * @param y The block's Y coordinate within the chunk (0-31)
+	 * @param z The block's Z coordinate within the chunk (0-31)
+	 * @return The block's id (0-255; {@code 0} is air) */
+	public int getBlock(int x, int y, int z) {
+		return this.blocks[index(x, y, z)] & 0xFF;
+	}
+	
+	/** Sets a block in this chunk.
+	 * 
+	 * @param x The block's X coordinate within the chunk (0-31)
+	 * @param y The block's Y coordinate within the chunk (0-31)
+	 * @param z The block's Z coordinate within the chunk (0-31)
+	 * @param id The block's new id (0-255; {@code 0} is air)
+	 * @return Whether or not the block changed */
+	public boolean setBlock(int x, int y, int z, int id) {
+		final int i = index(x, y, z);
+		final int old = this.blocks[i] & 0xFF;
+		if(old == id) {
+			return false;
+		}
+		this.blocks[i] = (byte) id;
+		this.solidCount += (id != 0 ? 1 : 0) - (old != 0 ? 1 : 0);
+		this.version++;
+		return true;
+	}
+	
+	/** Fills a box of blocks in this chunk.
+	 * 
+	 * @param minX The box' smallest X coordinate within the chunk (inclusive)
+	 * @param minY The box' smallest Y coordinate within the chunk (inclusive)
+	 * @param minZ The box' smallest Z coordinate within the chunk (inclusive)
+	 * @param maxX The box' largest X coordinate within the chunk (exclusive)
+	 * @param maxY The box' largest Y coordinate within the chunk (exclusive)
+	 * @param maxZ The box' largest Z coordinate within the chunk (exclusive)
+	 * @param id The blocks' new id (0-255; {@code 0} is air)
+	 * @return Whether or not any block changed */
+	public boolean fill(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int id) {
+		boolean changed = false;
+		for(int y = minY; y < maxY; y++) {
+			for(int z = minZ; z < maxZ; z++) {
+				final int row = index(0, y, z);
+				for(int x = minX; x < maxX; x++) {
+					final int old = this.blocks[row + x] & 0xFF;
+					if(old != id) {
+						this.blocks[row + x] = (byte) id;
+						this.solidCount += (id != 0 ? 1 : 0) - (old != 0 ? 1 : 0);
+						changed = true;
+					}
+				}
+			}
+		}
+		if(changed) {
+			this.version++;
+		}
+		return changed;
+	}
+	
+	/** @return The number of blocks in this chunk that are not air */
+	public int getSolidCount() {
+		return this.solidCount;
+	}
+	
+	/** @return Whether or not this chunk only contains air */
+	public boolean isEmpty() {
+		return this.solidCount == 0;
+	}
+	
+	/** @return A number that changes whenever this chunk's blocks (or the
+	 *         neighbouring blocks that its faces depend on) change */
+	public int getVersion() {
+		return this.version;
+	}
+	
+	/** Marks this chunk as needing to be meshed again, e.g. because a block
+	 * that borders it in a neighbouring chunk changed.
+	 * 
+	 * @return This VoxelChunk */
+	public VoxelChunk markDirty() {
+		this.version++;
+		return this;
+	}
+	
+	//=============================================================================================
+	
+	/** The number of blocks along each edge of a {@link #snapshot(VoxelChunk[], byte[])
+	 * snapshot}: a chunk plus a one block border */
+	public static final int PADDED_SIZE = SIZE + 2;
+	/** The number of blocks in a {@link #snapshot(VoxelChunk[], byte[])
+	 * snapshot} */
+	public static final int PADDED_VOLUME = PADDED_SIZE * PADDED_SIZE * PADDED_SIZE;
+	
+	/** @param x The block's X coordinate within the chunk (-1-32)
+	 * @param y The block's Y coordinate within the chunk (-1-32)
+	 * @param z The block's Z coordinate within the chunk (-1-32)
+	 * @return The index of the block in a {@link #snapshot(VoxelChunk[], byte[])
+	 *         snapshot} */
+	public static final int paddedIndex(int x, int y, int z) {
+		return ((((y + 1) * PADDED_SIZE) + (z + 1)) * PADDED_SIZE) + (x + 1);
+	}
+	
+	/** Copies this chunk's blocks, along with the layer of blocks that
+	 * touches each of its six faces, into the given array, so that it can be
+	 * meshed on another thread while this chunk keeps changing. The blocks
+	 * along the border's edges and corners are left as air, since they don't
+	 * affect which faces are visible.
+	 * 
+	 * @param neighbours The chunks next to this one, in
+	 *            {@link ChunkMesher#FACES face} order (-X, +X, -Y, +Y, -Z,
+	 *            +Z), with {@code null} for chunks that don't exist
+	 * @param padded The array to copy the blocks into; must have room for
+	 *            {@link #PADDED_VOLUME} blocks (see {@link #paddedIndex(int, int, int)})
+	 * @return The given array */
+	public byte[] snapshot(VoxelChunk[] neighbours, byte[] padded) {
+		Arrays.fill(padded, 0, PADDED_VOLUME, (byte) 0);
+		final byte[] blocks = this.blocks;
+		for(int y = 0; y < SIZE; y++) {
+			for(int z = 0; z < SIZE; z++) {
+				System.arraycopy(blocks, index(0, y, z), padded, paddedIndex(0, y, z), SIZE);
+			}
+		}
+		VoxelChunk n;
+		if((n = neighbours[0]) != null) {// -X
+			for(int y = 0; y < SIZE; y++) {
+				for(int z = 0; z < SIZE; z++) {
+					padded[paddedIndex(-1, y, z)] = n.blocks[index(MASK, y, z)];
+				}
+			}
+		}
+		if((n = neighbours[1]) != null) {// +X
+			for(int y = 0; y < SIZE; y++) {
+				for(int z = 0; z < SIZE; z++) {
+					padded[paddedIndex(SIZE, y, z)] = n.blocks[index(0, y, z)];
+				}
+			}
+		}
+		if((n = neighbours[2]) != null) {// -Y
+			for(int z = 0; z < SIZE; z++) {
+				System.arraycopy(n.blocks, index(0, MASK, z), padded, paddedIndex(0, -1, z), SIZE);
+			}
+		}
+		if((n = neighbours[3]) != null) {// +Y
+			for(int z = 0; z < SIZE; z++) {
+				System.arraycopy(n.blocks, index(0, 0, z), padded, paddedIndex(0, SIZE, z), SIZE);
+			}
+		}
+		if((n = neighbours[4]) != null) {// -Z
+			for(int y = 0; y < SIZE; y++) {
+				System.arraycopy(n.blocks, index(0, y, MASK), padded, paddedIndex(0, y, -1), SIZE);
+			}
+		}
+		if((n = neighbours[5]) != null) {// +Z
+			for(int y = 0; y < SIZE; y++) {
+				System.arraycopy(n.blocks, index(0, y, 0), padded, paddedIndex(0, y, SIZE), SIZE);
+			}
+		}
+		return padded;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Chunk [%s, %s, %s] (%s solid blocks; version %s)", Integer.toString(this.x), Integer.toString(this.y), Integer.toString(this.z), Integer.toString(this.solidCount), Integer.toString(this.version));
+	}
+	
+}
@@ -0,0 +1,625 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/** A world of blocks, stored in {@link VoxelChunk chunks} that are meshed
+ * on a pool of worker threads and drawn with one vertex buffer each.<br>
+ * <br>
+ * Whenever a block changes, its chunk (and any neighbouring chunk whose faces
+ * it borders) is marked as dirty. {@link #remeshDirty()} takes a snapshot of
+ * each dirty chunk and hands it to the workers, which mesh it with a
+ * {@link ChunkMesher} while the world keeps changing; the finished meshes are
+ * then uploaded on the GL thread by {@link #uploadPending(GLBackend, int)}. A
+ * mesh that was built from an older version of its chunk than the one that
+ * is already uploaded is thrown away. Every chunk is drawn from a shared
+ * index buffer of {@link GL11#GL_UNSIGNED_SHORT unsigned short} quad
+ * indices, and chunks outside of the camera's view are skipped.<br>
+ * <br>
+ * The vertices hold world coordinates as shorts, so no matrix has to be
+ * loaded per chunk, which limits the world to chunk coordinates from
+ * {@link #MIN_CHUNK} to {@link #MAX_CHUNK} along each axis.<br>
+ * Apart from the meshing, a VoxelWorld (its blocks as well as its GL
+ * resources) should only be used by one thread: the GL thread.
+ * 
+ * <pre>
+ * world.setBlock(x, y, z, VoxelWorld.STONE);
+ * // Once per frame:
+ * world.remeshDirty();
+ * world.uploadPending(gl, 4);
+ * world.draw(gl, culler);
+ * </pre>
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class VoxelWorld implements Closeable {
+	
+	/** The smallest chunk coordinate that a world can hold blocks at */
+	public static final int MIN_CHUNK = Short.MIN_VALUE / VoxelChunk.SIZE;
+	/** The largest chunk coordinate that a world can hold blocks at */
+	public static final int MAX_CHUNK = (Short.MAX_VALUE / VoxelChunk.SIZE) - 1;
+	
+	/** The id of empty space */
+	public static final int AIR = 0;
+	/** The id of stone */
+	public static final int STONE = 1;
+	/** The id of dirt */
+	public static final int DIRT = 2;
+	/** The id of grass */
+	public static final int GRASS = 3;
+	/** The id of sand */
+	public static final int SAND = 4;
+	/** The id of wooden planks */
+	public static final int PLANKS = 5;
+	
+	private final Map<Long, VoxelChunk> chunks = new HashMap<>();
+	private final List<VoxelChunk> chunkList = new ArrayList<>();
+	private final VoxelChunk[] neighbours = new VoxelChunk[ChunkMesher.FACES.length];
+	private final int[] palette = new int[256];
+	
+	private final ExecutorService workers;
+	private final ThreadLocal<ChunkMesher> meshers = ThreadLocal.withInitial(ChunkMesher::new);
+	private final ConcurrentLinkedQueue<byte[]> snapshots = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<ChunkMesher.Mesh> meshes = new ConcurrentLinkedQueue<>();
+	private final LinkedBlockingQueue<ChunkMesher.Mesh> meshed = new LinkedBlockingQueue<>();
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+	private final AtomicLong meshedCount = new AtomicLong(0L);
+	private final AtomicLong meshNanos = new AtomicLong(0L);
+	private volatile boolean greedy = true;
+	
+	private int ibo = 0, indexCapacity = 0;
+	private ByteBuffer uploadBuffer;
+	private long uploadedCount = 0L, discardedCount = 0L, uploadedBytes = 0L;
+	private int drawnChunks = 0, drawnQuads = 0;
+	
+	/** Creates a new, empty VoxelWorld that meshes its chunks on one worker
+	 * thread per available processor other than the caller's. */
+	public VoxelWorld() {
+		this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+	}
+	
+	/** Creates a new, empty VoxelWorld.
+	 * 
+	 * @param threads The number of worker threads to mesh chunks on */
+	public VoxelWorld(int threads) {
+		final AtomicInteger threadNumber = new AtomicInteger(0);
+		this.workers = Executors.newFixedThreadPool(Math.max(1, threads), (r) -> {
+			Thread thread = new Thread(r, "ChunkMesher-".concat(Integer.toString(threadNumber.incrementAndGet())));
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY - 1);
+			return thread;
+		});
+		this.setColor(STONE, 0x7F7F7F);
+		this.setColor(DIRT, 0x866043);
+		this.setColor(GRASS, 0x5E9D34);
+		this.setColor(SAND, 0xDBD3A0);
+		this.setColor(PLANKS, 0xA0824E);
+		for(int id = PLANKS + 1; id < 256; id++) {
+			// (a spread of hues for ids without a color of their own)
+			this.setColor(id, Color.HSBtoRGB((id * 0.618034f) % 1.0f, 0.6f, 0.85f) & 0xFFFFFF);
+		}
+	}
+	
+	/** Sets the color that a block type is drawn with. Chunks that have
+	 * already been meshed keep their old colors until they are meshed again.
+	 * 
+	 * @param id The block type's id (1-255)
+	 * @param rgb The color ({@code 0xRRGGBB})
+	 * @return This VoxelWorld */
+	public VoxelWorld setColor(int id, int rgb) {
+		this.palette[id] = rgb & 0xFFFFFF;
+		return this;
+	}
+	
+	/** @param id The block type's id (1-255)
+	 * @return The color that the block type is drawn with ({@code 0xRRGGBB}) */
+	public int getColor(int id) {
+		return this.palette[id];
+	}
+	
+	/** @param greedy Whether chunks meshed from now on should have their faces
+	 *            merged ({@link ChunkMesher#greedy(byte[], int[], int, int, int, ChunkMesher.Mesh)
+	 *            greedy}) or not ({@link ChunkMesher#culled(byte[], int[], int, int, int, ChunkMesher.Mesh)
+	 *            culled})
+	 * @return This VoxelWorld */
+	public VoxelWorld setGreedy(boolean greedy) {
+		this.greedy = greedy;
+		return this;
+	}
+	
+	//=============================================================================================
+	
+	private static final long key(int cx, int cy, int cz) {
+		return ((cx & 0x1FFFFFL) << 42) | ((cy & 0x1FFFFFL) << 21) | (cz & 0x1FFFFFL);
+	}
+	
+	/** @param cx The chunk's X coordinate, in chunks
+	 * @param cy The chunk's Y coordinate, in chunks
+	 * @param cz The chunk's Z coordinate, in chunks
+	 * @return The chunk, or {@code null} if it doesn't exist (i.e. it is all
+	 *         air) */
+	public VoxelChunk getChunk(int cx, int cy, int cz) {
+		return this.chunks.get(Long.valueOf(key(cx, cy, cz)));
+	}
+	
+	private VoxelChunk getOrCreateChunk(int cx, int cy, int cz) {
+		final Long key = Long.valueOf(key(cx, cy, cz));
+		VoxelChunk chunk = this.chunks.get(key);
+		if(chunk == null) {
+			if(cx < MIN_CHUNK || cx > MAX_CHUNK || cy < MIN_CHUNK || cy > MAX_CHUNK || cz < MIN_CHUNK || cz > MAX_CHUNK) {
+				throw new IllegalArgumentException(String.format("Chunk [%s, %s, %s] is outside of the world (chunk coordinates must be between %s and %s)!", Integer.toString(cx), Integer.toString(cy), Integer.toString(cz), Integer.toString(MIN_CHUNK), Integer.toString(MAX_CHUNK)));
+			}
+			chunk = new VoxelChunk(cx, cy, cz);
+			this.chunks.put(key, chunk);
+			this.chunkList.add(chunk);
+		}
+		return chunk;
+	}
+	
+	/** @return The chunks in this world (unmodifiable) */
+	public List<VoxelChunk> getChunks() {
+		return Collections.unmodifiableList(this.chunkList);
+	}
+	
+	/** @param x The block's X coordinate
+	 * @param y The block's Y coordinate
+	 * @param z The block's Z coordinate
+	 * @return The block's id ({@link #AIR} if its chunk doesn't exist) */
+	public int getBlock(int x, int y, int z) {
+		final VoxelChunk chunk = this.getChunk(x >> VoxelChunk.SHIFT, y >> VoxelChunk.SHIFT, z >> VoxelChunk.SHIFT);
+		return chunk == null ? AIR : chunk.getBlock(x & VoxelChunk.MASK, y & VoxelChunk.MASK, z & VoxelChunk.MASK);
+	}
+	
+	/** Sets a block, marking its chunk (and the neighbouring chunks whose
+	 * faces the block touches) as needing to be meshed again.
+	 * 
+	 * @param x The block's X coordinate
+	 * @param y The block's Y coordinate
+	 * @param z The block's Z coordinate
+	 * @param id The block's new id (0-255; {@link #AIR} removes the block)
+	 * @return Whether or not the block changed */
+	public boolean setBlock(int x, int y, int z, int id) {
+		final int cx = x >> VoxelChunk.SHIFT, cy = y >> VoxelChunk.SHIFT, cz = z >> VoxelChunk.SHIFT;
+		final VoxelChunk chunk = id == AIR ? this.getChunk(cx, cy, cz) : this.getOrCreateChunk(cx, cy, cz);
+		final int lx = x & VoxelChunk.MASK, ly = y & VoxelChunk.MASK, lz = z & VoxelChunk.MASK;
+		if(chunk == null || !chunk.setBlock(lx, ly, lz, id)) {
+			return false;
+		}
+		this.markBorderDirty(cx, cy, cz, lx == 0, lx == VoxelChunk.MASK, ly == 0, ly == VoxelChunk.MASK, lz == 0, lz == VoxelChunk.MASK);
+		return true;
+	}
+	
+	/** Fills a box of blocks.
+	 * 
+	 * @param minX The box' smallest X coordinate (inclusive)
+	 * @param minY The box' smallest Y coordinate (inclusive)
+	 * @param minZ The box' smallest Z coordinate (inclusive)
+	 * @param maxX The box' largest X coordinate (exclusive)
+	 * @param maxY The box' largest Y coordinate (exclusive)
+	 * @param maxZ The box' largest Z coordinate (exclusive)
+	 * @param id The blocks' new id (0-255; {@link #AIR} removes them)
+	 * @return The number of chunks that changed */
+	public int fill(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int id) {
+		int changed = 0;
+		if(minX >= maxX || minY >= maxY || minZ >= maxZ) {
+			return changed;
+		}
+		for(int cy = minY >> VoxelChunk.SHIFT; cy <= (maxY - 1) >> VoxelChunk.SHIFT; cy++) {
+			for(int cz = minZ >> VoxelChunk.SHIFT; cz <= (maxZ - 1) >> VoxelChunk.SHIFT; cz++) {
+				for(int cx = minX >> VoxelChunk.SHIFT; cx <= (maxX - 1) >> VoxelChunk.SHIFT; cx++) {
+					final VoxelChunk chunk = id == AIR ? this.getChunk(cx, cy, cz) : this.getOrCreateChunk(cx, cy, cz);
+					if(chunk == null) {
+						continue;
+					}
+					final int x0 = Math.max(minX - (cx << VoxelChunk.SHIFT), 0), x1 = Math.min(maxX - (cx << VoxelChunk.SHIFT), VoxelChunk.SIZE);
+					final int y0 = Math.max(minY - (cy << VoxelChunk.SHIFT), 0), y1 = Math.min(maxY - (cy << VoxelChunk.SHIFT), VoxelChunk.SIZE);
+					final int z0 = Math.max(minZ - (cz << VoxelChunk.SHIFT), 0), z1 = Math.min(maxZ - (cz << VoxelChunk.SHIFT), VoxelChunk.SIZE);
+					if(chunk.fill(x0, y0, z0, x1, y1, z1, id)) {
+						changed++;
+						this.markBorderDirty(cx, cy, cz, x0 == 0, x1 == VoxelChunk.SIZE, y0 == 0, y1 == VoxelChunk.SIZE, z0 == 0, z1 == VoxelChunk.SIZE);
+					}
+				}
+			}
+		}
+		return changed;
+	}
+	
+	private void markBorderDirty(int cx, int cy, int cz, boolean minX, boolean maxX, boolean minY, boolean maxY, boolean minZ, boolean maxZ) {
+		VoxelChunk n;
+		if(minX && (n = this.getChunk(cx - 1, cy, cz)) != null) {
+			n.markDirty();
+		}
+		if(maxX && (n = this.getChunk(cx + 1, cy, cz)) != null) {
+			n.markDirty();
+		}
+		if(minY && (n = this.getChunk(cx, cy - 1, cz)) != null) {
+			n.markDirty();
+		}
+		if(maxY && (n = this.getChunk(cx, cy + 1, cz)) != null) {
+			n.markDirty();
+		}
+		if(minZ && (n = this.getChunk(cx, cy, cz - 1)) != null) {
+			n.markDirty();
+		}
+		if(maxZ && (n = this.getChunk(cx, cy, cz + 1)) != null) {
+			n.markDirty();
+		}
+	}
+	
+	/** Fills the given area with rolling hills: stone, topped with three
+	 * layers of dirt and one of grass (or sand, in the valleys).
+	 * 
+	 * @param minX The area's smallest X coordinate (inclusive)
+	 * @param minZ The area's smallest Z coordinate (inclusive)
+	 * @param maxX The area's largest X coordinate (exclusive)
+	 * @param maxZ The area's largest Z coordinate (exclusive)
+	 * @param baseY The Y coordinate of the lowest layer of blocks
+	 * @param height The height of the tallest hills above the base, in blocks
+	 * @param seed The seed that determines the hills' shape
+	 * @return This VoxelWorld */
+	public VoxelWorld generateTerrain(int minX, int minZ, int maxX, int maxZ, int baseY, int height, long seed) {
+		final Random random = new Random(seed);
+		final double[] waves = new double[12];
+		for(int i = 0; i < waves.length; i += 3) {
+			// frequency, phase along X, phase along Z:
+			waves[i] = (0.02 + (random.nextDouble() * 0.06)) * (1 + (i / 3));
+			waves[i + 1] = random.nextDouble() * Math.PI * 2.0;
+			waves[i + 2] = random.nextDouble() * Math.PI * 2.0;
+		}
+		final int sandLevel = baseY + (height / 4);
+		for(int z = minZ; z < maxZ; z++) {
+			for(int x = minX; x < maxX; x++) {
+				double noise = 0.0, amplitude = 1.0, total = 0.0;
+				for(int i = 0; i < waves.length; i += 3, amplitude *= 0.5) {
+					noise += amplitude * Math.sin((x * waves[i]) + waves[i + 1]) * Math.cos((z * waves[i]) + waves[i + 2]);
+					total += amplitude;
+				}
+				final int top = baseY + 1 + (int) Math.round((height - 1) * ((noise / total) + 1.0) * 0.5);
+				this.fill(x, baseY, z, x + 1, Math.max(baseY, top - 4), z + 1, STONE);
+				this.fill(x, Math.max(baseY, top - 4), z, x + 1, top - 1, z + 1, top <= sandLevel ? SAND : DIRT);
+				this.setBlock(x, top - 1, z, top <= sandLevel ? SAND : GRASS);
+			}
+		}
+		return this;
+	}
+	
+	//=============================================================================================
+	
+	/** Sends every chunk that has changed since it was last meshed off to the
+	 * workers to be meshed again. Returns immediately.
+	 * 
+	 * @return The number of chunks that will be meshed */
+	public int remeshDirty() {
+		int scheduled = 0;
+		for(int i = 0; i < this.chunkList.size(); i++) {
+			final VoxelChunk chunk = this.chunkList.get(i);
+			final int version = chunk.getVersion();
+			if(version == chunk.scheduledVersion) {
+				continue;
+			}
+			chunk.scheduledVersion = version;
+			byte[] snapshot = this.snapshots.poll();
+			if(snapshot == null) {
+				snapshot = new byte[VoxelChunk.PADDED_VOLUME];
+			}
+			final VoxelChunk[] neighbours = this.neighbours;
+			for(int face = 0; face < neighbours.length; face++) {
+				final int[] dir = ChunkMesher.FACES[face];
+				neighbours[face] = this.getChunk(chunk.x + dir[0], chunk.y + dir[1], chunk.z + dir[2]);
+			}
+			chunk.snapshot(neighbours, snapshot);
+			this.submit(chunk, version, snapshot);
+			scheduled++;
+		}
+		return scheduled;
+	}
+	
+	private void submit(final VoxelChunk chunk, final int version, final byte[] snapshot) {
+		final boolean greedy = this.greedy;
+		this.inFlight.incrementAndGet();
+		this.workers.execute(() -> {
+			ChunkMesher.Mesh mesh = this.meshes.poll();
+			if(mesh == null) {
+				mesh = new ChunkMesher.Mesh();
+			}
+			final ChunkMesher mesher = this.meshers.get();
+			final int x = chunk.x << VoxelChunk.SHIFT, y = chunk.y << VoxelChunk.SHIFT, z = chunk.z << VoxelChunk.SHIFT;
+			try {
+				if(greedy) {
+					mesher.greedy(snapshot, this.palette, x, y, z, mesh);
+				} else {
+					mesher.culled(snapshot, this.palette, x, y, z, mesh);
+				}
+				mesh.chunk = chunk;
+				mesh.version = version;
+				this.meshNanos.addAndGet(mesh.meshNanos);
+				this.meshedCount.incrementAndGet();
+				this.meshed.add(mesh);
+			} finally {
+				this.snapshots.add(snapshot);
+				this.inFlight.decrementAndGet();
+			}
+		});
+	}
+	
+	/** @return The number of chunks that have been sent off to be meshed but
+	 *         have not been meshed yet */
+	public int getPendingCount() {
+		return this.inFlight.get();
+	}
+	
+	/** Uploads up to {@code maxUploads} of the meshes that the workers have
+	 * finished, without waiting for any others. Intended to be called once per
+	 * frame on the GL thread.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @param maxUploads The maximum number of meshes to upload
+	 * @return The number of meshes uploaded */
+	public int uploadPending(GLBackend gl, int maxUploads) {
+		int uploaded = 0;
+		ChunkMesher.Mesh mesh;
+		while(uploaded < maxUploads && (mesh = this.meshed.poll()) != null) {
+			if(this.upload(gl, mesh)) {
+				uploaded++;
+			}
+		}
+		return uploaded;
+	}
+	
+	/** Meshes every dirty chunk and waits for all of the meshes (including
+	 * those that were already being meshed) to be uploaded, e.g. while the
+	 * world is first loaded.
+	 * 
+	 * @param gl The GL backend to upload with
+	 * @return The number of meshes uploaded
+	 * @throws InterruptedException Thrown if the current thread was
+	 *             interrupted while waiting */
+	public int finish(GLBackend gl) throws InterruptedException {
+		this.remeshDirty();
+		int uploaded = 0;
+		while(this.inFlight.get() > 0 || !this.meshed.isEmpty()) {
+			final ChunkMesher.Mesh mesh = this.meshed.poll(10L, TimeUnit.MILLISECONDS);
+			if(mesh != null && this.upload(gl, mesh)) {
+				uploaded++;
+			}
+		}
+		return uploaded;
+	}
+	
+	private boolean upload(GLBackend gl, ChunkMesher.Mesh mesh) {
+		final VoxelChunk chunk = mesh.chunk;
+		mesh.chunk = null;
+		try {
+			if(mesh.version <= chunk.uploadedVersion || this.chunks.get(Long.valueOf(key(chunk.x, chunk.y, chunk.z))) != chunk) {
+				// A newer mesh was already uploaded (or the chunk was removed):
+				this.discardedCount++;
+				return false;
+			}
+			chunk.uploadedVersion = mesh.version;
+			chunk.quads = mesh.quads;
+			if(mesh.quads == 0) {
+				if(chunk.vbo != 0) {
+					gl.glDeleteBuffers(chunk.vbo);
+					chunk.vbo = 0;
+				}
+				return true;
+			}
+			final int bytes = mesh.getByteSize();
+			if(this.uploadBuffer == null || this.uploadBuffer.capacity() < bytes) {
+				this.uploadBuffer = ByteBuffer.allocateDirect(Math.max(bytes, this.uploadBuffer == null ? 0 : this.uploadBuffer.capacity() * 2)).order(ByteOrder.nativeOrder());
+			}
+			final ByteBuffer buf = this.uploadBuffer;
+			buf.clear();
+			buf.asIntBuffer().put(mesh.data, 0, bytes / Integer.BYTES);
+			buf.limit(bytes);
+			if(chunk.vbo == 0) {
+				chunk.vbo = gl.glGenBuffers();
+			}
+			gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, chunk.vbo);
+			gl.glBufferData(GL15.GL_ARRAY_BUFFER, buf, GL15.GL_STATIC_DRAW);
+			this.uploadedCount++;
+			this.uploadedBytes += bytes;
+			return true;
+		} finally {
+			this.meshes.add(mesh.clear());
+		}
+	}
+	
+	//=============================================================================================
+	
+	/** Makes sure that the shared index buffer covers the given number of
+	 * quads, and binds it. */
+	private void bindIndices(GLBackend gl, int quads) {
+		if(this.ibo == 0) {
+			this.ibo = gl.glGenBuffers();
+		}
+		gl.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, this.ibo);
+		if(quads > this.indexCapacity) {
+			int capacity = Math.max(1024, this.indexCapacity);
+			while(capacity < quads) {
+				capacity *= 2;
+			}
+			capacity = Math.min(capacity, ChunkMesher.MAX_QUADS_PER_DRAW);
+			final short[] indices = ChunkMesher.writeQuadIndices(new short[capacity * ChunkMesher.INDICES_PER_QUAD], capacity);
+			final ByteBuffer buf = ByteBuffer.allocateDirect(indices.length * Short.BYTES).order(ByteOrder.nativeOrder());
+			buf.asShortBuffer().put(indices);
+			gl.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, buf, GL15.GL_STATIC_DRAW);
+			this.indexCapacity = capacity;
+		}
+	}
+	
+	/** Draws every chunk that has a mesh and is (at least partially) inside
+	 * of the given frustum, with one draw call per chunk (or more, for chunks
+	 * with more than {@link ChunkMesher#MAX_QUADS_PER_DRAW} quads).<br>
+	 * The vertices are in world space, so the caller is expected to have
+	 * loaded the camera's model-view matrix beforehand.
+	 * 
+	 * @param gl The GL backend to draw with
+	 * @param culler The frustum culler, already updated with the camera's
+	 *            current projection and model-view matrices, or {@code null}
+	 *            to draw every chunk
+	 * @return The number of chunks drawn */
+	public int draw(GLBackend gl, FrustumCuller culler) {
+		int maxQuads = 0;
+		for(int i = 0; i < this.chunkList.size(); i++) {
+			maxQuads = Math.max(maxQuads, this.chunkList.get(i).quads);
+		}
+		this.drawnChunks = this.drawnQuads = 0;
+		if(maxQuads == 0) {
+			return 0;
+		}
+		this.bindIndices(gl, maxQuads);
+		gl.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glFrontFace(GL11.GL_CCW);
+		gl.glEnable(GL11.GL_CULL_FACE);
+		gl.glCullFace(GL11.GL_BACK);
+		for(int i = 0; i < this.chunkList.size(); i++) {
+			final VoxelChunk chunk = this.chunkList.get(i);
+			if(chunk.quads == 0) {
+				continue;
+			}
+			final float x = chunk.x << VoxelChunk.SHIFT, y = chunk.y << VoxelChunk.SHIFT, z = chunk.z << VoxelChunk.SHIFT;
+			if(culler != null && !culler.isBoxVisible(x, y, z, x + VoxelChunk.SIZE, y + VoxelChunk.SIZE, z + VoxelChunk.SIZE)) {
+				continue;
+			}
+			gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, chunk.vbo);
+			for(int first = 0; first < chunk.quads; first += ChunkMesher.MAX_QUADS_PER_DRAW) {
+				final long offset = (long) first * ChunkMesher.VERTICES_PER_QUAD * ChunkMesher.VERTEX_SIZE;
+				gl.glVertexPointer(3, GL11.GL_SHORT, ChunkMesher.VERTEX_SIZE, offset);
+				gl.glColorPointer(4, GL11.GL_UNSIGNED_BYTE, ChunkMesher.VERTEX_SIZE, offset + (4L * Short.BYTES));
+				gl.glDrawElements(GL11.GL_TRIANGLES, Math.min(chunk.quads - first, ChunkMesher.MAX_QUADS_PER_DRAW) * ChunkMesher.INDICES_PER_QUAD, GL11.GL_UNSIGNED_SHORT, 0L);
+			}
+			this.drawnChunks++;
+			this.drawnQuads += chunk.quads;
+		}
+		gl.glDisable(GL11.GL_CULL_FACE);
+		gl.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		gl.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		gl.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		gl.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		return this.drawnChunks;
+	}
+	
+	/** @return The number of chunks drawn by the last {@link #draw(GLBackend, FrustumCuller)
+	 *         draw} */
+	public int getDrawnChunks() {
+		return this.drawnChunks;
+	}
+	
+	/** @return The number of quads drawn by the last {@link #draw(GLBackend, FrustumCuller)
+	 *         draw} */
+	public int getDrawnQuads() {
+		return this.drawnQuads;
+	}
+	
+	/** @return The total number of quads in the uploaded meshes */
+	public long getQuadCount() {
+		long quads = 0L;
+		for(int i = 0; i < this.chunkList.size(); i++) {
+			quads += this.chunkList.get(i).quads;
+		}
+		return quads;
+	}
+	
+	/** @return The number of chunks that have been meshed so far */
+	public long getMeshedCount() {
+		return this.meshedCount.get();
+	}
+	
+	/** @return The total time spent meshing chunks, summed across all worker
+	 *         threads, in nanoseconds */
+	public long getMeshNanos() {
+		return this.meshNanos.get();
+	}
+	
+	/** @return The number of meshes that have been uploaded so far */
+	public long getUploadedCount() {
+		return this.uploadedCount;
+	}
+	
+	/** @return The number of meshes that were thrown away because a newer
+	 *         mesh of the same chunk had already been uploaded */
+	public long getDiscardedCount() {
+		return this.discardedCount;
+	}
+	
+	/** @return The total amount of vertex data uploaded so far, in bytes */
+	public long getUploadedBytes() {
+		return this.uploadedBytes;
+	}
+	
+	/** Deletes this world's buffer objects. The chunks' meshes will have to
+	 * be built again before they can be drawn.
+	 * 
+	 * @param gl The GL backend to delete the buffers with */
+	public void destroy(GLBackend gl) {
+		for(int i = 0; i < this.chunkList.size(); i++) {
+			final VoxelChunk chunk = this.chunkList.get(i);
+			if(chunk.vbo != 0) {
+				gl.glDeleteBuffers(chunk.vbo);
+			}
+			chunk.vbo = chunk.quads = 0;
+			chunk.uploadedVersion = chunk.scheduledVersion = 0;
+		}
+		if(this.ibo != 0) {
+			gl.glDeleteBuffers(this.ibo);
+			this.ibo = 0;
+		}
+		this.indexCapacity = 0;
+	}
+	
+	/** Stops the worker threads. Meshes that haven't been uploaded yet are
+	 * thrown away. */
+	@Override
+	public void close() {
+		this.workers.shutdownNow();
+		this.meshed.clear();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s chunks; %s quads; %s chunks meshed (%.3f ms each), %s uploaded (%s bytes), %s discarded", Integer.toString(this.chunkList.size()), Long.toString(this.getQuadCount()), Long.toString(this.meshedCount.get()), Double.valueOf(this.meshNanos.get() / 1.0E6 / Math.max(1L, this.meshedCount.get())), Long.toString(this.uploadedCount), Long.toString(this.uploadedBytes), Long.toString(this.discardedCount));
+	}
+	
+}
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * 
+ * Copyright © 2022 Brian_Entei (br45entei@gmail.com)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ *******************************************************************************/
+package com.gmail.br45entei.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Headless test and benchmark of {@link VoxelWorld} and
+ * {@link ChunkMesher}.<br>
+ * For a few kinds of chunk (rolling terrain, a solid box, random noise and a
+ * checkerboard, which is the worst case for meshing), the greedy and culled
+ * meshes are checked against each other face by face, and their size and
+ * meshing speed are compared with drawing every block as a
+ * {@link TestGame#createCubeVertices(float, float, float) cube}. Then a
+ * world is meshed on worker threads, edited and re-meshed, and drawn through
+ * a {@link RecordingGLBackend}.
+ * 
+ * @author Brian_Entei &ltbr45entei&#064;gmail.com&gt; */
+public class VoxelWorldBenchmark {
+	
+	/** The naive approach: every solid block becomes a whole cube of 36
+	 * unindexed vertices, hidden faces and all.
+	 * 
+	 * @return The number of floats written */
+	private static final int naive(VoxelChunk chunk, float[] cube, float[] dst) {
+		int n = 0;
+		for(int y = 0; y < VoxelChunk.SIZE; y++) {
+			for(int z = 0; z < VoxelChunk.SIZE; z++) {
+				for(int x = 0; x < VoxelChunk.SIZE; x++) {
+					if(chunk.getBlock(x, y, z) == 0) {
+						continue;
+					}
+					for(int i = 0; i < cube.length; i += 3) {
+						dst[n++] = cube[i] + x;
+						dst[n++] = cube[i + 1] + y;
+						dst[n++] = cube[i + 2] + z;
+					}
+				}
+			}
+		}
+		return n;
+	}
+	
+	/** Checks that both meshes exactly cover the faces between solid blocks
+	 * and air, facing the air, with the solid block's color, and that no
+	 * face is covered twice. */
+	private static final void checkCoverage(String name, byte[] blocks, int[] palette, ChunkMesher.Mesh greedy, ChunkMesher.Mesh culled) {
+		final int size = VoxelChunk.SIZE;
+		final int[][] covered = new int[2][ChunkMesher.FACES.length * size * size * size];
+		final ChunkMesher.Mesh[] meshes = {greedy, culled};
+		for(int m = 0; m < meshes.length; m++) {
+			final ChunkMesher.Mesh mesh = meshes[m];
+			for(int q = 0; q < mesh.getQuadCount(); q++) {
+				final int v0 = q * ChunkMesher.VERTICES_PER_QUAD;
+				final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE}, max = {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+				final int[][] corners = new int[4][3];
+				for(int v = 0; v < 4; v++) {
+					for(int axis = 0; axis < 3; axis++) {
+						final int c = mesh.getCoordinate(v0 + v, axis);
+						corners[v][axis] = c;
+						min[axis] = Math.min(min[axis], c);
+						max[axis] = Math.max(max[axis], c);
+					}
+					MicroBenchmark.check(mesh.getColor(v0 + v) == mesh.getColor(v0), name + ": a quad's vertices have different colors");
+				}
+				int d = -1;
+				for(int axis = 0; axis < 3; axis++) {
+					if(min[axis] == max[axis]) {
+						MicroBenchmark.check(d == -1, name + ": degenerate quad");
+						d = axis;
+					}
+				}
+				MicroBenchmark.check(d != -1, name + ": a quad is not axis-aligned");
+				// The winding determines which way the quad faces:
+				final int[] e1 = new int[3], e2 = new int[3];
+				for(int axis = 0; axis < 3; axis++) {
+					e1[axis] = corners[1][axis] - corners[0][axis];
+					e2[axis] = corners[2][axis] - corners[0][axis];
+				}
+				final int[] normal = {(e1[1] * e2[2]) - (e1[2] * e2[1]), (e1[2] * e2[0]) - (e1[0] * e2[2]), (e1[0] * e2[1]) - (e1[1] * e2[0])};
+				MicroBenchmark.check(normal[d] != 0, name + ": a quad has no area");
+				final int side = normal[d] > 0 ? 1 : 0;
+				final int face = (d << 1) | side;
+				final int slice = min[d] - side;
+				for(int a = min[0]; a < Math.max(max[0], min[0] + 1); a++) {
+					for(int b = min[1]; b < Math.max(max[1], min[1] + 1); b++) {
+						for(int c = min[2]; c < Math.max(max[2], min[2] + 1); c++) {
+							final int[] p = {a, b, c};
+							p[d] = slice;
+							final int id = blocks[VoxelChunk.paddedIndex(p[0], p[1], p[2])] & 0xFF;
+							final int[] dir = ChunkMesher.FACES[face];
+							MicroBenchmark.check(id != 0, name + ": a quad covers the face of an air block");
+							MicroBenchmark.check(blocks[VoxelChunk.paddedIndex(p[0] + dir[0], p[1] + dir[1], p[2] + dir[2])] == 0, name + ": a quad covers a hidden face");
+							MicroBenchmark.check(mesh.getColor(v0) == ChunkMesher.toRGBA(palette[id], ChunkMesher.FACE_SHADES[face]), name + ": a quad has the wrong color");
+							final int cell = (((((face * size) + p[1]) * size) + p[2]) * size) + p[0];
+							MicroBenchmark.check(covered[m][cell] == 0, name + ": a face is covered twice");
+							covered[m][cell] = id;
+						}
+					}
+				}
+			}
+		}
+		int faces = 0;
+		for(int i = 0; i < covered[0].length; i++) {
+			MicroBenchmark.check(covered[0][i] == covered[1][i], name + ": the greedy and culled meshes cover different faces");
+			faces += covered[1][i] != 0 ? 1 : 0;
+		}
+		MicroBenchmark.check(faces == culled.getQuadCount(), name + ": the culled mesh should have one quad per visible face");
+		// And every visible face is covered:
+		int visible = 0;
+		for(int y = 0; y < size; y++) {
+			for(int z = 0; z < size; z++) {
+				for(int x = 0; x < size; x++) {
+					if(blocks[VoxelChunk.paddedIndex(x, y, z)] == 0) {
+						continue;
+					}
+					for(int[] dir : ChunkMesher.FACES) {
+						visible += blocks[VoxelChunk.paddedIndex(x + dir[0], y + dir[1], z + dir[2])] == 0 ? 1 : 0;
+					}
+				}
+			}
+		}
+		MicroBenchmark.check(visible == faces, name + ": not every visible face is covered");
+	}
+	
+	private static final VoxelChunk[] NO_NEIGHBOURS = new VoxelChunk[ChunkMesher.FACES.length];
+	
+	private static final void compare(String name, VoxelChunk chunk, VoxelChunk[] neighbours, int[] palette, List<MicroBenchmark.Result> results) {
+		final ChunkMesher mesher = new ChunkMesher();
+		final byte[] blocks = chunk.snapshot(neighbours, new byte[VoxelChunk.PADDED_VOLUME]);
+		final ChunkMesher.Mesh greedy = mesher.greedy(blocks, palette, 0, 0, 0, new ChunkMesher.Mesh());
+		final ChunkMesher.Mesh culled = mesher.culled(blocks, palette, 0, 0, 0, new ChunkMesher.Mesh());
+		checkCoverage(name, blocks, palette, greedy, culled);
+		
+		final float[] cube = TestGame.createCubeVertices(1.0f, 1.0f, 1.0f);
+		final float[] naive = new float[Math.max(1, chunk.getSolidCount()) * cube.length];
+		final int naiveVertices = naive(chunk, cube, naive) / 3;
+		MicroBenchmark.check(naiveVertices == chunk.getSolidCount() * 36, "The naive mesh should have 36 vertices per block");
+		
+		final int iterations = chunk.getSolidCount() > 8192 ? 100 : 400;
+		final MicroBenchmark.Result naiveResult = MicroBenchmark.run(name + ": naive cubes", iterations, iterations, (i) -> Integer.valueOf(naive(chunk, cube, naive)));
+		final MicroBenchmark.Result culledResult = MicroBenchmark.run(name + ": culled (with snapshot)", iterations, iterations, (i) -> mesher.culled(chunk.snapshot(neighbours, blocks), palette, 0, 0, 0, culled));
+		final MicroBenchmark.Result greedyResult = MicroBenchmark.run(name + ": greedy (with snapshot)", iterations, iterations, (i) -> mesher.greedy(chunk.snapshot(neighbours, blocks), palette, 0, 0, 0, greedy));
+		results.add(naiveResult);
+		results.add(culledResult);
+		results.add(greedyResult);
+		final int naiveBytes = naiveVertices * 3 * Float.BYTES;
+		System.out.println(String.format("%s: %s solid blocks%n" //
+				+ "  naive cubes: %8s vertices, %9s bytes (unindexed floats); %8.0f chunks/s%n" //
+				+ "  culled:      %8s vertices, %9s bytes + %7s indices;    %8.0f chunks/s%n" //
+				+ "  greedy:      %8s vertices, %9s bytes + %7s indices;    %8.0f chunks/s (%.1fx fewer vertices than culled, %.1fx fewer than naive)", //
+				name, Integer.toString(chunk.getSolidCount()), //
+				Integer.toString(naiveVertices), Integer.toString(naiveBytes), Double.valueOf(naiveResult.getOpsPerSecond()), //
+				Integer.toString(culled.getVertexCount()), Integer.toString(culled.getByteSize()), Integer.toString(culled.getQuadCount() * ChunkMesher.INDICES_PER_QUAD), Double.valueOf(culledResult.getOpsPerSecond()), //
+				Integer.toString(greedy.getVertexCount()), Integer.toString(greedy.getByteSize()), Integer.toString(greedy.getQuadCount() * ChunkMesher.INDICES_PER_QUAD), Double.valueOf(greedyResult.getOpsPerSecond()), //
+				Double.valueOf(culled.getVertexCount() / (double) Math.max(1, greedy.getVertexCount())), Double.valueOf(naiveVertices / (double) Math.max(1, greedy.getVertexCount()))));
+		System.out.println();
+	}
+	
+	private static final void testMeshing(List<MicroBenchmark.Result> results) {
+		final int size = VoxelChunk.SIZE;
+		final VoxelWorld terrain = new VoxelWorld(1);
+		try {
+			terrain.generateTerrain(-size, -size, size * 2, size * 2, 0, 28, 25L);
+			final VoxelChunk[] neighbours = new VoxelChunk[ChunkMesher.FACES.length];
+			for(int face = 0; face < neighbours.length; face++) {
+				final int[] dir = ChunkMesher.FACES[face];
+				neighbours[face] = terrain.getChunk(dir[0], dir[1], dir[2]);
+			}
+			final int[] palette = new int[256];
+			for(int id = 1; id < 256; id++) {
+				palette[id] = terrain.getColor(id);
+			}
+			compare("Terrain", terrain.getChunk(0, 0, 0), neighbours, palette, results);
+			
+			final VoxelChunk solid = new VoxelChunk(0, 0, 0);
+			solid.fill(0, 0, 0, size, size, size, VoxelWorld.STONE);
+			compare("Solid", solid, NO_NEIGHBOURS, palette, results);
+			
+			final VoxelChunk noise = new VoxelChunk(0, 0, 0);
+			final Random random = new Random(25L);
+			for(int i = 0; i < VoxelChunk.VOLUME; i++) {
+				if(random.nextInt(10) < 3) {
+					noise.setBlock(i & VoxelChunk.MASK, i >> (VoxelChunk.SHIFT * 2), (i >> VoxelChunk.SHIFT) & VoxelChunk.MASK, 1 + random.nextInt(3));
+				}
+			}
+			compare("Noise (30%)", noise, NO_NEIGHBOURS, palette, results);
+			
+			final VoxelChunk checkerboard = new VoxelChunk(0, 0, 0);
+			for(int y = 0; y < size; y++) {
+				for(int z = 0; z < size; z++) {
+					for(int x = 0; x < size; x++) {
+						if(((x + y + z) & 1) == 0) {
+							checkerboard.setBlock(x, y, z, VoxelWorld.STONE);
+						}
+					}
+				}
+			}
+			compare("Checkerboard", checkerboard, NO_NEIGHBOURS, palette, results);
+		} finally {
+			terrain.close();
+		}
+	}
+	
+	private static final void testWorld() throws InterruptedException {
+		final int size = VoxelChunk.SIZE, threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		for(int t : new int[] {1, threads}) {
+			final VoxelWorld world = new VoxelWorld(t);
+			try {
+				world.generateTerrain(-4 * size, -4 * size, 4 * size, 4 * size, -size, 48, 25L);
+				final RecordingGLBackend gl = new RecordingGLBackend();
+				final int chunks = world.getChunks().size();
+				final int rounds = 5, warmupRounds = 3;
+				long elapsed = 0L;
+				for(int round = 0; round < warmupRounds + rounds; round++) {
+					for(VoxelChunk chunk : world.getChunks()) {
+						chunk.markDirty();
+					}
+					final long start = System.nanoTime();
+					world.finish(gl);
+					if(round >= warmupRounds) {
+						elapsed += System.nanoTime() - start;
+					}
+				}
+				final double chunksPerSecond = (chunks * rounds) / (elapsed / 1.0E9);
+				System.out.println(String.format("World of %s chunks (%s quads), meshed and uploaded on %s worker thread(s) (%s processor(s) available): %.0f chunks/s", Integer.toString(chunks), Long.toString(world.getQuadCount()), Integer.toString(t), Integer.toString(Runtime.getRuntime().availableProcessors()), Double.valueOf(chunksPerSecond)));
+			} finally {
+				world.close();
+			}
+		}
+		
+		// Edits, and the chunks that they remesh:
+		final VoxelWorld world = new VoxelWorld(2);
+		try {
+			world.generateTerrain(-2 * size, -2 * size, 2 * size, 2 * size, -size, 24, 25L);
+			final RecordingGLBackend gl = new RecordingGLBackend();
+			world.finish(gl);
+			MicroBenchmark.check(world.remeshDirty() == 0, "Nothing should need to be meshed after finishing");
+			final int chunks = world.getChunks().size();
+			MicroBenchmark.check(world.getUploadedCount() == chunks - countEmpty(world), "Every chunk with visible faces should have been uploaded once");
+			
+			final long uploads = world.getUploadedCount();
+			MicroBenchmark.check(world.setBlock(5, 1 - size, 5, VoxelWorld.AIR), "Digging a hole should change the world");
+			MicroBenchmark.check(world.getBlock(5, 1 - size, 5) == VoxelWorld.AIR, "The hole should be air");
+			MicroBenchmark.check(world.remeshDirty() == 1, "Digging in the middle of a chunk should remesh only that chunk");
+			world.finish(gl);
+			MicroBenchmark.check(world.getUploadedCount() == uploads + 1, "Digging in the middle of a chunk should re-upload only that chunk");
+			
+			MicroBenchmark.check(world.setBlock(size - 1, 1 - size, 5, VoxelWorld.AIR), "Digging a hole should change the world");
+			MicroBenchmark.check(world.remeshDirty() == 2, "Digging at the edge of a chunk should also remesh its neighbour");
+			world.finish(gl);
+			
+			// Edits made while a chunk is being meshed get meshed too, and whichever mesh is newest wins:
+			for(int i = 0; i < 32; i++) {
+				world.setBlock(i, -8, 3, VoxelWorld.PLANKS);
+				world.remeshDirty();
+				world.uploadPending(gl, 1);
+			}
+			world.finish(gl);
+			final ChunkMesher mesher = new ChunkMesher();
+			final int[] palette = new int[256];
+			for(int id = 1; id < 256; id++) {
+				palette[id] = world.getColor(id);
+			}
+			for(VoxelChunk chunk : world.getChunks()) {
+				final VoxelChunk[] neighbours = new VoxelChunk[ChunkMesher.FACES.length];
+				for(int face = 0; face < neighbours.length; face++) {
+					final int[] dir = ChunkMesher.FACES[face];
+					neighbours[face] = world.getChunk(chunk.x + dir[0], chunk.y + dir[1], chunk.z + dir[2]);
+				}
+				final ChunkMesher.Mesh expected = mesher.greedy(chunk.snapshot(neighbours, new byte[VoxelChunk.PADDED_VOLUME]), palette, chunk.x * size, chunk.y * size, chunk.z * size, new ChunkMesher.Mesh());
+				MicroBenchmark.check(chunk.uploadedVersion == chunk.getVersion() && chunk.quads == expected.getQuadCount(), "Every chunk's uploaded mesh should match its blocks: ".concat(chunk.toString()));
+			}
+			System.out.println(String.format("Edits: OK (%s)", world));
+			
+			// Drawing:
+			gl.reset();
+			final int drawn = world.draw(gl, null);
+			MicroBenchmark.check(drawn == chunks - countEmpty(world), "Every chunk with a mesh should be drawn");
+			MicroBenchmark.check(gl.getCount(RecordingGLBackend.Call.DRAW_ELEMENTS) == drawn, "Each chunk should be drawn with one call");
+			final long vertices = gl.getVerticesDrawn();
+			final FrustumCuller culler = new FrustumCuller();
+			final float[] projection = FloatMatrixStack.getPerspectiveMatrix(70.0f, 16.0f / 9.0f, 0.01f, 1000.0f, new float[16], 0);
+			final float[] modelView = new float[16];
+			CameraController.getViewMatrix(0, 0, 0, 0, 0, 0, 0, modelView);
+			culler.update(projection, modelView);
+			gl.reset();
+			final int visible = world.draw(gl, culler);
+			MicroBenchmark.check(visible > 0 && visible < drawn, "Only the chunks in front of the camera should be drawn");
+			System.out.println(String.format("Drawing: %s chunks (%s vertices) in %s draw calls; %s of them in view of a camera at the origin", Integer.toString(drawn), Long.toString(vertices), Integer.toString(drawn), Integer.toString(visible)));
+			world.destroy(gl);
+		} finally {
+			world.close();
+		}
+	}
+	
+	private static final int countEmpty(VoxelWorld world) {
+		int empty = 0;
+		for(VoxelChunk chunk : world.getChunks()) {
+			empty += chunk.quads == 0 ? 1 : 0;
+		}
+		return empty;
+	}
+	
+	/** Runs the tests and benchmarks and prints the results.
+	 * 
+	 * @param args Program command line arguments
+	 * @throws InterruptedException Thrown if the main thread was interrupted
+	 *             while waiting for chunks to be meshed */
+	public static final void main(String[] args) throws InterruptedException {
+		final List<MicroBenchmark.Result> results = new ArrayList<>();
+		testMeshing(results);
+		testWorld();
+	}
+	
+}